@@ -0,0 +1,63 @@
+package airtraffic.exec;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels written with the incubating Vector API, using the widest
+ * vectors the processor supports. Loaded by IntKernels when the module is
+ * present; this class is only compiled by the vector profile.
+ *
+ * Sums are added up in int lanes over runs short enough that values of
+ * 16 bits cannot overflow them, and each run is then added to a long.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class VectorIntKernels extends IntKernels {
+   private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+   private static final int RUN = 1 << 14;
+
+   @Override
+   public String getName() {
+      return "vector (" + SPECIES.length() + " lanes)";
+   }
+
+   @Override
+   public long sum(int[] values, int from, int to) {
+      long sum = 0;
+      for(int start = from; start < to; start += RUN) {
+         int end = Math.min(to, start + RUN);
+         int upper = start + SPECIES.loopBound(end - start);
+         IntVector lanes = IntVector.zero(SPECIES);
+         int i = start;
+         for(; i < upper; i += SPECIES.length()) {
+            lanes = lanes.add(IntVector.fromArray(SPECIES, values, i));
+         }
+         sum += lanes.reduceLanes(VectorOperators.ADD);
+         for(; i < end; i++) {
+            sum += values[i];
+         }
+      }
+      return sum;
+   }
+
+   @Override
+   public long sumSelected(int[] values, int[] selection, int count) {
+      long sum = 0;
+      for(int start = 0; start < count; start += RUN) {
+         int end = Math.min(count, start + RUN);
+         int upper = start + SPECIES.loopBound(end - start);
+         IntVector lanes = IntVector.zero(SPECIES);
+         int i = start;
+         for(; i < upper; i += SPECIES.length()) {
+            lanes = lanes.add(IntVector.fromArray(SPECIES, values, 0, selection, i));
+         }
+         sum += lanes.reduceLanes(VectorOperators.ADD);
+         for(; i < end; i++) {
+            sum += values[selection[i]];
+         }
+      }
+      return sum;
+   }
+}
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 
 import airtraffic.Flight.CancellationCode;
+import airtraffic.sketch.HyperLogLog;
 
 /**
  * Aggregate statistics for an airport. 
@@ -20,11 +21,16 @@ public class AirportMetrics extends FlightBasedMetrics<Airport>
    private LongAdder totalCancelledSecurity = new LongAdder();
    private LongAdder totalOrigins = new LongAdder();
    private LongAdder totalDestinations = new LongAdder();
+   private final HyperLogLog routes = newDistinctCounter();
 
    public AirportMetrics(Airport airport) {
       super(airport);
    }
 
+   public AirportMetrics(Airport airport, int precision) {
+      super(airport, precision);
+   }
+
    @Override
    public int compareTo(AirportMetrics other) {
       return this.getSubject().compareTo(other.getSubject());
@@ -54,6 +60,7 @@ public class AirportMetrics extends FlightBasedMetrics<Airport>
       }
 
       totalFlights.increment();
+      addDistinct(routes, flight.getRoute());
       return this;
    }
 
@@ -65,6 +72,14 @@ public class AirportMetrics extends FlightBasedMetrics<Airport>
       return totalDestinations.longValue();
    }
 
+   /**
+    * Returns the estimated number of distinct routes served by the
+    * airport.
+    */
+   public long getDistinctRoutes() {
+      return estimateDistinct(routes);
+   }
+
    public long getTotalCancelledByCode(CancellationCode code) {
       switch(code) {
          case CARRIER:  return totalCancelledCarrier.longValue();
@@ -95,29 +110,27 @@ public class AirportMetrics extends FlightBasedMetrics<Airport>
       };
    }
 
+   /**
+    * Merge metrics for the same airport into these.
+    */
+   public AirportMetrics merge(AirportMetrics other) {
+      if(!getSubject().equals(other.getSubject())) {
+         throw new IllegalArgumentException("Wrong airport");
+      }
+      addTotals(other);
+      totalCancelledCarrier.add(other.totalCancelledCarrier.longValue());
+      totalCancelledWeather.add(other.totalCancelledWeather.longValue());
+      totalCancelledNAS.add(other.totalCancelledNAS.longValue());
+      totalCancelledSecurity.add(other.totalCancelledSecurity.longValue());
+      totalOrigins.add(other.totalOrigins.longValue());
+      totalDestinations.add(other.totalDestinations.longValue());
+      mergeDistinct(routes, other.routes);
+      return this;
+   }
+
    public static BiConsumer<Map<String, AirportMetrics>, Map<String, AirportMetrics>> combiner() {
-      return (map1, map2) -> {
-         map1.entrySet()
-             .stream()
-             .forEach(e -> {
-                String airport = e.getKey();
-                AirportMetrics metrics = map2.get(airport);
-                if(metrics != null) {
-                   map1.merge(airport, metrics, (metrics1, metrics2) -> {
-                      if(!metrics1.getSubject().equals(metrics2.getSubject())) {
-                         throw new IllegalArgumentException("Wrong airport");
-                      }
-                      AirportMetrics result = new AirportMetrics(metrics1.getSubject());
-                      result.totalFlights.add(metrics1.totalFlights.longValue()); 
-                      result.totalFlights.add(metrics2.totalFlights.longValue());
-                      result.totalCancelled.add(metrics1.totalCancelled.longValue());
-                      result.totalCancelled.add(metrics2.totalCancelled.longValue());
-                      result.totalDiverted.add(metrics1.totalDiverted.longValue());
-                      result.totalDiverted.add(metrics2.totalDiverted.longValue());
-                      return result;
-                   });
-                }
-             });
-      };
+      return (map1, map2) -> map2.forEach((airport, metrics) -> 
+         map1.merge(airport, metrics, AirportMetrics::merge)
+      );
    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package airtraffic;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Releases the native memory behind direct and memory-mapped buffers
+ * without waiting for the garbage collector. The JDK offers no public way
+ * to do this, so the cleaner is located reflectively: through
+ * sun.misc.Unsafe.invokeCleaner on Java 9 and later, or the buffer's own
+ * cleaner on Java 8. If neither is available, freeing is left to the
+ * garbage collector.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class BufferCleaner {
+   private static final Logger LOGGER = LoggerFactory.getLogger(BufferCleaner.class);
+   private static final Object UNSAFE;
+   private static final Method INVOKE_CLEANER;
+
+   static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      try {
+         Class<?> klass = Class.forName("sun.misc.Unsafe");
+         invokeCleaner = klass.getMethod("invokeCleaner", ByteBuffer.class);
+         Field field = klass.getDeclaredField("theUnsafe");
+         field.setAccessible(true);
+         unsafe = field.get(null);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         invokeCleaner = null;       // Java 8, fall back to the buffer's cleaner
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+   }
+
+   private BufferCleaner() {}
+
+   /**
+    * Free the memory behind the buffer. The buffer must not be used
+    * afterwards. Heap buffers are ignored.
+    */
+   static void free(ByteBuffer buffer) {
+      if(buffer == null || !buffer.isDirect()) {
+         return;
+      }
+      try {
+         if(INVOKE_CLEANER != null) {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+         } else {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null) {
+               cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+         }
+      } catch (ReflectiveOperationException | RuntimeException e) {
+         LOGGER.debug("Unable to free buffer, leaving it to the garbage collector", e);
+      }
+   }
+}
\ No newline at end of file
@@ -1,11 +1,13 @@
 package airtraffic;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 
+import airtraffic.sketch.HyperLogLog;
+
 /**
  * Aggregate statistics for an airline carrier. 
  *
@@ -14,12 +16,17 @@ import java.util.function.BiConsumer;
 public class CarrierMetrics extends FlightBasedMetrics<Carrier> 
    implements Comparable<CarrierMetrics> {
 
-   Set<String> airports = new HashSet<String>();
+   Set<String> airports = ConcurrentHashMap.newKeySet();
+   private final HyperLogLog tailNumbers = newDistinctCounter();
 
    public CarrierMetrics(Carrier carrier) {
       super(carrier);
    }
 
+   public CarrierMetrics(Carrier carrier, int precision) {
+      super(carrier, precision);
+   }
+
    @Override
    public int compareTo(CarrierMetrics other) {
       return this.getSubject().compareTo(other.getSubject());
@@ -40,6 +47,7 @@ public class CarrierMetrics extends FlightBasedMetrics<Carrier>
       }
       airports.add(flight.getOrigin().getIATA());
       airports.add(flight.getDestination().getIATA());
+      addDistinct(tailNumbers, flight.getTailNumber());
       return this;
    }
 
@@ -47,6 +55,27 @@ public class CarrierMetrics extends FlightBasedMetrics<Carrier>
       return Collections.unmodifiableSet(airports);
    }
 
+   /**
+    * Returns the estimated number of distinct planes, by tail number,
+    * flown by the carrier.
+    */
+   public long getDistinctTailNumbers() {
+      return estimateDistinct(tailNumbers);
+   }
+
+   /**
+    * Merge metrics for the same carrier into these.
+    */
+   public CarrierMetrics merge(CarrierMetrics other) {
+      if(!getSubject().equals(other.getSubject())) {
+         throw new IllegalArgumentException("Wrong carrier");
+      }
+      addTotals(other);
+      airports.addAll(other.airports);
+      mergeDistinct(tailNumbers, other.tailNumbers);
+      return this;
+   }
+
    public static BiConsumer<Map<String, CarrierMetrics>, Flight> accumulator() { 
       return (map, flight) -> {
          Carrier carrier = flight.getCarrier();
@@ -60,30 +89,8 @@ public class CarrierMetrics extends FlightBasedMetrics<Carrier>
    }
 
    public static BiConsumer<Map<String, CarrierMetrics>, Map<String, CarrierMetrics>> combiner() {
-      return (map1, map2) -> {
-         map1.entrySet()
-             .stream()
-             .forEach(e -> {
-                String carrier = e.getKey();
-                CarrierMetrics metrics = map2.get(carrier);
-                if(metrics != null) {
-                   map1.merge(carrier, metrics, (metrics1, metrics2) -> {
-                      if(!metrics1.getSubject().equals(metrics2.getSubject())) {
-                         throw new IllegalArgumentException("Wrong carrier");
-                      }
-                      CarrierMetrics result = new CarrierMetrics(metrics1.getSubject());
-                      result.totalFlights.add(metrics1.totalFlights.longValue());
-                      result.totalFlights.add(metrics2.totalFlights.longValue());
-                      result.totalCancelled.add(metrics1.totalCancelled.longValue());
-                      result.totalCancelled.add(metrics2.totalCancelled.longValue());
-                      result.totalDiverted.add(metrics1.totalDiverted.longValue());
-                      result.totalDiverted.add(metrics2.totalDiverted.longValue());
-                      result.airports.addAll(metrics1.airports);
-                      result.airports.addAll(metrics2.airports);
-                      return result;
-                   });
-                }
-             });
-      };
+      return (map1, map2) -> map2.forEach((carrier, metrics) -> 
+         map1.merge(carrier, metrics, CarrierMetrics::merge)
+      );
    }
 }
\ No newline at end of file
@@ -14,6 +14,12 @@ public final class Config {
    private String carrierPath;
    private String planePath;
    private Map<Integer, String> flightPaths;
+   private boolean residentFlights;
+   private int residentMemoryBudget = 1024;
+   private String residentStorage = "heap";
+   private String residentCachePath = "cache";
+   private int sampleSize = 500;
+   private String ingestPath;
 
    public String getAirportPath() {
       return airportPath;
@@ -47,6 +53,76 @@ public final class Config {
       this.flightPaths = flightPaths;
    }
 
+   /**
+    * Returns true if flight data should be loaded into memory once and
+    * shared by all reports.
+    */
+   public boolean isResidentFlights() {
+      return residentFlights;
+   }
+
+   public void setResidentFlights(boolean residentFlights) {
+      this.residentFlights = residentFlights;
+   }
+
+   /**
+    * Returns the maximum size, in megabytes, of the resident flight data.
+    */
+   public int getResidentMemoryBudget() {
+      return residentMemoryBudget;
+   }
+
+   public void setResidentMemoryBudget(int residentMemoryBudget) {
+      this.residentMemoryBudget = residentMemoryBudget;
+   }
+
+   /**
+    * Returns where resident flight data is kept: "heap", "direct" (native
+    * memory) or "mapped" (memory-mapped column files).
+    */
+   public String getResidentStorage() {
+      return residentStorage;
+   }
+
+   public void setResidentStorage(String residentStorage) {
+      this.residentStorage = residentStorage;
+   }
+
+   /**
+    * Returns the directory holding the column files of mapped flight data.
+    */
+   public String getResidentCachePath() {
+      return residentCachePath;
+   }
+
+   public void setResidentCachePath(String residentCachePath) {
+      this.residentCachePath = residentCachePath;
+   }
+
+   /**
+    * Returns the number of flights sampled from each carrier and month for
+    * approximate reports.
+    */
+   public int getSampleSize() {
+      return sampleSize;
+   }
+
+   public void setSampleSize(int sampleSize) {
+      this.sampleSize = sampleSize;
+   }
+
+   /**
+    * Returns the directory watched for new flight files, or null if new
+    * flights are not ingested.
+    */
+   public String getIngestPath() {
+      return ingestPath;
+   }
+
+   public void setIngestPath(String ingestPath) {
+      this.ingestPath = ingestPath;
+   }
+
    @Override
    public String toString() {
       return ToStringBuilder.reflectionToString(this);
@@ -0,0 +1,134 @@
+package airtraffic;
+
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Minutes of arrival delay attributed to each of the five causes the
+ * carriers report, totalled over the delayed flights of a group such as
+ * an airport or a month. A flight is delayed if any cause has minutes,
+ * which carriers report for flights that arrive 15 minutes or more late.
+ *
+ * The totals are five longs and a count, so grouping a year of flights
+ * costs one small object per group and no boxing per flight.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class DelayCauses {
+   public enum Cause {
+      CARRIER(FlightField.CARRIER_DELAY),
+      WEATHER(FlightField.WEATHER_DELAY),
+      NAS(FlightField.NAS_DELAY),
+      SECURITY(FlightField.SECURITY_DELAY),
+      LATE_AIRCRAFT(FlightField.LATE_AIRCRAFT_DELAY);
+
+      private final FlightField field;
+
+      private Cause(FlightField field) {
+         this.field = field;
+      }
+
+      /**
+       * Returns the field holding the minutes of delay for this cause.
+       */
+      public FlightField getField() {
+         return field;
+      }
+   }
+
+   private long flights;
+   private long carrier;
+   private long weather;
+   private long NAS;
+   private long security;
+   private long lateAircraft;
+
+   /**
+    * Returns true if any cause of delay has minutes for the flight.
+    */
+   public static boolean isDelayed(Flight flight) {
+      return flight.getCarrierDelay() + flight.getWeatherDelay() + flight.getNASDelay() +
+             flight.getSecurityDelay() + flight.getLateAircraftDelay() > 0;
+   }
+
+   /**
+    * Add a delayed flight.
+    */
+   public DelayCauses add(Flight flight) {
+      ++flights;
+      carrier += flight.getCarrierDelay();
+      weather += flight.getWeatherDelay();
+      NAS += flight.getNASDelay();
+      security += flight.getSecurityDelay();
+      lateAircraft += flight.getLateAircraftDelay();
+      return this;
+   }
+
+   /**
+    * Add totals computed elsewhere: a number of delayed flights and their
+    * minutes of delay, indexed by the ordinal of the cause.
+    */
+   public DelayCauses add(long flights, long[] minutes) {
+      this.flights += flights;
+      carrier += minutes[Cause.CARRIER.ordinal()];
+      weather += minutes[Cause.WEATHER.ordinal()];
+      NAS += minutes[Cause.NAS.ordinal()];
+      security += minutes[Cause.SECURITY.ordinal()];
+      lateAircraft += minutes[Cause.LATE_AIRCRAFT.ordinal()];
+      return this;
+   }
+
+   public DelayCauses merge(DelayCauses other) {
+      flights += other.flights;
+      carrier += other.carrier;
+      weather += other.weather;
+      NAS += other.NAS;
+      security += other.security;
+      lateAircraft += other.lateAircraft;
+      return this;
+   }
+
+   /**
+    * Returns a collector that totals the causes of delay of the flights
+    * it is given by key. It may be used with a parallel stream.
+    */
+   public static <K> Collector<Flight, ?, Map<K, DelayCauses>> groupingByKey(
+      Function<? super Flight, ? extends K> key) {
+      return groupingBy(key, Collector.of(DelayCauses::new, DelayCauses::add, DelayCauses::merge));
+   }
+
+   public static Comparator<DelayCauses> highestTotalMinutesComparator() {
+      return (c1, c2) -> Long.compare(c2.getTotalMinutes(), c1.getTotalMinutes());
+   }
+
+   public long getDelayedFlights() {
+      return flights;
+   }
+
+   public long getMinutes(Cause cause) {
+      switch(cause) {
+         case CARRIER:       return carrier;
+         case WEATHER:       return weather;
+         case NAS:           return NAS;
+         case SECURITY:      return security;
+         default:            return lateAircraft;
+      }
+   }
+
+   public long getTotalMinutes() {
+      return carrier + weather + NAS + security + lateAircraft;
+   }
+
+   /**
+    * Returns the fraction of the minutes of delay due to a cause, or 0 if
+    * there are none.
+    */
+   public double getShare(Cause cause) {
+      long total = getTotalMinutes();
+      return total == 0 ? 0 : (double) getMinutes(cause) / total;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package airtraffic;
+
+public interface DelayReports {
+   String DELAY_CAUSES_FORMAT = "%-30s %,9d %,12d %8.1f %8.1f %8.1f %8.1f %8.1f\n";
+   void reportDelayCausesByAirport(ReportContext context);
+   void reportDelayCausesByCarrier(ReportContext context);
+   void reportDelayCausesByMonth(ReportContext context);
+   void reportDelayCausesByRoute(ReportContext context);
+}
\ No newline at end of file
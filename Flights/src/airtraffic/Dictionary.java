@@ -0,0 +1,68 @@
+package airtraffic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer identifiers to string keys, such as airport or
+ * carrier codes, so columnar storage can hold a small number instead of a
+ * reference. The value associated with each key is kept alongside it.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class Dictionary<T> {
+   static final int ESTIMATED_ENTRY_BYTES = 96;
+
+   private final Map<String, Integer> ids = new HashMap<>();
+   private final List<String> keys = new ArrayList<>();
+   private final List<T> values = new ArrayList<>();
+
+   /**
+    * Returns the identifier for the key, adding it with the given value
+    * if it has not been seen before.
+    */
+   int add(String key, T value) {
+      Integer id = ids.get(key);
+      if(id == null) {
+         id = keys.size();
+         ids.put(key, id);
+         keys.add(key);
+         values.add(value);
+      }
+      return id;
+   }
+
+   /**
+    * Returns the identifier for the key or -1 if it is unknown.
+    */
+   int getId(String key) {
+      Integer id = ids.get(key);
+      return id == null ? -1 : id;
+   }
+
+   String getKey(int id) {
+      return keys.get(id);
+   }
+
+   /**
+    * Returns the keys in identifier order.
+    */
+   List<String> getKeys() {
+      return Collections.unmodifiableList(keys);
+   }
+
+   T getValue(int id) {
+      return values.get(id);
+   }
+
+   int size() {
+      return keys.size();
+   }
+
+   long getMemoryUsage() {
+      return (long) size() * ESTIMATED_ENTRY_BYTES;
+   }
+}
\ No newline at end of file
@@ -1,24 +1,30 @@
 package airtraffic;
 
-import static java.lang.Integer.parseInt;
-import static org.apache.commons.lang3.StringUtils.length;
+import static airtraffic.FlightField.*;
 
 import java.time.LocalDate;
 import java.time.YearMonth;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 
 /**
- * Domain class that represents a scheduled event for flying an aircraft 
+ * Domain class that represents a scheduled event for flying an aircraft
  * between an origin and a destination. This is the central class in
  * this project and is used to query the large dataset made available
  * by American Statistical Association. The data can be downloaded here:
  *
  *   http://stat-computing.org/dataexpo/2009/the-data.html
  *
+ * Instances are decoded lazily. The constructor only locates the field
+ * boundaries within the source line and each field is parsed the first
+ * time it is accessed, so a report that only looks at a few fields pays
+ * for those fields alone. Like the source line, a flight is meant to be
+ * used by one thread at a time.
+ *
  * @author tony@piazzaconsulting.com
  */
 public class Flight {
@@ -40,6 +46,9 @@ public class Flight {
       }
    }
 
+   private static final String[] EXCLUDED_FIELDS =
+      { "line", "offsets", "fieldCount", "repository", "decoded" };
+
    private int _year;                            // 1987-2008
    private int _month;                           // 1-12
    private int _dayOfMonth;                      // 1-31
@@ -74,209 +83,443 @@ public class Flight {
    private Route route;
    private LocalDate date;
 
+   private final String line;                    // raw source line
+   private final int[] offsets;                  // start of each field, plus one past the end of the line
+   private final int fieldCount;                 // number of leading fields available in the line
+   private final Repository repository;
+   private int decoded;                          // one bit per FlightField that has been parsed
+
    public Flight(String input, Repository repository) {
-      String[] source = input.split(",");
-      _year = parseInt(source[0]);
-      _month = parseInt(source[1]);
-      _dayOfMonth = parseInt(source[2]);
-      _dayOfWeek = parseInt(source[3]);
-      _departureTime = "NA".equals(source[4]) ? 0 : parseInt(source[4]);
-      _CRSDepartureTime = parseInt(source[5]);
-      _arrivalTime = "NA".equals(source[6]) ? 0 : parseInt(source[6]);
-      _CRSArrivalTime = parseInt(source[7]);
-      _carrier = repository.getCarrier(source[8]);
-      _flightNumber = parseInt(source[9]);
-      if(length(source[10]) > 0) {
-         _tailNumber = source[10];
-      }
-      _actualElapsedTime = "NA".equals(source[11]) ? 0 : parseInt(source[11]);
-      _CRSElapsedTime = "NA".equals(source[12]) ? 0 : parseInt(source[12]);
-      _airTime = "NA".equals(source[13]) ? 0 : parseInt(source[13]);
-      _arrivalDelay = "NA".equals(source[14]) ? 0 : parseInt(source[14]);
-      _departureDelay = "NA".equals(source[15]) ? 0 : parseInt(source[15]);
-      _origin = repository.getAirport(source[16]);
-      _destination = repository.getAirport(source[17]);
-      _distance = parseInt(source[18]);
-      _taxiIn = "NA".equals(source[19]) ? 0 : parseInt(source[19]);
-      _taxiOut = "NA".equals(source[20]) ? 0 : parseInt(source[20]);
-      _cancelled = source[21].equals("1");
-      _cancellationCode = CancellationCode.get(source[22]);
-      _diverted = source[23].equals("1");
-      _carrierDelay = "NA".equals(source[24]) ? 0 : parseInt(source[24]);
-      _weatherDelay = "NA".equals(source[25]) ? 0 : parseInt(source[25]);
-      _NASDelay = "NA".equals(source[26]) ? 0 : parseInt(source[26]);
-      _securityDelay = "NA".equals(source[27]) ? 0 : parseInt(source[27]);
-      _lateAircraftDelay = "NA".equals(source[28]) ? 0 : parseInt(source[28]);
-
-      plane = repository.getPlane(_tailNumber);
-      if(plane == null) {
-         plane = new Plane();
-         plane.setTailNumber(_tailNumber);
+      this.line = input;
+      this.repository = repository;
+      this.fieldCount = FlightField.COUNT;
+      this.offsets = new int[FlightField.COUNT + 1];
+      int start = 0;
+      for(int i = 0; i < FlightField.COUNT - 1; i++) {
+         offsets[i] = start;
+         int comma = input.indexOf(',', start);
+         if(comma < 0) {
+            throw new IllegalArgumentException("Expected " + FlightField.COUNT +
+                                               " fields but found " + (i + 1));
+         }
+         start = comma + 1;
       }
-      route = new Route(_origin.getIATA(), _destination.getIATA());
-      date = LocalDate.of(_year, _month, _dayOfMonth);
+      offsets[FlightField.COUNT - 1] = start;
+      offsets[FlightField.COUNT] = input.length() + 1;
+   }
+
+   /**
+    * Create a flight from a line whose field offsets have already been
+    * located, typically by the scanner applying a FlightQuery. Only the
+    * first fieldCount fields are present in the line.
+    */
+   Flight(String line, int[] offsets, int fieldCount, Repository repository) {
+      this.line = line;
+      this.offsets = offsets;
+      this.fieldCount = fieldCount;
+      this.repository = repository;
+   }
+
+   /**
+    * Create a flight without a source line, for subclasses that supply
+    * every field themselves, such as the rows of a FlightTable.
+    */
+   Flight(Repository repository) {
+      this(null, null, FlightField.COUNT, repository);
+   }
+
+   private boolean notDecoded(FlightField field) {
+      return (decoded & (1 << field.ordinal())) == 0;
+   }
+
+   private void markDecoded(FlightField field) {
+      decoded |= 1 << field.ordinal();
+   }
+
+   private int start(FlightField field) {
+      if(field.ordinal() >= fieldCount) {
+         throw new IllegalStateException("Field " + field + " was not projected");
+      }
+      return offsets[field.ordinal()];
+   }
+
+   private int end(FlightField field) {
+      return offsets[field.ordinal() + 1] - 1;       // exclude the comma
+   }
+
+   private String getString(FlightField field) {
+      return line.substring(start(field), end(field));
+   }
+
+   private boolean getFlag(FlightField field) {
+      int start = start(field);
+      return end(field) - start == 1 && line.charAt(start) == '1';
+   }
+
+   private int getInt(FlightField field) {
+      return parseInt(line, start(field), end(field));
+   }
+
+   /**
+    * Parse an integer value in the given range of characters without
+    * creating a substring. A missing value ("NA") is treated as zero.
+    */
+   static int parseInt(CharSequence s, int start, int end) {
+      if(end - start == 2 && s.charAt(start) == 'N' && s.charAt(start + 1) == 'A') {
+         return 0;
+      }
+      boolean negative = false;
+      int i = start;
+      if(i < end && s.charAt(i) == '-') {
+         negative = true;
+         ++i;
+      }
+      if(i == end) {
+         throw new NumberFormatException("For input string: \"" +
+                                         s.subSequence(start, end) + "\"");
+      }
+      int result = 0;
+      for(; i < end; i++) {
+         int digit = s.charAt(i) - '0';
+         if(digit < 0 || digit > 9) {
+            throw new NumberFormatException("For input string: \"" +
+                                            s.subSequence(start, end) + "\"");
+         }
+         result = result * 10 + digit;
+      }
+      return negative ? -result : result;
    }
 
    public String describeRoute() {
-      return _origin + " to " + _destination;
+      return getOrigin() + " to " + getDestination();
    }
 
    public YearMonth getYearMonth() {
-      return YearMonth.from(date);
+      return YearMonth.of(getYear(), getMonth());
    }
 
    public Plane getPlane() {
+      if(plane == null) {
+         String tailNumber = getTailNumber();
+         plane = repository.getPlane(tailNumber);
+         if(plane == null) {
+            plane = new Plane();
+            plane.setTailNumber(tailNumber);
+         }
+      }
       return plane;
    }
 
    public Route getRoute() {
+      if(route == null) {
+         route = new Route(getOrigin().getIATA(), getDestination().getIATA());
+      }
       return route;
    }
 
    public LocalDate getDate() {
+      if(date == null) {
+         date = LocalDate.of(getYear(), getMonth(), getDayOfMonth());
+      }
       return date;
    }
 
    public boolean validTailNumber() {
-      return _tailNumber != null && _tailNumber.length() > 0;
+      String tailNumber = getTailNumber();
+      return tailNumber != null && tailNumber.length() > 0;
    }
 
    public int getYear() {
+      if(notDecoded(YEAR)) {
+         _year = getInt(YEAR);
+         markDecoded(YEAR);
+      }
       return _year;
    }
 
    public int getMonth() {
+      if(notDecoded(MONTH)) {
+         _month = getInt(MONTH);
+         markDecoded(MONTH);
+      }
       return _month;
    }
 
    public int getDayOfMonth() {
+      if(notDecoded(DAY_OF_MONTH)) {
+         _dayOfMonth = getInt(DAY_OF_MONTH);
+         markDecoded(DAY_OF_MONTH);
+      }
       return _dayOfMonth;
    };
 
    public int getDayOfWeek() {
+      if(notDecoded(DAY_OF_WEEK)) {
+         _dayOfWeek = getInt(DAY_OF_WEEK);
+         markDecoded(DAY_OF_WEEK);
+      }
       return _dayOfWeek;
    }
 
    public int getDepartureTime() {
+      if(notDecoded(DEPARTURE_TIME)) {
+         _departureTime = getInt(DEPARTURE_TIME);
+         markDecoded(DEPARTURE_TIME);
+      }
       return _departureTime;
    }
 
    public int getCRSDepartureTime() {
+      if(notDecoded(CRS_DEPARTURE_TIME)) {
+         _CRSDepartureTime = getInt(CRS_DEPARTURE_TIME);
+         markDecoded(CRS_DEPARTURE_TIME);
+      }
       return _CRSDepartureTime;
    }
 
    public int getArrivalTime() {
+      if(notDecoded(ARRIVAL_TIME)) {
+         _arrivalTime = getInt(ARRIVAL_TIME);
+         markDecoded(ARRIVAL_TIME);
+      }
       return _arrivalTime;
    }
 
    public int getCRSArrivalTime() {
+      if(notDecoded(CRS_ARRIVAL_TIME)) {
+         _CRSArrivalTime = getInt(CRS_ARRIVAL_TIME);
+         markDecoded(CRS_ARRIVAL_TIME);
+      }
       return _CRSArrivalTime;
    }
 
    public Carrier getCarrier() {
+      if(notDecoded(CARRIER)) {
+         _carrier = repository.getCarrier(getString(CARRIER));
+         markDecoded(CARRIER);
+      }
       return _carrier;
    }
 
    public int getFlightNumber() {
+      if(notDecoded(FLIGHT_NUMBER)) {
+         _flightNumber = getInt(FLIGHT_NUMBER);
+         markDecoded(FLIGHT_NUMBER);
+      }
       return _flightNumber;
    }
 
    public String getTailNumber() {
+      if(notDecoded(TAIL_NUMBER)) {
+         if(end(TAIL_NUMBER) > start(TAIL_NUMBER)) {
+            _tailNumber = getString(TAIL_NUMBER);
+         }
+         markDecoded(TAIL_NUMBER);
+      }
       return _tailNumber;
    }
 
    public int getActualElapsedTime() {
+      if(notDecoded(ACTUAL_ELAPSED_TIME)) {
+         _actualElapsedTime = getInt(ACTUAL_ELAPSED_TIME);
+         markDecoded(ACTUAL_ELAPSED_TIME);
+      }
       return _actualElapsedTime;
    }
 
    public int getCRSElapsedTime() {
+      if(notDecoded(CRS_ELAPSED_TIME)) {
+         _CRSElapsedTime = getInt(CRS_ELAPSED_TIME);
+         markDecoded(CRS_ELAPSED_TIME);
+      }
       return _CRSElapsedTime;
    }
 
    public int getAirTime() {
+      if(notDecoded(AIR_TIME)) {
+         _airTime = getInt(AIR_TIME);
+         markDecoded(AIR_TIME);
+      }
       return _airTime;
    }
 
    public int getArrivalDelay() {
+      if(notDecoded(ARRIVAL_DELAY)) {
+         _arrivalDelay = getInt(ARRIVAL_DELAY);
+         markDecoded(ARRIVAL_DELAY);
+      }
       return _arrivalDelay;
    }
 
    public int getDepartureDelay() {
+      if(notDecoded(DEPARTURE_DELAY)) {
+         _departureDelay = getInt(DEPARTURE_DELAY);
+         markDecoded(DEPARTURE_DELAY);
+      }
       return _departureDelay;
    }
 
    public Airport getOrigin() {
+      if(notDecoded(ORIGIN)) {
+         _origin = repository.getAirport(getString(ORIGIN));
+         markDecoded(ORIGIN);
+      }
       return _origin;
    }
 
    public Airport getDestination() {
+      if(notDecoded(DESTINATION)) {
+         _destination = repository.getAirport(getString(DESTINATION));
+         markDecoded(DESTINATION);
+      }
       return _destination;
    }
 
    public int getDistance() {
+      if(notDecoded(DISTANCE)) {
+         _distance = getInt(DISTANCE);
+         markDecoded(DISTANCE);
+      }
       return _distance;
    }
 
    public int getTaxiIn() {
+      if(notDecoded(TAXI_IN)) {
+         _taxiIn = getInt(TAXI_IN);
+         markDecoded(TAXI_IN);
+      }
       return _taxiIn;
    }
 
    public int getTaxiOut() {
+      if(notDecoded(TAXI_OUT)) {
+         _taxiOut = getInt(TAXI_OUT);
+         markDecoded(TAXI_OUT);
+      }
       return _taxiOut;
    }
 
    public boolean cancelled() {
+      if(notDecoded(CANCELLED)) {
+         _cancelled = getFlag(CANCELLED);
+         markDecoded(CANCELLED);
+      }
       return _cancelled;
    }
 
    public boolean notCancelled() {
-      return ! _cancelled;
+      return ! cancelled();
    }
 
    public CancellationCode getCancellationCode() {
+      if(notDecoded(CANCELLATION_CODE)) {
+         _cancellationCode = CancellationCode.get(getString(CANCELLATION_CODE));
+         markDecoded(CANCELLATION_CODE);
+      }
       return _cancellationCode;
    }
 
    public boolean diverted() {
+      if(notDecoded(DIVERTED)) {
+         _diverted = getFlag(DIVERTED);
+         markDecoded(DIVERTED);
+      }
       return _diverted;
    }
 
    public boolean notDiverted() {
-      return ! _diverted;
+      return ! diverted();
    }
 
    public int getCarrierDelay() {
+      if(notDecoded(CARRIER_DELAY)) {
+         _carrierDelay = getInt(CARRIER_DELAY);
+         markDecoded(CARRIER_DELAY);
+      }
       return _carrierDelay;
    }
 
    public int getWeatherDelay() {
+      if(notDecoded(WEATHER_DELAY)) {
+         _weatherDelay = getInt(WEATHER_DELAY);
+         markDecoded(WEATHER_DELAY);
+      }
       return _weatherDelay;
    }
 
    public int getNASDelay() {
+      if(notDecoded(NAS_DELAY)) {
+         _NASDelay = getInt(NAS_DELAY);
+         markDecoded(NAS_DELAY);
+      }
       return _NASDelay;
    }
 
    public int getSecurityDelay() {
+      if(notDecoded(SECURITY_DELAY)) {
+         _securityDelay = getInt(SECURITY_DELAY);
+         markDecoded(SECURITY_DELAY);
+      }
       return _securityDelay;
    }
 
    public int getLateAircraftDelay() {
+      if(notDecoded(LATE_AIRCRAFT_DELAY)) {
+         _lateAircraftDelay = getInt(LATE_AIRCRAFT_DELAY);
+         markDecoded(LATE_AIRCRAFT_DELAY);
+      }
       return _lateAircraftDelay;
    }
 
+   /**
+    * Force every field to be decoded. Used where the whole object is
+    * inspected reflectively, and before a flight is handed to other
+    * threads, since reading a decoded flight no longer changes it.
+    */
+   public Flight decodeAll() {
+      getYear(); getMonth(); getDayOfMonth(); getDayOfWeek();
+      getDepartureTime(); getCRSDepartureTime(); getArrivalTime(); getCRSArrivalTime();
+      getCarrier(); getFlightNumber(); getTailNumber();
+      getActualElapsedTime(); getCRSElapsedTime(); getAirTime();
+      getArrivalDelay(); getDepartureDelay(); getOrigin(); getDestination();
+      getDistance(); getTaxiIn(); getTaxiOut();
+      cancelled(); getCancellationCode(); diverted();
+      getCarrierDelay(); getWeatherDelay(); getNASDelay();
+      getSecurityDelay(); getLateAircraftDelay();
+      getPlane(); getRoute(); getDate();
+      return this;
+   }
+
+   private boolean projected() {
+      return fieldCount < FlightField.COUNT;
+   }
+
    @Override
    public boolean equals(Object obj) {
-      return EqualsBuilder.reflectionEquals(this, obj, false);
+      if(!(obj instanceof Flight)) {
+         return false;
+      }
+      Flight other = (Flight) obj;
+      if(this.projected() || other.projected()) {
+         return this.fieldCount == other.fieldCount && this.line.equals(other.line);
+      }
+      return EqualsBuilder.reflectionEquals(this.decodeAll(), other.decodeAll(),
+                                            EXCLUDED_FIELDS);
    }
 
    @Override
    public int hashCode() {
-      return HashCodeBuilder.reflectionHashCode(this, false);
+      if(projected()) {
+         return line.hashCode();
+      }
+      return HashCodeBuilder.reflectionHashCode(decodeAll(), EXCLUDED_FIELDS);
    }
 
    @Override
    public String toString() {
-      return ToStringBuilder.reflectionToString(this);
+      if(projected()) {
+         return new ToStringBuilder(this).append("line", line).toString();
+      }
+      return ReflectionToStringBuilder.toStringExclude(decodeAll(), EXCLUDED_FIELDS);
    }
 }
\ No newline at end of file
@@ -7,9 +7,20 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import airtraffic.sketch.HyperLogLog;
+import airtraffic.sketch.KeyFunnel;
+
 /**
  * Common behavior for classes that report flight-based metrics.
  *
+ * Subclasses can count distinct values, such as tail numbers or routes,
+ * with HyperLogLog sketches created by newDistinctCounter(). These use a
+ * fixed amount of memory, set by the precision, however many values are
+ * added, and merge cheaply when partial results are combined. Metrics
+ * may be updated by several threads while they are read, as the live
+ * reports do, so the sketches are only used through addDistinct(),
+ * mergeDistinct() and estimateDistinct(), which hold the sketch's lock.
+ *
  * @author tony@piazzaconsulting.com
  */
 public abstract class FlightBasedMetrics<T> {
@@ -17,9 +28,70 @@ public abstract class FlightBasedMetrics<T> {
    protected LongAdder totalCancelled = new LongAdder();
    protected LongAdder totalDiverted = new LongAdder();
    private T subject;
+   private final int precision;
 
    protected FlightBasedMetrics(T subject) {
+      this(subject, HyperLogLog.DEFAULT_PRECISION);
+   }
+
+   protected FlightBasedMetrics(T subject, int precision) {
       this.subject = subject;
+      this.precision = precision;
+   }
+
+   /**
+    * Returns a new distinct value counter at the precision these metrics
+    * were created with.
+    */
+   protected HyperLogLog newDistinctCounter() {
+      return new HyperLogLog(precision);
+   }
+
+   /**
+    * Add a value to a distinct value counter. The value is hashed from its
+    * contents, as the other sketches hash keys, before the lock is taken.
+    * Null values are ignored.
+    */
+   protected static void addDistinct(HyperLogLog counter, Object value) {
+      if(value != null) {
+         long hash = KeyFunnel.hash(value);
+         synchronized(counter) {
+            counter.addHash(hash);
+         }
+      }
+   }
+
+   /**
+    * Merge another distinct value counter into a counter.
+    */
+   protected static void mergeDistinct(HyperLogLog counter, HyperLogLog other) {
+      synchronized(counter) {
+         synchronized(other) {
+            counter.merge(other);
+         }
+      }
+   }
+
+   protected static long estimateDistinct(HyperLogLog counter) {
+      synchronized(counter) {
+         return counter.estimate();
+      }
+   }
+
+   /**
+    * Returns the precision of the distinct value counters.
+    */
+   public int getPrecision() {
+      return precision;
+   }
+
+   /**
+    * Add the totals from other metrics for the same subject to these.
+    */
+   protected void addTotals(FlightBasedMetrics<T> other) {
+      totalFlights.add(other.totalFlights.longValue());
+      totalCancelled.add(other.totalCancelled.longValue());
+      totalDiverted.add(other.totalDiverted.longValue());
    }
 
    public abstract FlightBasedMetrics<T> addFlight(Flight flight);
@@ -0,0 +1,46 @@
+package airtraffic;
+
+/**
+ * The columns of a flight data record, in the order they appear in the
+ * source CSV files. The ordinal of each constant is the zero-based index
+ * of the column in a line.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public enum FlightField {
+   YEAR,
+   MONTH,
+   DAY_OF_MONTH,
+   DAY_OF_WEEK,
+   DEPARTURE_TIME,
+   CRS_DEPARTURE_TIME,
+   ARRIVAL_TIME,
+   CRS_ARRIVAL_TIME,
+   CARRIER,
+   FLIGHT_NUMBER,
+   TAIL_NUMBER,
+   ACTUAL_ELAPSED_TIME,
+   CRS_ELAPSED_TIME,
+   AIR_TIME,
+   ARRIVAL_DELAY,
+   DEPARTURE_DELAY,
+   ORIGIN,
+   DESTINATION,
+   DISTANCE,
+   TAXI_IN,
+   TAXI_OUT,
+   CANCELLED,
+   CANCELLATION_CODE,
+   DIVERTED,
+   CARRIER_DELAY,
+   WEATHER_DELAY,
+   NAS_DELAY,
+   SECURITY_DELAY,
+   LATE_AIRCRAFT_DELAY;
+
+   public static final int COUNT = values().length;
+
+   public int getIndex() {
+      return ordinal();
+   }
+}
\ No newline at end of file
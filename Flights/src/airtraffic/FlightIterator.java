@@ -0,0 +1,16 @@
+package airtraffic;
+
+import java.util.Iterator;
+
+/**
+ * An iterator over flights that holds on to the file or in-memory table
+ * it reads from until it is closed. Flights read from a table refer to
+ * its columns, so they must not be used once the iterator is closed.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public interface FlightIterator extends Iterator<Flight>, AutoCloseable {
+
+   @Override
+   void close();
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package airtraffic;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Describes which flight fields a report needs (the projection) and a
+ * conjunction of simple conditions on the raw field values (the
+ * predicates). Both are pushed down to the scanner that reads the flight
+ * data, which tests the predicates against the bytes of each line, in the
+ * order they were added, before it builds a Flight. Rows that fail are
+ * skipped without being decoded.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlightQuery {
+   /**
+    * A condition that the raw value of a field either equals, or does not
+    * equal, a given string.
+    */
+   public static final class FieldPredicate {
+      private final FlightField field;
+      private final byte[] value;
+      private final boolean negated;
+
+      private FieldPredicate(FlightField field, String value, boolean negated) {
+         this.field = field;
+         this.value = value.getBytes(ISO_8859_1);
+         this.negated = negated;
+      }
+
+      public FlightField getField() {
+         return field;
+      }
+
+      byte[] getValue() {
+         return value;
+      }
+
+      /**
+       * Returns the value the field is compared with, as it appears in
+       * the source data.
+       */
+      public String getText() {
+         return new String(value, ISO_8859_1);
+      }
+
+      public boolean isNegated() {
+         return negated;
+      }
+
+      @Override
+      public String toString() {
+         return field + (negated ? " != " : " == ") + new String(value, ISO_8859_1);
+      }
+   }
+
+   private final Set<FlightField> projection;
+   private final List<FieldPredicate> predicates = new ArrayList<>();
+
+   private FlightQuery(Set<FlightField> projection) {
+      this.projection = projection;
+   }
+
+   /**
+    * Create a query that materializes only the given fields. Accessing
+    * any other field of a resulting Flight is an error. Fields are
+    * located by position, so every field up to the last one selected is
+    * available.
+    */
+   public static FlightQuery select(FlightField... fields) {
+      Set<FlightField> projection = EnumSet.noneOf(FlightField.class);
+      Collections.addAll(projection, fields);
+      return new FlightQuery(projection);
+   }
+
+   /**
+    * Create a query that materializes all fields.
+    */
+   public static FlightQuery selectAll() {
+      return new FlightQuery(EnumSet.allOf(FlightField.class));
+   }
+
+   /**
+    * Only accept rows where the field has exactly the given value.
+    */
+   public FlightQuery whereEquals(FlightField field, String value) {
+      predicates.add(new FieldPredicate(field, value, false));
+      return this;
+   }
+
+   /**
+    * Only accept rows where the field does not have the given value.
+    */
+   public FlightQuery whereNotEquals(FlightField field, String value) {
+      predicates.add(new FieldPredicate(field, value, true));
+      return this;
+   }
+
+   /**
+    * Only accept rows where a boolean field, such as CANCELLED or
+    * DIVERTED, has the given value.
+    */
+   public FlightQuery where(FlightField flag, boolean value) {
+      predicates.add(new FieldPredicate(flag, "1", !value));
+      return this;
+   }
+
+   public Set<FlightField> getProjection() {
+      return Collections.unmodifiableSet(projection);
+   }
+
+   public List<FieldPredicate> getPredicates() {
+      return Collections.unmodifiableList(predicates);
+   }
+
+   /**
+    * Returns the number of leading fields of a line that must be kept to
+    * satisfy the projection.
+    */
+   int getFieldCount() {
+      int count = 0;
+      for(FlightField field : projection) {
+         count = Math.max(count, field.ordinal() + 1);
+      }
+      return count;
+   }
+
+   @Override
+   public String toString() {
+      return new ToStringBuilder(this).append("projection", projection)
+                                      .append("predicates", predicates)
+                                      .toString();
+   }
+}
\ No newline at end of file
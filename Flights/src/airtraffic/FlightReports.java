@@ -13,6 +13,10 @@ public interface FlightReports {
    void reportMostPopularRoutes(ReportContext context);
    void reportWorstAverageDepartureDelayByOrigin(ReportContext context);
    void reportWorstAverageArrivalDelayByDestination(ReportContext context);
+   void reportDepartureDelayPercentilesByOrigin(ReportContext context);
+   void reportArrivalDelayPercentilesByCarrier(ReportContext context);
+   void reportArrivalDelayPercentilesByRoute(ReportContext context);
+   void reportTaxiOutPercentilesByOrigin(ReportContext context);
    void reportMostCancelledFlightsByOrigin(ReportContext context);
    void reportTotalFlightsByOriginState(ReportContext context);
    void reportTotalFlightsByDestinationState(ReportContext context);
@@ -0,0 +1,210 @@
+package airtraffic;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import airtraffic.FlightQuery.FieldPredicate;
+
+/**
+ * Reads a flight data file as raw bytes and evaluates the predicates of a
+ * FlightQuery directly against each line. Fields are located lazily, so a
+ * line that fails the first predicate is abandoned after scanning only as
+ * far as that field, and a Flight is only created for lines that pass.
+ * Only the projected prefix of a matching line is copied into the Flight.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class FlightScanner implements FlightIterator {
+   private static final int BUFFER_SIZE = 1 << 20;
+
+   private final InputStream in;
+   private final Repository repository;
+   private final FieldPredicate[] predicates;
+   private final int fieldCount;
+   private final int[] offsets = new int[FlightField.COUNT + 1];
+   private byte[] buffer;
+   private int position;         // start of the next unread line
+   private int scanned;          // bytes before this index contain no newline
+   private int limit;            // end of the valid bytes in the buffer
+   private boolean eof;
+   private int lineStart;
+   private int lineEnd;
+   private int located;          // highest index in offsets that is valid for the current line
+   private Flight next;
+
+   /**
+    * Create a scanner over a flight data file, read from the given stream
+    * starting with its header.
+    */
+   FlightScanner(InputStream in, FlightQuery query, Repository repository) throws IOException {
+      this.in = in;
+      this.repository = repository;
+      this.predicates = query.getPredicates().toArray(new FieldPredicate[0]);
+      this.fieldCount = query.getFieldCount();
+      this.buffer = new byte[BUFFER_SIZE];
+      nextLine();       // skip header
+   }
+
+   /**
+    * Create a scanner over lines already in memory, such as a block of a
+    * flight data file read by a pipeline. The bytes from start to end hold
+    * whole lines and no header.
+    */
+   FlightScanner(byte[] block, int start, int end, FlightQuery query, Repository repository) {
+      this.in = null;
+      this.repository = repository;
+      this.predicates = query.getPredicates().toArray(new FieldPredicate[0]);
+      this.fieldCount = query.getFieldCount();
+      this.buffer = block;
+      this.position = start;
+      this.scanned = start;
+      this.limit = end;
+      this.eof = true;
+   }
+
+   @Override
+   public boolean hasNext() {
+      if(next == null) {
+         try {
+            next = advance();
+         } catch (IOException e) {
+            throw new RepositoryException(e);
+         }
+      }
+      return next != null;
+   }
+
+   @Override
+   public Flight next() {
+      if(!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      Flight result = next;
+      next = null;
+      return result;
+   }
+
+   @Override
+   public void close() {
+      if(in != null) {
+         try {
+            in.close();
+         } catch (IOException e) {
+            throw new RepositoryException(e);
+         }
+      }
+   }
+
+   private Flight advance() throws IOException {
+      while(nextLine()) {
+         if(lineEnd > lineStart && matches()) {
+            return materialize();
+         }
+      }
+      return null;
+   }
+
+   private boolean matches() {
+      for(FieldPredicate predicate : predicates) {
+         int field = predicate.getField().ordinal();
+         locate(field);
+         int start = offsets[field];
+         int length = offsets[field + 1] - 1 - start;
+         byte[] value = predicate.getValue();
+         boolean equal = length == value.length;
+         for(int i = 0; equal && i < length; i++) {
+            equal = buffer[start + i] == value[i];
+         }
+         if(equal == predicate.isNegated()) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private Flight materialize() {
+      int end = lineStart;
+      if(fieldCount > 0) {
+         locate(fieldCount - 1);
+         end = offsets[fieldCount] - 1;
+      }
+      int[] relative = new int[FlightField.COUNT + 1];
+      for(int i = 0; i <= fieldCount; i++) {
+         relative[i] = offsets[i] - lineStart;
+      }
+      String line = new String(buffer, lineStart, end - lineStart, ISO_8859_1);
+      return new Flight(line, relative, fieldCount, repository);
+   }
+
+   /**
+    * Make sure the start and end of the given field are known for the
+    * current line.
+    */
+   private void locate(int field) {
+      while(located <= field) {
+         int i = offsets[located];
+         while(i < lineEnd && buffer[i] != ',') {
+            ++i;
+         }
+         if(i == lineEnd && located < FlightField.COUNT - 1) {
+            throw new IllegalArgumentException("Expected " + FlightField.COUNT +
+                                               " fields but found " + (located + 1));
+         }
+         offsets[++located] = i + 1;
+      }
+   }
+
+   private boolean nextLine() throws IOException {
+      while(true) {
+         for(int i = scanned; i < limit; i++) {
+            if(buffer[i] == '\n') {
+               setLine(position, i);
+               position = scanned = i + 1;
+               return true;
+            }
+         }
+         scanned = limit;
+         if(eof) {
+            if(position < limit) {
+               setLine(position, limit);
+               position = scanned = limit;
+               return true;
+            }
+            return false;
+         }
+         fill();
+      }
+   }
+
+   private void setLine(int start, int end) {
+      if(end > start && buffer[end - 1] == '\r') {
+         --end;
+      }
+      lineStart = start;
+      lineEnd = end;
+      offsets[0] = start;
+      located = 0;
+   }
+
+   private void fill() throws IOException {
+      int remaining = limit - position;
+      if(position == 0 && remaining == buffer.length) {
+         buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      } else if(position > 0) {
+         System.arraycopy(buffer, position, buffer, 0, remaining);
+      }
+      scanned -= position;
+      position = 0;
+      limit = remaining;
+      int n = in.read(buffer, limit, buffer.length - limit);
+      if(n < 0) {
+         eof = true;
+      } else {
+         limit += n;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,943 @@
+package airtraffic;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import airtraffic.Flight.CancellationCode;
+import airtraffic.FlightQuery.FieldPredicate;
+
+/**
+ * Column-oriented, in-memory copy of one year of flight data. Each field
+ * is held in its own ByteBuffer, indexed by row, and airports, carriers
+ * and tail numbers are replaced by dictionary identifiers. A table is
+ * built once and is read-only afterwards, so any number of threads may
+ * scan it at the same time.
+ *
+ * The buffers live on the Java heap, in native memory or in memory-mapped
+ * column files, depending on the Storage chosen when the table is loaded.
+ * Native and mapped tables keep almost nothing on the heap, so many years
+ * of data can be held without adding to garbage collection pauses. Their
+ * memory is released when the last reference to the table is closed; see
+ * retain() and close().
+ *
+ * Besides the per-row column accessors, the table offers parallel scan
+ * primitives that split the rows into fixed size chunks and process the
+ * chunks on the common fork-join pool.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlightTable implements AutoCloseable {
+   public enum Storage {
+      HEAP, DIRECT, MAPPED;
+
+      public static Storage get(String name) {
+         return name == null ? HEAP : valueOf(name.toUpperCase());
+      }
+   }
+
+   static final int CHUNK_SIZE = 1 << 16;
+   private static final int INITIAL_CAPACITY = 1 << 16;
+   private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+   private static final CancellationCode[] CANCELLATION_CODES = CancellationCode.values();
+   private static final String PROPERTIES_FILE = "table.properties";
+   private static final String COLUMN_SUFFIX = ".col";
+
+   /** Bytes used to store each field, or 0 for fields that are not stored. */
+   private static final int[] WIDTHS = new int[FlightField.COUNT];
+   /** Approximate number of bytes used by the columns of one row. */
+   static final int BYTES_PER_ROW;
+
+   static {
+      int total = 0;
+      for(FlightField field : FlightField.values()) {
+         switch(field) {
+            case YEAR:
+               WIDTHS[field.ordinal()] = 0;
+               break;
+            case MONTH: case DAY_OF_MONTH: case DAY_OF_WEEK:
+            case CANCELLED: case CANCELLATION_CODE: case DIVERTED:
+               WIDTHS[field.ordinal()] = 1;
+               break;
+            case TAIL_NUMBER:
+               WIDTHS[field.ordinal()] = 4;
+               break;
+            default:
+               WIDTHS[field.ordinal()] = 2;
+         }
+         total += WIDTHS[field.ordinal()];
+      }
+      BYTES_PER_ROW = total;
+   }
+
+   private final int year;
+   private final int size;
+   private final Storage storage;
+   private final Repository repository;
+   private final String source;
+   private final Dictionary<Airport> airports;
+   private final Dictionary<Carrier> carriers;
+   private final Dictionary<String> tailNumbers;
+   private final ByteBuffer[] columns;
+   private final AtomicInteger references = new AtomicInteger(1);
+
+   private final ByteBuffer month;
+   private final ByteBuffer dayOfMonth;
+   private final ByteBuffer dayOfWeek;
+   private final ByteBuffer departureTime;
+   private final ByteBuffer CRSDepartureTime;
+   private final ByteBuffer arrivalTime;
+   private final ByteBuffer CRSArrivalTime;
+   private final ByteBuffer carrier;
+   private final ByteBuffer flightNumber;
+   private final ByteBuffer tailNumber;
+   private final ByteBuffer actualElapsedTime;
+   private final ByteBuffer CRSElapsedTime;
+   private final ByteBuffer airTime;
+   private final ByteBuffer arrivalDelay;
+   private final ByteBuffer departureDelay;
+   private final ByteBuffer origin;
+   private final ByteBuffer destination;
+   private final ByteBuffer distance;
+   private final ByteBuffer taxiIn;
+   private final ByteBuffer taxiOut;
+   private final ByteBuffer cancelled;
+   private final ByteBuffer cancellationCode;
+   private final ByteBuffer diverted;
+   private final ByteBuffer carrierDelay;
+   private final ByteBuffer weatherDelay;
+   private final ByteBuffer NASDelay;
+   private final ByteBuffer securityDelay;
+   private final ByteBuffer lateAircraftDelay;
+
+   private FlightTable(int year, int size, Storage storage, Repository repository,
+                       String source, ByteBuffer[] columns, Dictionary<Airport> airports,
+                       Dictionary<Carrier> carriers, Dictionary<String> tailNumbers) {
+      this.year = year;
+      this.size = size;
+      this.storage = storage;
+      this.repository = repository;
+      this.source = source;
+      this.columns = columns;
+      this.airports = airports;
+      this.carriers = carriers;
+      this.tailNumbers = tailNumbers;
+      this.month = column(FlightField.MONTH);
+      this.dayOfMonth = column(FlightField.DAY_OF_MONTH);
+      this.dayOfWeek = column(FlightField.DAY_OF_WEEK);
+      this.departureTime = column(FlightField.DEPARTURE_TIME);
+      this.CRSDepartureTime = column(FlightField.CRS_DEPARTURE_TIME);
+      this.arrivalTime = column(FlightField.ARRIVAL_TIME);
+      this.CRSArrivalTime = column(FlightField.CRS_ARRIVAL_TIME);
+      this.carrier = column(FlightField.CARRIER);
+      this.flightNumber = column(FlightField.FLIGHT_NUMBER);
+      this.tailNumber = column(FlightField.TAIL_NUMBER);
+      this.actualElapsedTime = column(FlightField.ACTUAL_ELAPSED_TIME);
+      this.CRSElapsedTime = column(FlightField.CRS_ELAPSED_TIME);
+      this.airTime = column(FlightField.AIR_TIME);
+      this.arrivalDelay = column(FlightField.ARRIVAL_DELAY);
+      this.departureDelay = column(FlightField.DEPARTURE_DELAY);
+      this.origin = column(FlightField.ORIGIN);
+      this.destination = column(FlightField.DESTINATION);
+      this.distance = column(FlightField.DISTANCE);
+      this.taxiIn = column(FlightField.TAXI_IN);
+      this.taxiOut = column(FlightField.TAXI_OUT);
+      this.cancelled = column(FlightField.CANCELLED);
+      this.cancellationCode = column(FlightField.CANCELLATION_CODE);
+      this.diverted = column(FlightField.DIVERTED);
+      this.carrierDelay = column(FlightField.CARRIER_DELAY);
+      this.weatherDelay = column(FlightField.WEATHER_DELAY);
+      this.NASDelay = column(FlightField.NAS_DELAY);
+      this.securityDelay = column(FlightField.SECURITY_DELAY);
+      this.lateAircraftDelay = column(FlightField.LATE_AIRCRAFT_DELAY);
+   }
+
+   private ByteBuffer column(FlightField field) {
+      return columns[field.ordinal()];
+   }
+
+   /**
+    * Build a table from the given flights, all of which must belong to
+    * the given year and be read from the given version of its source file.
+    * Mapped tables are written to column files in a subdirectory of
+    * cacheDir, so they can be reopened with open().
+    */
+   static FlightTable load(int year, Iterator<Flight> flights, Repository repository,
+                           Storage storage, Path cacheDir, String source) throws IOException {
+      Builder builder = new Builder(year, storage == Storage.HEAP);
+      while(flights.hasNext()) {
+         builder.add(flights.next());
+      }
+      if(storage == Storage.MAPPED) {
+         builder.write(cacheDir.resolve(Integer.toString(year)), source);
+         builder.free();
+         return open(year, cacheDir, source, repository);
+      }
+      ByteBuffer[] columns = builder.trim();
+      return new FlightTable(year, builder.size, storage, repository, source, columns,
+                             builder.airports, builder.carriers, builder.tailNumbers);
+   }
+
+   /**
+    * Map the column files previously written for a year. Returns null if
+    * there are none, or if they were built from a different version of
+    * the source file than the one given.
+    */
+   static FlightTable open(int year, Path cacheDir, String source, Repository repository)
+      throws IOException {
+      Path dir = cacheDir.resolve(Integer.toString(year));
+      Path propertiesPath = dir.resolve(PROPERTIES_FILE);
+      if(Files.notExists(propertiesPath)) {
+         return null;
+      }
+      Properties properties = new Properties();
+      try(InputStream in = Files.newInputStream(propertiesPath)) {
+         properties.load(in);
+      }
+      if(!source.equals(properties.getProperty("source")) ||
+         !ORDER.toString().equals(properties.getProperty("order"))) {
+         return null;
+      }
+      int size = Integer.parseInt(properties.getProperty("rows"));
+      ByteBuffer[] columns = new ByteBuffer[FlightField.COUNT];
+      for(FlightField field : FlightField.values()) {
+         int width = WIDTHS[field.ordinal()];
+         if(width > 0) {
+            try(FileChannel channel = FileChannel.open(dir.resolve(field + COLUMN_SUFFIX))) {
+               columns[field.ordinal()] =
+                  channel.map(MapMode.READ_ONLY, 0, (long) size * width).order(ORDER);
+            }
+         }
+      }
+      Dictionary<Airport> airports = readDictionary(dir.resolve("airports.dict"),
+                                                    key -> repository.getAirport(key));
+      Dictionary<Carrier> carriers = readDictionary(dir.resolve("carriers.dict"),
+                                                    key -> repository.getCarrier(key));
+      Dictionary<String> tailNumbers = readDictionary(dir.resolve("tails.dict"),
+                                                      key -> key.isEmpty() ? null : key);
+      return new FlightTable(year, size, Storage.MAPPED, repository, source, columns,
+                             airports, carriers, tailNumbers);
+   }
+
+   private static <T> Dictionary<T> readDictionary(Path path, Function<String, T> resolver)
+      throws IOException {
+      Dictionary<T> dictionary = new Dictionary<>();
+      for(String key : Files.readAllLines(path, UTF_8)) {
+         dictionary.add(key, resolver.apply(key));
+      }
+      return dictionary;
+   }
+
+   /**
+    * Accumulates rows into growable buffers while a table is loaded.
+    */
+   private static final class Builder {
+      private final int year;
+      private final boolean heap;
+      private final Dictionary<Airport> airports = new Dictionary<>();
+      private final Dictionary<Carrier> carriers = new Dictionary<>();
+      private final Dictionary<String> tailNumbers = new Dictionary<>();
+      private ByteBuffer[] columns = new ByteBuffer[FlightField.COUNT];
+      private int capacity;
+      private int size;
+
+      Builder(int year, boolean heap) {
+         this.year = year;
+         this.heap = heap;
+         resize(INITIAL_CAPACITY);
+      }
+
+      private ByteBuffer allocate(int bytes) {
+         return (heap ? ByteBuffer.allocate(bytes) : ByteBuffer.allocateDirect(bytes)).order(ORDER);
+      }
+
+      private void resize(int newCapacity) {
+         ByteBuffer[] resized = new ByteBuffer[FlightField.COUNT];
+         for(int i = 0; i < FlightField.COUNT; i++) {
+            if(WIDTHS[i] > 0) {
+               resized[i] = allocate(newCapacity * WIDTHS[i]);
+               if(columns[i] != null) {
+                  ByteBuffer used = columns[i].duplicate();
+                  used.position(0).limit(size * WIDTHS[i]);
+                  resized[i].put(used);
+                  resized[i].clear();
+                  BufferCleaner.free(columns[i]);
+               }
+            }
+         }
+         columns = resized;
+         capacity = newCapacity;
+      }
+
+      ByteBuffer[] trim() {
+         if(capacity != size) {
+            resize(size);
+         }
+         return columns;
+      }
+
+      void free() {
+         for(ByteBuffer column : columns) {
+            BufferCleaner.free(column);
+         }
+      }
+
+      void add(Flight flight) {
+         if(flight.getYear() != year) {
+            throw new IllegalArgumentException("Flight is not from " + year);
+         }
+         if(size == capacity) {
+            resize(capacity * 2);
+         }
+         put(FlightField.MONTH, flight.getMonth());
+         put(FlightField.DAY_OF_MONTH, flight.getDayOfMonth());
+         put(FlightField.DAY_OF_WEEK, flight.getDayOfWeek());
+         put(FlightField.DEPARTURE_TIME, flight.getDepartureTime());
+         put(FlightField.CRS_DEPARTURE_TIME, flight.getCRSDepartureTime());
+         put(FlightField.ARRIVAL_TIME, flight.getArrivalTime());
+         put(FlightField.CRS_ARRIVAL_TIME, flight.getCRSArrivalTime());
+         Carrier c = flight.getCarrier();
+         put(FlightField.CARRIER, carriers.add(c == null ? "" : c.getCode(), c));
+         put(FlightField.FLIGHT_NUMBER, flight.getFlightNumber());
+         String tail = flight.getTailNumber();
+         put(FlightField.TAIL_NUMBER, tailNumbers.add(tail == null ? "" : tail, tail));
+         put(FlightField.ACTUAL_ELAPSED_TIME, flight.getActualElapsedTime());
+         put(FlightField.CRS_ELAPSED_TIME, flight.getCRSElapsedTime());
+         put(FlightField.AIR_TIME, flight.getAirTime());
+         put(FlightField.ARRIVAL_DELAY, flight.getArrivalDelay());
+         put(FlightField.DEPARTURE_DELAY, flight.getDepartureDelay());
+         Airport o = flight.getOrigin();
+         put(FlightField.ORIGIN, airports.add(o == null ? "" : o.getIATA(), o));
+         Airport d = flight.getDestination();
+         put(FlightField.DESTINATION, airports.add(d == null ? "" : d.getIATA(), d));
+         put(FlightField.DISTANCE, flight.getDistance());
+         put(FlightField.TAXI_IN, flight.getTaxiIn());
+         put(FlightField.TAXI_OUT, flight.getTaxiOut());
+         put(FlightField.CANCELLED, flight.cancelled() ? 1 : 0);
+         CancellationCode code = flight.getCancellationCode();
+         put(FlightField.CANCELLATION_CODE, code == null ? -1 : code.ordinal());
+         put(FlightField.DIVERTED, flight.diverted() ? 1 : 0);
+         put(FlightField.CARRIER_DELAY, flight.getCarrierDelay());
+         put(FlightField.WEATHER_DELAY, flight.getWeatherDelay());
+         put(FlightField.NAS_DELAY, flight.getNASDelay());
+         put(FlightField.SECURITY_DELAY, flight.getSecurityDelay());
+         put(FlightField.LATE_AIRCRAFT_DELAY, flight.getLateAircraftDelay());
+         ++size;
+      }
+
+      private void put(FlightField field, int value) {
+         ByteBuffer column = columns[field.ordinal()];
+         switch(WIDTHS[field.ordinal()]) {
+            case 1:
+               checkRange(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+               column.put(size, (byte) value);
+               break;
+            case 2:
+               checkRange(value, Short.MIN_VALUE, Short.MAX_VALUE);
+               column.putShort(size << 1, (short) value);
+               break;
+            default:
+               column.putInt(size << 2, value);
+         }
+      }
+
+      private static void checkRange(int value, int min, int max) {
+         if(value < min || value > max) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+         }
+      }
+
+      /**
+       * Write the columns, dictionaries and a properties file describing
+       * them and the version of the source file they were read from to the
+       * given directory.
+       */
+      void write(Path dir, String source) throws IOException {
+         FlightTable.write(dir, year, size, columns, airports, carriers, tailNumbers, source);
+      }
+   }
+
+   private static void write(Path dir, int year, int size, ByteBuffer[] columns,
+                             Dictionary<Airport> airports, Dictionary<Carrier> carriers,
+                             Dictionary<String> tailNumbers, String source) throws IOException {
+      Files.createDirectories(dir);
+      Files.deleteIfExists(dir.resolve(PROPERTIES_FILE));
+      for(FlightField field : FlightField.values()) {
+         int width = WIDTHS[field.ordinal()];
+         if(width > 0) {
+            ByteBuffer used = columns[field.ordinal()].duplicate();
+            used.position(0).limit(size * width);
+            try(FileChannel channel = FileChannel.open(dir.resolve(field + COLUMN_SUFFIX),
+                                                       StandardOpenOption.CREATE,
+                                                       StandardOpenOption.WRITE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+               while(used.hasRemaining()) {
+                  channel.write(used);
+               }
+            }
+         }
+      }
+      Files.write(dir.resolve("airports.dict"), airports.getKeys(), UTF_8);
+      Files.write(dir.resolve("carriers.dict"), carriers.getKeys(), UTF_8);
+      Files.write(dir.resolve("tails.dict"), tailNumbers.getKeys(), UTF_8);
+      Properties properties = new Properties();
+      properties.setProperty("rows", Integer.toString(size));
+      properties.setProperty("order", ORDER.toString());
+      properties.setProperty("source", source);
+      // written last, so an interrupted write leaves no usable cache
+      try(OutputStream out = Files.newOutputStream(dir.resolve(PROPERTIES_FILE))) {
+         properties.store(out, "Flight table for " + year);
+      }
+   }
+
+   /**
+    * Write this table to column files in a subdirectory of cacheDir, as
+    * load() does for mapped tables, and returns a mapped table opened from
+    * them. This table is left as it is.
+    */
+   FlightTable toMapped(Path cacheDir) throws IOException {
+      write(cacheDir.resolve(Integer.toString(year)), year, size, columns,
+            airports, carriers, tailNumbers, source);
+      return open(year, cacheDir, source, repository);
+   }
+
+   /**
+    * Add a reference to this table. Every call must be matched by a call
+    * to close(). Returns this table.
+    */
+   public FlightTable retain() {
+      if(!tryRetain()) {
+         throw new IllegalStateException("Flight table for " + year + " is closed");
+      }
+      return this;
+   }
+
+   /**
+    * Add a reference to this table unless it has already been freed.
+    * Returns false if the table is closed.
+    */
+   boolean tryRetain() {
+      int count;
+      do {
+         count = references.get();
+         if(count <= 0) {
+            return false;
+         }
+      } while(!references.compareAndSet(count, count + 1));
+      return true;
+   }
+
+   /**
+    * Throws IllegalStateException if the last reference to this table has
+    * been released, rather than letting a read reach the freed memory
+    * behind an off-heap column, which would crash the JVM. A table freed
+    * by another thread while a read is under way is not caught, which is
+    * why readers must hold a reference.
+    */
+   private void checkOpen() {
+      if(references.get() <= 0) {
+         throw new IllegalStateException("Flight table for " + year + " is closed");
+      }
+   }
+
+   /**
+    * Release a reference to this table. The memory behind the columns is
+    * freed, and the table must no longer be used, once the last reference
+    * is released; reading its columns then throws IllegalStateException.
+    * Tables that are never closed are freed by the garbage collector once
+    * they are unreachable.
+    */
+   @Override
+   public void close() {
+      if(references.decrementAndGet() == 0) {
+         for(ByteBuffer column : columns) {
+            BufferCleaner.free(column);
+         }
+      }
+   }
+
+   public int getYear() {
+      return year;
+   }
+
+   public int size() {
+      return size;
+   }
+
+   public Storage getStorage() {
+      return storage;
+   }
+
+   /**
+    * Returns the version of the source file the table was loaded from, as
+    * given by Repository.getFlightSource().
+    */
+   public String getSource() {
+      return source;
+   }
+
+   /**
+    * Returns the approximate number of bytes held by this table.
+    */
+   public long getMemoryUsage() {
+      return (long) size * BYTES_PER_ROW +
+             airports.getMemoryUsage() +
+             carriers.getMemoryUsage() +
+             tailNumbers.getMemoryUsage();
+   }
+
+   /**
+    * Returns the approximate number of bytes this table holds on the Java
+    * heap.
+    */
+   public long getHeapUsage() {
+      long dictionaries = airports.getMemoryUsage() + carriers.getMemoryUsage() +
+                          tailNumbers.getMemoryUsage();
+      return storage == Storage.HEAP ? getMemoryUsage() : dictionaries;
+   }
+
+   // --- dictionaries ---
+
+   public int getAirportCount() {
+      return airports.size();
+   }
+
+   public Airport getAirport(int id) {
+      return airports.getValue(id);
+   }
+
+   /**
+    * Returns the identifier used for the airport in the origin and
+    * destination columns, or -1 if no flight uses the airport.
+    */
+   public int getAirportId(String iata) {
+      return airports.getId(iata);
+   }
+
+   public int getCarrierCount() {
+      return carriers.size();
+   }
+
+   public Carrier getCarrier(int id) {
+      return carriers.getValue(id);
+   }
+
+   public int getCarrierId(String code) {
+      return carriers.getId(code);
+   }
+
+   public int getTailNumberCount() {
+      return tailNumbers.size();
+   }
+
+   // --- columns ---
+
+   public int getMonth(int row) {
+      checkOpen();
+      return month.get(row);
+   }
+
+   public int getDayOfMonth(int row) {
+      checkOpen();
+      return dayOfMonth.get(row);
+   }
+
+   public int getDayOfWeek(int row) {
+      checkOpen();
+      return dayOfWeek.get(row);
+   }
+
+   public int getDepartureTime(int row) {
+      checkOpen();
+      return departureTime.getShort(row << 1);
+   }
+
+   public int getCRSDepartureTime(int row) {
+      checkOpen();
+      return CRSDepartureTime.getShort(row << 1);
+   }
+
+   public int getArrivalTime(int row) {
+      checkOpen();
+      return arrivalTime.getShort(row << 1);
+   }
+
+   public int getCRSArrivalTime(int row) {
+      checkOpen();
+      return CRSArrivalTime.getShort(row << 1);
+   }
+
+   public int getCarrierId(int row) {
+      checkOpen();
+      return carrier.getShort(row << 1);
+   }
+
+   public int getFlightNumber(int row) {
+      checkOpen();
+      return flightNumber.getShort(row << 1);
+   }
+
+   public int getTailNumberId(int row) {
+      checkOpen();
+      return tailNumber.getInt(row << 2);
+   }
+
+   public String getTailNumber(int row) {
+      return tailNumbers.getValue(getTailNumberId(row));
+   }
+
+   public int getActualElapsedTime(int row) {
+      checkOpen();
+      return actualElapsedTime.getShort(row << 1);
+   }
+
+   public int getCRSElapsedTime(int row) {
+      checkOpen();
+      return CRSElapsedTime.getShort(row << 1);
+   }
+
+   public int getAirTime(int row) {
+      checkOpen();
+      return airTime.getShort(row << 1);
+   }
+
+   public int getArrivalDelay(int row) {
+      checkOpen();
+      return arrivalDelay.getShort(row << 1);
+   }
+
+   public int getDepartureDelay(int row) {
+      checkOpen();
+      return departureDelay.getShort(row << 1);
+   }
+
+   public int getOriginId(int row) {
+      checkOpen();
+      return origin.getShort(row << 1);
+   }
+
+   public int getDestinationId(int row) {
+      checkOpen();
+      return destination.getShort(row << 1);
+   }
+
+   public int getDistance(int row) {
+      checkOpen();
+      return distance.getShort(row << 1);
+   }
+
+   public int getTaxiIn(int row) {
+      checkOpen();
+      return taxiIn.getShort(row << 1);
+   }
+
+   public int getTaxiOut(int row) {
+      checkOpen();
+      return taxiOut.getShort(row << 1);
+   }
+
+   public boolean isCancelled(int row) {
+      checkOpen();
+      return cancelled.get(row) != 0;
+   }
+
+   public boolean isDiverted(int row) {
+      checkOpen();
+      return diverted.get(row) != 0;
+   }
+
+   public CancellationCode getCancellationCode(int row) {
+      checkOpen();
+      int code = cancellationCode.get(row);
+      return code < 0 ? null : CANCELLATION_CODES[code];
+   }
+
+   public int getCarrierDelay(int row) {
+      checkOpen();
+      return carrierDelay.getShort(row << 1);
+   }
+
+   public int getWeatherDelay(int row) {
+      checkOpen();
+      return weatherDelay.getShort(row << 1);
+   }
+
+   public int getNASDelay(int row) {
+      checkOpen();
+      return NASDelay.getShort(row << 1);
+   }
+
+   public int getSecurityDelay(int row) {
+      checkOpen();
+      return securityDelay.getShort(row << 1);
+   }
+
+   public int getLateAircraftDelay(int row) {
+      checkOpen();
+      return lateAircraftDelay.getShort(row << 1);
+   }
+
+   /**
+    * Returns the stored value of a field: the number itself for numeric
+    * fields, or the dictionary identifier, flag or cancellation code
+    * ordinal for the others.
+    */
+   public int getValue(FlightField field, int row) {
+      checkOpen();
+      ByteBuffer column = columns[field.ordinal()];
+      switch(WIDTHS[field.ordinal()]) {
+         case 0:  return year;
+         case 1:  return column.get(row);
+         case 2:  return column.getShort(row << 1);
+         default: return column.getInt(row << 2);
+      }
+   }
+
+   /**
+    * Copy the stored values of a field for count rows, starting at the
+    * given row, into an array. Reading a run of rows at a time keeps the
+    * column width out of the loop, for callers that work on batches.
+    */
+   public void read(FlightField field, int start, int count, int[] values) {
+      checkOpen();
+      ByteBuffer column = columns[field.ordinal()];
+      switch(WIDTHS[field.ordinal()]) {
+         case 0:
+            Arrays.fill(values, 0, count, year);
+            break;
+         case 1:
+            for(int i = 0; i < count; i++) {
+               values[i] = column.get(start + i);
+            }
+            break;
+         case 2:
+            for(int i = 0; i < count; i++) {
+               values[i] = column.getShort((start + i) << 1);
+            }
+            break;
+         default:
+            for(int i = 0; i < count; i++) {
+               values[i] = column.getInt((start + i) << 2);
+            }
+      }
+   }
+
+   // --- scans ---
+
+   /**
+    * Returns a Flight that reads its fields from the given row.
+    */
+   public Flight getFlight(int row) {
+      return new Row(this, row);
+   }
+
+   /**
+    * Returns a sequential stream of the rows as Flight instances.
+    */
+   public Stream<Flight> stream() {
+      return IntStream.range(0, size).mapToObj(this::getFlight);
+   }
+
+   /**
+    * Returns a sequential stream of the rows that satisfy the query.
+    */
+   public Stream<Flight> stream(FlightQuery query) {
+      return IntStream.range(0, size)
+                      .filter(toRowPredicate(query))
+                      .mapToObj(this::getFlight);
+   }
+
+   public Iterator<Flight> iterator() {
+      return stream().iterator();
+   }
+
+   public Iterator<Flight> iterator(FlightQuery query) {
+      return stream(query).iterator();
+   }
+
+   /**
+    * Returns a parallel stream of the row numbers.
+    */
+   public IntStream rows() {
+      return IntStream.range(0, size).parallel();
+   }
+
+   private int getChunkCount() {
+      return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+   }
+
+   /**
+    * Count the rows that satisfy the predicate, in parallel.
+    */
+   public long count(IntPredicate predicate) {
+      return IntStream.range(0, getChunkCount())
+                      .parallel()
+                      .mapToLong(chunk -> {
+                         long count = 0;
+                         int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                         for(int row = chunk * CHUNK_SIZE; row < end; row++) {
+                            if(predicate.test(row)) {
+                               ++count;
+                            }
+                         }
+                         return count;
+                      }).sum();
+   }
+
+   /**
+    * Visit every row in parallel. Each chunk of rows is accumulated into
+    * its own container, created by the supplier, and the containers are
+    * then merged with the combiner. Returns the supplier's value if the
+    * table is empty.
+    */
+   public <A> A scan(Supplier<A> supplier, ObjIntConsumer<A> accumulator,
+                     BinaryOperator<A> combiner) {
+      Optional<A> result =
+         IntStream.range(0, getChunkCount())
+                  .parallel()
+                  .mapToObj(chunk -> {
+                     A container = supplier.get();
+                     int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                     for(int row = chunk * CHUNK_SIZE; row < end; row++) {
+                        accumulator.accept(container, row);
+                     }
+                     return container;
+                  }).reduce(combiner);
+      return result.orElseGet(supplier);
+   }
+
+   /**
+    * Translate the predicates of a query into a predicate over rows.
+    */
+   public IntPredicate toRowPredicate(FlightQuery query) {
+      IntPredicate result = row -> true;
+      for(FieldPredicate predicate : query.getPredicates()) {
+         IntPredicate test = toRowPredicate(predicate.getField(),
+                                            new String(predicate.getValue(), ISO_8859_1));
+         result = result.and(predicate.isNegated() ? test.negate() : test);
+      }
+      return result;
+   }
+
+   private IntPredicate toRowPredicate(FlightField field, String value) {
+      if(field == FlightField.YEAR) {
+         return row -> Integer.toString(year).equals(value);
+      }
+      final int expected = getStoredValue(field, value);
+      return row -> getValue(field, row) == expected;
+   }
+
+   /**
+    * Returns the value stored for a field whose text in the source data is
+    * the given value, as returned by getValue(). Airports, carriers and
+    * tail numbers that no row uses are given -1.
+    */
+   public int getStoredValue(FlightField field, String value) {
+      switch(field) {
+         case CARRIER:
+            return carriers.getId(value);
+         case TAIL_NUMBER:
+            return tailNumbers.getId(value);
+         case ORIGIN:
+         case DESTINATION:
+            return airports.getId(value);
+         case CANCELLED:
+         case DIVERTED:
+            return "1".equals(value) ? 1 : 0;
+         case CANCELLATION_CODE: {
+            CancellationCode code = CancellationCode.get(value);
+            return code == null ? -1 : code.ordinal();
+         }
+         default:
+            return Flight.parseInt(value, 0, value.length());
+      }
+   }
+
+   /**
+    * A flight backed by one row of the table. Fields are read from the
+    * columns on every access, so creating one costs a single allocation.
+    */
+   private static final class Row extends Flight {
+      private final FlightTable table;
+      private final int row;
+
+      Row(FlightTable table, int row) {
+         super(table.repository);
+         this.table = table;
+         this.row = row;
+      }
+
+      @Override public int getYear()                { return table.year; }
+      @Override public int getMonth()               { return table.getMonth(row); }
+      @Override public int getDayOfMonth()          { return table.getDayOfMonth(row); }
+      @Override public int getDayOfWeek()           { return table.getDayOfWeek(row); }
+      @Override public int getDepartureTime()       { return table.getDepartureTime(row); }
+      @Override public int getCRSDepartureTime()    { return table.getCRSDepartureTime(row); }
+      @Override public int getArrivalTime()         { return table.getArrivalTime(row); }
+      @Override public int getCRSArrivalTime()      { return table.getCRSArrivalTime(row); }
+      @Override public Carrier getCarrier()         { return table.getCarrier(table.getCarrierId(row)); }
+      @Override public int getFlightNumber()        { return table.getFlightNumber(row); }
+      @Override public String getTailNumber()       { return table.getTailNumber(row); }
+      @Override public int getActualElapsedTime()   { return table.getActualElapsedTime(row); }
+      @Override public int getCRSElapsedTime()      { return table.getCRSElapsedTime(row); }
+      @Override public int getAirTime()             { return table.getAirTime(row); }
+      @Override public int getArrivalDelay()        { return table.getArrivalDelay(row); }
+      @Override public int getDepartureDelay()      { return table.getDepartureDelay(row); }
+      @Override public Airport getOrigin()          { return table.getAirport(table.getOriginId(row)); }
+      @Override public Airport getDestination()     { return table.getAirport(table.getDestinationId(row)); }
+      @Override public int getDistance()            { return table.getDistance(row); }
+      @Override public int getTaxiIn()              { return table.getTaxiIn(row); }
+      @Override public int getTaxiOut()             { return table.getTaxiOut(row); }
+      @Override public boolean cancelled()          { return table.isCancelled(row); }
+      @Override public CancellationCode getCancellationCode() { return table.getCancellationCode(row); }
+      @Override public boolean diverted()           { return table.isDiverted(row); }
+      @Override public int getCarrierDelay()        { return table.getCarrierDelay(row); }
+      @Override public int getWeatherDelay()        { return table.getWeatherDelay(row); }
+      @Override public int getNASDelay()            { return table.getNASDelay(row); }
+      @Override public int getSecurityDelay()       { return table.getSecurityDelay(row); }
+      @Override public int getLateAircraftDelay()   { return table.getLateAircraftDelay(row); }
+
+      @Override
+      public boolean equals(Object obj) {
+         if(!(obj instanceof Row)) {
+            return false;
+         }
+         Row other = (Row) obj;
+         return this.table == other.table && this.row == other.row;
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * System.identityHashCode(table) + row;
+      }
+
+      @Override
+      public String toString() {
+         return "Flight[" + table.year + " row " + row + ": " + getCarrier().getCode() +
+                getFlightNumber() + " " + getDate() + " " + describeRoute() + "]";
+      }
+   }
+}
\ No newline at end of file
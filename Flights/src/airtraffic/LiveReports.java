@@ -1,6 +1,15 @@
 package airtraffic;
 
+import java.time.format.DateTimeFormatter;
+
 public interface LiveReports {
+   DateTimeFormatter EVENT_TIME_FORMAT = 
+         DateTimeFormatter.ofPattern("MMM dd HH:mm");
+   long DASHBOARD_REFRESH_MILLIS = 2000;
    void reportAirportMetrics(ReportContext context);
    void reportCarrierMetrics(ReportContext context);
+   void reportAirportConditions(ReportContext context);
+   void reportCarrierConditions(ReportContext context);
+   void reportAnomalies(ReportContext context);
+   void reportAirportDashboard(ReportContext context);
 }
\ No newline at end of file
@@ -14,6 +14,9 @@ public final class ReportContext {
    private int distance;
    private int limit = Integer.MAX_VALUE;
    private int year;
+   private boolean approximate;
+   private boolean replay;
+   private double replaySpeed;
 
    public String getState() {
       return state;
@@ -143,4 +146,45 @@ public final class ReportContext {
       this.year = year;
       return this;
    }
+
+   /**
+    * Returns true if reports should be answered approximately: reports
+    * that count very many distinct groups find the largest ones in fixed
+    * memory, and reports that support it run on a sample of the flights
+    * and print estimates with confidence intervals.
+    */
+   public boolean isApproximate() {
+      return approximate;
+   }
+
+   public ReportContext setApproximate(boolean approximate) {
+      this.approximate = approximate;
+      return this;
+   }
+
+   /**
+    * Returns true if live reports should see flights in order of scheduled
+    * departure, paced by the replay speed, rather than in file order.
+    */
+   public boolean isReplay() {
+      return replay;
+   }
+
+   public ReportContext setReplay(boolean replay) {
+      this.replay = replay;
+      return this;
+   }
+
+   /**
+    * Returns how many times faster than real time flights are replayed, or
+    * zero to replay them as fast as they are taken.
+    */
+   public double getReplaySpeed() {
+      return replaySpeed;
+   }
+
+   public ReportContext setReplaySpeed(double replaySpeed) {
+      this.replaySpeed = replaySpeed;
+      return this;
+   }
 }
\ No newline at end of file
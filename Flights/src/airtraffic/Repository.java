@@ -1,28 +1,56 @@
 package airtraffic;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.Collectors.toMap;
-import static org.apache.commons.io.FileUtils.lineIterator;
+import static org.apache.commons.io.IOUtils.lineIterator;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.io.LineIterator;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.simpleflatmapper.csv.CellValueReader;
 import org.simpleflatmapper.csv.CsvMapper;
 import org.simpleflatmapper.csv.CsvMapperFactory;
@@ -36,17 +64,24 @@ import org.yaml.snakeyaml.constructor.Constructor;
 import airtraffic.Plane.AircraftType;
 import airtraffic.Plane.EngineType;
 import airtraffic.Plane.OwnershipType;
+import airtraffic.cube.FlightCube;
+import airtraffic.ingest.AggregateStore;
+import airtraffic.ingest.IngestManifest;
+import airtraffic.pipeline.FlightPipeline;
+import airtraffic.sample.StratifiedSample;
 
 /**
  * Provides access to the data used by the application classes.
  *
  * @author tony@piazzaconsulting.com
  */
-public final class Repository {
+public final class Repository implements AutoCloseable {
    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("mm/dd/yyyy");
    private static final String[] AIRPORT_HEADERS = 
       { "IATA", "name", "city", "state", "country", "latitude", "longitude" };
    private static final String[] CARRIER_HEADERS = { "code", "name" };
+   private static final Pattern INGESTED_FILE = Pattern.compile("flights-(\\d{4})\\.csv");
+   private static final String INGEST_MANIFEST = "ingested.tsv";
    private static final CellValueReader<LocalDate> DATE_VALUE_READER =
       (chars, offset, length, ctx) -> {
          LocalDate result = null;
@@ -94,14 +129,45 @@ public final class Repository {
    private final Path carrierPath;
    private final Path planePath;
    private final Map<Integer, Path> flightPaths;
-   private Map<String, Airport> airportMap;
-   private Map<String, Carrier> carrierMap;
-   private Map<String, Plane> planeMap;
+   private volatile Map<String, Airport> airportMap;
+   private volatile Map<String, Carrier> carrierMap;
+   private volatile Map<String, Plane> planeMap;
+   private volatile SearchIndex<Airport> airportIndex;
+   private volatile SearchIndex<Carrier> carrierIndex;
+   private final Object referenceLock = new Object();
+   private final Map<Integer, FlightTable> flightTables = new LinkedHashMap<>(16, 0.75f, true);
+   private final Map<Integer, CompletableFuture<FlightTable>> pendingTables = new HashMap<>();
+   private final Set<Integer> preloadedYears = ConcurrentHashMap.newKeySet();
+   private final long residentMemoryBudget;
+   private final FlightTable.Storage residentStorage;
+   private final Path residentCachePath;
+   private final Map<Integer, CompletableFuture<StratifiedSample>> samples = new ConcurrentHashMap<>();
+   private final Map<Integer, CompletableFuture<FlightCube>> cubes = new ConcurrentHashMap<>();
+   private final int sampleSize;
+   private final Path ingestPath;
+   private final Map<Integer, AggregateStore> aggregateStores = new HashMap<>();
+   private final Object ingestLock = new Object();
+   private final IngestManifest ingestManifest;
+   private volatile boolean resident;
 
    public Repository() {
-      Config config = getConfig();
+      this(Paths.get("config.yaml"));
+   }
+
+   /**
+    * Create a repository configured by the given file, or with the
+    * defaults if there is none.
+    */
+   public Repository(Path configPath) {
+      Config config = getConfig(configPath);
+      this.resident = config.isResidentFlights();
+      this.residentMemoryBudget = config.getResidentMemoryBudget() * 1024L * 1024L;
+      this.residentStorage = FlightTable.Storage.get(config.getResidentStorage());
+      this.residentCachePath = Paths.get(config.getResidentCachePath());
+      this.sampleSize = config.getSampleSize();
+      this.ingestPath = config.getIngestPath() == null ? null : Paths.get(config.getIngestPath());
       Map<Integer, String> pathMap = config.getFlightPaths();
-      this.flightPaths = new HashMap<>();
+      this.flightPaths = new ConcurrentHashMap<>();
       Path path;
       for(Entry<Integer, String> e: pathMap.entrySet()) {
          path = Paths.get(e.getValue());
@@ -115,15 +181,47 @@ public final class Repository {
       if(this.flightPaths.isEmpty()) {
          throw new IllegalStateException("No flight data found");
       }
+      this.ingestManifest = openIngestManifest();
+      if(this.ingestPath != null) {
+         findIngestedYears();
+      }
       this.airportPath = getAndValidatePath(config.getAirportPath());
       this.carrierPath = getAndValidatePath(config.getCarrierPath());
       this.planePath = getAndValidatePath(config.getPlanePath());
    }
 
-   private Config getConfig() {
+   /**
+    * Add the years that were created by ingesting flight files, which are
+    * kept next to the configured flight data but are not in the
+    * configuration. A file whose first append never completed has nothing
+    * committed and is left out.
+    */
+   private void findIngestedYears() {
+      Path dir = getIngestedYearPath(0).getParent();
+      try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, "flights-*.csv")) {
+         for(Path file : files) {
+            Matcher matcher = INGESTED_FILE.matcher(file.getFileName().toString());
+            if(matcher.matches() && ingestManifest.getLength(file.toAbsolutePath()) != 0) {
+               Integer year = Integer.valueOf(matcher.group(1));
+               if(this.flightPaths.putIfAbsent(year, file) == null) {
+                  logger.debug("Found ingested path: {}", file);
+               }
+            }
+         }
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+   }
+
+   private Path getIngestedYearPath(int year) {
+      return flightPaths.values().iterator().next().toAbsolutePath()
+                        .resolveSibling("flights-" + year + ".csv");
+   }
+
+   private Config getConfig(Path configPath) {
       Config config;
       try {
-         Reader reader = new FileReader("config.yaml");
+         Reader reader = new FileReader(configPath.toFile());
          Yaml yaml = new Yaml(new Constructor(Config.class));
          config = yaml.load(reader);
       } catch (FileNotFoundException e) {
@@ -135,10 +233,82 @@ public final class Repository {
          Map<Integer, String> flightPaths = new HashMap<>();
          flightPaths.put(2008, "data/flights-2008.csv");
          config.setFlightPaths(flightPaths);
+         config.setResidentFlights(false);
+         config.setResidentMemoryBudget(1024);
+         config.setResidentStorage("heap");
+         config.setResidentCachePath("cache");
+         config.setSampleSize(StratifiedSample.DEFAULT_STRATUM_SIZE);
       }
       return config;
    }
 
+   /**
+    * Load the airport, carrier and plane lookup tables now rather than on
+    * first use. Long-running processes call this at startup so that no
+    * request pays for it.
+    */
+   public void loadReferenceData() {
+      getAirportIndex();
+      getCarrierIndex();
+      getPlaneMap();
+   }
+
+   /**
+    * Start loading the reference data and the flight data for a year on a
+    * background thread. Interactive apps call this while the user is still
+    * choosing a report. Reports on that year use the in-memory table from
+    * then on, even if flight data is not otherwise resident, and a report
+    * that starts before the load has finished waits for it rather than
+    * reading the file again.
+    */
+   public CompletableFuture<Void> preload(int year) {
+      getFlightPath(year);
+      preloadedYears.add(year);
+      return CompletableFuture.runAsync(() -> {
+         loadReferenceData();
+         getFlightTable(year).close();
+      }, newDaemonThread("preload-" + year)).whenComplete((v, e) -> {
+         if(e != null) {
+            logger.warn("Unable to preload flight data for {}", year, e);
+            preloadedYears.remove(year);
+         }
+      });
+   }
+
+   /**
+    * Start loading the reference data and reading the flight file for a
+    * year on a background thread, so that the file is in the operating
+    * system's page cache when the first report scans it. Unlike preload,
+    * this keeps no flight data in memory, for apps that read flights from
+    * the files.
+    */
+   public CompletableFuture<Void> prefetch(int year) {
+      Path path = getFlightPath(year);
+      return CompletableFuture.runAsync(() -> {
+         loadReferenceData();
+         byte[] buffer = new byte[1 << 16];
+         try(InputStream in = Files.newInputStream(path)) {
+            while(in.read(buffer) >= 0) {
+               // only the reading matters
+            }
+         } catch (IOException e) {
+            throw new RepositoryException(e);
+         }
+      }, newDaemonThread("prefetch-" + year)).whenComplete((v, e) -> {
+         if(e != null) {
+            logger.warn("Unable to prefetch flight data for {}", year, e);
+         }
+      });
+   }
+
+   private static Executor newDaemonThread(String name) {
+      return r -> {
+         Thread thread = new Thread(r, name);
+         thread.setDaemon(true);
+         thread.start();
+      };
+   }
+
    public Stream<Airport> getAirportStream() {
       try {
          return getAirportDSL().stream(getReader(airportPath));
@@ -163,7 +333,11 @@ public final class Repository {
 
    private Map<String, Airport> getAirportMap() {
       if(airportMap == null) {
-         airportMap = getAirportStream().collect(toMap(Airport::getIATA, Function.identity()));
+         synchronized(referenceLock) {
+            if(airportMap == null) {
+               airportMap = getAirportStream().collect(toMap(Airport::getIATA, Function.identity()));
+            }
+         }
       }
       return airportMap;
    }
@@ -173,8 +347,29 @@ public final class Repository {
    }
 
    public boolean validAirport(String iata) {
-      return getAirportStream().anyMatch(airport ->  
-         airport.getIATA().equals(iata.toUpperCase()));
+      return getAirportIndex().contains(iata);
+   }
+
+   /**
+    * Returns up to limit airports matching the query, which may be an
+    * IATA code, a prefix of one, or part of an airport's name or city.
+    * Misspelled names still match if they are close enough.
+    */
+   public List<Airport> searchAirports(String query, int limit) {
+      return getAirportIndex().search(query, limit);
+   }
+
+   private SearchIndex<Airport> getAirportIndex() {
+      if(airportIndex == null) {
+         Map<String, Airport> airports = getAirportMap();
+         synchronized(referenceLock) {
+            if(airportIndex == null) {
+               airportIndex = SearchIndex.build(airports.values(), Airport::getIATA,
+                                                a -> a.getName() + " " + a.getCity());
+            }
+         }
+      }
+      return airportIndex;
    }
 
    public Stream<Carrier> getCarrierStream() {
@@ -201,7 +396,11 @@ public final class Repository {
 
    private Map<String, Carrier> getCarrierMap() {
       if(carrierMap == null) {
-         carrierMap = getCarrierStream().collect(toMap(Carrier::getCode, Function.identity()));
+         synchronized(referenceLock) {
+            if(carrierMap == null) {
+               carrierMap = getCarrierStream().collect(toMap(Carrier::getCode, Function.identity()));
+            }
+         }
       }
       return carrierMap;
    }
@@ -211,31 +410,627 @@ public final class Repository {
    }
 
    public boolean validCarrier(String code) {
-      return getCarrierStream().anyMatch(carrier -> 
-         carrier.getCode().equals(code.toUpperCase()));
+      return getCarrierIndex().contains(code);
    }
 
-   public Stream<Flight> getFlightStream(int year) {
+   /**
+    * Returns up to limit carriers whose code or name matches the query.
+    */
+   public List<Carrier> searchCarriers(String query, int limit) {
+      return getCarrierIndex().search(query, limit);
+   }
+
+   private SearchIndex<Carrier> getCarrierIndex() {
+      if(carrierIndex == null) {
+         Map<String, Carrier> carriers = getCarrierMap();
+         synchronized(referenceLock) {
+            if(carrierIndex == null) {
+               carrierIndex = SearchIndex.build(carriers.values(), Carrier::getCode,
+                                                Carrier::getName);
+            }
+         }
+      }
+      return carrierIndex;
+   }
+
+   Path getFlightPath(int year) {
       Path path = flightPaths.get(year);
       if(path == null) {
          throw new IllegalArgumentException("No flight data for year " + year);
       }
+      return path;
+   }
+
+   /**
+    * Returns true if flight data is held in memory, as a FlightTable per
+    * year, and shared by every stream and iterator this repository hands
+    * out.
+    */
+   public boolean isResident() {
+      return resident;
+   }
+
+   public void setResident(boolean resident) {
+      this.resident = resident;
+   }
+
+   /**
+    * Returns the in-memory table for a year, loading it on first use. The
+    * least recently used tables are evicted to stay within the configured
+    * memory budget. A table that does not fit the budget on its own is
+    * returned but not retained. Unless tables are mapped already, it is
+    * written to column files in the cache directory and mapped from them,
+    * there and on later calls, so it is not read from the flight file on
+    * every report.
+    *
+    * The caller receives its own reference to the table and must close
+    * it when done, which lets evicted off-heap tables be freed as soon as
+    * the last report using them finishes.
+    *
+    * Only one thread loads a given year. Other callers asking for the same
+    * year wait for that load to finish and share its result. A table read
+    * from an earlier version of the year's file, before flights were
+    * appended to it, is never returned.
+    */
+   public FlightTable getFlightTable(int year) {
+      while(true) {
+         String source = getFlightSource(year);
+         CompletableFuture<FlightTable> pending;
+         CompletableFuture<FlightTable> loading = null;
+         synchronized(this) {
+            FlightTable table = flightTables.get(year);
+            if(table != null && table.getSource().equals(source)) {
+               return table.retain();
+            }
+            if(table != null) {
+               flightTables.remove(year);
+               table.close();
+            }
+            pending = pendingTables.get(year);
+            if(pending == null) {
+               loading = new CompletableFuture<>();
+               pendingTables.put(year, loading);
+            }
+         }
+         if(loading != null) {
+            return loadAndCacheFlightTable(year, loading);
+         }
+         try {
+            FlightTable table = pending.join();
+            if(table.getSource().equals(source) && table.tryRetain()) {
+               return table;
+            }
+         } catch (CompletionException e) {
+            logger.debug("Retrying load of flight data for {}", year);
+         }
+         // the shared table was out of date or already freed, or its load
+         // failed; start over
+      }
+   }
+
+   private FlightTable loadAndCacheFlightTable(int year, CompletableFuture<FlightTable> loading) {
+      FlightTable table;
+      try {
+         table = loadFlightTable(year);
+      } catch (RuntimeException e) {
+         synchronized(this) {
+            pendingTables.remove(year);
+         }
+         loading.completeExceptionally(e);
+         throw e;
+      }
+      boolean current = isCurrent(table);
+      try {
+         synchronized(this) {
+            pendingTables.remove(year);
+            if(!current) {
+               // flights were appended while the table was loading
+               return table;
+            }
+            if(table.getMemoryUsage() > residentMemoryBudget) {
+               logger.warn("Flight data for {} exceeds the resident memory budget", year);
+               return table;
+            }
+            cacheFlightTable(year, table);
+            return table.retain();
+         }
+      } finally {
+         loading.complete(table);
+      }
+   }
+
+   private void cacheFlightTable(int year, FlightTable table) {
+      long used = table.getMemoryUsage();
+      for(FlightTable t : flightTables.values()) {
+         used += t.getMemoryUsage();
+      }
+      Iterator<FlightTable> iterator = flightTables.values().iterator();
+      while(used > residentMemoryBudget && iterator.hasNext()) {
+         FlightTable evicted = iterator.next();
+         used -= evicted.getMemoryUsage();
+         iterator.remove();
+         evicted.close();
+         logger.debug("Evicted flight data for {}", evicted.getYear());
+      }
+      flightTables.put(year, table);
+   }
+
+   private FlightTable loadFlightTable(int year) {
+      long start = System.currentTimeMillis();
+      FlightTable table = null;
       try {
-         return Files.lines(path)
-                     .skip(1)            // skip header
-                     .map(s -> new Flight(s, this));
+         // the version is read before the file is opened, so if flights are
+         // appended meanwhile the table is tagged with the older version
+         String source = getFlightSource(year);
+         table = FlightTable.open(year, residentCachePath, source, this);
+         if(table != null && residentStorage != FlightTable.Storage.MAPPED &&
+            table.getMemoryUsage() <= residentMemoryBudget) {
+            // mapped when it did not fit the budget, which it now does
+            table.close();
+            table = null;
+         }
+         if(table == null) {
+            try(FlightScanner scanner = getFlightScanner(year, FlightQuery.selectAll())) {
+               table = FlightTable.load(year, scanner, this, residentStorage,
+                                        residentCachePath, source);
+            }
+            if(table.getStorage() != FlightTable.Storage.MAPPED &&
+               table.getMemoryUsage() > residentMemoryBudget) {
+               // map it from the cache directory, so that later reports
+               // do not read the flight file again
+               FlightTable mapped = table.toMapped(residentCachePath);
+               table.close();
+               table = mapped;
+            }
+         }
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+      logger.info("Loaded {} flights for {} in {} ms ({} MB {})", table.size(), year,
+                  System.currentTimeMillis() - start, table.getMemoryUsage() >> 20,
+                  table.getStorage());
+      return table;
+   }
+
+   /**
+    * Returns a string that changes whenever the flight data for a year
+    * changes, such as when flights are appended to it, for the tables,
+    * samples and totals built from the data to record what they were built
+    * from.
+    */
+   public String getFlightSource(int year) {
+      Path path = getFlightPath(year);
+      try {
+         return getCommittedLength(path) + "@" + Files.getLastModifiedTime(path).toMillis();
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+   }
+
+   /**
+    * Returns the number of bytes of a flight data file that readers may
+    * read: all of it, unless flights have been appended to it, in which
+    * case only as far as the last append that completed.
+    */
+   private long getCommittedLength(Path path) throws IOException {
+      long length = ingestManifest.getLength(path.toAbsolutePath());
+      return length < 0 ? Files.size(path) : length;
+   }
+
+   /**
+    * Open the flight data file for a year, header included, for reading no
+    * further than its committed length, so that the lines of an append
+    * still being written are never read.
+    */
+   public InputStream openFlightData(int year) {
+      Path path = getFlightPath(year);
+      try {
+         return new BoundedInputStream(Files.newInputStream(path), getCommittedLength(path));
       } catch (IOException e) {
          throw new RepositoryException(e);
       }
    }
 
-   public Iterator<Flight> getFlightIterator(int year) {
-      final Path path = flightPaths.get(year);
+   private boolean isCurrent(FlightTable table) {
       try {
-         return new Iterator<Flight>() {
+         return table.getSource().equals(getFlightSource(table.getYear()));
+      } catch (RepositoryException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Returns a sample of the flights for a year, stratified by carrier and
+    * month, for approximate reports. The sample is built on first use and
+    * kept in the cache directory until the flight data changes.
+    */
+   public StratifiedSample getFlightSample(int year) {
+      return getOrBuild(samples, year, this::loadFlightSample);
+   }
+
+   /**
+    * Returns the value cached for a year, building it if there is none. The
+    * value is built outside the map, since building takes a pass over the
+    * year, so callers asking for other years are never held up; callers
+    * asking for the same year wait for that build and share its result. A
+    * build that fails is not cached.
+    */
+   private <T> T getOrBuild(Map<Integer, CompletableFuture<T>> cache, int year,
+                            IntFunction<T> builder) {
+      CompletableFuture<T> building = new CompletableFuture<>();
+      CompletableFuture<T> pending = cache.putIfAbsent(year, building);
+      if(pending == null) {
+         try {
+            T value = builder.apply(year);
+            building.complete(value);
+            return value;
+         } catch (RuntimeException e) {
+            cache.remove(year, building);
+            building.completeExceptionally(e);
+            throw e;
+         }
+      }
+      try {
+         return pending.join();
+      } catch (CompletionException e) {
+         throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+   }
+
+   private StratifiedSample loadFlightSample(int year) {
+      long start = System.currentTimeMillis();
+      StratifiedSample sample;
+      try {
+         sample = StratifiedSample.load(year, residentCachePath, sampleSize, this);
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+      logger.info("Loaded sample of {} flights for {} in {} ms", sample.size(), year,
+                  System.currentTimeMillis() - start);
+      return sample;
+   }
+
+   /**
+    * Returns the cube of flight totals for a year, built from the year's
+    * in-memory table on first use and kept until new flights are appended
+    * to the year.
+    */
+   public FlightCube getFlightCube(int year) {
+      return getOrBuild(cubes, year, this::buildFlightCube);
+   }
+
+   private FlightCube buildFlightCube(int year) {
+      long start = System.currentTimeMillis();
+      FlightCube cube;
+      try(FlightTable table = getFlightTable(year)) {
+         cube = FlightCube.build(table);
+      }
+      logger.info("Built cube of {} cells for {} in {} ms", cube.size(), year,
+                  System.currentTimeMillis() - start);
+      return cube;
+   }
+
+   /**
+    * Returns the directory watched for new flight files, or null if
+    * ingestion is not configured.
+    */
+   public Path getIngestPath() {
+      return ingestPath;
+   }
+
+   /**
+    * Returns the totals by day, airport, carrier and route for a year. The
+    * store is read from the cache directory, or built with a full pass over
+    * the year if it is missing or the flight data has changed, and is kept
+    * up to date as new flights are appended.
+    */
+   public AggregateStore getAggregateStore(int year) {
+      return getAggregateStore(year, true);
+   }
+
+   /**
+    * Returns the totals for a year if they are up to date in memory or in
+    * the cache directory, or null if they would have to be built. Reports
+    * use this to answer from the totals only when doing so saves a pass.
+    */
+   public AggregateStore findAggregateStore(int year) {
+      return getAggregateStore(year, false);
+   }
+
+   private AggregateStore getAggregateStore(int year, boolean build) {
+      synchronized(ingestLock) {
+         try {
+            String source = getFlightSource(year);
+            AggregateStore store = aggregateStores.get(year);
+            if(store == null || !source.equals(store.getSource())) {
+               store = build ? loadAggregateStore(year, source) :
+                               AggregateStore.open(year, residentCachePath, source);
+               if(store == null) {
+                  return null;
+               }
+               aggregateStores.put(year, store);
+            }
+            return store;
+         } catch (IOException e) {
+            throw new RepositoryException(e);
+         }
+      }
+   }
+
+   private AggregateStore loadAggregateStore(int year, String source) throws IOException {
+      long start = System.currentTimeMillis();
+      AggregateStore store = AggregateStore.open(year, residentCachePath, source);
+      if(store == null) {
+         store = getFlightPipeline(year, FlightQuery.selectAll())
+                    .collect(AggregateStore.collector(year, source));
+         store.save(residentCachePath, source);
+      }
+      logger.info("Loaded aggregates for {} in {} ms", year, System.currentTimeMillis() - start);
+      return store;
+   }
+
+   /**
+    * Append the flights of a file, given as lines in the format of the
+    * flight data files and grouped by year, to the data for each year. A
+    * year not seen before gets a new file next to the existing ones,
+    * starting with the given header. Only the new flights are added to the
+    * aggregate store of each year, and the resident table and sample of
+    * each year are dropped so that reports include the new flights.
+    *
+    * The source identifies the file, such as by its name and version, and
+    * is recorded in a manifest next to the flight data. Returns false,
+    * appending nothing, if a file with the same source was already
+    * appended. Every flight is parsed before anything is written. The new
+    * lines are then written to the end of each year's file, past the
+    * committed length that readers stop at, and take effect when the
+    * manifest records the file with the new lengths, so a file that fails
+    * is not appended at all and reports never read a partly written line.
+    */
+   public boolean appendFlights(String source, String header, Map<Integer, List<String>> years) {
+      synchronized(ingestLock) {
+         try {
+            if(ingestManifest.contains(source)) {
+               return false;
+            }
+            // totals of the new flights alone, which parses every one of them
+            Map<Integer, AggregateStore> added = new HashMap<>();
+            for(Entry<Integer, List<String>> e : years.entrySet()) {
+               Iterator<Flight> flights = e.getValue().stream()
+                                           .map(line -> new Flight(line, this))
+                                           .iterator();
+               added.put(e.getKey(), AggregateStore.build(e.getKey(), flights, null));
+            }
+            Map<Integer, Path> paths = new HashMap<>();
+            Map<Integer, AggregateStore> stores = new HashMap<>();
+            Map<Path, Long> committed = new HashMap<>();
+            for(int year : years.keySet()) {
+               Path path = flightPaths.get(year);
+               Path target = (path == null ? getIngestedYearPath(year) : path).toAbsolutePath();
+               committed.put(target, path == null ? 0 : getCommittedLength(path));
+               stores.put(year, path == null ?
+                                AggregateStore.build(year, Collections.emptyIterator(), null) :
+                                getAggregateStore(year));
+               paths.put(year, target);
+            }
+            ingestManifest.begin(committed);
+            try {
+               Map<Path, Long> lengths = new HashMap<>();
+               for(Entry<Integer, Path> e : paths.entrySet()) {
+                  Path target = e.getValue();
+                  lengths.put(target, writeFlights(target, committed.get(target), header,
+                                                   years.get(e.getKey())));
+               }
+               ingestManifest.commit(source, lengths);
+            } catch (IOException | RuntimeException e) {
+               try {
+                  ingestManifest.rollback();
+               } catch (IOException suppressed) {
+                  e.addSuppressed(suppressed);
+               }
+               throw e;
+            }
+            for(Entry<Integer, Path> e : paths.entrySet()) {
+               int year = e.getKey();
+               if(flightPaths.putIfAbsent(year, e.getValue()) == null) {
+                  logger.info("Added flight data for {} at {}", year, e.getValue());
+               }
+               // a new store, since reports may be reading the current one
+               AggregateStore store = AggregateStore.build(year, Collections.emptyIterator(), null)
+                                                    .merge(stores.get(year))
+                                                    .merge(added.get(year));
+               store.save(residentCachePath, getFlightSource(year));
+               aggregateStores.put(year, store);
+            }
+         } catch (IOException e) {
+            throw new RepositoryException(e);
+         }
+      }
+      for(Entry<Integer, List<String>> e : years.entrySet()) {
+         synchronized(this) {
+            FlightTable table = flightTables.remove(e.getKey());
+            if(table != null) {
+               table.close();
+            }
+         }
+         samples.remove(e.getKey());
+         cubes.remove(e.getKey());
+         logger.info("Appended {} flights to {}", e.getValue().size(), e.getKey());
+      }
+      return true;
+   }
+
+   private IngestManifest openIngestManifest() {
+      try {
+         return IngestManifest.open(getIngestedYearPath(0).resolveSibling(INGEST_MANIFEST));
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+   }
+
+   /**
+    * Write lines to a year's flight data file after its committed length,
+    * or to a new file after the header if the length is zero, and return
+    * the new length. Nothing before the committed length is touched, and
+    * the lines are on disk before the caller commits the new length.
+    */
+   private static long writeFlights(Path path, long length, String header, List<String> lines)
+      throws IOException {
+      try(FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+         // drop anything an earlier append failed to remove
+         channel.truncate(length);
+         boolean newLine = length == 0 || endsWithNewLine(channel, length);
+         channel.position(length);
+         Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                                                                   ISO_8859_1));
+         if(length == 0) {
+            writer.write(header);
+            writer.write('\n');
+         } else if(!newLine) {
+            writer.write('\n');
+         }
+         for(String line : lines) {
+            writer.write(line);
+            writer.write('\n');
+         }
+         writer.flush();
+         channel.force(false);
+         return channel.position();
+      }
+   }
+
+   private static boolean endsWithNewLine(FileChannel channel, long length) throws IOException {
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.read(last, length - 1);
+      return last.get(0) == '\n';
+   }
+
+   /**
+    * Release the resident flight data. Tables still in use by a report
+    * are freed when that report closes them.
+    */
+   @Override
+   public synchronized void close() {
+      for(FlightTable table : flightTables.values()) {
+         table.close();
+      }
+      flightTables.clear();
+   }
+
+   /**
+    * Returns true if flight data for a year should be read from its
+    * in-memory table rather than from the file.
+    */
+   private boolean useFlightTable(int year) {
+      return resident || preloadedYears.contains(year);
+   }
+
+   /**
+    * Returns a stream of the flights for a year. The stream must be
+    * closed, and the flights it returns must not be used after that.
+    */
+   public Stream<Flight> getFlightStream(int year) {
+      if(useFlightTable(year)) {
+         FlightTable table = getFlightTable(year);
+         return table.stream().onClose(table::close);
+      }
+      return getFlightLines(year).map(s -> new Flight(s, this));
+   }
+
+   /**
+    * Returns a stream of the flights for a year that satisfy the query. 
+    * The predicates are evaluated against the raw bytes of each line, so 
+    * rows that fail are never turned into Flight instances. The stream
+    * must be closed, and the flights it returns must not be used after
+    * that.
+    */
+   public Stream<Flight> getFlightStream(int year, FlightQuery query) {
+      if(useFlightTable(year)) {
+         FlightTable table = getFlightTable(year);
+         return table.stream(query).onClose(table::close);
+      }
+      FlightScanner scanner = getFlightScanner(year, query);
+      return StreamSupport.stream(spliteratorUnknownSize(scanner, ORDERED | NONNULL), false)
+                          .onClose(scanner::close);
+   }
+
+   /**
+    * Returns an iterator over the flights for a year that satisfy the
+    * query. The iterator must be closed.
+    */
+   public FlightIterator getFlightIterator(int year, FlightQuery query) {
+      if(useFlightTable(year)) {
+         return getFlightTableIterator(year, query);
+      }
+      return getFlightScanner(year, query);
+   }
+
+   /**
+    * Returns an iterator over a resident table that holds a reference to
+    * the table until it is closed, so the flights it returns stay valid
+    * until then.
+    */
+   private FlightIterator getFlightTableIterator(int year, FlightQuery query) {
+      final FlightTable table = getFlightTable(year);
+      final Iterator<Flight> iterator = table.iterator(query);
+      return new FlightIterator() {
+         private boolean open = true;
+         @Override
+         public boolean hasNext() {
+            return iterator.hasNext();
+         }
+         @Override
+         public Flight next() {
+            return iterator.next();
+         }
+         @Override
+         public void close() {
+            if(open) {
+               open = false;
+               table.close();
+            }
+         }
+      };
+   }
+
+   FlightScanner getFlightScanner(int year, FlightQuery query) {
+      try {
+         return new FlightScanner(openFlightData(year), query, this);
+      } catch (IOException e) {
+         throw new RepositoryException(e);
+      }
+   }
+
+   /**
+    * Returns the flights that satisfy the query in a block of whole lines
+    * of a flight data file, between the given offsets, for pipelines that
+    * read the file themselves.
+    */
+   public Iterator<Flight> getFlightIterator(byte[] block, int start, int end, FlightQuery query) {
+      return new FlightScanner(block, start, end, query, this);
+   }
+
+   /**
+    * Returns a pipeline that reads, parses and aggregates the flights for
+    * a year that satisfy the query on separate threads.
+    */
+   public FlightPipeline getFlightPipeline(int year, FlightQuery query) {
+      return new FlightPipeline(year, query, this);
+   }
+
+   /**
+    * Returns an iterator over all the flights for a year. The iterator
+    * must be closed.
+    */
+   public FlightIterator getFlightIterator(int year) {
+      if(useFlightTable(year)) {
+         return getFlightTableIterator(year, FlightQuery.selectAll());
+      }
+      final InputStream in = openFlightData(year);
+      try {
+         return new FlightIterator() {
             private LineIterator iterator;
             {
-               iterator = lineIterator(path.toFile());
+               iterator = lineIterator(in, ISO_8859_1);
                iterator.next();     // skip header
             }
             @Override
@@ -246,12 +1041,35 @@ public final class Repository {
             public Flight next() {
                return new Flight(iterator.next(), Repository.this);
             }
+            @Override
+            public void close() {
+               LineIterator.closeQuietly(iterator);
+            }
          };
       } catch (IOException e) {
          throw new RepositoryException(e);
       }
    }
 
+   /**
+    * Returns the records of the flight data file for a year as lines of
+    * text, without the header, for code that stores or forwards flights in
+    * the file format. The stream must be closed.
+    */
+   public Stream<String> getFlightLines(int year) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(openFlightData(year),
+                                                                       ISO_8859_1));
+      return reader.lines()
+                   .skip(1)            // skip header
+                   .onClose(() -> {
+                      try {
+                         reader.close();
+                      } catch (IOException e) {
+                         throw new RepositoryException(e);
+                      }
+                   });
+   }
+
    public Stream<Plane> getPlaneStream() {
       try {
          return CsvParser.skip(1)         // skip header
@@ -274,7 +1092,11 @@ public final class Repository {
 
    private Map<String, Plane> getPlaneMap() {
       if(planeMap == null) {
-         planeMap = getPlaneStream().collect(toMap(Plane::getTailNumber, Function.identity()));
+         synchronized(referenceLock) {
+            if(planeMap == null) {
+               planeMap = getPlaneStream().collect(toMap(Plane::getTailNumber, Function.identity()));
+            }
+         }
       }
       return planeMap;
    }
@@ -14,6 +14,14 @@ public class Route implements Comparable<Route> {
       this.second = second;
    }
 
+   public String getFirst() {
+      return first;
+   }
+
+   public String getSecond() {
+      return second;
+   }
+
    @Override
    public boolean equals(Object obj) {
       if(obj == null || !(obj instanceof Route)) {
@@ -0,0 +1,237 @@
+package airtraffic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * In-memory index over reference data, such as airports or carriers, for
+ * interactive lookup. Codes are held in a prefix trie for validation and
+ * autocomplete, and the descriptive text of each item (names, cities) is
+ * split into trigrams in an inverted index so that misspelled or partial
+ * names still find a match.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class SearchIndex<T> {
+   private static final int GRAM = 3;
+   private static final double MIN_COVERAGE = 0.6;
+   private static final int[] NO_POSTINGS = new int[0];
+
+   /**
+    * Trie node. Children are kept sorted by character so that completions
+    * come back in code order.
+    */
+   private static final class Node {
+      private char[] labels = new char[0];
+      private Node[] children = new Node[0];
+      private int item = -1;
+
+      Node child(char c) {
+         int i = Arrays.binarySearch(labels, c);
+         return i < 0 ? null : children[i];
+      }
+
+      Node addChild(char c) {
+         int i = Arrays.binarySearch(labels, c);
+         if(i >= 0) {
+            return children[i];
+         }
+         i = -i - 1;
+         char[] newLabels = new char[labels.length + 1];
+         Node[] newChildren = new Node[children.length + 1];
+         System.arraycopy(labels, 0, newLabels, 0, i);
+         System.arraycopy(children, 0, newChildren, 0, i);
+         newLabels[i] = c;
+         newChildren[i] = new Node();
+         System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+         System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+         labels = newLabels;
+         children = newChildren;
+         return newChildren[i];
+      }
+   }
+
+   private final List<T> items = new ArrayList<>();
+   private final Node root = new Node();
+   private final Map<String, int[]> postings;
+   private final int[] gramCounts;
+
+   private SearchIndex(Collection<T> values, Function<T, String> key,
+                       Function<T, String> text) {
+      Map<String, List<Integer>> grams = new HashMap<>();
+      gramCounts = new int[values.size()];
+      for(T value : values) {
+         String code = key.apply(value);
+         if(code == null || code.isEmpty()) {
+            continue;
+         }
+         int id = items.size();
+         items.add(value);
+         Node node = root;
+         for(char c : code.toUpperCase().toCharArray()) {
+            node = node.addChild(c);
+         }
+         node.item = id;
+         Set<String> itemGrams = grams(code + " " + text.apply(value), false);
+         gramCounts[id] = itemGrams.size();
+         for(String gram : itemGrams) {
+            grams.computeIfAbsent(gram, g -> new ArrayList<>()).add(id);
+         }
+      }
+      postings = new HashMap<>(grams.size() * 2);
+      grams.forEach((gram, ids) -> postings.put(gram, ids.stream().mapToInt(i -> i).toArray()));
+   }
+
+   /**
+    * Build an index of the values, keyed by the code the key function
+    * returns and searchable by that code and the text the text function
+    * returns.
+    */
+   public static <T> SearchIndex<T> build(Collection<T> values, Function<T, String> key,
+                                          Function<T, String> text) {
+      return new SearchIndex<>(values, key, text);
+   }
+
+   public int size() {
+      return items.size();
+   }
+
+   /**
+    * Returns the item with exactly this code, ignoring case, or null.
+    */
+   public T get(String code) {
+      Node node = find(code);
+      return node == null || node.item < 0 ? null : items.get(node.item);
+   }
+
+   public boolean contains(String code) {
+      return get(code) != null;
+   }
+
+   /**
+    * Returns up to limit items whose code starts with the prefix, in code
+    * order.
+    */
+   public List<T> complete(String prefix, int limit) {
+      Node node = find(prefix);
+      if(node == null || limit <= 0) {
+         return Collections.emptyList();
+      }
+      List<T> result = new ArrayList<>(Math.min(limit, 16));
+      collect(node, result, limit);
+      return result;
+   }
+
+   private Node find(String code) {
+      if(code == null) {
+         return null;
+      }
+      Node node = root;
+      for(int i = 0; i < code.length() && node != null; i++) {
+         node = node.child(Character.toUpperCase(code.charAt(i)));
+      }
+      return node;
+   }
+
+   private void collect(Node node, List<T> result, int limit) {
+      if(node.item >= 0) {
+         result.add(items.get(node.item));
+      }
+      for(int i = 0; i < node.children.length && result.size() < limit; i++) {
+         collect(node.children[i], result, limit);
+      }
+   }
+
+   /**
+    * Returns up to limit items that best match the query. An exact code
+    * comes first, then codes that start with the query, then items whose
+    * code or text is most similar to it by trigram overlap.
+    */
+   public List<T> search(String query, int limit) {
+      if(query == null || query.trim().isEmpty() || limit <= 0) {
+         return Collections.emptyList();
+      }
+      Set<Integer> ids = new LinkedHashSet<>();
+      Node node = find(query.trim());
+      if(node != null) {
+         collectIds(node, ids, limit);
+      }
+      // a query too short to have a trigram, or with no letters or digits,
+      // matches by code alone, as every item would cover its zero trigrams
+      Set<String> queryGrams = grams(query, true);
+      if(ids.size() < limit && !queryGrams.isEmpty()) {
+         int[] hits = new int[items.size()];
+         for(String gram : queryGrams) {
+            for(int id : postings.getOrDefault(gram, NO_POSTINGS)) {
+               hits[id]++;
+            }
+         }
+         List<int[]> scored = new ArrayList<>();
+         for(int id = 0; id < hits.length; id++) {
+            // keep items that share most of the query's trigrams, ranked by
+            // the Dice coefficient so that shorter, closer texts come first
+            if(hits[id] >= MIN_COVERAGE * queryGrams.size()) {
+               int score = 2000 * hits[id] / (queryGrams.size() + gramCounts[id]);
+               scored.add(new int[] { id, score });
+            }
+         }
+         scored.sort((a, b) -> b[1] != a[1] ? Integer.compare(b[1], a[1]) :
+                                              Integer.compare(a[0], b[0]));
+         for(int i = 0; i < scored.size() && ids.size() < limit; i++) {
+            ids.add(scored.get(i)[0]);
+         }
+      }
+      List<T> result = new ArrayList<>(ids.size());
+      for(int id : ids) {
+         result.add(items.get(id));
+      }
+      return result;
+   }
+
+   private void collectIds(Node node, Set<Integer> ids, int limit) {
+      if(node.item >= 0) {
+         ids.add(node.item);
+      }
+      for(int i = 0; i < node.children.length && ids.size() < limit; i++) {
+         collectIds(node.children[i], ids, limit);
+      }
+   }
+
+   /**
+    * Returns the trigrams of each word in the text, after folding case and
+    * treating anything other than letters and digits as a word break.
+    * Words are padded so that their first and last letters carry weight.
+    * For a query that is still being typed the last word is treated as a
+    * prefix and is not padded at the end.
+    */
+   private static Set<String> grams(String text, boolean prefix) {
+      Set<String> result = new LinkedHashSet<>();
+      if(text == null) {
+         return result;
+      }
+      StringBuilder word = new StringBuilder(" ");
+      for(int i = 0; i <= text.length(); i++) {
+         char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : ' ';
+         if(Character.isLetterOrDigit(c)) {
+            word.append(c);
+         } else if(word.length() > 1) {
+            if(!prefix || i < text.length()) {
+               word.append(' ');
+            }
+            for(int j = 0; j + GRAM <= word.length(); j++) {
+               result.add(word.substring(j, j + GRAM));
+            }
+            word.setLength(1);
+         }
+      }
+      return result;
+   }
+}
\ No newline at end of file
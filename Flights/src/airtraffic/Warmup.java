@@ -0,0 +1,107 @@
+package airtraffic;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exercises the flight parsing and aggregation code on a sample of the
+ * latest year of data, so those paths are loaded and compiled by the JIT
+ * before the first real report runs. The warmup reads the data files
+ * directly and never loads resident flight tables.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class Warmup {
+   private static final Logger LOGGER = LoggerFactory.getLogger(Warmup.class);
+   private static final int SAMPLE_SIZE = 50_000;
+   private static final int ROUNDS = 3;
+
+   private Warmup() {}
+
+   /**
+    * Run the warmup on the calling thread.
+    */
+   public static void run(Repository repository) {
+      long start = System.currentTimeMillis();
+      int year = Collections.max(repository.getFlightYears());
+      long checksum = 0;
+      for(int round = 0; round < ROUNDS; round++) {
+         List<Flight> sample = parseLines(repository, year);
+         checksum += aggregateWithStream(sample) + aggregateWithIterator(sample);
+         checksum += scan(repository, year);
+      }
+      LOGGER.debug("Warmup completed in {} ms ({})", System.currentTimeMillis() - start, checksum);
+   }
+
+   /**
+    * Start the warmup on a daemon thread.
+    */
+   public static Thread start(Repository repository) {
+      Thread thread = new Thread(() -> {
+         try {
+            run(repository);
+         } catch (RuntimeException e) {
+            LOGGER.debug("Warmup failed", e);
+         }
+      }, "warmup");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+      return thread;
+   }
+
+   private static List<Flight> parseLines(Repository repository, int year) {
+      try(Stream<String> lines = repository.getFlightLines(year)) {
+         return lines.limit(SAMPLE_SIZE)
+                     .map(s -> new Flight(s, repository))
+                     .filter(f -> f.getOrigin() != null && f.getDestination() != null)
+                     .collect(Collectors.toList());
+      }
+   }
+
+   private static long aggregateWithStream(List<Flight> sample) {
+      Map<Airport, Long> origins = sample.stream()
+                                         .filter(f -> f.notCancelled() && f.notDiverted())
+                                         .collect(groupingBy(Flight::getOrigin, counting()));
+      Map<Route, Long> routes = sample.parallelStream()
+                                      .collect(groupingBy(Flight::getRoute, counting()));
+      return origins.size() + routes.size() +
+             sample.stream().mapToInt(Flight::getDepartureDelay).sum();
+   }
+
+   private static long aggregateWithIterator(List<Flight> sample) {
+      Map<String, Integer> carriers = new HashMap<>();
+      long delay = 0;
+      for(Flight flight : sample) {
+         Carrier carrier = flight.getCarrier();
+         if(flight.cancelled() && carrier != null) {
+            carriers.merge(carrier.getCode(), 1, Integer::sum);
+         }
+         delay += flight.getArrivalDelay() + flight.getDistance();
+         flight.getDate();
+      }
+      return carriers.size() + delay;
+   }
+
+   private static long scan(Repository repository, int year) {
+      long count = 0;
+      FlightQuery query = FlightQuery.select(FlightField.ORIGIN)
+                                     .where(FlightField.CANCELLED, false);
+      try(FlightScanner scanner = repository.getFlightScanner(year, query)) {
+         for(int i = 0; i < SAMPLE_SIZE && scanner.hasNext(); i++) {
+            count += scanner.next().getOrigin() == null ? 0 : 1;
+         }
+      }
+      return count;
+   }
+}
\ No newline at end of file
@@ -1,15 +1,12 @@
 package airtraffic.app;
 
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-import static org.apache.commons.lang3.StringUtils.splitByCharacterTypeCamelCase;
+import static org.apache.commons.lang3.StringUtils.capitalize;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.beryx.textio.TextIO;
 import org.beryx.textio.TextIoFactory;
@@ -22,38 +19,62 @@ import airtraffic.Carrier;
 import airtraffic.GeoLocation;
 import airtraffic.ReportContext;
 import airtraffic.Repository;
+import airtraffic.Warmup;
+import airtraffic.registry.AppEntry;
+import airtraffic.registry.ReportEntry;
+import airtraffic.registry.ReportRegistry;
 
 public abstract class AbstractReportsApp {
-   private static final String METHOD_NAME_PREFIX = "report";
-   private static final int METHOD_PARAMETER_COUNT = 1;
-   private static final Class<?> METHOD_RETURN_TYPE = Void.TYPE;
+   private static final int SUGGESTIONS = 5;
 
    private final Logger logger = LoggerFactory.getLogger(AbstractReportsApp.class);
    private final TextIO io = TextIoFactory.getTextIO();
    private final TextTerminal<?> terminal = io.getTextTerminal();
    private final Repository repository = new Repository();
 
+   protected AbstractReportsApp() {
+      // while the user picks a report, load the reference data and the
+      // year the report most likely needs, into memory if flights are held
+      // there or else into the page cache, and warm up the parsing and
+      // aggregation code
+      int year = Collections.max(repository.getFlightYears());
+      if(repository.isResident()) {
+         repository.preload(year);
+      } else {
+         repository.prefetch(year);
+      }
+      Warmup.start(repository);
+   }
+
    protected ReportContext createReportContext() {
       return new ReportContext().setRepository(repository)
                                 .setTerminal(terminal);
    }
 
-   protected String readStyleOption() {
+   /**
+    * Read the style of implementation to run the report with, also
+    * offering the given styles, such as batch or cube, for the reports
+    * that have them.
+    */
+   protected String readStyleOption(String... extraStyles) {
       String format = "%2d  %s\n";
       terminal.println("Style options:\n");
       terminal.printf(format, 0, "Exit program");
       terminal.printf(format, 1, "Iterator-based");
       terminal.printf(format, 2, "Stream-based");
+      for(int i = 0; i < extraStyles.length; i++) {
+         terminal.printf(format, i + 3, capitalize(extraStyles[i]) + "-based");
+      }
       terminal.println();
       int option = io.newIntInputReader()
                      .withDefaultValue(0)
                      .withMinVal(0)
-                     .withMaxVal(2)
+                     .withMaxVal(extraStyles.length + 2)
                      .read("Style");
       if(option == 0) {
          System.exit(0);
       }
-      return option == 1 ? "iterator" : "stream";
+      return option == 1 ? "iterator" : option == 2 ? "stream" : extraStyles[option - 3];
    }
 
    protected String readString(String prompt) {
@@ -82,6 +103,25 @@ public abstract class AbstractReportsApp {
                .read("Limit");
    }
 
+   protected boolean readApproximate() {
+      return io.newBooleanInputReader()
+               .withDefaultValue(false)
+               .read("Approximate");
+   }
+
+   protected boolean readReplay() {
+      return io.newBooleanInputReader()
+               .withDefaultValue(false)
+               .read("Replay in departure order");
+   }
+
+   protected double readReplaySpeed() {
+      return io.newDoubleInputReader()
+               .withDefaultValue(0.0)
+               .withMinVal(0.0)
+               .read("Speed (multiple of real time, 0 = as fast as possible)");
+   }
+
    protected int readYear(int min, int max) {
       return io.newIntInputReader()
                .withDefaultValue(max)
@@ -95,7 +135,11 @@ public abstract class AbstractReportsApp {
                       .withValueChecker((val, item) -> 
                          repository.validAirport(val) ? 
                                Collections.emptyList() : 
-                            Arrays.asList("Unknown airport specified") 
+                            suggest("Unknown airport specified",
+                                    repository.searchAirports(val, SUGGESTIONS)
+                                              .stream()
+                                              .map(a -> a.getIATA() + "  " + a.getName() + 
+                                                        ", " + a.getCity()))
                       ).read(prompt);
       return repository.getAirport(iata);
    }
@@ -105,11 +149,24 @@ public abstract class AbstractReportsApp {
                       .withValueChecker((val, item) -> 
                          repository.validCarrier(val) ? 
                             Collections.emptyList() : 
-                            Arrays.asList("Unknown carrier specified")
+                            suggest("Unknown carrier specified",
+                                    repository.searchCarriers(val, SUGGESTIONS)
+                                              .stream()
+                                              .map(c -> c.getCode() + "  " + c.getName()))
                       ).read("Carrier");
       return repository.getCarrier(code);
    }
 
+   private static List<String> suggest(String error, Stream<String> matches) {
+      List<String> messages = new ArrayList<>();
+      messages.add(error);
+      matches.forEach(m -> messages.add("   " + m));
+      if(messages.size() > 1) {
+         messages.add(1, "Did you mean:");
+      }
+      return messages;
+   }
+
    protected int readYear() {
       Set<Integer> years = repository.getFlightYears();
       int min = years.stream().reduce(Integer::min).get();
@@ -145,38 +202,36 @@ public abstract class AbstractReportsApp {
       return readInt("Distance " + units, 1, 1000);
    }
 
+   /**
+    * Prompt for a report and run it. When flight data is resident in 
+    * memory, keep prompting until the user exits so that later reports 
+    * reuse the data loaded by earlier ones.
+    */
    public void executeSelectedReport() throws Exception {
-      List<Method> reportMethods = getReportMethods();
-      int option = getReportOption(reportMethods, io);
-      if(option == 0) {
-         System.exit(0);
-      }
-      Method method = reportMethods.get(option-1);
-      logger.debug("User requested invocation of method {}", method.getName());
-      TextTerminal<?> terminal = io.getTextTerminal();
-      terminal.println();
-      terminal.println(getReportDescription(method));
-      terminal.println();
-      method.invoke(this, createReportContext());
-      terminal.println("\n=== Report complete ===");
-   }
-
-   private List<Method> getReportMethods() {
-      return Arrays.stream(getClass().getDeclaredMethods())
-                   .filter(method -> methodFilter(method))
-                   .sorted((m1, m2) -> m1.getName().compareTo(m2.getName()))
-                   .collect(toList());
-   }
-
-   private boolean methodFilter(Method method) {
-      return Modifier.isPublic(method.getModifiers()) &&
-            method.getName().startsWith(METHOD_NAME_PREFIX) &&
-            method.getParameterTypes().length == METHOD_PARAMETER_COUNT &&
-            method.getReturnType().equals(METHOD_RETURN_TYPE);
-   }
-
-   private int getReportOption(List<Method> printMethods, TextIO io) {
-      if(printMethods.size() == 0) {
+      List<ReportEntry> reports = getReports();
+      do {
+         int option = getReportOption(reports, io);
+         if(option == 0) {
+            System.exit(0);
+         }
+         ReportEntry report = reports.get(option-1);
+         logger.debug("User requested invocation of method {}", report.getName());
+         TextTerminal<?> terminal = io.getTextTerminal();
+         terminal.println();
+         terminal.println(report.getDescription());
+         terminal.println();
+         report.invoke(this, createReportContext());
+         terminal.println("\n=== Report complete ===");
+      } while(repository.isResident());
+   }
+
+   private List<ReportEntry> getReports() {
+      AppEntry app = ReportRegistry.getInstance().getApp(getClass());
+      return app == null ? Collections.emptyList() : app.getReports();
+   }
+
+   private int getReportOption(List<ReportEntry> reports, TextIO io) {
+      if(reports.size() == 0) {
          logger.warn("No report options available for this class");
          return 0;
       }
@@ -185,21 +240,15 @@ public abstract class AbstractReportsApp {
       String format = "%2d  %s\n";
       int n = 0;
       terminal.printf(format, n++, "Exit program");
-      for(Method m : printMethods) {
-         terminal.printf(format, n++, getReportDescription(m));
-         logger.debug("Found report method {}", m.getName());
+      for(ReportEntry report : reports) {
+         terminal.printf(format, n++, report.getDescription());
+         logger.debug("Found report method {}", report.getName());
       }
       terminal.println();
       return io.newIntInputReader()
                .withDefaultValue(0)
                .withMinVal(0)
-               .withMaxVal(printMethods.size())
+               .withMaxVal(reports.size())
                .read("Option");
    }
-
-   private String getReportDescription(Method method) {
-      String name = method.getName().substring(METHOD_NAME_PREFIX.length());
-      String[] words = splitByCharacterTypeCamelCase(name);
-      return Arrays.stream(words).collect(joining(" "));
-   }
 }
\ No newline at end of file
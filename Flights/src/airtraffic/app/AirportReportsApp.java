@@ -7,8 +7,10 @@ import org.beryx.textio.TextTerminal;
 import airtraffic.AirportReports;
 import airtraffic.ReportContext;
 import airtraffic.iterator.IteratorAirportReports;
+import airtraffic.registry.ReportApp;
 import airtraffic.stream.StreamAirportReports;
 
+@ReportApp
 public class AirportReportsApp extends AbstractReportsApp implements AirportReports {
    public static void main(String[] args) throws Exception {
       new AirportReportsApp().executeSelectedReport();
@@ -21,8 +23,8 @@ public class AirportReportsApp extends AbstractReportsApp implements AirportRepo
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.print("\nIATA    Airport Name                        ");
-      terminal.println("Total        Cancelled %   Diverted %");
-      terminal.println(repeat("-", 82));
+      terminal.println("Total        Cancelled %   Diverted %    Routes");
+      terminal.println(repeat("-", 92));
 
       getImpl(style).reportAirportMetrics(context);
    }
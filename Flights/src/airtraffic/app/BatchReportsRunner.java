@@ -0,0 +1,266 @@
+package airtraffic.app;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import airtraffic.Repository;
+import airtraffic.service.ReportService;
+
+/**
+ * Runs reports without prompting, for use from scripts and scheduled jobs.
+ * Reports are named as family/Report followed by optional parameters in
+ * query string form, the same way they are addressed by the report
+ * server, for example:
+ *
+ * <pre>
+ * BatchReportsRunner --style stream --parallelism 4 --output reports \
+ *    "flight/MostPopularRoutes?year=2008&amp;limit=10" \
+ *    "flight/TopDestinationsFromOrigin?origin=IAH&amp;limit=5"
+ * </pre>
+ *
+ * Jobs can also be listed in a YAML file passed with --jobs:
+ *
+ * <pre>
+ * style: stream
+ * parallelism: 4
+ * output: reports
+ * jobs:
+ *    - report: flight/MostPopularRoutes
+ *      parameters: { year: 2008, limit: 10 }
+ *    - report: carrier/CarrierMetrics
+ *      style: iterator
+ *      file: carriers.txt
+ * </pre>
+ *
+ * The style is iterator or stream, or batch or cube for the report
+ * families that have those implementations: batch for delay and flight
+ * reports, cube for carrier and flight reports.
+ *
+ * Each report is written to its own file in the output directory, or to
+ * standard output if the output is "-". All reports share one repository
+ * with flight data held in memory, so the data is read only once.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class BatchReportsRunner {
+   private static final String STDOUT = "-";
+
+   /**
+    * A single report to run.
+    */
+   private static final class Job {
+      private final String family;
+      private final String report;
+      private final Map<String, String> parameters;
+      private String file;
+
+      Job(String family, String report, Map<String, String> parameters) {
+         this.family = family;
+         this.report = report;
+         this.parameters = parameters;
+      }
+   }
+
+   private final Logger logger = LoggerFactory.getLogger(BatchReportsRunner.class);
+   private final List<Job> jobs = new ArrayList<>();
+   private String style = "stream";
+   private int parallelism = Runtime.getRuntime().availableProcessors();
+   private String output = STDOUT;
+
+   public static void main(String[] args) throws Exception {
+      BatchReportsRunner runner = new BatchReportsRunner();
+      try {
+         runner.parseArguments(args);
+      } catch (IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         System.err.println("Usage: BatchReportsRunner [--style iterator|stream|batch|cube] " +
+                            "[--parallelism n] [--output dir|-] [--jobs file.yaml] " +
+                            "[family/Report?name=value&...]...");
+         System.exit(2);
+      }
+      System.exit(runner.run() ? 0 : 1);
+   }
+
+   private void parseArguments(String[] args) throws IOException {
+      for(int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if(arg.startsWith("--")) {
+            if(i + 1 == args.length) {
+               throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch(arg) {
+               case "--style":       style = value; break;
+               case "--parallelism": parallelism = Integer.parseInt(value); break;
+               case "--output":      output = value; break;
+               case "--jobs":        readJobFile(Paths.get(value)); break;
+               default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+         } else {
+            jobs.add(parseJob(arg));
+         }
+      }
+      if(jobs.isEmpty()) {
+         throw new IllegalArgumentException("No reports specified");
+      }
+   }
+
+   private static Job parseJob(String spec) throws UnsupportedEncodingException {
+      int query = spec.indexOf('?');
+      String name = query < 0 ? spec : spec.substring(0, query);
+      Map<String, String> parameters = new LinkedHashMap<>();
+      if(query >= 0) {
+         for(String pair : spec.substring(query + 1).split("&")) {
+            int equals = pair.indexOf('=');
+            if(equals > 0) {
+               parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                              URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+         }
+      }
+      return newJob(name, parameters);
+   }
+
+   private static Job newJob(String name, Map<String, String> parameters) {
+      String[] parts = name.split("/");
+      if(parts.length != 2) {
+         throw new IllegalArgumentException("Reports must be named family/Report: " + name);
+      }
+      return new Job(parts[0], parts[1], parameters);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void readJobFile(Path path) throws IOException {
+      Map<String, Object> file;
+      try(Reader reader = Files.newBufferedReader(path, UTF_8)) {
+         file = new Yaml().load(reader);
+      }
+      if(file.containsKey("style")) {
+         style = String.valueOf(file.get("style"));
+      }
+      if(file.containsKey("parallelism")) {
+         parallelism = Integer.parseInt(String.valueOf(file.get("parallelism")));
+      }
+      if(file.containsKey("output")) {
+         output = String.valueOf(file.get("output"));
+      }
+      List<Map<String, Object>> entries = (List<Map<String, Object>>) file.get("jobs");
+      if(entries != null) {
+         for(Map<String, Object> entry : entries) {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            Map<String, Object> values = (Map<String, Object>) entry.get("parameters");
+            if(values != null) {
+               values.forEach((k, v) -> parameters.put(k, String.valueOf(v)));
+            }
+            if(entry.containsKey("style")) {
+               parameters.put("style", String.valueOf(entry.get("style")));
+            }
+            Job job = newJob(String.valueOf(entry.get("report")), parameters);
+            job.file = (String) entry.get("file");
+            jobs.add(job);
+         }
+      }
+   }
+
+   /**
+    * Run every job and wait for them to finish. Returns true if all of
+    * them succeeded.
+    */
+   private boolean run() throws IOException {
+      Path dir = null;
+      if(!STDOUT.equals(output)) {
+         dir = Files.createDirectories(Paths.get(output));
+      }
+      Repository repository = new Repository();
+      repository.setResident(true);
+      List<CompletableFuture<Boolean>> results = new ArrayList<>();
+      Set<String> fileNames = new HashSet<>();
+      try(ReportService service = new ReportService(repository, parallelism, jobs.size())) {
+         for(Job job : jobs) {
+            job.parameters.putIfAbsent("style", style);
+            FileTerminal terminal = null;
+            try {
+               String name = service.getReportName(job.family, job.report);
+               terminal = openTerminal(dir, job, name, fileNames);
+               FileTerminal t = terminal;
+               results.add(service.submit(job.family, job.report, job.parameters, terminal)
+                                  .handle((elapsed, e) -> finish(name, t, elapsed, e)));
+            } catch (IllegalArgumentException e) {
+               logger.error("Skipping {}/{}: {}", job.family, job.report, e.getMessage());
+               closeQuietly(terminal);
+               results.add(CompletableFuture.completedFuture(false));
+            }
+         }
+         return results.stream().allMatch(CompletableFuture::join);
+      } finally {
+         repository.close();
+      }
+   }
+
+   private FileTerminal openTerminal(Path dir, Job job, String name, Set<String> fileNames)
+      throws IOException {
+      if(dir == null) {
+         // buffer the whole report so concurrent reports are not interleaved
+         return new FileTerminal(new StringWriter() {
+            @Override
+            public void close() {
+               synchronized(System.out) {
+                  System.out.println("=== " + name + " ===");
+                  System.out.println(toString());
+                  System.out.flush();
+               }
+            }
+         });
+      }
+      String fileName = job.file;
+      if(fileName == null) {
+         String base = name.replace('/', '-');
+         fileName = base + ".txt";
+         for(int n = 2; fileNames.contains(fileName); n++) {
+            fileName = base + "-" + n + ".txt";
+         }
+      }
+      fileNames.add(fileName);
+      return new FileTerminal(Files.newBufferedWriter(dir.resolve(fileName), UTF_8));
+   }
+
+   private boolean finish(String name, FileTerminal terminal, Long elapsed, Throwable e) {
+      closeQuietly(terminal);
+      if(e != null) {
+         logger.error("Report {} failed", name, e);
+         return false;
+      }
+      logger.info("Report {} completed in {} ms", name, elapsed);
+      return true;
+   }
+
+   private void closeQuietly(FileTerminal terminal) {
+      if(terminal != null) {
+         try {
+            terminal.close();
+         } catch (IOException | UncheckedIOException e) {
+            logger.warn("Unable to close report output", e);
+         }
+      }
+   }
+}
\ No newline at end of file
@@ -6,9 +6,12 @@ import org.beryx.textio.TextTerminal;
 
 import airtraffic.CarrierReports;
 import airtraffic.ReportContext;
+import airtraffic.cube.CubeCarrierReports;
 import airtraffic.iterator.IteratorCarrierReports;
+import airtraffic.registry.ReportApp;
 import airtraffic.stream.StreamCarrierReports;
 
+@ReportApp
 public class CarrierReportsApp extends AbstractReportsApp implements CarrierReports {
    public static void main(String[] args) throws Exception {
       new CarrierReportsApp().executeSelectedReport();
@@ -16,7 +19,7 @@ public class CarrierReportsApp extends AbstractReportsApp implements CarrierRepo
 
    @Override
    public void reportMostCancelledFlightsByCarrier(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -29,22 +32,23 @@ public class CarrierReportsApp extends AbstractReportsApp implements CarrierRepo
 
    @Override
    public void reportCarrierMetrics(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("cube");
       context.setYear(readYear());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.print("Code    Carrier Name                        ");
-      terminal.println("Total        Cancelled %   Diverted %    Airports");
-      terminal.println(repeat("-", 94));
+      terminal.println("Total        Cancelled %   Diverted %    Airports    Planes");
+      terminal.println(repeat("-", 105));
 
       getImpl(style).reportCarrierMetrics(context);
    }
 
    @Override
    public void reportCarriersWithHighestCancellationRate(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("cube");
       context.setYear(readYear())
-             .setLimit(readLimit(10, 1, 100));
+             .setLimit(readLimit(10, 1, 100))
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("Carrier                           Rate");
@@ -54,8 +58,13 @@ public class CarrierReportsApp extends AbstractReportsApp implements CarrierRepo
    }
 
    private CarrierReports getImpl(String style) {
-      return "iterator".equals(style) ? 
-         new IteratorCarrierReports() : 
-         new StreamCarrierReports();
+      switch(style) {
+         case "iterator":
+            return new IteratorCarrierReports();
+         case "cube":
+            return new CubeCarrierReports();
+         default:
+            return new StreamCarrierReports();
+      }
    }
 }
\ No newline at end of file
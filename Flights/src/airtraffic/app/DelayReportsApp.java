@@ -0,0 +1,80 @@
+package airtraffic.app;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import org.beryx.textio.TextTerminal;
+
+import airtraffic.DelayReports;
+import airtraffic.ReportContext;
+import airtraffic.exec.BatchDelayReports;
+import airtraffic.iterator.IteratorDelayReports;
+import airtraffic.registry.ReportApp;
+import airtraffic.stream.StreamDelayReports;
+
+@ReportApp
+public class DelayReportsApp extends AbstractReportsApp implements DelayReports {
+   public static void main(String[] args) throws Exception {
+      new DelayReportsApp().executeSelectedReport();
+   }
+
+   @Override
+   public void reportDelayCausesByAirport(ReportContext context) {
+      final String style = readStyleOption("batch");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      printDelayCausesHeader(context.getTerminal(), "Origin");
+
+      getImpl(style).reportDelayCausesByAirport(context);
+   }
+
+   @Override
+   public void reportDelayCausesByCarrier(ReportContext context) {
+      final String style = readStyleOption("batch");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      printDelayCausesHeader(context.getTerminal(), "Carrier");
+
+      getImpl(style).reportDelayCausesByCarrier(context);
+   }
+
+   @Override
+   public void reportDelayCausesByMonth(ReportContext context) {
+      final String style = readStyleOption("batch");
+      context.setYear(readYear());
+
+      printDelayCausesHeader(context.getTerminal(), "Month");
+
+      getImpl(style).reportDelayCausesByMonth(context);
+   }
+
+   @Override
+   public void reportDelayCausesByRoute(ReportContext context) {
+      final String style = readStyleOption("batch");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      printDelayCausesHeader(context.getTerminal(), "Route");
+
+      getImpl(style).reportDelayCausesByRoute(context);
+   }
+
+   private static void printDelayCausesHeader(TextTerminal<?> terminal, String key) {
+      terminal.printf("%-30s %9s %12s %8s %8s %8s %8s %8s\n",
+                      key, "Delayed", "Minutes", "Carrier%", "Weather%", "NAS%",
+                      "Secur.%", "LateAc%");
+      terminal.println(repeat("-", 103));
+   }
+
+   private DelayReports getImpl(String style) {
+      switch(style) {
+         case "iterator":
+            return new IteratorDelayReports();
+         case "batch":
+            return new BatchDelayReports();
+         default:
+            return new StreamDelayReports();
+      }
+   }
+}
\ No newline at end of file
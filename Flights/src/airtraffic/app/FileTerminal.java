@@ -0,0 +1,41 @@
+package airtraffic.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import org.beryx.textio.mock.MockTextTerminal;
+
+/**
+ * Terminal that streams report output to a writer, such as a file, as it
+ * is printed.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class FileTerminal extends MockTextTerminal implements Closeable {
+   private final Writer writer;
+
+   FileTerminal(Writer writer) {
+      this.writer = writer;
+   }
+
+   @Override
+   public void rawPrint(String message) {
+      try {
+         writer.write(message);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   @Override
+   public void println() {
+      rawPrint("\n");
+   }
+
+   @Override
+   public void close() throws IOException {
+      writer.close();
+   }
+}
\ No newline at end of file
@@ -6,9 +6,13 @@ import org.beryx.textio.TextTerminal;
 
 import airtraffic.FlightReports;
 import airtraffic.ReportContext;
+import airtraffic.cube.CubeFlightReports;
+import airtraffic.exec.BatchFlightReports;
 import airtraffic.iterator.IteratorFlightReports;
+import airtraffic.registry.ReportApp;
 import airtraffic.stream.StreamFlightReports;
 
+@ReportApp
 public class FlightReportsApp extends AbstractReportsApp implements FlightReports {
    public static void main(String[] args) throws Exception {
       new FlightReportsApp().executeSelectedReport();
@@ -16,7 +20,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsFromOrigin(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setOrigin(readAirport("Origin"));
 
@@ -25,17 +29,26 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsToDestination(ReportContext context) {
-      getImpl(readStyleOption()).reportTotalFlightsToDestination(context);
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setDestination(readAirport("Destination"));
+
+      getImpl(style).reportTotalFlightsToDestination(context);
    }
 
    @Override
    public void reportTotalFlightsFromOriginToDestination(ReportContext context) {
-      getImpl(readStyleOption()).reportTotalFlightsFromOrigin(context);
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setOrigin(readAirport("Origin"))
+             .setDestination(readAirport("Destination"));
+
+      getImpl(style).reportTotalFlightsFromOriginToDestination(context);
    }
 
    @Override
    public void reportTopFlightsByOrigin(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -48,7 +61,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTopDestinationsFromOrigin(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setOrigin(readAirport("Origin"))
              .setLimit(readLimit(10, 1, 100));
@@ -64,9 +77,10 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportMostPopularRoutes(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
-             .setLimit(readLimit(10, 1, 100));
+             .setLimit(readLimit(10, 1, 100))
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("Route\t\t    Count");
@@ -77,7 +91,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportWorstAverageDepartureDelayByOrigin(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -90,7 +104,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportWorstAverageArrivalDelayByDestination(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -101,9 +115,61 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
       getImpl(style).reportWorstAverageArrivalDelayByDestination(context);
    }
 
+   @Override
+   public void reportDepartureDelayPercentilesByOrigin(ReportContext context) {
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.println("Origin\t\t   p50\t   p90\t   p99    (delay in minutes)");
+      terminal.println(repeat("-", 40));
+
+      getImpl(style).reportDepartureDelayPercentilesByOrigin(context);
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByCarrier(ReportContext context) {
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.println("Carrier\t\t\t\t   p50\t   p90\t   p99    (delay in minutes)");
+      terminal.println(repeat("-", 56));
+
+      getImpl(style).reportArrivalDelayPercentilesByCarrier(context);
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByRoute(ReportContext context) {
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.println("Route\t\t   p50\t   p90\t   p99    (delay in minutes)");
+      terminal.println(repeat("-", 40));
+
+      getImpl(style).reportArrivalDelayPercentilesByRoute(context);
+   }
+
+   @Override
+   public void reportTaxiOutPercentilesByOrigin(ReportContext context) {
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setLimit(readLimit(10, 1, 100));
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.println("Origin\t\t   p50\t   p90\t   p99    (taxi out in minutes)");
+      terminal.println(repeat("-", 40));
+
+      getImpl(style).reportTaxiOutPercentilesByOrigin(context);
+   }
+
    @Override
    public void reportMostCancelledFlightsByOrigin(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -116,9 +182,10 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsByOriginState(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
-             .setLimit(readLimit(10, 1, 100));
+             .setLimit(readLimit(10, 1, 100))
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("State\t  Count");
@@ -129,7 +196,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsByDestinationState(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -142,7 +209,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportLongestFlights(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -155,7 +222,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportShortestFlights(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -168,8 +235,9 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsByDistanceRange(ReportContext context) {
-      final String style = readStyleOption();
-      context.setYear(readYear());
+      final String style = readStyleOption("batch", "cube");
+      context.setYear(readYear())
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("Range\t\tCount");
@@ -180,7 +248,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportDaysWithLeastCancellations(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -193,7 +261,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportDaysWithMostCancellations(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -206,7 +274,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalMonthlyFlights(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear());
 
       TextTerminal<?> terminal = context.getTerminal();
@@ -218,7 +286,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalDailyFlights(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear());
 
       TextTerminal<?> terminal = context.getTerminal();
@@ -230,7 +298,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportTotalFlightsByDayOfWeek(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear());
 
       TextTerminal<?> terminal = context.getTerminal();
@@ -242,7 +310,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportMostFlightsByDay(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -255,7 +323,7 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportLeastFlightsByDay(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
              .setLimit(readLimit(10, 1, 100));
 
@@ -268,9 +336,10 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportMostFlightsByOriginByDay(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
-             .setLimit(readLimit(10, 1, 100));
+             .setLimit(readLimit(10, 1, 100))
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("Origin\t\t\t\tDate\t\t     Count");
@@ -281,9 +350,10 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
 
    @Override
    public void reportMostFlightsByCarrierByDay(ReportContext context) {
-      final String style = readStyleOption();
+      final String style = readStyleOption("batch", "cube");
       context.setYear(readYear())
-             .setLimit(readLimit(10, 1, 100));
+             .setLimit(readLimit(10, 1, 100))
+             .setApproximate(readApproximate());
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.println("Carrier\t\t\t\tDate\t\t     Count");
@@ -293,8 +363,15 @@ public class FlightReportsApp extends AbstractReportsApp implements FlightReport
    }
 
    private FlightReports getImpl(String style) {
-      return "iterator".equals(style) ? 
-         new IteratorFlightReports() : 
-         new StreamFlightReports();
+      switch(style) {
+         case "iterator":
+            return new IteratorFlightReports();
+         case "batch":
+            return new BatchFlightReports();
+         case "cube":
+            return new CubeFlightReports();
+         default:
+            return new StreamFlightReports();
+      }
    }
 }
\ No newline at end of file
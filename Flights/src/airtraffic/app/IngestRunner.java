@@ -0,0 +1,60 @@
+package airtraffic.app;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import airtraffic.Repository;
+import airtraffic.ingest.FlightIngester;
+
+/**
+ * Appends new flight files to the flight data and updates the aggregate
+ * store of each year they add to, for use from scripts and scheduled jobs.
+ * The files in the ingest directory, or the directory given, are ingested
+ * once; with --watch the runner keeps watching the directory for more.
+ *
+ * <pre>
+ * IngestRunner [--watch] [directory]
+ * </pre>
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class IngestRunner {
+
+   public static void main(String[] args) throws Exception {
+      boolean watch = false;
+      Path directory = null;
+      for(String arg : args) {
+         if("--watch".equals(arg)) {
+            watch = true;
+         } else if(arg.startsWith("--")) {
+            System.err.println("Unknown option " + arg);
+            System.err.println("Usage: IngestRunner [--watch] [directory]");
+            System.exit(2);
+         } else {
+            directory = Paths.get(arg);
+         }
+      }
+      Repository repository = new Repository();
+      if(directory == null) {
+         directory = repository.getIngestPath();
+      }
+      if(directory == null) {
+         System.err.println("No ingest directory given or configured");
+         System.exit(2);
+      }
+      if(watch) {
+         FlightIngester ingester = FlightIngester.start(repository, directory);
+         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+               ingester.close();
+            } catch (Exception e) {
+               // exiting anyway
+            }
+         }));
+         Thread.currentThread().join();
+      } else {
+         long count = new FlightIngester(repository, directory).ingestPending();
+         System.out.printf("Ingested %,d flights\n", count);
+      }
+   }
+}
\ No newline at end of file
@@ -7,8 +7,10 @@ import org.beryx.textio.TextTerminal;
 import airtraffic.LiveReports;
 import airtraffic.ReportContext;
 import airtraffic.iterator.IteratorLiveReports;
+import airtraffic.registry.ReportApp;
 import airtraffic.stream.StreamLiveReports;
 
+@ReportApp
 public class LiveReportsApp extends AbstractReportsApp implements LiveReports {
    public static void main(String[] args) throws Exception {
       new LiveReportsApp().executeSelectedReport();
@@ -19,6 +21,7 @@ public class LiveReportsApp extends AbstractReportsApp implements LiveReports {
       final String style = readStyleOption();
       context.setYear(readYear())
              .setAirport(readAirport("Airport"));
+      readReplayOptions(context);
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.printf("Airport metrics for %s\n\n", context.getAirport().getName());
@@ -33,6 +36,7 @@ public class LiveReportsApp extends AbstractReportsApp implements LiveReports {
       final String style = readStyleOption();
       context.setYear(readYear())
              .setCarrier(readCarrier());
+      readReplayOptions(context);
 
       TextTerminal<?> terminal = context.getTerminal();
       terminal.printf("Carrier metrics for %s\n\n", context.getCarrier().getName());
@@ -42,6 +46,74 @@ public class LiveReportsApp extends AbstractReportsApp implements LiveReports {
       getImpl(style).reportCarrierMetrics(context);
    }
 
+   @Override
+   public void reportAirportConditions(ReportContext context) {
+      final String style = readStyleOption();
+      context.setYear(readYear())
+             .setAirport(readAirport("Airport"))
+             .setReplaySpeed(readReplaySpeed());
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.printf("Current conditions at %s\n\n", context.getAirport().getName());
+      printConditionsHeader(terminal);
+
+      getImpl(style).reportAirportConditions(context);
+   }
+
+   @Override
+   public void reportCarrierConditions(ReportContext context) {
+      final String style = readStyleOption();
+      context.setYear(readYear())
+             .setCarrier(readCarrier())
+             .setReplaySpeed(readReplaySpeed());
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.printf("Current conditions for %s\n\n", context.getCarrier().getName());
+      printConditionsHeader(terminal);
+
+      getImpl(style).reportCarrierConditions(context);
+   }
+
+   @Override
+   public void reportAnomalies(ReportContext context) {
+      final String style = readStyleOption();
+      context.setYear(readYear())
+             .setReplaySpeed(readReplaySpeed());
+
+      TextTerminal<?> terminal = context.getTerminal();
+      terminal.printf("Cancellation and diversion alerts by airport and carrier\n\n");
+      terminal.println("Time        \tScope  \tKey \tKind         \tAlert  \t   Rate\tBaseline\t     Z\tCause");
+      terminal.println(repeat("-", 100));
+
+      getImpl(style).reportAnomalies(context);
+   }
+
+   @Override
+   public void reportAirportDashboard(ReportContext context) {
+      final String style = readStyleOption();
+      context.setYear(readYear())
+             .setLimit(readLimit(50, 1, 500))
+             .setReplaySpeed(readReplaySpeed());
+
+      context.getTerminal()
+             .printf("Live metrics for the %d busiest airports\n", context.getLimit());
+
+      getImpl(style).reportAirportDashboard(context);
+   }
+
+   private void printConditionsHeader(TextTerminal<?> terminal) {
+      terminal.println("            \t---------- Last hour ----------\t------------ Today ------------");
+      terminal.println("Time        \t  Flights\tCancelled\t    Delay\t  Flights\tCancelled\t    Delay");
+      terminal.println(repeat("-", 92));
+   }
+
+   private void readReplayOptions(ReportContext context) {
+      context.setReplay(readReplay());
+      if(context.isReplay()) {
+         context.setReplaySpeed(readReplaySpeed());
+      }
+   }
+
    private LiveReports getImpl(String style) {
       return "iterator".equals(style) ? 
                new IteratorLiveReports() : 
@@ -7,8 +7,10 @@ import org.beryx.textio.TextTerminal;
 import airtraffic.PlaneReports;
 import airtraffic.ReportContext;
 import airtraffic.iterator.IteratorPlaneReports;
+import airtraffic.registry.ReportApp;
 import airtraffic.stream.StreamPlaneReports;
 
+@ReportApp
 public class PlaneReportsApp extends AbstractReportsApp implements PlaneReports {
    public static void main(String[] args) throws Exception {
       new PlaneReportsApp().executeSelectedReport();
@@ -1,13 +1,6 @@
 package airtraffic.app;
 
-import static java.lang.reflect.Modifier.isAbstract;
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-import static org.apache.commons.lang3.StringUtils.EMPTY;
-import static org.apache.commons.lang3.StringUtils.splitByCharacterTypeCamelCase;
-
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 
 import org.beryx.textio.TextIO;
@@ -17,7 +10,8 @@ import org.beryx.textio.jline.JLineTextTerminal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.reflect.ClassPath;
+import airtraffic.registry.AppEntry;
+import airtraffic.registry.ReportRegistry;
 
 public final class ReportsApp {
    private final Logger logger = LoggerFactory.getLogger(ReportsApp.class);
@@ -30,33 +24,19 @@ public final class ReportsApp {
 
    private void executeSelectedApp() throws Exception {
       clearScreen();
-      List<Class<?>> classes = getClasses("airtraffic.app");
-      int option = readAppOption(classes);
+      List<AppEntry> apps = ReportRegistry.getInstance().getApps();
+      int option = readAppOption(apps);
       if(option == 0) {
          System.exit(0);
       }
-      Class<?> klass = classes.get(option-1);
-      logger.debug("User requested class {}", klass);
+      AppEntry app = apps.get(option-1);
+      logger.debug("User requested class {}", app.getAppClass());
       clearScreen();
-      klass.getMethod("executeSelectedReport")
-           .invoke(klass.newInstance());
-   }
-
-   private List<Class<?>> getClasses(String pkg) throws IOException {
-      ClassLoader cl = this.getClass().getClassLoader();
-      return ClassPath.from(cl)
-                      .getTopLevelClasses(pkg)
-                      .stream()
-                      .map(i -> i.load())
-                      .filter(c -> !c.isInterface() && 
-                                   !isAbstract(c.getModifiers()) && 
-                                   AbstractReportsApp.class.isAssignableFrom(c))
-                      .sorted((c1, c2) -> c1.getName().compareTo(c2.getName()))
-                      .collect(toList());
+      ((AbstractReportsApp) app.newInstance()).executeSelectedReport();
    }
 
-   private int readAppOption(List<Class<?>> classes) {
-      if(classes.size() == 0) {
+   private int readAppOption(List<AppEntry> apps) {
+      if(apps.size() == 0) {
          logger.warn("No report classes available");
          return 0;
       }
@@ -65,24 +45,18 @@ public final class ReportsApp {
       String format = "%2d  %s\n";
       int n = 0;
       terminal.printf(format, n++, "Exit program");
-      for(Class<?> c : classes) {
-         terminal.printf(format, n++, getAppDescription(c));
-         logger.debug("Found app {}", c.getName());
+      for(AppEntry app : apps) {
+         terminal.printf(format, n++, app.getDescription());
+         logger.debug("Found app {}", app);
       }
       terminal.println();
       return io.newIntInputReader()
                .withDefaultValue(0)
                .withMinVal(0)
-               .withMaxVal(classes.size())
+               .withMaxVal(apps.size())
                .read("Option");
    }
 
-   private String getAppDescription(Class<?> klass) {
-      String name = klass.getSimpleName().replace("App", EMPTY);
-      String[] words = splitByCharacterTypeCamelCase(name);
-      return Arrays.stream(words).collect(joining(" "));
-   }
-
    private void clearScreen() {
       if(terminal instanceof JLineTextTerminal) {
          try {
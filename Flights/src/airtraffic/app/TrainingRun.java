@@ -0,0 +1,100 @@
+package airtraffic.app;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.beryx.textio.mock.MockTextTerminal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.Repository;
+import airtraffic.Warmup;
+import airtraffic.registry.AppEntry;
+import airtraffic.registry.ReportRegistry;
+import airtraffic.service.ReportService;
+
+/**
+ * Representative, non-interactive run of the application used to record
+ * an application class-data-sharing (AppCDS) archive. It runs the warmup,
+ * lists the registered applications and then runs every report once in
+ * each style, so that the classes used by reports, including the
+ * generated CSV mappers, YAML and terminal support, are loaded before the
+ * JVM exits and writes the archive.
+ *
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=flights.jsa -cp flights.jar airtraffic.app.TrainingRun
+ * java -XX:SharedArchiveFile=flights.jsa -cp flights.jar airtraffic.app.ReportsApp
+ * </pre>
+ *
+ * The appcds Maven profile performs the first step in the verify phase,
+ * once the jar has been shaded.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class TrainingRun {
+   private static final String[] STYLES = { "iterator", "stream" };
+
+   private final Logger logger = LoggerFactory.getLogger(TrainingRun.class);
+
+   public static void main(String[] args) throws Exception {
+      new TrainingRun().run();
+      System.exit(0);
+   }
+
+   private void run() {
+      long start = System.currentTimeMillis();
+      Repository repository = new Repository();
+      repository.loadReferenceData();
+      Warmup.run(repository);
+      for(AppEntry app : ReportRegistry.getInstance().getApps()) {
+         logger.debug("Registered {} ({} reports)", app.getDescription(), app.getReports().size());
+      }
+      repository.setResident(true);
+      try(ReportService service = new ReportService(repository, 1, STYLES.length * 100)) {
+         Map<String, String> parameters = getParameters(repository);
+         List<String> names = service.getReportNames();
+         for(String style : STYLES) {
+            parameters.put("style", style);
+            for(String name : names) {
+               String[] parts = name.split("/");
+               CompletableFuture<Long> result =
+                  service.submit(parts[0], parts[1], new HashMap<>(parameters), new MockTextTerminal());
+               try {
+                  result.join();
+               } catch (RuntimeException e) {
+                  logger.warn("Report {} failed during training run", name, e);
+               }
+            }
+         }
+      } finally {
+         repository.close();
+      }
+      logger.info("Training run completed in {} ms", System.currentTimeMillis() - start);
+   }
+
+   /**
+    * Returns parameters that satisfy every report, using the first
+    * airports and carrier in the reference data.
+    */
+   private static Map<String, String> getParameters(Repository repository) {
+      Map<String, String> parameters = new HashMap<>();
+      Airport[] airports = repository.getAirportStream()
+                                     .limit(2)
+                                     .toArray(Airport[]::new);
+      Carrier carrier = repository.getCarrierIterator().next();
+      parameters.put("limit", "10");
+      parameters.put("airport", airports[0].getIATA());
+      parameters.put("origin", airports[0].getIATA());
+      parameters.put("destination", airports[airports.length - 1].getIATA());
+      parameters.put("carrier", carrier.getCode());
+      parameters.put("state", airports[0].getState());
+      parameters.put("latitude", Double.toString(airports[0].getLatitude()));
+      parameters.put("longitude", Double.toString(airports[0].getLongitude()));
+      parameters.put("distance", "100");
+      return parameters;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package airtraffic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.beryx.textio.mock.MockTextTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.FlightReports;
+import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.exec.BatchFlightReports;
+import airtraffic.stream.StreamFlightReports;
+
+/**
+ * Compares the stream and batch forms of the flight reports that have
+ * both, over the same in-memory table, so that only the execution model
+ * differs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BatchReportsBenchmark {
+   private final Repository repository = new Repository();
+   private final FlightReports streamImpl = new StreamFlightReports();
+   private final FlightReports batchImpl = new BatchFlightReports();
+
+   @Setup
+   public void loadTable() {
+      repository.setResident(true);
+      repository.getFlightTable(2008).close();
+   }
+
+   private ReportContext createReportContext() {
+      return new ReportContext().setRepository(repository)
+                                .setTerminal(new MockTextTerminal())
+                                .setYear(2008)
+                                .setLimit(10);
+   }
+
+   @Benchmark
+   public void streamTotalFlightsFromOrigin() {
+      streamImpl.reportTotalFlightsFromOrigin(createReportContext().setOriginByIATA("IAH"));
+   }
+
+   @Benchmark
+   public void batchTotalFlightsFromOrigin() {
+      batchImpl.reportTotalFlightsFromOrigin(createReportContext().setOriginByIATA("IAH"));
+   }
+
+   @Benchmark
+   public void streamTopFlightsByOrigin() {
+      streamImpl.reportTopFlightsByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void batchTopFlightsByOrigin() {
+      batchImpl.reportTopFlightsByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void streamMostPopularRoutes() {
+      streamImpl.reportMostPopularRoutes(createReportContext());
+   }
+
+   @Benchmark
+   public void batchMostPopularRoutes() {
+      batchImpl.reportMostPopularRoutes(createReportContext());
+   }
+
+   @Benchmark
+   public void streamWorstAverageDepartureDelayByOrigin() {
+      streamImpl.reportWorstAverageDepartureDelayByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void batchWorstAverageDepartureDelayByOrigin() {
+      batchImpl.reportWorstAverageDepartureDelayByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void streamTotalDailyFlights() {
+      streamImpl.reportTotalDailyFlights(createReportContext());
+   }
+
+   @Benchmark
+   public void batchTotalDailyFlights() {
+      batchImpl.reportTotalDailyFlights(createReportContext());
+   }
+}
\ No newline at end of file
@@ -49,6 +49,22 @@ public class CarrierReportsBenchmark extends AbstractReportsBenchmark {
       streamImpl.reportCarriersWithHighestCancellationRate(context);
    }
 
+   @Benchmark
+   public void iteratorApproximateCarriersWithHighestCancellationRate() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      iteratorImpl.reportCarriersWithHighestCancellationRate(context);
+   }
+
+   @Benchmark
+   public void streamApproximateCarriersWithHighestCancellationRate() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      streamImpl.reportCarriersWithHighestCancellationRate(context);
+   }
+
    @Benchmark
    public void iteratorMostCancelledFlightsByCarrier() {
       ReportContext context = createReportContext().setYear(2008)
@@ -0,0 +1,111 @@
+package airtraffic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.beryx.textio.mock.MockTextTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.CarrierReports;
+import airtraffic.FlightReports;
+import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.cube.CubeCarrierReports;
+import airtraffic.cube.CubeFlightReports;
+import airtraffic.exec.BatchFlightReports;
+import airtraffic.stream.StreamCarrierReports;
+import airtraffic.stream.StreamFlightReports;
+
+/**
+ * Compares answering reports from the year's cube with the stream and
+ * batch forms, which scan the in-memory table each time. The cube is
+ * built once, in setup, as it would be by the first report of a session.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class CubeReportsBenchmark {
+   private final Repository repository = new Repository();
+   private final FlightReports streamImpl = new StreamFlightReports();
+   private final FlightReports batchImpl = new BatchFlightReports();
+   private final FlightReports cubeImpl = new CubeFlightReports();
+   private final CarrierReports streamCarrierImpl = new StreamCarrierReports();
+   private final CarrierReports cubeCarrierImpl = new CubeCarrierReports();
+
+   @Setup
+   public void buildCube() {
+      repository.setResident(true);
+      repository.getFlightCube(2008);
+   }
+
+   private ReportContext createReportContext() {
+      return new ReportContext().setRepository(repository)
+                                .setTerminal(new MockTextTerminal())
+                                .setYear(2008)
+                                .setLimit(10);
+   }
+
+   @Benchmark
+   public void streamTopFlightsByOrigin() {
+      streamImpl.reportTopFlightsByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void batchTopFlightsByOrigin() {
+      batchImpl.reportTopFlightsByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void cubeTopFlightsByOrigin() {
+      cubeImpl.reportTopFlightsByOrigin(createReportContext());
+   }
+
+   @Benchmark
+   public void streamTotalFlightsByOriginState() {
+      streamImpl.reportTotalFlightsByOriginState(createReportContext());
+   }
+
+   @Benchmark
+   public void cubeTotalFlightsByOriginState() {
+      cubeImpl.reportTotalFlightsByOriginState(createReportContext());
+   }
+
+   @Benchmark
+   public void streamTotalFlightsByDestinationState() {
+      streamImpl.reportTotalFlightsByDestinationState(createReportContext());
+   }
+
+   @Benchmark
+   public void cubeTotalFlightsByDestinationState() {
+      cubeImpl.reportTotalFlightsByDestinationState(createReportContext());
+   }
+
+   @Benchmark
+   public void streamTotalMonthlyFlights() {
+      streamImpl.reportTotalMonthlyFlights(createReportContext());
+   }
+
+   @Benchmark
+   public void cubeTotalMonthlyFlights() {
+      cubeImpl.reportTotalMonthlyFlights(createReportContext());
+   }
+
+   @Benchmark
+   public void streamCarriersWithHighestCancellationRate() {
+      streamCarrierImpl.reportCarriersWithHighestCancellationRate(createReportContext());
+   }
+
+   @Benchmark
+   public void cubeCarriersWithHighestCancellationRate() {
+      cubeCarrierImpl.reportCarriersWithHighestCancellationRate(createReportContext());
+   }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package airtraffic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.DelayReports;
+import airtraffic.ReportContext;
+import airtraffic.exec.BatchDelayReports;
+import airtraffic.iterator.IteratorDelayReports;
+import airtraffic.stream.StreamDelayReports;
+
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 1, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, timeUnit = TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DelayReportsBenchmark extends AbstractReportsBenchmark {
+   private final DelayReports iteratorImpl = new IteratorDelayReports();
+   private final DelayReports streamImpl = new StreamDelayReports();
+   private final DelayReports batchImpl = new BatchDelayReports();
+
+   @Benchmark
+   public void iteratorDelayCausesByAirport() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportDelayCausesByAirport(context);
+   }
+
+   @Benchmark
+   public void streamDelayCausesByAirport() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportDelayCausesByAirport(context);
+   }
+
+   @Benchmark
+   public void batchDelayCausesByAirport() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      batchImpl.reportDelayCausesByAirport(context);
+   }
+
+   @Benchmark
+   public void iteratorDelayCausesByCarrier() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportDelayCausesByCarrier(context);
+   }
+
+   @Benchmark
+   public void streamDelayCausesByCarrier() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportDelayCausesByCarrier(context);
+   }
+
+   @Benchmark
+   public void batchDelayCausesByCarrier() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      batchImpl.reportDelayCausesByCarrier(context);
+   }
+
+   @Benchmark
+   public void iteratorDelayCausesByMonth() {
+      ReportContext context = createReportContext().setYear(2008);
+      iteratorImpl.reportDelayCausesByMonth(context);
+   }
+
+   @Benchmark
+   public void streamDelayCausesByMonth() {
+      ReportContext context = createReportContext().setYear(2008);
+      streamImpl.reportDelayCausesByMonth(context);
+   }
+
+   @Benchmark
+   public void batchDelayCausesByMonth() {
+      ReportContext context = createReportContext().setYear(2008);
+      batchImpl.reportDelayCausesByMonth(context);
+   }
+
+   @Benchmark
+   public void iteratorDelayCausesByRoute() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportDelayCausesByRoute(context);
+   }
+
+   @Benchmark
+   public void streamDelayCausesByRoute() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportDelayCausesByRoute(context);
+   }
+
+   @Benchmark
+   public void batchDelayCausesByRoute() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      batchImpl.reportDelayCausesByRoute(context);
+   }
+}
\ No newline at end of file
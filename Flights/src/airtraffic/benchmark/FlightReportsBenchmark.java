@@ -139,6 +139,62 @@ public class FlightReportsBenchmark extends AbstractReportsBenchmark {
       streamImpl.reportWorstAverageArrivalDelayByDestination(context);
    }
 
+   @Benchmark
+   public void iteratorDepartureDelayPercentilesByOrigin() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportDepartureDelayPercentilesByOrigin(context);
+   }
+
+   @Benchmark
+   public void streamDepartureDelayPercentilesByOrigin() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportDepartureDelayPercentilesByOrigin(context);
+   }
+
+   @Benchmark
+   public void iteratorArrivalDelayPercentilesByCarrier() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportArrivalDelayPercentilesByCarrier(context);
+   }
+
+   @Benchmark
+   public void streamArrivalDelayPercentilesByCarrier() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportArrivalDelayPercentilesByCarrier(context);
+   }
+
+   @Benchmark
+   public void iteratorArrivalDelayPercentilesByRoute() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportArrivalDelayPercentilesByRoute(context);
+   }
+
+   @Benchmark
+   public void streamArrivalDelayPercentilesByRoute() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportArrivalDelayPercentilesByRoute(context);
+   }
+
+   @Benchmark
+   public void iteratorTaxiOutPercentilesByOrigin() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      iteratorImpl.reportTaxiOutPercentilesByOrigin(context);
+   }
+
+   @Benchmark
+   public void streamTaxiOutPercentilesByOrigin() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10);
+      streamImpl.reportTaxiOutPercentilesByOrigin(context);
+   }
+
    @Benchmark
    public void iteratorMostCancelledFlightsByOrigin() {
       ReportContext context = createReportContext().setYear(2008)
@@ -167,6 +223,22 @@ public class FlightReportsBenchmark extends AbstractReportsBenchmark {
       streamImpl.reportTotalFlightsByOriginState(context);
    }
 
+   @Benchmark
+   public void iteratorApproximateTotalFlightsByOriginState() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      iteratorImpl.reportTotalFlightsByOriginState(context);
+   }
+
+   @Benchmark
+   public void streamApproximateTotalFlightsByOriginState() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      streamImpl.reportTotalFlightsByOriginState(context);
+   }
+
    @Benchmark
    public void iteratorTotalFlightsByDestinationState() {
       ReportContext context = createReportContext().setYear(2008)
@@ -221,6 +293,20 @@ public class FlightReportsBenchmark extends AbstractReportsBenchmark {
       streamImpl.reportTotalFlightsByDistanceRange(context);
    }
 
+   @Benchmark
+   public void iteratorApproximateTotalFlightsByDistanceRange() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setApproximate(true);
+      iteratorImpl.reportTotalFlightsByDistanceRange(context);
+   }
+
+   @Benchmark
+   public void streamApproximateTotalFlightsByDistanceRange() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setApproximate(true);
+      streamImpl.reportTotalFlightsByDistanceRange(context);
+   }
+
    @Benchmark
    public void iteratorDaysWithLeastCancellations() {
       ReportContext context = createReportContext().setYear(2008)
@@ -327,6 +413,22 @@ public class FlightReportsBenchmark extends AbstractReportsBenchmark {
       streamImpl.reportMostFlightsByOriginByDay(context);
    }
 
+   @Benchmark
+   public void iteratorApproximateMostFlightsByOriginByDay() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      iteratorImpl.reportMostFlightsByOriginByDay(context);
+   }
+
+   @Benchmark
+   public void streamApproximateMostFlightsByOriginByDay() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(10)
+                                                   .setApproximate(true);
+      streamImpl.reportMostFlightsByOriginByDay(context);
+   }
+
    @Benchmark
    public void iteratorMostFlightsByCarrierByDay() {
       ReportContext context = createReportContext().setYear(2008)
@@ -0,0 +1,67 @@
+package airtraffic.benchmark;
+
+import static airtraffic.FlightField.ARRIVAL_DELAY;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.FlightTable;
+import airtraffic.Repository;
+import airtraffic.exec.IntKernels;
+
+/**
+ * Measures the int kernels over the arrival delays of a year, all of
+ * them and those of the late flights only, as plain loops and with the
+ * fastest kernels available. Build with -Pvector and
+ * run with --add-modules jdk.incubator.vector to compare the Vector API
+ * kernels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class IntKernelsBenchmark {
+   @Param({ "scalar", "best" })
+   private String kernels;
+
+   private IntKernels impl;
+   private int[] delays;
+   private int[] late;
+   private int lateCount;
+
+   @Setup
+   public void loadColumns() {
+      impl = "scalar".equals(kernels) ? IntKernels.getScalar() : IntKernels.getInstance();
+      try(FlightTable table = new Repository().getFlightTable(2008)) {
+         delays = new int[table.size()];
+         table.read(ARRIVAL_DELAY, 0, table.size(), delays);
+      }
+      late = new int[delays.length];
+      for(int i = 0; i < delays.length; i++) {
+         if(delays[i] > 0) {
+            late[lateCount++] = i;
+         }
+      }
+   }
+
+   @Benchmark
+   public long sum() {
+      return impl.sum(delays, 0, delays.length);
+   }
+
+   @Benchmark
+   public long sumSelected() {
+      return impl.sumSelected(delays, late, lateCount);
+   }
+}
\ No newline at end of file
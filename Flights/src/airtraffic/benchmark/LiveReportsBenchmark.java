@@ -50,4 +50,58 @@ public class LiveReportsBenchmark extends AbstractReportsBenchmark {
                                                    .setCarrierByCode("UA");
       streamImpl.reportCarrierMetrics(context);
    }
+
+   @Benchmark
+   public void iteratorAirportConditions() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setAirportByIATA("IAH");
+      iteratorImpl.reportAirportConditions(context);
+   }
+
+   @Benchmark
+   public void streamAirportConditions() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setAirportByIATA("IAH");
+      streamImpl.reportAirportConditions(context);
+   }
+
+   @Benchmark
+   public void iteratorCarrierConditions() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setCarrierByCode("UA");
+      iteratorImpl.reportCarrierConditions(context);
+   }
+
+   @Benchmark
+   public void streamCarrierConditions() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setCarrierByCode("UA");
+      streamImpl.reportCarrierConditions(context);
+   }
+
+   @Benchmark
+   public void iteratorAnomalies() {
+      ReportContext context = createReportContext().setYear(2008);
+      iteratorImpl.reportAnomalies(context);
+   }
+
+   @Benchmark
+   public void streamAnomalies() {
+      ReportContext context = createReportContext().setYear(2008);
+      streamImpl.reportAnomalies(context);
+   }
+
+   @Benchmark
+   public void iteratorAirportDashboard() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(50);
+      iteratorImpl.reportAirportDashboard(context);
+   }
+
+   @Benchmark
+   public void streamAirportDashboard() {
+      ReportContext context = createReportContext().setYear(2008)
+                                                   .setLimit(50);
+      streamImpl.reportAirportDashboard(context);
+   }
 }
\ No newline at end of file
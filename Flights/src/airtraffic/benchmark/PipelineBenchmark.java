@@ -0,0 +1,61 @@
+package airtraffic.benchmark;
+
+import static airtraffic.FlightQuery.selectAll;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.Airport;
+import airtraffic.Flight;
+import airtraffic.Repository;
+
+/**
+ * Measures counting a year of flights by origin on the calling thread, as
+ * a parallel stream and through the staged pipeline with a number of
+ * parser threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+   private final Repository repository = new Repository();
+
+   @Param({ "1", "2", "4" })
+   private int parsers;
+
+   @Benchmark
+   public Map<Airport, Long> sequentialStream() {
+      try(Stream<Flight> flights = repository.getFlightStream(2008)) {
+         return flights.collect(groupingBy(Flight::getOrigin, counting()));
+      }
+   }
+
+   @Benchmark
+   public Map<Airport, Long> parallelStream() {
+      try(Stream<Flight> flights = repository.getFlightStream(2008)) {
+         return flights.parallel().collect(groupingBy(Flight::getOrigin, counting()));
+      }
+   }
+
+   @Benchmark
+   public Map<Airport, Long> pipeline() {
+      return repository.getFlightPipeline(2008, selectAll())
+                       .setParsers(parsers)
+                       .collect(groupingBy(Flight::getOrigin, counting()));
+   }
+}
\ No newline at end of file
@@ -12,6 +12,7 @@ public class ReportsBenchmark {
                                         .include(FlightReportsBenchmark.class.getSimpleName())
                                         .include(LiveReportsBenchmark.class.getSimpleName())
                                         .include(PlaneReportsBenchmark.class.getSimpleName())
+                                        .include(StartupBenchmark.class.getSimpleName())
                                         .forks(1)
                                         .build();
       new Runner(opt).run();
@@ -0,0 +1,55 @@
+package airtraffic.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import airtraffic.registry.AppEntry;
+import airtraffic.registry.ReflectiveReportRegistry;
+import airtraffic.registry.ReportEntry;
+import airtraffic.registry.ReportRegistry;
+
+/**
+ * Measures the cold start cost of discovering the reports applications and
+ * rendering the first menus, using classpath scanning and reflection
+ * versus the registry generated at build time. Each measurement runs once
+ * in a fresh JVM.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+   @Benchmark
+   public String reflectiveTimeToFirstMenu() {
+      return renderMenus(new ReflectiveReportRegistry());
+   }
+
+   @Benchmark
+   public String registryTimeToFirstMenu() {
+      return renderMenus(ReportRegistry.getInstance());
+   }
+
+   private static String renderMenus(ReportRegistry registry) {
+      String format = "%2d  %s\n";
+      StringBuilder menu = new StringBuilder();
+      int n = 0;
+      menu.append(String.format(format, n++, "Exit program"));
+      for(AppEntry app : registry.getApps()) {
+         menu.append(String.format(format, n++, app.getDescription()));
+      }
+      n = 0;
+      menu.append(String.format(format, n++, "Exit program"));
+      for(ReportEntry report : registry.getApps().get(0).getReports()) {
+         menu.append(String.format(format, n++, report.getDescription()));
+      }
+      return menu.toString();
+   }
+}
\ No newline at end of file
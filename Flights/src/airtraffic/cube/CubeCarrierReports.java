@@ -0,0 +1,60 @@
+package airtraffic.cube;
+
+import static airtraffic.cube.FlightCube.Dimension.CARRIER;
+import static airtraffic.cube.FlightCube.Measure.CANCELLED;
+import static airtraffic.cube.FlightCube.Measure.FLIGHTS;
+import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingLong;
+import static org.apache.commons.lang3.StringUtils.left;
+
+import airtraffic.ReportContext;
+import airtraffic.cube.CubeView.Cell;
+import airtraffic.stream.StreamCarrierReports;
+
+/**
+ * Generate carrier statistics from the year's FlightCube. The cancellation
+ * reports are sums over the cube's cells; the carrier metrics, which
+ * count distinct airports and planes, and the approximate forms of the
+ * reports are inherited from the stream implementation.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class CubeCarrierReports extends StreamCarrierReports {
+
+   @Override
+   public void reportMostCancelledFlightsByCarrier(ReportContext context) {
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(CARRIER)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(CANCELLED) > 0)
+          .sorted(comparingLong((Cell cell) -> cell.get(CANCELLED)).reversed())
+          .limit(context.getLimit())
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf("%-24s\t%,8d\n",
+                                                 left(cube.getCarrier(cell.getMember(CARRIER)).getName(), 24),
+                                                 cell.get(CANCELLED)));
+   }
+
+   @Override
+   public void reportCarriersWithHighestCancellationRate(ReportContext context) {
+      if(context.isApproximate()) {
+         super.reportCarriersWithHighestCancellationRate(context);
+         return;
+      }
+
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(CARRIER)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(CANCELLED) > 0)
+          .sorted(comparingDouble((Cell cell) -> cell.getRatio(CANCELLED, FLIGHTS)).reversed())
+          .limit(context.getLimit())
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf("%-30s\t%6.1f\n",
+                                                 cube.getCarrier(cell.getMember(CARRIER)).getName(),
+                                                 cell.getRatio(CANCELLED, FLIGHTS) * 100.0));
+   }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package airtraffic.cube;
+
+import static airtraffic.cube.FlightCube.Dimension.DESTINATION_STATE;
+import static airtraffic.cube.FlightCube.Dimension.MONTH;
+import static airtraffic.cube.FlightCube.Dimension.ORIGIN;
+import static airtraffic.cube.FlightCube.Measure.ARRIVED;
+import static airtraffic.cube.FlightCube.Measure.CANCELLED;
+import static airtraffic.cube.FlightCube.Measure.DEPARTED;
+import static airtraffic.cube.FlightCube.Measure.DEPARTURE_DELAY;
+import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingLong;
+import static java.util.Map.Entry.comparingByValue;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingLong;
+
+import java.time.YearMonth;
+
+import airtraffic.Airport;
+import airtraffic.ReportContext;
+import airtraffic.cube.CubeView.Cell;
+import airtraffic.cube.FlightCube.Measure;
+import airtraffic.stream.StreamFlightReports;
+
+/**
+ * Generate flight statistics from the year's FlightCube. The reports that
+ * count or average flights by origin airport, origin or destination state
+ * or month are sums over the cube's cells, which takes milliseconds once
+ * the cube is built. The others, and the approximate forms of the
+ * reports, are inherited from the stream implementation.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class CubeFlightReports extends StreamFlightReports {
+
+   @Override
+   public void reportTotalFlightsFromOrigin(ReportContext context) {
+      final Airport origin = context.getOrigin();
+
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      int member = cube.getMember(ORIGIN, origin.getIATA());
+      long count = member < 0 ? 0 : cube.view().slice(ORIGIN, member).getTotal(DEPARTED);
+
+      context.getTerminal()
+             .printf("Total flights from %s is %,d\n",
+                     origin.getName().trim(),
+                     count);
+   }
+
+   @Override
+   public void reportTopFlightsByOrigin(ReportContext context) {
+      reportTopOrigins(context, DEPARTED, "%3s\t\t%,10d\n");
+   }
+
+   @Override
+   public void reportWorstAverageDepartureDelayByOrigin(ReportContext context) {
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(ORIGIN)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(DEPARTED) > 0)
+          .sorted(comparingDouble((Cell cell) -> cell.getRatio(DEPARTURE_DELAY, DEPARTED)).reversed())
+          .limit(context.getLimit())
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf("%3s\t\t%.0f\n",
+                                                 cell.getLabel(ORIGIN),
+                                                 cell.getRatio(DEPARTURE_DELAY, DEPARTED)));
+   }
+
+   @Override
+   public void reportMostCancelledFlightsByOrigin(ReportContext context) {
+      reportTopOrigins(context, CANCELLED, "%3s\t\t%,8d\n");
+   }
+
+   @Override
+   public void reportTotalFlightsByOriginState(ReportContext context) {
+      if(context.isApproximate()) {
+         super.reportTotalFlightsByOriginState(context);
+         return;
+      }
+
+      // the cube holds origin airports, which roll up to their states
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(ORIGIN)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(DEPARTED) > 0)
+          .collect(groupingBy(cell -> cube.getAirport(cell.getMember(ORIGIN)).getState(),
+                              summingLong(cell -> cell.get(DEPARTED))))
+          .entrySet()
+          .stream()
+          .sorted(comparingByValue(comparingLong(Long::longValue).reversed()))
+          .limit(context.getLimit())
+          .forEachOrdered(e -> context.getTerminal()
+                                      .printf("%2s\t%,10d\n",
+                                              e.getKey(),
+                                              e.getValue()));
+   }
+
+   @Override
+   public void reportTotalFlightsByDestinationState(ReportContext context) {
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(DESTINATION_STATE)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(ARRIVED) > 0)
+          .sorted(comparingLong((Cell cell) -> cell.get(ARRIVED)).reversed())
+          .limit(context.getLimit())
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf("%2s\t%,10d\n",
+                                                 cell.getLabel(DESTINATION_STATE),
+                                                 cell.get(ARRIVED)));
+   }
+
+   @Override
+   public void reportTotalMonthlyFlights(ReportContext context) {
+      final int year = context.getYear();
+
+      FlightCube cube = context.getRepository().getFlightCube(year);
+      cube.view()
+          .drillDown(MONTH)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(DEPARTED) > 0)
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf("%s\t%,10d\n",
+                                                 YEAR_MONTH_FORMAT.format(YearMonth.of(year, cell.getMember(MONTH))),
+                                                 cell.get(DEPARTED)));
+   }
+
+   /**
+    * Print the origin airports with the largest totals of a measure.
+    */
+   private static void reportTopOrigins(ReportContext context, Measure measure, String format) {
+      FlightCube cube = context.getRepository().getFlightCube(context.getYear());
+      cube.view()
+          .drillDown(ORIGIN)
+          .getCells()
+          .stream()
+          .filter(cell -> cell.get(measure) > 0)
+          .sorted(comparingLong((Cell cell) -> cell.get(measure)).reversed())
+          .limit(context.getLimit())
+          .forEachOrdered(cell -> context.getTerminal()
+                                         .printf(format,
+                                                 cell.getLabel(ORIGIN),
+                                                 cell.get(measure)));
+   }
+}
\ No newline at end of file
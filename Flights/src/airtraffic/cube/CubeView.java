@@ -0,0 +1,251 @@
+package airtraffic.cube;
+
+import static airtraffic.cube.FlightCube.DIMENSIONS;
+import static airtraffic.cube.FlightCube.MEASURES;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import airtraffic.cube.FlightCube.Dimension;
+import airtraffic.cube.FlightCube.Measure;
+
+/**
+ * The cells of a FlightCube restricted to some members of its dimensions
+ * and summed over all but the dimensions drilled down to. A view is
+ * immutable: slicing, dicing, drilling down and rolling up each return a
+ * new view of the same cube, and the cells are only summed when asked
+ * for, in one pass over the cube.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class CubeView {
+   private static final int DENSE_GROUPS = 1 << 16;
+
+   private final FlightCube cube;
+   private final Set<Dimension> dimensions;
+   private final boolean[][] members;
+
+   CubeView(FlightCube cube) {
+      this(cube, EnumSet.noneOf(Dimension.class), new boolean[DIMENSIONS][]);
+   }
+
+   private CubeView(FlightCube cube, Set<Dimension> dimensions, boolean[][] members) {
+      this.cube = cube;
+      this.dimensions = dimensions;
+      this.members = members;
+   }
+
+   public FlightCube getCube() {
+      return cube;
+   }
+
+   /**
+    * Returns the dimensions the cells are broken down by.
+    */
+   public Set<Dimension> getDimensions() {
+      return Collections.unmodifiableSet(dimensions);
+   }
+
+   /**
+    * Break the cells down by more dimensions.
+    */
+   public CubeView drillDown(Dimension... dimensions) {
+      Set<Dimension> result = EnumSet.noneOf(Dimension.class);
+      result.addAll(this.dimensions);
+      result.addAll(Arrays.asList(dimensions));
+      return new CubeView(cube, result, members);
+   }
+
+   /**
+    * Sum the cells over dimensions they were broken down by.
+    */
+   public CubeView rollUp(Dimension... dimensions) {
+      Set<Dimension> result = EnumSet.noneOf(Dimension.class);
+      result.addAll(this.dimensions);
+      result.removeAll(Arrays.asList(dimensions));
+      return new CubeView(cube, result, members);
+   }
+
+   /**
+    * Keep only the given members of a dimension, among those already kept.
+    */
+   public CubeView dice(Dimension dimension, int... members) {
+      boolean[] kept = new boolean[cube.getCardinality(dimension)];
+      boolean[] previous = this.members[dimension.ordinal()];
+      for(int member : members) {
+         if(member >= 0 && member < kept.length) {
+            kept[member] = previous == null || previous[member];
+         }
+      }
+      boolean[][] result = this.members.clone();
+      result[dimension.ordinal()] = kept;
+      return new CubeView(cube, dimensions, result);
+   }
+
+   /**
+    * Keep only one member of a dimension, and roll the dimension up.
+    */
+   public CubeView slice(Dimension dimension, int member) {
+      return dice(dimension, member).rollUp(dimension);
+   }
+
+   /**
+    * Returns the total of a measure over the view.
+    */
+   public long getTotal(Measure measure) {
+      long[] totals = cube.getTotals(measure);
+      boolean[] kept = getKeptCells();
+      long total = 0;
+      for(int cell = 0; cell < kept.length; cell++) {
+         if(kept[cell]) {
+            total += totals[cell];
+         }
+      }
+      return total;
+   }
+
+   /**
+    * Returns the cells of the view, one for each combination of members of
+    * its dimensions that occurs, in order of their members.
+    */
+   public List<Cell> getCells() {
+      Dimension[] grouped = dimensions.toArray(new Dimension[0]);
+      long groups = 1;
+      for(Dimension dimension : grouped) {
+         groups *= cube.getCardinality(dimension);
+      }
+      int[][] cellMembers = new int[grouped.length][];
+      for(int d = 0; d < grouped.length; d++) {
+         cellMembers[d] = cube.getMembers(grouped[d]);
+      }
+      long[][] totals = new long[MEASURES][];
+      for(Measure measure : Measure.values()) {
+         totals[measure.ordinal()] = cube.getTotals(measure);
+      }
+
+      Map<Long, long[]> sums = groups <= DENSE_GROUPS ? null : new HashMap<>();
+      long[][] dense = groups <= DENSE_GROUPS ? new long[(int) groups][] : null;
+      boolean[] kept = getKeptCells();
+      for(int cell = 0; cell < kept.length; cell++) {
+         if(!kept[cell]) {
+            continue;
+         }
+         long group = 0;
+         for(int d = 0; d < grouped.length; d++) {
+            group = group * cube.getCardinality(grouped[d]) + cellMembers[d][cell];
+         }
+         long[] sum;
+         if(dense != null) {
+            sum = dense[(int) group];
+            if(sum == null) {
+               sum = dense[(int) group] = new long[MEASURES];
+            }
+         } else {
+            sum = sums.computeIfAbsent(group, g -> new long[MEASURES]);
+         }
+         for(int m = 0; m < MEASURES; m++) {
+            sum[m] += totals[m][cell];
+         }
+      }
+
+      List<Cell> result = new ArrayList<>();
+      if(dense != null) {
+         for(int group = 0; group < dense.length; group++) {
+            if(dense[group] != null) {
+               result.add(new Cell(group, grouped, dense[group]));
+            }
+         }
+      } else {
+         Long[] keys = sums.keySet().toArray(new Long[0]);
+         Arrays.sort(keys);
+         for(Long group : keys) {
+            result.add(new Cell(group, grouped, sums.get(group)));
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Returns which cells of the cube have only kept members, testing one
+    * dimension at a time.
+    */
+   private boolean[] getKeptCells() {
+      boolean[] kept = new boolean[cube.size()];
+      Arrays.fill(kept, true);
+      for(Dimension dimension : Dimension.values()) {
+         boolean[] allowed = members[dimension.ordinal()];
+         if(allowed != null) {
+            int[] cellMembers = cube.getMembers(dimension);
+            for(int cell = 0; cell < kept.length; cell++) {
+               kept[cell] &= allowed[cellMembers[cell]];
+            }
+         }
+      }
+      return kept;
+   }
+
+   @Override
+   public String toString() {
+      return "CubeView[dimensions=" + dimensions + "]";
+   }
+
+   /**
+    * The totals for one combination of members of a view's dimensions.
+    */
+   public final class Cell {
+      private final int[] coordinates = new int[DIMENSIONS];
+      private final long[] totals;
+
+      private Cell(long group, Dimension[] grouped, long[] totals) {
+         Arrays.fill(coordinates, -1);
+         for(int d = grouped.length - 1; d >= 0; d--) {
+            int cardinality = cube.getCardinality(grouped[d]);
+            coordinates[grouped[d].ordinal()] = (int) (group % cardinality);
+            group /= cardinality;
+         }
+         this.totals = totals;
+      }
+
+      /**
+       * Returns the member of a dimension of the view, or -1 if the view
+       * is not broken down by the dimension.
+       */
+      public int getMember(Dimension dimension) {
+         return coordinates[dimension.ordinal()];
+      }
+
+      public String getLabel(Dimension dimension) {
+         int member = getMember(dimension);
+         return member < 0 ? null : cube.getLabel(dimension, member);
+      }
+
+      public long get(Measure measure) {
+         return totals[measure.ordinal()];
+      }
+
+      /**
+       * Returns one measure divided by another, such as the delay minutes
+       * over the flights they are summed over, or NaN if the divisor is
+       * zero.
+       */
+      public double getRatio(Measure numerator, Measure denominator) {
+         long divisor = get(denominator);
+         return divisor == 0 ? Double.NaN : (double) get(numerator) / divisor;
+      }
+
+      @Override
+      public String toString() {
+         StringBuilder builder = new StringBuilder();
+         for(Dimension dimension : dimensions) {
+            builder.append(getLabel(dimension)).append('\t');
+         }
+         return builder.append(Arrays.toString(totals)).toString();
+      }
+   }
+}
\ No newline at end of file
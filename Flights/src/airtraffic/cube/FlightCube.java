@@ -0,0 +1,353 @@
+package airtraffic.cube;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.Flight.CancellationCode;
+import airtraffic.FlightField;
+import airtraffic.FlightTable;
+import airtraffic.exec.ColumnBatch;
+
+/**
+ * A year of flights summed into cells, one for each combination of
+ * carrier, origin airport, destination state, month, scheduled departure
+ * hour and cancellation code that occurs. Each cell holds additive
+ * measures, such as the number of flights and cancellations and the
+ * minutes of delay, so any report that counts or averages flights by some
+ * of these dimensions is a sum over cells, and once the cube is built is
+ * answered without reading the flights again.
+ *
+ * The cube is built from the year's in-memory table in one parallel pass,
+ * a batch of rows at a time. Only the cells that occur are kept, in order
+ * of their coordinates, as a column of members for each dimension and a
+ * column of totals for each measure. Views of the cube are taken with
+ * view(), then sliced, drilled down and rolled up:
+ *
+ * <pre>
+ * cube.view()
+ *     .slice(CARRIER, cube.getMember(CARRIER, "WN"))
+ *     .drillDown(MONTH, HOUR)
+ *     .getCells();
+ * </pre>
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlightCube {
+   public enum Dimension { CARRIER, ORIGIN, DESTINATION_STATE, MONTH, HOUR, CANCELLATION_CODE }
+
+   /**
+    * The totals kept for each cell. Departure delay is the sum of the
+    * delay minutes of the flights that departed, which are those not
+    * cancelled, and arrival delay that of the flights that arrived, which
+    * are those neither cancelled nor diverted.
+    */
+   public enum Measure { FLIGHTS, CANCELLED, DIVERTED, DEPARTED, DEPARTURE_DELAY, ARRIVED, ARRIVAL_DELAY }
+
+   static final int DIMENSIONS = Dimension.values().length;
+   static final int MEASURES = Measure.values().length;
+
+   private static final int MONTHS = 13;
+   private static final int HOURS = 24;
+   private static final CancellationCode[] CODES = CancellationCode.values();
+   private static final int RANGES_PER_THREAD = 4;
+
+   private final int year;
+   private final Carrier[] carriers;
+   private final Airport[] airports;
+   private final String[] states;
+   private final int[] cardinalities;
+   private final int[][] members = new int[DIMENSIONS][];
+   private final long[][] totals = new long[MEASURES][];
+
+   private FlightCube(int year, Carrier[] carriers, Airport[] airports, String[] states, Cells cells) {
+      this.year = year;
+      this.carriers = carriers;
+      this.airports = airports;
+      this.states = states;
+      this.cardinalities = new int[] { carriers.length, airports.length, states.length,
+                                       MONTHS, HOURS, CODES.length + 1 };
+      long[] keys = cells.getKeys();
+      Arrays.sort(keys);
+      for(int d = 0; d < DIMENSIONS; d++) {
+         members[d] = new int[keys.length];
+      }
+      for(int m = 0; m < MEASURES; m++) {
+         totals[m] = new long[keys.length];
+      }
+      for(int cell = 0; cell < keys.length; cell++) {
+         long key = keys[cell];
+         int base = cells.find(key) * MEASURES;
+         for(int m = 0; m < MEASURES; m++) {
+            totals[m][cell] = cells.values[base + m];
+         }
+         for(int d = DIMENSIONS - 1; d >= 0; d--) {
+            members[d][cell] = (int) (key % cardinalities[d]);
+            key /= cardinalities[d];
+         }
+      }
+   }
+
+   /**
+    * Build the cube for the year of a table.
+    */
+   public static FlightCube build(FlightTable table) {
+      Carrier[] carriers = new Carrier[table.getCarrierCount()];
+      for(int id = 0; id < carriers.length; id++) {
+         carriers[id] = table.getCarrier(id);
+      }
+      Airport[] airports = new Airport[table.getAirportCount()];
+      int[] airportStates = new int[airports.length];
+      List<String> states = new ArrayList<>();
+      Map<String, Integer> stateIds = new HashMap<>();
+      for(int id = 0; id < airports.length; id++) {
+         airports[id] = table.getAirport(id);
+         String state = airports[id] == null ? null : airports[id].getState();
+         Integer stateId = stateIds.get(state);
+         if(stateId == null) {
+            stateId = states.size();
+            stateIds.put(state, stateId);
+            states.add(state);
+         }
+         airportStates[id] = stateId;
+      }
+
+      int batches = (table.size() + ColumnBatch.SIZE - 1) / ColumnBatch.SIZE;
+      int ranges = Math.max(1, Math.min(batches,
+                                        ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD));
+      Cells cells = IntStream.range(0, ranges)
+                             .parallel()
+                             .mapToObj(range -> scan(table, airportStates, states.size(),
+                                                     (int) ((long) batches * range / ranges),
+                                                     (int) ((long) batches * (range + 1) / ranges)))
+                             .reduce(Cells::merge)
+                             .orElseGet(Cells::new);
+      return new FlightCube(table.getYear(), carriers, airports,
+                            states.toArray(new String[0]), cells);
+   }
+
+   private static Cells scan(FlightTable table, int[] airportStates, int stateCount,
+                             int from, int to) {
+      Cells cells = new Cells();
+      ColumnBatch batch = new ColumnBatch(table);
+      long[] row = new long[MEASURES];
+      row[Measure.FLIGHTS.ordinal()] = 1;
+      for(int b = from; b < to; b++) {
+         int size = batch.load(b * ColumnBatch.SIZE);
+         int[] carrier = batch.getColumn(FlightField.CARRIER);
+         int[] origin = batch.getColumn(FlightField.ORIGIN);
+         int[] destination = batch.getColumn(FlightField.DESTINATION);
+         int[] month = batch.getColumn(FlightField.MONTH);
+         int[] departureTime = batch.getColumn(FlightField.CRS_DEPARTURE_TIME);
+         int[] code = batch.getColumn(FlightField.CANCELLATION_CODE);
+         int[] cancelled = batch.getColumn(FlightField.CANCELLED);
+         int[] diverted = batch.getColumn(FlightField.DIVERTED);
+         int[] departureDelay = batch.getColumn(FlightField.DEPARTURE_DELAY);
+         int[] arrivalDelay = batch.getColumn(FlightField.ARRIVAL_DELAY);
+         for(int i = 0; i < size; i++) {
+            long key = carrier[i];
+            key = key * airportStates.length + origin[i];
+            key = key * stateCount + airportStates[destination[i]];
+            key = key * MONTHS + month[i];
+            key = key * HOURS + departureTime[i] / 100 % HOURS;
+            key = key * (CODES.length + 1) + code[i] + 1;
+            int departed = cancelled[i] == 0 ? 1 : 0;
+            int divert = diverted[i] == 0 ? 0 : 1;
+            int arrived = departed & (1 - divert);
+            row[Measure.CANCELLED.ordinal()] = 1 - departed;
+            row[Measure.DIVERTED.ordinal()] = divert;
+            row[Measure.DEPARTED.ordinal()] = departed;
+            row[Measure.DEPARTURE_DELAY.ordinal()] = departed * departureDelay[i];
+            row[Measure.ARRIVED.ordinal()] = arrived;
+            row[Measure.ARRIVAL_DELAY.ordinal()] = arrived * arrivalDelay[i];
+            cells.add(key, row, 0);
+         }
+      }
+      return cells;
+   }
+
+   public int getYear() {
+      return year;
+   }
+
+   /**
+    * Returns the number of cells.
+    */
+   public int size() {
+      return members[0].length;
+   }
+
+   /**
+    * Returns the number of members of a dimension, which are numbered from
+    * zero. Months are numbered from one, so member zero is never used.
+    */
+   public int getCardinality(Dimension dimension) {
+      return cardinalities[dimension.ordinal()];
+   }
+
+   public Carrier getCarrier(int member) {
+      return carriers[member];
+   }
+
+   public Airport getAirport(int member) {
+      return airports[member];
+   }
+
+   public String getState(int member) {
+      return states[member];
+   }
+
+   /**
+    * Returns the cancellation code of a member, or null for the member of
+    * the flights that were not cancelled.
+    */
+   public CancellationCode getCancellationCode(int member) {
+      return member == 0 ? null : CODES[member - 1];
+   }
+
+   /**
+    * Returns the label of a member: the carrier code, airport IATA code,
+    * state, ISO year-month, hour as HH:00 or cancellation code name, with
+    * NONE for flights that were not cancelled.
+    */
+   public String getLabel(Dimension dimension, int member) {
+      switch(dimension) {
+         case CARRIER:
+            return carriers[member] == null ? null : carriers[member].getCode();
+         case ORIGIN:
+            return airports[member] == null ? null : airports[member].getIATA();
+         case DESTINATION_STATE:
+            return states[member];
+         case MONTH:
+            return YearMonth.of(year, member).toString();
+         case HOUR:
+            return String.format("%02d:00", member);
+         default:
+            return member == 0 ? "NONE" : CODES[member - 1].name();
+      }
+   }
+
+   /**
+    * Returns the member with a label, or -1 if there is none.
+    */
+   public int getMember(Dimension dimension, String label) {
+      for(int member = 0; member < getCardinality(dimension); member++) {
+         if(!(dimension == Dimension.MONTH && member == 0) &&
+            label.equals(getLabel(dimension, member))) {
+            return member;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Returns a view of the whole cube rolled up into one cell, to be
+    * sliced and drilled down from.
+    */
+   public CubeView view() {
+      return new CubeView(this);
+   }
+
+   int[] getMembers(Dimension dimension) {
+      return members[dimension.ordinal()];
+   }
+
+   long[] getTotals(Measure measure) {
+      return totals[measure.ordinal()];
+   }
+
+   @Override
+   public String toString() {
+      return "FlightCube[year=" + year + ", cells=" + size() + "]";
+   }
+
+   /**
+    * The totals of the cells seen while building, in an open addressing
+    * table keyed by the cell's coordinates in mixed radix.
+    */
+   private static final class Cells {
+      private static final long EMPTY = -1;
+
+      private long[] keys;
+      private long[] values;
+      private int size;
+
+      Cells() {
+         allocate(1 << 12);
+      }
+
+      private void allocate(int capacity) {
+         keys = new long[capacity];
+         Arrays.fill(keys, EMPTY);
+         values = new long[capacity * MEASURES];
+         size = 0;
+      }
+
+      void add(long key, long[] source, int offset) {
+         int base = insert(key) * MEASURES;
+         for(int m = 0; m < MEASURES; m++) {
+            values[base + m] += source[offset + m];
+         }
+      }
+
+      private int insert(long key) {
+         if(size * 2 >= keys.length) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            allocate(keys.length * 2);
+            for(int slot = 0; slot < oldKeys.length; slot++) {
+               if(oldKeys[slot] != EMPTY) {
+                  add(oldKeys[slot], oldValues, slot * MEASURES);
+               }
+            }
+         }
+         int slot = find(key);
+         if(keys[slot] == EMPTY) {
+            keys[slot] = key;
+            ++size;
+         }
+         return slot;
+      }
+
+      /**
+       * Returns the slot holding a key, or the empty slot it would go in.
+       */
+      int find(long key) {
+         int mask = keys.length - 1;
+         int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+         while(keys[slot] != key && keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+         }
+         return slot;
+      }
+
+      Cells merge(Cells other) {
+         Cells larger = size >= other.size ? this : other;
+         Cells smaller = larger == this ? other : this;
+         for(int slot = 0; slot < smaller.keys.length; slot++) {
+            if(smaller.keys[slot] != EMPTY) {
+               larger.add(smaller.keys[slot], smaller.values, slot * MEASURES);
+            }
+         }
+         return larger;
+      }
+
+      long[] getKeys() {
+         long[] result = new long[size];
+         int i = 0;
+         for(long key : keys) {
+            if(key != EMPTY) {
+               result[i++] = key;
+            }
+         }
+         return result;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+package airtraffic.exec;
+
+import static airtraffic.DelayCauses.highestTotalMinutesComparator;
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightField.DESTINATION;
+import static airtraffic.FlightField.MONTH;
+import static airtraffic.FlightField.ORIGIN;
+import static airtraffic.FlightReports.YEAR_MONTH_FORMAT;
+import static java.util.Map.Entry.comparingByKey;
+import static java.util.Map.Entry.comparingByValue;
+import static org.apache.commons.lang3.StringUtils.left;
+
+import java.time.YearMonth;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Comparator;
+import java.util.Map.Entry;
+import java.util.function.IntFunction;
+
+import airtraffic.Airport;
+import airtraffic.DelayCauses;
+import airtraffic.DelayCauses.Cause;
+import airtraffic.DelayReports;
+import airtraffic.FlightField;
+import airtraffic.FlightTable;
+import airtraffic.ReportContext;
+import airtraffic.Route;
+
+/**
+ * Attribute minutes of delay to their causes with batch queries over the
+ * in-memory flight table. The five cause columns are summed per group in
+ * arrays of longs, and in the same pass over all delayed flights with
+ * the IntKernels.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class BatchDelayReports implements DelayReports {
+   private static final int MONTHS = 13;
+   private static final FlightField[] CAUSE_FIELDS = new FlightField[Cause.values().length];
+   private static final BatchFilter DELAYED;
+
+   static {
+      for(Cause cause : Cause.values()) {
+         CAUSE_FIELDS[cause.ordinal()] = cause.getField();
+      }
+      DELAYED = BatchFilter.sumGreaterThan(0, CAUSE_FIELDS);
+   }
+
+   @Override
+   public void reportDelayCausesByAirport(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         report(context, table, GroupBy.of(ORIGIN, table.getAirportCount()),
+                comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+                group -> {
+                   Airport airport = table.getAirport(group);
+                   return left(airport.getIATA() + "  " + airport.getName(), 30);
+                });
+      }
+   }
+
+   @Override
+   public void reportDelayCausesByCarrier(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         report(context, table, GroupBy.of(CARRIER, table.getCarrierCount()),
+                comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+                group -> left(table.getCarrier(group).getName(), 30));
+      }
+   }
+
+   @Override
+   public void reportDelayCausesByMonth(ReportContext context) {
+      final int year = context.getYear();
+
+      try(FlightTable table = context.getRepository().getFlightTable(year)) {
+         report(context, table, GroupBy.of(MONTH, MONTHS),
+                comparingByKey(), Integer.MAX_VALUE,
+                month -> YEAR_MONTH_FORMAT.format(YearMonth.of(year, month)));
+      }
+   }
+
+   @Override
+   public void reportDelayCausesByRoute(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         GroupBy routes = GroupBy.unordered(ORIGIN, DESTINATION, table.getAirportCount());
+         report(context, table, routes,
+                comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+                group -> new Route(table.getAirport(routes.getFirst(group)).getIATA(),
+                                   table.getAirport(routes.getSecond(group)).getIATA()).toString());
+      }
+   }
+
+   /**
+    * Print the totals for all delayed flights and then for the first limit
+    * groups in the comparator's order.
+    */
+   private static void report(ReportContext context, FlightTable table, GroupBy groupBy,
+      Comparator<Entry<Integer, DelayCauses>> comparator, int limit, IntFunction<String> label) {
+      Totals totals = execute(table, groupBy);
+      print(context, "All delayed flights", toTotalDelayCauses(totals));
+      totals.groups()
+            .mapToObj(group -> new SimpleImmutableEntry<>(group, toDelayCauses(totals, group)))
+            .sorted(comparator)
+            .limit(limit)
+            .forEachOrdered(e -> print(context, label.apply(e.getKey()), e.getValue()));
+   }
+
+   /**
+    * Returns the number of delayed flights and the sum of each cause of
+    * delay, in the order of the causes, for each group.
+    */
+   private static Totals execute(FlightTable table, GroupBy groupBy) {
+      BatchQuery query = BatchQuery.from(table)
+                                   .where(DELAYED)
+                                   .groupBy(groupBy);
+      for(FlightField field : CAUSE_FIELDS) {
+         query.sum(field);
+      }
+      return query.execute();
+   }
+
+   private static DelayCauses toDelayCauses(Totals totals, int group) {
+      long[] minutes = new long[CAUSE_FIELDS.length];
+      for(int cause = 0; cause < minutes.length; cause++) {
+         minutes[cause] = totals.getSum(cause, group);
+      }
+      return new DelayCauses().add(totals.getCount(group), minutes);
+   }
+
+   private static DelayCauses toTotalDelayCauses(Totals totals) {
+      long[] minutes = new long[CAUSE_FIELDS.length];
+      for(int cause = 0; cause < minutes.length; cause++) {
+         minutes[cause] = totals.getTotalSum(cause);
+      }
+      return new DelayCauses().add(totals.getTotalCount(), minutes);
+   }
+
+   private static void print(ReportContext context, String label, DelayCauses causes) {
+      context.getTerminal()
+             .printf(DELAY_CAUSES_FORMAT,
+                     label,
+                     causes.getDelayedFlights(),
+                     causes.getTotalMinutes(),
+                     causes.getShare(Cause.CARRIER) * 100.0,
+                     causes.getShare(Cause.WEATHER) * 100.0,
+                     causes.getShare(Cause.NAS) * 100.0,
+                     causes.getShare(Cause.SECURITY) * 100.0,
+                     causes.getShare(Cause.LATE_AIRCRAFT) * 100.0);
+   }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package airtraffic.exec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import airtraffic.FlightField;
+import airtraffic.FlightQuery;
+import airtraffic.FlightQuery.FieldPredicate;
+import airtraffic.FlightTable;
+
+/**
+ * Narrows the selection of a batch to the rows that satisfy a condition
+ * on the stored values of their fields. The filters made here compact the
+ * selection in place without a branch per row, so the cost of a filter
+ * does not depend on how many rows it keeps.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+@FunctionalInterface
+public interface BatchFilter {
+   void apply(ColumnBatch batch);
+
+   /**
+    * Keep the rows whose stored value of the field is the given value.
+    */
+   static BatchFilter equalTo(FlightField field, int value) {
+      return batch -> {
+         int[] values = batch.getColumn(field);
+         int[] selection = batch.getSelection();
+         int count = batch.getSelected();
+         int selected = 0;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            selection[selected] = row;
+            selected += values[row] == value ? 1 : 0;
+         }
+         batch.setSelected(selected);
+      };
+   }
+
+   /**
+    * Keep the rows whose stored value of the field is not the given value.
+    */
+   static BatchFilter notEqualTo(FlightField field, int value) {
+      return batch -> {
+         int[] values = batch.getColumn(field);
+         int[] selection = batch.getSelection();
+         int count = batch.getSelected();
+         int selected = 0;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            selection[selected] = row;
+            selected += values[row] != value ? 1 : 0;
+         }
+         batch.setSelected(selected);
+      };
+   }
+
+   /**
+    * Keep the rows whose stored value of the field is between min and
+    * max, inclusive.
+    */
+   static BatchFilter between(FlightField field, int min, int max) {
+      return batch -> {
+         int[] values = batch.getColumn(field);
+         int[] selection = batch.getSelection();
+         int count = batch.getSelected();
+         int selected = 0;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            int value = values[row];
+            selection[selected] = row;
+            selected += value >= min && value <= max ? 1 : 0;
+         }
+         batch.setSelected(selected);
+      };
+   }
+
+   /**
+    * Keep the rows whose stored values of the fields add up to more than
+    * the given value.
+    */
+   static BatchFilter sumGreaterThan(int value, FlightField... fields) {
+      return batch -> {
+         int[][] columns = new int[fields.length][];
+         for(int f = 0; f < fields.length; f++) {
+            columns[f] = batch.getColumn(fields[f]);
+         }
+         int[] selection = batch.getSelection();
+         int count = batch.getSelected();
+         int selected = 0;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            int sum = 0;
+            for(int[] column : columns) {
+               sum += column[row];
+            }
+            selection[selected] = row;
+            selected += sum > value ? 1 : 0;
+         }
+         batch.setSelected(selected);
+      };
+   }
+
+   /**
+    * Translate the predicates of a query into filters over the stored
+    * values of a table, applied in the order of the query.
+    */
+   static BatchFilter of(FlightQuery query, FlightTable table) {
+      List<BatchFilter> filters = new ArrayList<>();
+      for(FieldPredicate predicate : query.getPredicates()) {
+         FlightField field = predicate.getField();
+         int value = table.getStoredValue(field, predicate.getText());
+         filters.add(predicate.isNegated() ? notEqualTo(field, value) : equalTo(field, value));
+      }
+      return batch -> {
+         for(BatchFilter filter : filters) {
+            if(batch.getSelected() == 0) {
+               return;
+            }
+            filter.apply(batch);
+         }
+      };
+   }
+}
\ No newline at end of file
@@ -0,0 +1,320 @@
+package airtraffic.exec;
+
+import static airtraffic.FlightField.ARRIVAL_DELAY;
+import static airtraffic.FlightField.CANCELLED;
+import static airtraffic.FlightField.DAY_OF_MONTH;
+import static airtraffic.FlightField.DEPARTURE_DELAY;
+import static airtraffic.FlightField.DESTINATION;
+import static airtraffic.FlightField.DIVERTED;
+import static airtraffic.FlightField.MONTH;
+import static airtraffic.FlightField.ORIGIN;
+import static airtraffic.FlightQuery.select;
+import static airtraffic.exec.BatchFilter.equalTo;
+import static java.util.Comparator.comparingDouble;
+import static java.util.Comparator.comparingLong;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+import airtraffic.Airport;
+import airtraffic.FlightTable;
+import airtraffic.ReportContext;
+import airtraffic.Route;
+import airtraffic.stream.StreamFlightReports;
+
+/**
+ * Generate flight statistics with batch queries over the in-memory flight
+ * table. The reports that count or average flights by airport, route or
+ * date are a filter, a group and an aggregate over int columns, and run
+ * here as BatchQuery instances, a batch of rows per step. The others, such
+ * as the percentile reports, and the approximate forms of the reports,
+ * are inherited from the stream implementation.
+ *
+ * The table for the year is loaded, and kept in the repository's table
+ * cache, on first use even when the repository is not resident.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class BatchFlightReports extends StreamFlightReports {
+   private static final int MONTHS = 13;
+   private static final int DAYS = 32;
+
+   @Override
+   public void reportTotalFlightsFromOrigin(ReportContext context) {
+      final Airport origin = context.getOrigin();
+
+      long count;
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         count = BatchQuery.from(table)
+                           .where(select().whereEquals(ORIGIN, origin.getIATA())
+                                          .where(CANCELLED, false))
+                           .count();
+      }
+
+      context.getTerminal()
+             .printf("Total flights from %s is %,d\n",
+                     origin.getName().trim(),
+                     count);
+   }
+
+   @Override
+   public void reportTotalFlightsToDestination(ReportContext context) {
+      final Airport destination = context.getDestination();
+
+      long count;
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         count = BatchQuery.from(table)
+                           .where(select().whereEquals(DESTINATION, destination.getIATA())
+                                          .where(CANCELLED, false)
+                                          .where(DIVERTED, false))
+                           .count();
+      }
+
+      context.getTerminal()
+             .printf("Total flights to %s is %,d\n",
+                     destination.getName().trim(),
+                     count);
+   }
+
+   @Override
+   public void reportTotalFlightsFromOriginToDestination(ReportContext context) {
+      final Airport origin = context.getOrigin();
+      final Airport destination = context.getDestination();
+
+      long count;
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         count = BatchQuery.from(table)
+                           .where(select().whereEquals(ORIGIN, origin.getIATA())
+                                          .whereEquals(DESTINATION, destination.getIATA())
+                                          .where(CANCELLED, false)
+                                          .where(DIVERTED, false))
+                           .count();
+      }
+
+      context.getTerminal()
+             .printf("Total of %,d flights from %s (%s)\nto %s (%s)\n",
+                     count,
+                     origin.getName().trim(),
+                     origin.getIATA(),
+                     destination.getName().trim(),
+                     destination.getIATA());
+   }
+
+   @Override
+   public void reportTopFlightsByOrigin(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         Totals totals = BatchQuery.from(table)
+                                   .where(equalTo(CANCELLED, 0))
+                                   .groupBy(GroupBy.of(ORIGIN, table.getAirportCount()))
+                                   .execute();
+         forEachLargest(totals, context.getLimit(),
+                        group -> context.getTerminal()
+                                        .printf("%3s\t\t%,10d\n",
+                                                table.getAirport(group).getIATA(),
+                                                totals.getCount(group)));
+      }
+   }
+
+   @Override
+   public void reportTopDestinationsFromOrigin(ReportContext context) {
+      final Airport origin = context.getOrigin();
+
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         Totals totals = BatchQuery.from(table)
+                                   .where(select().whereEquals(ORIGIN, origin.getIATA())
+                                                  .where(CANCELLED, false))
+                                   .groupBy(GroupBy.of(DESTINATION, table.getAirportCount()))
+                                   .execute();
+         forEachLargest(totals, context.getLimit(),
+                        group -> context.getTerminal()
+                                        .printf("%3s\t\t%,10d\n",
+                                                table.getAirport(group).getIATA(),
+                                                totals.getCount(group)));
+      }
+   }
+
+   @Override
+   public void reportMostPopularRoutes(ReportContext context) {
+      if(context.isApproximate()) {
+         super.reportMostPopularRoutes(context);
+         return;
+      }
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         GroupBy routes = GroupBy.unordered(ORIGIN, DESTINATION, table.getAirportCount());
+         Totals totals = BatchQuery.from(table)
+                                   .groupBy(routes)
+                                   .execute();
+         forEachLargest(totals, context.getLimit(), group -> {
+            Route route = new Route(table.getAirport(routes.getFirst(group)).getIATA(),
+                                    table.getAirport(routes.getSecond(group)).getIATA());
+            context.getTerminal()
+                   .printf("%s\t%,10d\n",
+                           route,
+                           totals.getCount(group));
+         });
+      }
+   }
+
+   @Override
+   public void reportWorstAverageDepartureDelayByOrigin(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         Totals totals = BatchQuery.from(table)
+                                   .where(equalTo(CANCELLED, 0))
+                                   .groupBy(GroupBy.of(ORIGIN, table.getAirportCount()))
+                                   .sum(DEPARTURE_DELAY)
+                                   .execute();
+         totals.groups()
+               .boxed()
+               .sorted(byAverage(totals, 0).reversed())
+               .limit(context.getLimit())
+               .forEachOrdered(group -> context.getTerminal()
+                                               .printf("%3s\t\t%.0f\n",
+                                                       table.getAirport(group).getIATA(),
+                                                       totals.getAverage(0, group)));
+      }
+   }
+
+   @Override
+   public void reportWorstAverageArrivalDelayByDestination(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         Totals totals = BatchQuery.from(table)
+                                   .where(equalTo(CANCELLED, 0))
+                                   .where(equalTo(DIVERTED, 0))
+                                   .groupBy(GroupBy.of(DESTINATION, table.getAirportCount()))
+                                   .sum(ARRIVAL_DELAY)
+                                   .execute();
+         totals.groups()
+               .boxed()
+               .sorted(byAverage(totals, 0).reversed())
+               .limit(context.getLimit())
+               .forEachOrdered(group -> context.getTerminal()
+                                               .printf("%3s\t\t\t%.0f\n",
+                                                       table.getAirport(group).getIATA(),
+                                                       totals.getAverage(0, group)));
+      }
+   }
+
+   @Override
+   public void reportMostCancelledFlightsByOrigin(ReportContext context) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         Totals totals = BatchQuery.from(table)
+                                   .where(equalTo(CANCELLED, 1))
+                                   .groupBy(GroupBy.of(ORIGIN, table.getAirportCount()))
+                                   .execute();
+         forEachLargest(totals, context.getLimit(),
+                        group -> context.getTerminal()
+                                        .printf("%3s\t\t%,8d\n",
+                                                table.getAirport(group).getIATA(),
+                                                totals.getCount(group)));
+      }
+   }
+
+   @Override
+   public void reportTotalMonthlyFlights(ReportContext context) {
+      final int year = context.getYear();
+
+      Totals totals = countNotCancelled(context, GroupBy.of(MONTH, MONTHS));
+      totals.groups()
+            .forEach(month -> context.getTerminal()
+                                     .printf("%s\t%,10d\n",
+                                             YEAR_MONTH_FORMAT.format(YearMonth.of(year, month)),
+                                             totals.getCount(month)));
+   }
+
+   @Override
+   public void reportTotalDailyFlights(ReportContext context) {
+      final int year = context.getYear();
+
+      GroupBy days = GroupBy.of(MONTH, MONTHS, DAY_OF_MONTH, DAYS);
+      Totals totals = countNotCancelled(context, days);
+      totals.groups()
+            .forEach(day -> context.getTerminal()
+                                   .printf("%s\t%,10d\n",
+                                           LocalDate.of(year, days.getFirst(day), days.getSecond(day)),
+                                           totals.getCount(day)));
+   }
+
+   @Override
+   public void reportTotalFlightsByDayOfWeek(ReportContext context) {
+      final int year = context.getYear();
+
+      // the day of the week follows from the date rather than being read,
+      // as in the stream reports, so the totals by date are rolled up
+      GroupBy days = GroupBy.of(MONTH, MONTHS, DAY_OF_MONTH, DAYS);
+      Totals totals = countNotCancelled(context, days);
+      long[] counts = new long[DayOfWeek.values().length];
+      totals.groups()
+            .forEach(day -> counts[LocalDate.of(year, days.getFirst(day), days.getSecond(day))
+                                            .getDayOfWeek()
+                                            .ordinal()] += totals.getCount(day));
+      for(DayOfWeek day : DayOfWeek.values()) {
+         if(counts[day.ordinal()] > 0) {
+            context.getTerminal()
+                   .printf("%10s\t%,10d\n",
+                           day,
+                           counts[day.ordinal()]);
+         }
+      }
+   }
+
+   @Override
+   public void reportMostFlightsByDay(ReportContext context) {
+      byDay(context, true);
+   }
+
+   @Override
+   public void reportLeastFlightsByDay(ReportContext context) {
+      byDay(context, false);
+   }
+
+   private void byDay(ReportContext context, boolean most) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      GroupBy days = GroupBy.of(MONTH, MONTHS, DAY_OF_MONTH, DAYS);
+      Totals totals = countNotCancelled(context, days);
+      Comparator<Integer> order = byCount(totals);
+      totals.groups()
+            .boxed()
+            .sorted(most ? order.reversed() : order)
+            .limit(limit)
+            .forEach(day -> context.getTerminal()
+                                   .printf("%s\t%,10d\n",
+                                           LocalDate.of(year, days.getFirst(day), days.getSecond(day)),
+                                           totals.getCount(day)));
+   }
+
+   /**
+    * Returns the number of flights that were not cancelled in each group.
+    */
+   private static Totals countNotCancelled(ReportContext context, GroupBy groupBy) {
+      try(FlightTable table = context.getRepository().getFlightTable(context.getYear())) {
+         return BatchQuery.from(table)
+                          .where(equalTo(CANCELLED, 0))
+                          .groupBy(groupBy)
+                          .execute();
+      }
+   }
+
+   /**
+    * Visit the limit groups with the most rows, largest first.
+    */
+   private static void forEachLargest(Totals totals, int limit, IntConsumer action) {
+      totals.groups()
+            .boxed()
+            .sorted(byCount(totals).reversed())
+            .limit(limit)
+            .forEachOrdered(action::accept);
+   }
+
+   private static Comparator<Integer> byCount(Totals totals) {
+      return comparingLong(totals::getCount);
+   }
+
+   private static Comparator<Integer> byAverage(Totals totals, int measure) {
+      return comparingDouble(group -> totals.getAverage(measure, group));
+   }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package airtraffic.exec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import airtraffic.FlightField;
+import airtraffic.FlightQuery;
+import airtraffic.FlightTable;
+
+/**
+ * A filter, group and aggregate query over a FlightTable, run a batch of
+ * rows at a time. The table is split into a few ranges of batches per
+ * thread of the common fork-join pool; each range is read into its own
+ * ColumnBatch, passed through the filters and added to its own Totals,
+ * and the totals of the ranges are then merged.
+ *
+ * <pre>
+ * Totals totals = BatchQuery.from(table)
+ *                           .where(BatchFilter.equalTo(CANCELLED, 0))
+ *                           .groupBy(GroupBy.of(ORIGIN, table.getAirportCount()))
+ *                           .sum(DEPARTURE_DELAY)
+ *                           .execute();
+ * </pre>
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class BatchQuery {
+   private static final int RANGES_PER_THREAD = 4;
+
+   private final FlightTable table;
+   private final List<BatchFilter> filters = new ArrayList<>();
+   private final List<FlightField> sums = new ArrayList<>();
+   private GroupBy groupBy = GroupBy.all();
+
+   private BatchQuery(FlightTable table) {
+      this.table = table;
+   }
+
+   public static BatchQuery from(FlightTable table) {
+      return new BatchQuery(table);
+   }
+
+   /**
+    * Add a filter, applied after those already added.
+    */
+   public BatchQuery where(BatchFilter filter) {
+      filters.add(filter);
+      return this;
+   }
+
+   /**
+    * Add filters for the predicates of a query. Its projection is not
+    * needed, as only the fields the query reads are copied into batches.
+    */
+   public BatchQuery where(FlightQuery query) {
+      return where(BatchFilter.of(query, table));
+   }
+
+   public BatchQuery groupBy(GroupBy groupBy) {
+      this.groupBy = groupBy;
+      return this;
+   }
+
+   /**
+    * Add the sum of a field's stored values to the totals of each group.
+    * Sums are numbered in the order they are added.
+    */
+   public BatchQuery sum(FlightField field) {
+      sums.add(field);
+      return this;
+   }
+
+   /**
+    * Returns the number of rows that pass the filters.
+    */
+   public long count() {
+      return execute().getTotalCount();
+   }
+
+   public Totals execute() {
+      FlightField[] fields = sums.toArray(new FlightField[0]);
+      int batches = (table.size() + ColumnBatch.SIZE - 1) / ColumnBatch.SIZE;
+      int ranges = Math.max(1, Math.min(batches,
+                                        ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD));
+      return IntStream.range(0, ranges)
+                      .parallel()
+                      .mapToObj(range -> execute((int) ((long) batches * range / ranges),
+                                                 (int) ((long) batches * (range + 1) / ranges),
+                                                 fields))
+                      .reduce(Totals::merge)
+                      .orElseGet(() -> new Totals(groupBy, fields.length));
+   }
+
+   private Totals execute(int from, int to, FlightField[] fields) {
+      Totals totals = new Totals(groupBy, fields.length);
+      ColumnBatch batch = new ColumnBatch(table);
+      int[] groups = new int[ColumnBatch.SIZE];
+      for(int i = from; i < to; i++) {
+         batch.load(i * ColumnBatch.SIZE);
+         for(BatchFilter filter : filters) {
+            if(batch.getSelected() == 0) {
+               break;
+            }
+            filter.apply(batch);
+         }
+         if(batch.getSelected() > 0) {
+            groupBy.apply(batch, groups);
+            totals.add(batch, groups, fields);
+         }
+      }
+      return totals;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package airtraffic.exec;
+
+import java.util.Arrays;
+
+import airtraffic.FlightField;
+import airtraffic.FlightTable;
+
+/**
+ * Up to SIZE consecutive rows of a FlightTable, held as one int array per
+ * field plus a selection vector listing the positions of the rows still
+ * in play. Operators work on a whole batch at a time: a filter narrows
+ * the selection and an aggregate folds the selected rows into its
+ * totals, each in a loop over plain arrays that the JIT can unroll,
+ * rather than with a call through a lambda for every row.
+ *
+ * A field is copied out of its column the first time it is asked for in
+ * each batch, so a query only pays for the fields it reads. A batch is
+ * reused for each run of rows and belongs to one thread.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ColumnBatch {
+   public static final int SIZE = 1024;
+
+   private final FlightTable table;
+   private final int[][] columns = new int[FlightField.COUNT][];
+   private final boolean[] loaded = new boolean[FlightField.COUNT];
+   private final int[] selection = new int[SIZE];
+   private int start;
+   private int size;
+   private int selected;
+
+   public ColumnBatch(FlightTable table) {
+      this.table = table;
+   }
+
+   /**
+    * Move the batch to the rows starting at the given row, with every
+    * row selected. Returns the number of rows in the batch.
+    */
+   public int load(int start) {
+      this.start = start;
+      this.size = Math.max(0, Math.min(SIZE, table.size() - start));
+      Arrays.fill(loaded, false);
+      for(int i = 0; i < size; i++) {
+         selection[i] = i;
+      }
+      selected = size;
+      return size;
+   }
+
+   /**
+    * Returns the values of a field for the rows of the batch, indexed by
+    * position within the batch.
+    */
+   public int[] getColumn(FlightField field) {
+      int index = field.ordinal();
+      if(!loaded[index]) {
+         if(columns[index] == null) {
+            columns[index] = new int[SIZE];
+         }
+         table.read(field, start, size, columns[index]);
+         loaded[index] = true;
+      }
+      return columns[index];
+   }
+
+   /**
+    * Returns the positions of the selected rows, of which the first
+    * getSelected() are valid, in ascending order.
+    */
+   public int[] getSelection() {
+      return selection;
+   }
+
+   public int getSelected() {
+      return selected;
+   }
+
+   /**
+    * Keep only the first count positions of the selection, for filters
+    * that have compacted it in place.
+    */
+   public void setSelected(int count) {
+      this.selected = count;
+   }
+
+   public FlightTable getTable() {
+      return table;
+   }
+
+   /**
+    * Returns the table row of the first row in the batch.
+    */
+   public int getStart() {
+      return start;
+   }
+
+   public int size() {
+      return size;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package airtraffic.exec;
+
+import airtraffic.FlightField;
+
+/**
+ * Maps the selected rows of a batch to group numbers, from 0 up to the
+ * cardinality, computed from the stored values of one or two fields.
+ * Stored values are small non-negative integers, dictionary identifiers
+ * for airports and carriers and plain numbers for months and days, so a
+ * group number indexes the totals of an aggregate directly, with no hash
+ * table in the way. Every stored value must be below the cardinality
+ * given for its field.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class GroupBy {
+   private static final GroupBy ALL = new GroupBy(null, 1, null, 1, false);
+
+   private final FlightField first;
+   private final int firstCardinality;
+   private final FlightField second;
+   private final int secondCardinality;
+   private final boolean unordered;
+
+   private GroupBy(FlightField first, int firstCardinality, FlightField second,
+                   int secondCardinality, boolean unordered) {
+      if(firstCardinality < 1 || secondCardinality < 1 ||
+         (long) firstCardinality * secondCardinality > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("Invalid cardinality " + firstCardinality +
+                                            " x " + secondCardinality);
+      }
+      this.first = first;
+      this.firstCardinality = firstCardinality;
+      this.second = second;
+      this.secondCardinality = secondCardinality;
+      this.unordered = unordered;
+   }
+
+   /**
+    * Put every row in a single group.
+    */
+   public static GroupBy all() {
+      return ALL;
+   }
+
+   /**
+    * Group rows by the stored value of a field.
+    */
+   public static GroupBy of(FlightField field, int cardinality) {
+      return new GroupBy(field, cardinality, null, 1, false);
+   }
+
+   /**
+    * Group rows by the stored values of two fields. The group number is
+    * first * secondCardinality + second.
+    */
+   public static GroupBy of(FlightField first, int firstCardinality,
+                            FlightField second, int secondCardinality) {
+      return new GroupBy(first, firstCardinality, second, secondCardinality, false);
+   }
+
+   /**
+    * Group rows by the unordered pair of the stored values of two fields
+    * with the same cardinality, such as the airports of a route in either
+    * direction. The smaller value is taken as the first.
+    */
+   public static GroupBy unordered(FlightField first, FlightField second, int cardinality) {
+      return new GroupBy(first, cardinality, second, cardinality, true);
+   }
+
+   /**
+    * Returns the number of groups.
+    */
+   public int getCardinality() {
+      return firstCardinality * secondCardinality;
+   }
+
+   /**
+    * Returns the stored value of the first field for a group.
+    */
+   public int getFirst(int group) {
+      return group / secondCardinality;
+   }
+
+   /**
+    * Returns the stored value of the second field for a group.
+    */
+   public int getSecond(int group) {
+      return group % secondCardinality;
+   }
+
+   /**
+    * Write the group number of each selected row of a batch to groups,
+    * in the order of the selection, unless there is only one group.
+    */
+   void apply(ColumnBatch batch, int[] groups) {
+      int[] selection = batch.getSelection();
+      int count = batch.getSelected();
+      if(first == null) {
+         // a single group is totalled without group numbers
+         return;
+      }
+      if(second == null) {
+         int[] a = batch.getColumn(first);
+         for(int i = 0; i < count; i++) {
+            groups[i] = a[selection[i]];
+         }
+      } else if(!unordered) {
+         int[] a = batch.getColumn(first);
+         int[] b = batch.getColumn(second);
+         int n = secondCardinality;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            groups[i] = a[row] * n + b[row];
+         }
+      } else {
+         int[] a = batch.getColumn(first);
+         int[] b = batch.getColumn(second);
+         int n = secondCardinality;
+         for(int i = 0; i < count; i++) {
+            int row = selection[i];
+            int x = a[row];
+            int y = b[row];
+            groups[i] = Math.min(x, y) * n + Math.max(x, y);
+         }
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package airtraffic.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sums over runs of int column values, the inner loops that total the
+ * measures of the batch queries. The kernels returned by
+ * getInstance() use the incubating Vector API when the application was
+ * built with the vector profile and runs with the jdk.incubator.vector
+ * module added:
+ *
+ * <pre>
+ * mvn package -Pvector
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ *
+ * Otherwise they are plain loops, which the JIT unrolls and, for sum,
+ * vectorizes itself. Both give the same results.
+ *
+ * Sums are exact for values of up to 16 bits, which covers every column
+ * of a FlightTable but the tail number.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public abstract class IntKernels {
+   private static final Logger LOGGER = LoggerFactory.getLogger(IntKernels.class);
+   private static final String VECTOR_CLASS_NAME = "airtraffic.exec.VectorIntKernels";
+   private static final IntKernels SCALAR = new Scalar();
+   private static final IntKernels INSTANCE = load();
+
+   IntKernels() {}
+
+   private static IntKernels load() {
+      try {
+         IntKernels kernels = (IntKernels) Class.forName(VECTOR_CLASS_NAME).newInstance();
+         LOGGER.debug("Using {} kernels", kernels.getName());
+         return kernels;
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+         // not built with the vector profile, or the module was not added
+         LOGGER.debug("Vector API unavailable, using scalar kernels");
+         return SCALAR;
+      }
+   }
+
+   /**
+    * Returns the fastest kernels available.
+    */
+   public static IntKernels getInstance() {
+      return INSTANCE;
+   }
+
+   /**
+    * Returns the kernels made of plain loops.
+    */
+   public static IntKernels getScalar() {
+      return SCALAR;
+   }
+
+   public abstract String getName();
+
+   /**
+    * Returns the sum of values[from] to values[to - 1].
+    */
+   public abstract long sum(int[] values, int from, int to);
+
+   /**
+    * Returns the sum of the values at the first count positions of the
+    * selection.
+    */
+   public abstract long sumSelected(int[] values, int[] selection, int count);
+
+   @Override
+   public String toString() {
+      return getName();
+   }
+
+   /**
+    * The kernels as plain loops.
+    */
+   static final class Scalar extends IntKernels {
+      @Override
+      public String getName() {
+         return "scalar";
+      }
+
+      @Override
+      public long sum(int[] values, int from, int to) {
+         long sum = 0;
+         for(int i = from; i < to; i++) {
+            sum += values[i];
+         }
+         return sum;
+      }
+
+      @Override
+      public long sumSelected(int[] values, int[] selection, int count) {
+         long sum = 0;
+         for(int i = 0; i < count; i++) {
+            sum += values[selection[i]];
+         }
+         return sum;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+package airtraffic.exec;
+
+import java.util.stream.IntStream;
+
+import airtraffic.FlightField;
+
+/**
+ * The number of rows and the sums of some fields for each group of a
+ * BatchQuery, held in arrays indexed by group number.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class Totals {
+   private static final IntKernels KERNELS = IntKernels.getInstance();
+
+   private final GroupBy groupBy;
+   private final long[] counts;
+   private final long[][] sums;
+   private final long[] totalSums;
+   private long totalCount;
+
+   Totals(GroupBy groupBy, int measures) {
+      this.groupBy = groupBy;
+      this.counts = new long[groupBy.getCardinality()];
+      this.sums = new long[measures][groupBy.getCardinality()];
+      this.totalSums = new long[measures];
+   }
+
+   /**
+    * Add the selected rows of a batch, whose group numbers have been
+    * written to groups, to the totals. The totals over all groups are
+    * summed with the kernels, and are the only totals when there is a
+    * single group.
+    */
+   void add(ColumnBatch batch, int[] groups, FlightField[] fields) {
+      int[] selection = batch.getSelection();
+      int count = batch.getSelected();
+      totalCount += count;
+      for(int m = 0; m < sums.length; m++) {
+         int[] values = batch.getColumn(fields[m]);
+         // with every row selected, the selection is simply 0 to count - 1
+         totalSums[m] += count == batch.size() ? KERNELS.sum(values, 0, count)
+                                               : KERNELS.sumSelected(values, selection, count);
+      }
+      if(counts.length == 1) {
+         counts[0] = totalCount;
+         for(int m = 0; m < sums.length; m++) {
+            sums[m][0] = totalSums[m];
+         }
+         return;
+      }
+      long[] c = counts;
+      for(int i = 0; i < count; i++) {
+         c[groups[i]]++;
+      }
+      for(int m = 0; m < sums.length; m++) {
+         int[] values = batch.getColumn(fields[m]);
+         long[] s = sums[m];
+         for(int i = 0; i < count; i++) {
+            s[groups[i]] += values[selection[i]];
+         }
+      }
+   }
+
+   Totals merge(Totals other) {
+      totalCount += other.totalCount;
+      for(int m = 0; m < totalSums.length; m++) {
+         totalSums[m] += other.totalSums[m];
+      }
+      for(int i = 0; i < counts.length; i++) {
+         counts[i] += other.counts[i];
+      }
+      for(int m = 0; m < sums.length; m++) {
+         long[] s = sums[m];
+         long[] o = other.sums[m];
+         for(int i = 0; i < s.length; i++) {
+            s[i] += o[i];
+         }
+      }
+      return this;
+   }
+
+   public GroupBy getGroupBy() {
+      return groupBy;
+   }
+
+   /**
+    * Returns the numbers of the groups with at least one row.
+    */
+   public IntStream groups() {
+      return IntStream.range(0, counts.length).filter(group -> counts[group] > 0);
+   }
+
+   public long getCount(int group) {
+      return counts[group];
+   }
+
+   /**
+    * Returns the number of rows in all groups.
+    */
+   public long getTotalCount() {
+      return totalCount;
+   }
+
+   /**
+    * Returns the sum of a field over a group, where the measure is the
+    * position of the field among the sums of the query.
+    */
+   public long getSum(int measure, int group) {
+      return sums[measure][group];
+   }
+
+   /**
+    * Returns the sum of a field over all groups.
+    */
+   public long getTotalSum(int measure) {
+      return totalSums[measure];
+   }
+
+   /**
+    * Returns the mean of a field over a group, or NaN if it has no rows.
+    */
+   public double getAverage(int measure, int group) {
+      return counts[group] == 0 ? Double.NaN : (double) sums[measure][group] / counts[group];
+   }
+}
\ No newline at end of file
@@ -0,0 +1,275 @@
+package airtraffic.ingest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collector.Characteristics.UNORDERED;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.Flight;
+
+/**
+ * Additive totals for a year of flights, kept by day, origin, destination,
+ * carrier and route and persisted alongside the resident cache. The totals
+ * are updated one flight at a time, so when a month of new flights is
+ * appended to a year only that month has to be read, rather than the whole
+ * year being aggregated again.
+ *
+ * Each store records the version of the flight data file it was built
+ * from, and is only reopened while that file is unchanged.
+ *
+ * A store is not thread-safe. It is filled on one thread, or as partial
+ * stores that a collector fills on separate threads and merges, and is not
+ * changed once the repository has handed it out, so reports can read it
+ * without locking.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class AggregateStore {
+   private static final String FILE = "aggregates.tsv";
+   private static final String SOURCE = "source";
+
+   /**
+    * The groupings totals are kept for. Days are keyed by ISO date,
+    * airports by IATA code, carriers by code and routes in either
+    * direction as "AAA <-> BBB".
+    */
+   public enum Dimension { DAY, ORIGIN, DESTINATION, CARRIER, ROUTE }
+
+   /**
+    * The totals kept for each key. Arrival delay is the sum of the delay
+    * minutes of the flights that arrived, which are those neither
+    * cancelled nor diverted.
+    */
+   public enum Measure { FLIGHTS, CANCELLED, DIVERTED, ARRIVAL_DELAY }
+
+   private static final int MEASURES = Measure.values().length;
+
+   private final int year;
+   private final Map<Dimension, Map<String, long[]>> totals = new EnumMap<>(Dimension.class);
+   private String source;
+
+   private AggregateStore(int year) {
+      this.year = year;
+      for(Dimension dimension : Dimension.values()) {
+         totals.put(dimension, new HashMap<>());
+      }
+   }
+
+   /**
+    * Build a store from all of the flights in a year's data file, whose
+    * version is given.
+    */
+   public static AggregateStore build(int year, Iterator<Flight> flights, String source) {
+      AggregateStore store = new AggregateStore(year);
+      while(flights.hasNext()) {
+         store.add(flights.next());
+      }
+      store.source = source;
+      return store;
+   }
+
+   /**
+    * Returns a collector that builds a store from the flights of a year,
+    * whose data file version is given. Partial stores built on separate
+    * threads are merged.
+    */
+   public static Collector<Flight, AggregateStore, AggregateStore> collector(int year, String source) {
+      return Collector.of(() -> new AggregateStore(year),
+                          AggregateStore::add,
+                          AggregateStore::merge,
+                          store -> {
+                             store.source = source;
+                             return store;
+                          },
+                          UNORDERED);
+   }
+
+   /**
+    * Add the totals of another store for the same year to this one.
+    */
+   public AggregateStore merge(AggregateStore other) {
+      for(Entry<Dimension, Map<String, long[]>> e : other.totals.entrySet()) {
+         for(Entry<String, long[]> row : e.getValue().entrySet()) {
+            add(e.getKey(), row.getKey(), row.getValue());
+         }
+      }
+      return this;
+   }
+
+   /**
+    * Open the store previously saved for a year. Returns null if there is
+    * none, or if it was built from a different version of the data file.
+    */
+   public static AggregateStore open(int year, Path cacheDir, String source) throws IOException {
+      Path path = cacheDir.resolve(Integer.toString(year)).resolve(FILE);
+      if(Files.notExists(path)) {
+         return null;
+      }
+      AggregateStore store = new AggregateStore(year);
+      try(BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+         String line = reader.readLine();
+         if(line == null || !line.equals(SOURCE + "\t" + source)) {
+            return null;
+         }
+         store.source = source;
+         while((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t");
+            long[] values = new long[MEASURES];
+            for(int i = 0; i < MEASURES; i++) {
+               values[i] = Long.parseLong(fields[i + 2]);
+            }
+            store.totals.get(Dimension.valueOf(fields[0])).put(fields[1], values);
+         }
+      }
+      return store;
+   }
+
+   /**
+    * Write the store to the cache directory, recording the version of the
+    * data file it now reflects. The file is replaced atomically so that a
+    * failed save leaves the previous store in place.
+    */
+   public void save(Path cacheDir, String source) throws IOException {
+      Path dir = cacheDir.resolve(Integer.toString(year));
+      Files.createDirectories(dir);
+      Path temp = Files.createTempFile(dir, FILE, ".tmp");
+      try(BufferedWriter writer = Files.newBufferedWriter(temp, UTF_8)) {
+         writer.write(SOURCE + "\t" + source);
+         writer.newLine();
+         for(Entry<Dimension, Map<String, long[]>> e : totals.entrySet()) {
+            for(Entry<String, long[]> row : e.getValue().entrySet()) {
+               writer.write(e.getKey() + "\t" + row.getKey());
+               for(long value : row.getValue()) {
+                  writer.write("\t" + value);
+               }
+               writer.newLine();
+            }
+         }
+      }
+      Files.move(temp, dir.resolve(FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+      this.source = source;
+   }
+
+   public int getYear() {
+      return year;
+   }
+
+   /**
+    * Returns the version of the data file the store was last saved for.
+    */
+   public String getSource() {
+      return source;
+   }
+
+   /**
+    * Add a flight to the totals of each of its groupings.
+    */
+   public AggregateStore add(Flight flight) {
+      long[] values = new long[MEASURES];
+      values[Measure.FLIGHTS.ordinal()] = 1;
+      if(flight.cancelled()) {
+         values[Measure.CANCELLED.ordinal()] = 1;
+      } else if(flight.diverted()) {
+         values[Measure.DIVERTED.ordinal()] = 1;
+      } else {
+         values[Measure.ARRIVAL_DELAY.ordinal()] = flight.getArrivalDelay();
+      }
+      add(Dimension.DAY, flight.getDate().toString(), values);
+      Airport origin = flight.getOrigin();
+      Airport destination = flight.getDestination();
+      if(origin != null) {
+         add(Dimension.ORIGIN, origin.getIATA(), values);
+      }
+      if(destination != null) {
+         add(Dimension.DESTINATION, destination.getIATA(), values);
+      }
+      if(origin != null && destination != null) {
+         add(Dimension.ROUTE, flight.getRoute().toString(), values);
+      }
+      Carrier carrier = flight.getCarrier();
+      if(carrier != null) {
+         add(Dimension.CARRIER, carrier.getCode(), values);
+      }
+      return this;
+   }
+
+   private void add(Dimension dimension, String key, long[] values) {
+      long[] total = totals.get(dimension).computeIfAbsent(key, k -> new long[MEASURES]);
+      for(int i = 0; i < MEASURES; i++) {
+         total[i] += values[i];
+      }
+   }
+
+   /**
+    * Returns the total of a measure for a key, or zero if no flights had
+    * that key.
+    */
+   public long get(Dimension dimension, String key, Measure measure) {
+      long[] total = totals.get(dimension).get(key);
+      return total == null ? 0 : total[measure.ordinal()];
+   }
+
+   /**
+    * Returns the totals of a measure for every key of a dimension.
+    */
+   public Map<String, Long> get(Dimension dimension, Measure measure) {
+      Map<String, Long> result = new HashMap<>();
+      for(Entry<String, long[]> e : totals.get(dimension).entrySet()) {
+         result.put(e.getKey(), e.getValue()[measure.ordinal()]);
+      }
+      return Collections.unmodifiableMap(result);
+   }
+
+   /**
+    * Returns the totals of a measure, less those of any others given, for
+    * every key of a dimension rolled up to a coarser key, such as the
+    * state of an airport or the month of a day. Keys whose parent is null
+    * are left out. This answers the coarser groupings from the finer ones
+    * already kept, without reading any flights.
+    */
+   public Map<String, Long> rollUp(Dimension dimension, Function<String, String> parent,
+                                                Measure measure, Measure... less) {
+      Map<String, Long> result = new HashMap<>();
+      for(Entry<String, long[]> e : totals.get(dimension).entrySet()) {
+         String key = parent.apply(e.getKey());
+         if(key != null) {
+            long value = e.getValue()[measure.ordinal()];
+            for(Measure m : less) {
+               value -= e.getValue()[m.ordinal()];
+            }
+            result.merge(key, value, Long::sum);
+         }
+      }
+      return Collections.unmodifiableMap(result);
+   }
+
+   /**
+    * Returns the ISO year and month, such as 2008-01, of a DAY key, for
+    * rolling days up to months.
+    */
+   public static String getMonth(String day) {
+      return day.substring(0, 7);
+   }
+
+   @Override
+   public String toString() {
+      return "AggregateStore[year=" + year + ", days=" + totals.get(Dimension.DAY).size() +
+             ", routes=" + totals.get(Dimension.ROUTE).size() + "]";
+   }
+}
\ No newline at end of file
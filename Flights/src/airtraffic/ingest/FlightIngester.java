@@ -0,0 +1,208 @@
+package airtraffic.ingest;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Repository;
+
+/**
+ * Watches a directory for new flight data files, such as a month of
+ * flights as published, and appends their flights to the repository. Each
+ * file must have the same columns as the flight data files and may hold
+ * flights of more than one year. Appending a file also adds its flights
+ * to the aggregate store of each year, so the cost of taking in new data
+ * is proportional to the new data only.
+ *
+ * Files are ingested once they have stopped growing, then moved to a
+ * "processed" subdirectory, or to "failed" if they could not be read.
+ * Files should be moved into the directory once complete rather than
+ * written there slowly. A file is appended all at once or not at all, and
+ * the repository remembers the files it has appended, so one that is still
+ * in the directory after a crash is not appended again.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlightIngester implements Closeable {
+   private static final String PROCESSED = "processed";
+   private static final String FAILED = "failed";
+   private static final String HEADER_START = "Year,";
+   private static final long SETTLE_MILLIS = 1000;
+
+   private final Logger logger = LoggerFactory.getLogger(FlightIngester.class);
+   private final Repository repository;
+   private final Path directory;
+   private WatchService watcher;
+   private Thread thread;
+
+   public FlightIngester(Repository repository, Path directory) {
+      this.repository = repository;
+      this.directory = directory;
+   }
+
+   /**
+    * Ingest the files already in the directory, then keep watching it for
+    * new ones on a daemon thread until closed.
+    */
+   public static FlightIngester start(Repository repository, Path directory) throws IOException {
+      FlightIngester ingester = new FlightIngester(repository, directory);
+      Files.createDirectories(directory);
+      ingester.watcher = directory.getFileSystem().newWatchService();
+      directory.register(ingester.watcher, ENTRY_CREATE, ENTRY_MODIFY);
+      ingester.thread = new Thread(() -> {
+         ingester.ingestPending();
+         ingester.watch();
+      }, "ingest");
+      ingester.thread.setDaemon(true);
+      ingester.thread.start();
+      return ingester;
+   }
+
+   /**
+    * Ingest every flight file currently in the directory, oldest name
+    * first. Returns the number of flights appended.
+    */
+   public long ingestPending() {
+      List<Path> files = new ArrayList<>();
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.csv")) {
+         stream.forEach(files::add);
+      } catch (IOException e) {
+         logger.error("Unable to list {}", directory, e);
+         return 0;
+      }
+      files.sort(null);
+      long count = 0;
+      for(Path file : files) {
+         count += ingestAndMove(file);
+      }
+      return count;
+   }
+
+   private void watch() {
+      try {
+         while(true) {
+            WatchKey key = watcher.take();
+            for(WatchEvent<?> event : key.pollEvents()) {
+               Path file = directory.resolve((Path) event.context());
+               if(file.toString().endsWith(".csv") && Files.isRegularFile(file) &&
+                  waitUntilComplete(file)) {
+                  ingestAndMove(file);
+               }
+            }
+            if(!key.reset()) {
+               logger.warn("No longer watching {}", directory);
+               return;
+            }
+         }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+         logger.debug("Stopped watching {}", directory);
+      }
+   }
+
+   /**
+    * Wait until the size of a file stops changing. Returns false if the
+    * file has gone away, for example because it was already ingested.
+    */
+   private boolean waitUntilComplete(Path file) throws InterruptedException {
+      try {
+         long size = -1;
+         while(size != Files.size(file)) {
+            size = Files.size(file);
+            Thread.sleep(SETTLE_MILLIS);
+         }
+         return true;
+      } catch (IOException e) {
+         return false;
+      }
+   }
+
+   private long ingestAndMove(Path file) {
+      long count;
+      String target;
+      try {
+         count = ingest(file);
+         target = PROCESSED;
+      } catch (IOException | RuntimeException e) {
+         logger.error("Unable to ingest {}", file, e);
+         count = 0;
+         target = FAILED;
+      }
+      try {
+         Path dir = Files.createDirectories(directory.resolve(target));
+         Files.move(file, dir.resolve(file.getFileName()), REPLACE_EXISTING);
+      } catch (IOException e) {
+         logger.error("Unable to move {} to {}", file, target, e);
+      }
+      return count;
+   }
+
+   /**
+    * Append the flights in a file to the repository, grouped by year.
+    * Returns the number of flights appended, which is zero if the file was
+    * already appended. The file is known by its name, size and time of
+    * last modification.
+    */
+   public long ingest(Path file) throws IOException {
+      long start = System.currentTimeMillis();
+      String source = file.getFileName() + "\t" + Files.size(file) + "@" +
+                      Files.getLastModifiedTime(file).toMillis();
+      Map<Integer, List<String>> years = new TreeMap<>();
+      String header;
+      try(BufferedReader reader = Files.newBufferedReader(file, ISO_8859_1)) {
+         header = reader.readLine();
+         if(header == null || !header.startsWith(HEADER_START)) {
+            throw new IOException("Not a flight data file: " + file);
+         }
+         String line;
+         while((line = reader.readLine()) != null) {
+            if(!line.isEmpty()) {
+               int year = Integer.parseInt(line.substring(0, line.indexOf(',')));
+               years.computeIfAbsent(year, y -> new ArrayList<>()).add(line);
+            }
+         }
+      }
+      if(!repository.appendFlights(source, header, years)) {
+         logger.info("Skipped {}, which was already ingested", file.getFileName());
+         return 0;
+      }
+      long count = 0;
+      for(List<String> lines : years.values()) {
+         count += lines.size();
+      }
+      logger.info("Ingested {} flights from {} in {} ms", count, file.getFileName(),
+                  System.currentTimeMillis() - start);
+      return count;
+   }
+
+   /**
+    * Stop watching the directory.
+    */
+   @Override
+   public void close() throws IOException {
+      if(watcher != null) {
+         watcher.close();
+      }
+      if(thread != null) {
+         thread.interrupt();
+      }
+   }
+}
\ No newline at end of file
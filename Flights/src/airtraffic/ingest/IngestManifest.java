@@ -0,0 +1,195 @@
+package airtraffic.ingest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Records the flight files that have been appended to the flight data, so
+ * that a file offered again, for example because the process stopped
+ * before the file could be moved out of the ingest directory, is not
+ * appended twice, together with the committed length of each data file
+ * that flights have been appended to.
+ *
+ * Flights are appended in place, after the committed length of each data
+ * file they add to, and readers read no further than that length, so they
+ * never see the lines of an append in progress. The manifest records the
+ * file together with the new lengths in one atomic write, which is the
+ * point at which the append takes effect. Whatever an append wrote past
+ * the committed lengths is truncated away if the append fails, and left
+ * by a crash it is never read and is overwritten by the next append, so
+ * the flights of a file are either all appended or not at all.
+ *
+ * The manifest is read again when another process has changed it, so
+ * readers in that process see the flights it appends.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class IngestManifest {
+   private static final String FILE = "file";
+   private static final String LENGTH = "length";
+
+   private final Path path;
+   private final Set<String> files = new LinkedHashSet<>();
+   private final Map<Path, Long> lengths = new LinkedHashMap<>();
+   private String version = "";
+
+   private IngestManifest(Path path) {
+      this.path = path;
+   }
+
+   /**
+    * Open the manifest at the given path, or an empty one if there is none
+    * yet.
+    */
+   public static IngestManifest open(Path path) throws IOException {
+      IngestManifest manifest = new IngestManifest(path);
+      manifest.refresh();
+      return manifest;
+   }
+
+   /**
+    * Returns true if the file with the given source has been appended.
+    */
+   public synchronized boolean contains(String source) throws IOException {
+      refresh();
+      return files.contains(source);
+   }
+
+   /**
+    * Returns the committed length of a data file, or -1 if flights have
+    * never been appended to it, in which case all of it is committed.
+    */
+   public synchronized long getLength(Path file) throws IOException {
+      refresh();
+      Long length = lengths.get(file);
+      return length == null ? -1 : length;
+   }
+
+   /**
+    * Read the manifest again if it has changed since it was last read or
+    * written by this instance.
+    */
+   private void refresh() throws IOException {
+      String current = getVersion();
+      if(current.equals(version)) {
+         return;
+      }
+      files.clear();
+      lengths.clear();
+      try(BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+         String line;
+         while((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", 2);
+            if(FILE.equals(fields[0])) {
+               files.add(fields[1]);
+            } else if(LENGTH.equals(fields[0])) {
+               String[] length = fields[1].split("\t", 2);
+               lengths.put(Paths.get(length[1]), Long.valueOf(length[0]));
+            }
+         }
+      }
+      version = current;
+   }
+
+   private String getVersion() throws IOException {
+      if(Files.notExists(path)) {
+         return "";
+      }
+      return Files.size(path) + "@" + Files.getLastModifiedTime(path).toMillis();
+   }
+
+   /**
+    * Record the committed lengths of the data files an append is about to
+    * write to, so that the append can be undone if it does not complete.
+    * A data file the append will create has a committed length of zero.
+    */
+   public synchronized void begin(Map<Path, Long> lengths) throws IOException {
+      refresh();
+      update(null, lengths);
+   }
+
+   /**
+    * Record that the file with the given source has been appended, with
+    * the new committed length of each data file it added to.
+    */
+   public synchronized void commit(String source, Map<Path, Long> lengths) throws IOException {
+      update(source, lengths);
+   }
+
+   /**
+    * Truncate each data file to its committed length, removing what an
+    * append that did not complete wrote after it. A data file whose
+    * committed length is zero was created by such an append, and is
+    * deleted.
+    */
+   public synchronized void rollback() throws IOException {
+      boolean changed = false;
+      for(Iterator<Entry<Path, Long>> i = lengths.entrySet().iterator(); i.hasNext(); ) {
+         Entry<Path, Long> e = i.next();
+         Path file = e.getKey();
+         long length = e.getValue();
+         if(length == 0) {
+            Files.deleteIfExists(file);
+            i.remove();
+            changed = true;
+         } else if(Files.exists(file) && Files.size(file) > length) {
+            try(FileChannel channel = FileChannel.open(file, WRITE)) {
+               channel.truncate(length);
+            }
+         }
+      }
+      if(changed) {
+         save();
+      }
+   }
+
+   private void update(String source, Map<Path, Long> lengths) throws IOException {
+      boolean added = source != null && files.add(source);
+      Map<Path, Long> previous = new HashMap<>(this.lengths);
+      this.lengths.putAll(lengths);
+      try {
+         save();
+      } catch (IOException e) {
+         if(added) {
+            files.remove(source);
+         }
+         this.lengths.clear();
+         this.lengths.putAll(previous);
+         throw e;
+      }
+   }
+
+   private void save() throws IOException {
+      Path temp = Files.createTempFile(path.toAbsolutePath().getParent(),
+                                       path.getFileName().toString(), ".tmp");
+      try(BufferedWriter writer = Files.newBufferedWriter(temp, UTF_8)) {
+         for(String file : files) {
+            writer.write(FILE + "\t" + file);
+            writer.newLine();
+         }
+         for(Entry<Path, Long> e : lengths.entrySet()) {
+            writer.write(LENGTH + "\t" + e.getValue() + "\t" + e.getKey());
+            writer.newLine();
+         }
+      }
+      Files.move(temp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+      version = getVersion();
+   }
+}
\ No newline at end of file
@@ -9,6 +9,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import airtraffic.Flight;
+import airtraffic.sample.Estimate;
+import airtraffic.sample.StratifiedSample;
+import airtraffic.sketch.HeavyHitters;
 
 /**
  * Contains useful methods for accumulation.
@@ -16,7 +23,7 @@ import java.util.Map.Entry;
  * @author tony@piazzaconsulting.com
  */
 public final class AccumulatorHelper {
-   public static <T, K extends Comparable<K>, V extends Comparable<V>> void accumulate(
+   public static <T, K extends Comparable<K>, V> void accumulate(
       Iterator<T> iterator, Comparator<Entry<K, V>> comparator, int limit, 
       MapAccumulator<T, K, V> accumulator) {
       Map<K, V> map = new HashMap<>();
@@ -49,6 +56,110 @@ public final class AccumulatorHelper {
       entries.clear();
    }
 
+   /**
+    * Pass totals counted elsewhere, such as those rolled up from an
+    * aggregate store, to the accumulator in the same order and up to the
+    * same limit as accumulate() would. Zero totals are left out.
+    */
+   public static <K extends Comparable<K>> void accumulateTotals(Map<K, Long> totals,
+      Comparator<Entry<K, Long>> comparator, int limit, MapAccumulator<?, K, Long> accumulator) {
+      List<Entry<K, Long>> entries = new ArrayList<>();
+      for(Entry<K, Long> entry : totals.entrySet()) {
+         if(entry.getValue().longValue() > 0) {
+            entries.add(entry);
+         }
+      }
+      Collections.sort(entries, comparator);
+      int count = 0;
+      for(Entry<K, Long> entry : entries) {
+         accumulator.forEach(entry);
+         if(++count >= limit) {
+            break;
+         }
+      }
+   }
+
+   /**
+    * Count the keys of the matching items with a heavy hitters sketch and
+    * pass the limit most frequent to the accumulator, largest first. Only
+    * a fixed amount of memory is used however many distinct keys there are.
+    * Returns the sketch, which describes the accuracy of the counts.
+    */
+   public static <T, K> HeavyHitters<K> accumulateHeavyHitters(Iterator<T> iterator, 
+      int limit, MapAccumulator<T, K, Long> accumulator) {
+      HeavyHitters<K> sketch = new HeavyHitters<>(limit);
+      while(iterator.hasNext()) {
+         T subject = iterator.next();
+         if(accumulator.filter(subject)) {
+            sketch.add(accumulator.getKey(subject));
+         }
+      }
+      for(Entry<K, Long> entry : sketch.getTop(limit)) {
+         accumulator.forEach(entry);
+      }
+      return sketch;
+   }
+
+   /**
+    * Estimate from the sample how many flights of the year pass the filter
+    * for each key, and pass the limit first estimates in the comparator's
+    * order to the accumulator.
+    */
+   public static <K> void accumulateEstimatedCounts(StratifiedSample sample, 
+      Comparator<Entry<K, Estimate>> comparator, int limit, 
+      EstimatingAccumulator<K> accumulator) {
+      Map<K, Estimate> estimates = sample.estimateCounts(filter(accumulator), key(accumulator));
+      forEachEstimate(estimates, comparator, limit, accumulator);
+   }
+
+   /**
+    * Estimate from the sample the rate of the accumulator's event among the
+    * flights that pass the filter for each key, and pass the limit first
+    * estimates in the comparator's order to the accumulator.
+    */
+   public static <K> void accumulateEstimatedRates(StratifiedSample sample, 
+      Comparator<Entry<K, Estimate>> comparator, int limit, 
+      final RateAccumulator<K> accumulator) {
+      Predicate<Flight> event = new Predicate<Flight>() {
+         @Override public boolean test(Flight flight) {
+            return accumulator.isEvent(flight);
+         }
+      };
+      Map<K, Estimate> estimates = 
+         sample.estimateRates(filter(accumulator), key(accumulator), event);
+      forEachEstimate(estimates, comparator, limit, accumulator);
+   }
+
+   private static Predicate<Flight> filter(final EstimatingAccumulator<?> accumulator) {
+      return new Predicate<Flight>() {
+         @Override public boolean test(Flight flight) {
+            return accumulator.filter(flight);
+         }
+      };
+   }
+
+   private static <K> Function<Flight, K> key(final EstimatingAccumulator<K> accumulator) {
+      return new Function<Flight, K>() {
+         @Override public K apply(Flight flight) {
+            return accumulator.getKey(flight);
+         }
+      };
+   }
+
+   private static <K> void forEachEstimate(Map<K, Estimate> estimates, 
+      Comparator<Entry<K, Estimate>> comparator, int limit, 
+      EstimatingAccumulator<K> accumulator) {
+      List<Entry<K, Estimate>> entries = new ArrayList<>(estimates.entrySet());
+      Collections.sort(entries, comparator);
+      int count = 0;
+      for(Entry<K, Estimate> entry : entries) {
+         if(count++ >= limit) {
+            break;
+         }
+         accumulator.forEach(entry);
+      }
+   }
+
    public static <T extends Comparable<T>> void accumulate(Iterator<T> iterator, 
       Comparator<? super T> comparator, int limit, ListAccumulator<T> accumulator) {
       List<T> list = new ArrayList<>();
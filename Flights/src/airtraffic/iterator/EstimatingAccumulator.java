@@ -0,0 +1,17 @@
+package airtraffic.iterator;
+
+import java.util.Map.Entry;
+
+import airtraffic.Flight;
+import airtraffic.sample.Estimate;
+
+/**
+ * Specifies behavior needed for estimating counts from a sample of flights.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public interface EstimatingAccumulator<K> {
+   boolean filter(Flight source);
+   K getKey(Flight source);
+   void forEach(Entry<K, Estimate> entry);
+}
\ No newline at end of file
@@ -19,6 +19,7 @@ import airtraffic.Airport;
 import airtraffic.AirportMetrics;
 import airtraffic.AirportReports;
 import airtraffic.Flight;
+import airtraffic.FlightIterator;
 import airtraffic.GeoLocation;
 import airtraffic.ReportContext;
 
@@ -77,24 +78,25 @@ public class IteratorAirportReports implements AirportReports {
    public void reportAirportMetrics(ReportContext context) {
       final int year = context.getYear();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
       Map<Airport, AirportMetrics> map = new HashMap<>();
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         Airport origin = flight.getOrigin();
-         AirportMetrics metrics1 = map.get(origin);
-         if(metrics1 == null) {
-            metrics1 = new AirportMetrics(origin);
-            map.put(origin, metrics1);
-         }
-         metrics1.addFlight(flight);
-         Airport destination = flight.getDestination();
-         AirportMetrics metrics2 = map.get(destination);
-         if(metrics2 == null) {
-            metrics2 = new AirportMetrics(destination);
-            map.put(destination, metrics2);
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            Airport origin = flight.getOrigin();
+            AirportMetrics metrics1 = map.get(origin);
+            if(metrics1 == null) {
+               metrics1 = new AirportMetrics(origin);
+               map.put(origin, metrics1);
+            }
+            metrics1.addFlight(flight);
+            Airport destination = flight.getDestination();
+            AirportMetrics metrics2 = map.get(destination);
+            if(metrics2 == null) {
+               metrics2 = new AirportMetrics(destination);
+               map.put(destination, metrics2);
+            }
+            metrics2.addFlight(flight);
          }
-         metrics2.addFlight(flight);
       }
       SortedSet<AirportMetrics> set = 
          new TreeSet<>(new Comparator<AirportMetrics>() {
@@ -107,12 +109,13 @@ public class IteratorAirportReports implements AirportReports {
          Airport airport = metrics.getSubject();
          String name = airport.getName();
          context.getTerminal()
-                .printf("%3s     %-30s     %,9d    %6.1f        %6.1f\n", 
+                .printf("%3s     %-30s     %,9d    %6.1f        %6.1f      %,6d\n", 
                         airport.getIATA(),
                         name.substring(0, Math.min(name.length(), 29)),
                         metrics.getTotalFlights(),
                         metrics.getCancellationRate() * 100.0,
-                        metrics.getDiversionRate() * 100.0
+                        metrics.getDiversionRate() * 100.0,
+                        metrics.getDistinctRoutes()
          );
       }
    }
@@ -122,24 +125,25 @@ public class IteratorAirportReports implements AirportReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
       Map<Airport, AirportMetrics> map = new HashMap<>();
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         Airport origin = flight.getOrigin();
-         AirportMetrics metrics1 = map.get(origin);
-         if(metrics1 == null) {
-            metrics1 = new AirportMetrics(origin);
-            map.put(origin, metrics1);
-         }
-         metrics1.addFlight(flight);
-         Airport destination = flight.getDestination();
-         AirportMetrics metrics2 = map.get(destination);
-         if(metrics2 == null) {
-            metrics2 = new AirportMetrics(destination);
-            map.put(destination, metrics2);
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            Airport origin = flight.getOrigin();
+            AirportMetrics metrics1 = map.get(origin);
+            if(metrics1 == null) {
+               metrics1 = new AirportMetrics(origin);
+               map.put(origin, metrics1);
+            }
+            metrics1.addFlight(flight);
+            Airport destination = flight.getDestination();
+            AirportMetrics metrics2 = map.get(destination);
+            if(metrics2 == null) {
+               metrics2 = new AirportMetrics(destination);
+               map.put(destination, metrics2);
+            }
+            metrics2.addFlight(flight);
          }
-         metrics2.addFlight(flight);
       }
       SortedSet<AirportMetrics> set = 
          new TreeSet<>(highestCancellationRateComparator());
@@ -0,0 +1,201 @@
+package airtraffic.iterator;
+
+import static airtraffic.DelayCauses.highestTotalMinutesComparator;
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightField.DESTINATION;
+import static airtraffic.FlightField.MONTH;
+import static airtraffic.FlightField.ORIGIN;
+import static airtraffic.FlightField.YEAR;
+import static airtraffic.FlightQuery.select;
+import static airtraffic.FlightReports.YEAR_MONTH_FORMAT;
+import static java.util.Map.Entry.comparingByValue;
+import static org.apache.commons.lang3.StringUtils.left;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.DelayCauses;
+import airtraffic.DelayCauses.Cause;
+import airtraffic.DelayReports;
+import airtraffic.Flight;
+import airtraffic.FlightField;
+import airtraffic.FlightIterator;
+import airtraffic.FlightQuery;
+import airtraffic.ReportContext;
+import airtraffic.Route;
+
+/**
+ * Attribute minutes of delay to their causes using iterators. Each report
+ * reads only the fields it needs and totals the causes by key in a map.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class IteratorDelayReports implements DelayReports {
+
+   @Override
+   public void reportDelayCausesByAirport(final ReportContext context) {
+      accumulateDelayCauses(context, query(ORIGIN), 
+         comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+         new MapAccumulator<Flight, Airport, DelayCauses>() {
+            @Override public boolean filter(Flight source) {
+               return true;
+            }
+            @Override public Airport getKey(Flight source) {
+               return source.getOrigin();
+            }
+            @Override public DelayCauses initializeValue(Flight source) {
+               return new DelayCauses().add(source);
+            }
+            @Override public DelayCauses updateValue(Flight source, DelayCauses value) {
+               return value.add(source);
+            }
+            @Override public void forEach(Entry<Airport, DelayCauses> entry) {
+               Airport airport = entry.getKey();
+               print(context, left(airport.getIATA() + "  " + airport.getName(), 30), 
+                     entry.getValue());
+            }
+         }
+      );
+   }
+
+   @Override
+   public void reportDelayCausesByCarrier(final ReportContext context) {
+      accumulateDelayCauses(context, query(CARRIER), 
+         comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+         new MapAccumulator<Flight, Carrier, DelayCauses>() {
+            @Override public boolean filter(Flight source) {
+               return true;
+            }
+            @Override public Carrier getKey(Flight source) {
+               return source.getCarrier();
+            }
+            @Override public DelayCauses initializeValue(Flight source) {
+               return new DelayCauses().add(source);
+            }
+            @Override public DelayCauses updateValue(Flight source, DelayCauses value) {
+               return value.add(source);
+            }
+            @Override public void forEach(Entry<Carrier, DelayCauses> entry) {
+               print(context, left(entry.getKey().getName(), 30), entry.getValue());
+            }
+         }
+      );
+   }
+
+   @Override
+   public void reportDelayCausesByMonth(final ReportContext context) {
+      accumulateDelayCauses(context, query(YEAR, MONTH), 
+         Entry.<YearMonth, DelayCauses>comparingByKey(), Integer.MAX_VALUE,
+         new MapAccumulator<Flight, YearMonth, DelayCauses>() {
+            @Override public boolean filter(Flight source) {
+               return true;
+            }
+            @Override public YearMonth getKey(Flight source) {
+               return source.getYearMonth();
+            }
+            @Override public DelayCauses initializeValue(Flight source) {
+               return new DelayCauses().add(source);
+            }
+            @Override public DelayCauses updateValue(Flight source, DelayCauses value) {
+               return value.add(source);
+            }
+            @Override public void forEach(Entry<YearMonth, DelayCauses> entry) {
+               print(context, YEAR_MONTH_FORMAT.format(entry.getKey()), entry.getValue());
+            }
+         }
+      );
+   }
+
+   @Override
+   public void reportDelayCausesByRoute(final ReportContext context) {
+      accumulateDelayCauses(context, query(ORIGIN, DESTINATION), 
+         comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+         new MapAccumulator<Flight, Route, DelayCauses>() {
+            @Override public boolean filter(Flight source) {
+               return true;
+            }
+            @Override public Route getKey(Flight source) {
+               return source.getRoute();
+            }
+            @Override public DelayCauses initializeValue(Flight source) {
+               return new DelayCauses().add(source);
+            }
+            @Override public DelayCauses updateValue(Flight source, DelayCauses value) {
+               return value.add(source);
+            }
+            @Override public void forEach(Entry<Route, DelayCauses> entry) {
+               print(context, entry.getKey().toString(), entry.getValue());
+            }
+         }
+      );
+   }
+
+   private static FlightQuery query(FlightField... keys) {
+      Set<FlightField> fields = EnumSet.noneOf(FlightField.class);
+      Collections.addAll(fields, keys);
+      for(Cause cause : Cause.values()) {
+         fields.add(cause.getField());
+      }
+      return select(fields.toArray(new FlightField[fields.size()]));
+   }
+
+   /**
+    * Total the causes of delay of the delayed flights by key, then print
+    * the totals for all of them and pass the first limit keys in the
+    * comparator's order to the accumulator.
+    */
+   private static <K> void accumulateDelayCauses(ReportContext context, FlightQuery query, 
+      Comparator<Entry<K, DelayCauses>> comparator, int limit, 
+      MapAccumulator<Flight, K, DelayCauses> accumulator) {
+      Map<K, DelayCauses> map = new HashMap<>();
+      DelayCauses total = new DelayCauses();
+      try(FlightIterator iterator = context.getRepository()
+                                           .getFlightIterator(context.getYear(), query)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(DelayCauses.isDelayed(flight) && accumulator.filter(flight)) {
+               K key = accumulator.getKey(flight);
+               DelayCauses value = map.get(key);
+               map.put(key, value == null ? 
+                  accumulator.initializeValue(flight) :
+                  accumulator.updateValue(flight, value)
+               );
+               total.add(flight);
+            }
+         }
+      }
+      print(context, "All delayed flights", total);
+      List<Entry<K, DelayCauses>> entries = new ArrayList<>(map.entrySet());
+      Collections.sort(entries, comparator);
+      int count = 0;
+      for(Entry<K, DelayCauses> entry : entries) {
+         if(count++ >= limit) {
+            break;
+         }
+         accumulator.forEach(entry);
+      }
+   }
+
+   private static void print(ReportContext context, String label, DelayCauses causes) {
+      context.getTerminal()
+             .printf(DELAY_CAUSES_FORMAT,
+                     label,
+                     causes.getDelayedFlights(),
+                     causes.getTotalMinutes(),
+                     causes.getShare(Cause.CARRIER) * 100.0,
+                     causes.getShare(Cause.WEATHER) * 100.0,
+                     causes.getShare(Cause.NAS) * 100.0,
+                     causes.getShare(Cause.SECURITY) * 100.0,
+                     causes.getShare(Cause.LATE_AIRCRAFT) * 100.0);
+   }
+}
\ No newline at end of file
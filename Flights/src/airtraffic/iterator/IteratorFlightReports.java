@@ -1,6 +1,10 @@
 package airtraffic.iterator;
 
 import static airtraffic.iterator.AccumulatorHelper.accumulate;
+import static airtraffic.iterator.AccumulatorHelper.accumulateEstimatedCounts;
+import static airtraffic.iterator.AccumulatorHelper.accumulateHeavyHitters;
+import static airtraffic.iterator.AccumulatorHelper.accumulateTotals;
+import static airtraffic.sketch.QuantileSketch.highestQuantileComparator;
 import static java.util.Comparator.reverseOrder;
 import static java.util.Map.Entry.comparingByKey;
 import static java.util.Map.Entry.comparingByValue;
@@ -14,18 +18,30 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Function;
 
 import airtraffic.Airport;
 import airtraffic.Carrier;
 import airtraffic.Flight;
 import airtraffic.FlightDistanceRange;
+import airtraffic.FlightIterator;
 import airtraffic.FlightReports;
 import airtraffic.PairGroup;
 import airtraffic.ReportContext;
+import airtraffic.Repository;
 import airtraffic.Route;
+import airtraffic.ingest.AggregateStore;
+import airtraffic.ingest.AggregateStore.Dimension;
+import airtraffic.ingest.AggregateStore.Measure;
+import airtraffic.sample.Estimate;
+import airtraffic.sample.StratifiedSample;
+import airtraffic.sketch.HeavyHitters;
+import airtraffic.sketch.QuantileSketch;
 
 /**
  * Generate various flight statistics using Java iterators.
@@ -53,11 +69,12 @@ public class IteratorFlightReports implements FlightReports {
       final Airport origin = context.getOrigin();
 
       long count = 0;
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.notCancelled() && flight.getOrigin().equals(origin)) {
-            ++count;
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.notCancelled() && flight.getOrigin().equals(origin)) {
+               ++count;
+            }
          }
       }
 
@@ -72,12 +89,13 @@ public class IteratorFlightReports implements FlightReports {
       final Airport destination = context.getDestination();
 
       long count = 0;
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.notCancelled() && flight.notDiverted() &&  
-            flight.getDestination().equals(destination)) {
-            ++count;
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.notCancelled() && flight.notDiverted() &&  
+               flight.getDestination().equals(destination)) {
+               ++count;
+            }
          }
       }
 
@@ -93,13 +111,14 @@ public class IteratorFlightReports implements FlightReports {
       final Airport destination = context.getDestination();
 
       long count = 0;
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.notCancelled() && flight.notDiverted() &&  
-            flight.getOrigin().equals(origin) &&
-            flight.getDestination().equals(destination)) {
-            ++count;
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.notCancelled() && flight.notDiverted() &&  
+               flight.getOrigin().equals(origin) &&
+               flight.getDestination().equals(destination)) {
+               ++count;
+            }
          }
       }
 
@@ -117,23 +136,24 @@ public class IteratorFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, Airport>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public Airport getKey(Flight source) {
-               return source.getOrigin();
-            }
-            @Override public void forEach(Entry<Airport, Long> entry) {
-               context.getTerminal()
-                      .printf("%3s\t\t%,10d\n", 
-                              entry.getKey().getIATA(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, Airport>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getOrigin();
+               }
+               @Override public void forEach(Entry<Airport, Long> entry) {
+                  context.getTerminal()
+                         .printf("%3s\t\t%,10d\n", 
+                                 entry.getKey().getIATA(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTopDestinationsFromOrigin(ReportContext context) {
@@ -141,174 +161,355 @@ public class IteratorFlightReports implements FlightReports {
       final Airport origin = context.getOrigin();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, Airport>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled() && 
-                      source.getOrigin().equals(origin);
-            }
-            @Override public Airport getKey(Flight source) {
-               return source.getDestination();
-            }
-           @Override public void forEach(Entry<Airport, Long> entry) {
-              context.getTerminal()
-                     .printf("%3s\t\t%,10d\n", 
-                             entry.getKey().getIATA(), 
-                             entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, Airport>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled() && 
+                         source.getOrigin().equals(origin);
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getDestination();
+               }
+              @Override public void forEach(Entry<Airport, Long> entry) {
+                 context.getTerminal()
+                        .printf("%3s\t\t%,10d\n", 
+                                entry.getKey().getIATA(), 
+                                entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostPopularRoutes(ReportContext context) {
       final int year = context.getYear();
-      final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, Route>() {
-            @Override public boolean filter(Flight source) {
-               return true;
-            }
-            @Override public Route getKey(Flight source) {
-               return source.getRoute();
-            }
-            @Override public void forEach(Entry<Route, Long> entry) {
-               context.getTerminal()
-                      .printf("%s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue().intValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulateCounts(context, iterator, 
+            new CountingAccumulator<Flight, Route>() {
+               @Override public boolean filter(Flight source) {
+                  return true;
+               }
+               @Override public Route getKey(Flight source) {
+                  return source.getRoute();
+               }
+               @Override public void forEach(Entry<Route, Long> entry) {
+                  context.getTerminal()
+                         .printf("%s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue().intValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportWorstAverageDepartureDelayByOrigin(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new MapAccumulator<Flight, Airport, AverageValue>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public Airport getKey(Flight source) {
-               return source.getOrigin();
-            }
-            @Override public AverageValue initializeValue(Flight source) {
-               return new AverageValue(source.getDepartureDelay());
-            }
-            @Override public AverageValue updateValue(Flight source, AverageValue value) {
-               return value.add(source.getDepartureDelay());
-            }
-            @Override public void forEach(Entry<Airport, AverageValue> entry) {
-               context.getTerminal()
-                      .printf("%3s\t\t%.0f\n", 
-                              entry.getKey().getIATA(), 
-                              entry.getValue().getAverage());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new MapAccumulator<Flight, Airport, AverageValue>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getOrigin();
+               }
+               @Override public AverageValue initializeValue(Flight source) {
+                  return new AverageValue(source.getDepartureDelay());
+               }
+               @Override public AverageValue updateValue(Flight source, AverageValue value) {
+                  return value.add(source.getDepartureDelay());
+               }
+               @Override public void forEach(Entry<Airport, AverageValue> entry) {
+                  context.getTerminal()
+                         .printf("%3s\t\t%.0f\n", 
+                                 entry.getKey().getIATA(), 
+                                 entry.getValue().getAverage());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportWorstAverageArrivalDelayByDestination(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new MapAccumulator<Flight, Airport, AverageValue>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new MapAccumulator<Flight, Airport, AverageValue>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getDestination();
+               }
+               @Override public AverageValue initializeValue(Flight source) {
+                  return new AverageValue(source.getArrivalDelay());
+               }
+               @Override public AverageValue updateValue(Flight source, AverageValue value) {
+                  return value.add(source.getArrivalDelay());
+               }
+               @Override public void forEach(Entry<Airport, AverageValue> entry) {
+                  context.getTerminal()
+                         .printf("%3s\t\t%.0f\n", 
+                                 entry.getKey().getIATA(), 
+                                 entry.getValue().getAverage());
+               }
             }
-            @Override public Airport getKey(Flight source) {
-               return source.getDestination();
+         );
+      }
+   }
+
+   @Override
+   public void reportDepartureDelayPercentilesByOrigin(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(highestQuantileComparator(0.9)), limit, 
+            new MapAccumulator<Flight, Airport, QuantileSketch>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getOrigin();
+               }
+               @Override public QuantileSketch initializeValue(Flight source) {
+                  return new QuantileSketch().add(source.getDepartureDelay());
+               }
+               @Override public QuantileSketch updateValue(Flight source, QuantileSketch value) {
+                  return value.add(source.getDepartureDelay());
+               }
+               @Override public void forEach(Entry<Airport, QuantileSketch> entry) {
+                  QuantileSketch value = entry.getValue();
+                  context.getTerminal()
+                         .printf("%3s\t\t%6.0f\t%6.0f\t%6.0f\n", 
+                                 entry.getKey().getIATA(), 
+                                 value.getQuantile(0.5),
+                                 value.getQuantile(0.9),
+                                 value.getQuantile(0.99));
+               }
             }
-            @Override public AverageValue initializeValue(Flight source) {
-               return new AverageValue(source.getArrivalDelay());
+         );
+      }
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByCarrier(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(highestQuantileComparator(0.9)), limit, 
+            new MapAccumulator<Flight, Carrier, QuantileSketch>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled() && source.notDiverted();
+               }
+               @Override public Carrier getKey(Flight source) {
+                  return source.getCarrier();
+               }
+               @Override public QuantileSketch initializeValue(Flight source) {
+                  return new QuantileSketch().add(source.getArrivalDelay());
+               }
+               @Override public QuantileSketch updateValue(Flight source, QuantileSketch value) {
+                  return value.add(source.getArrivalDelay());
+               }
+               @Override public void forEach(Entry<Carrier, QuantileSketch> entry) {
+                  QuantileSketch value = entry.getValue();
+                  context.getTerminal()
+                         .printf("%-24s\t%6.0f\t%6.0f\t%6.0f\n", 
+                                 left(entry.getKey().getName(), 24), 
+                                 value.getQuantile(0.5),
+                                 value.getQuantile(0.9),
+                                 value.getQuantile(0.99));
+               }
             }
-            @Override public AverageValue updateValue(Flight source, AverageValue value) {
-               return value.add(source.getArrivalDelay());
+         );
+      }
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByRoute(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(highestQuantileComparator(0.9)), limit, 
+            new MapAccumulator<Flight, Route, QuantileSketch>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled() && source.notDiverted();
+               }
+               @Override public Route getKey(Flight source) {
+                  return source.getRoute();
+               }
+               @Override public QuantileSketch initializeValue(Flight source) {
+                  return new QuantileSketch().add(source.getArrivalDelay());
+               }
+               @Override public QuantileSketch updateValue(Flight source, QuantileSketch value) {
+                  return value.add(source.getArrivalDelay());
+               }
+               @Override public void forEach(Entry<Route, QuantileSketch> entry) {
+                  QuantileSketch value = entry.getValue();
+                  context.getTerminal()
+                         .printf("%-10s\t%6.0f\t%6.0f\t%6.0f\n", 
+                                 entry.getKey(), 
+                                 value.getQuantile(0.5),
+                                 value.getQuantile(0.9),
+                                 value.getQuantile(0.99));
+               }
             }
-            @Override public void forEach(Entry<Airport, AverageValue> entry) {
-               context.getTerminal()
-                      .printf("%3s\t\t%.0f\n", 
-                              entry.getKey().getIATA(), 
-                              entry.getValue().getAverage());
+         );
+      }
+   }
+
+   @Override
+   public void reportTaxiOutPercentilesByOrigin(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(highestQuantileComparator(0.9)), limit, 
+            new MapAccumulator<Flight, Airport, QuantileSketch>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getOrigin();
+               }
+               @Override public QuantileSketch initializeValue(Flight source) {
+                  return new QuantileSketch().add(source.getTaxiOut());
+               }
+               @Override public QuantileSketch updateValue(Flight source, QuantileSketch value) {
+                  return value.add(source.getTaxiOut());
+               }
+               @Override public void forEach(Entry<Airport, QuantileSketch> entry) {
+                  QuantileSketch value = entry.getValue();
+                  context.getTerminal()
+                         .printf("%3s\t\t%6.0f\t%6.0f\t%6.0f\n", 
+                                 entry.getKey().getIATA(), 
+                                 value.getQuantile(0.5),
+                                 value.getQuantile(0.9),
+                                 value.getQuantile(0.99));
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostCancelledFlightsByOrigin(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, Airport>() {
-            @Override public boolean filter(Flight source) {
-               return source.cancelled();
-            }
-            @Override public Airport getKey(Flight source) {
-               return source.getOrigin();
-            }
-            @Override public void forEach(Entry<Airport, Long> entry) {
-               context.getTerminal()
-                      .printf("%3s\t\t%,8d\n", 
-                              entry.getKey().getIATA(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, Airport>() {
+               @Override public boolean filter(Flight source) {
+                  return source.cancelled();
+               }
+               @Override public Airport getKey(Flight source) {
+                  return source.getOrigin();
+               }
+               @Override public void forEach(Entry<Airport, Long> entry) {
+                  context.getTerminal()
+                         .printf("%3s\t\t%,8d\n", 
+                                 entry.getKey().getIATA(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByOriginState(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public String getKey(Flight source) {
-               return source.getOrigin().getState();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%2s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      if(context.isApproximate()) {
+         StratifiedSample sample = context.getRepository().getFlightSample(year);
+         accumulateEstimatedCounts(sample, comparingByValue(Estimate.valueComparator().reversed()), 
+            limit, new EstimatingAccumulator<String>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public String getKey(Flight source) {
+                  return source.getOrigin().getState();
+               }
+               @Override public void forEach(Entry<String, Estimate> entry) {
+                  context.getTerminal()
+                         .printf("%2s\t%,10.0f\t+/- %,.0f\n", 
+                                 entry.getKey(), 
+                                 entry.getValue().getValue(),
+                                 entry.getValue().getMargin());
+               }
             }
+         );
+         context.getTerminal().println(sample.describe());
+         return;
+      }
+
+      CountingAccumulator<Flight, String> accumulator = new CountingAccumulator<Flight, String>() {
+         @Override public boolean filter(Flight source) {
+            return source.notCancelled();
+         }
+         @Override public String getKey(Flight source) {
+            return source.getOrigin().getState();
          }
-      );
+         @Override public void forEach(Entry<String, Long> entry) {
+            context.getTerminal()
+                   .printf("%2s\t%,10d\n", 
+                           entry.getKey(), 
+                           entry.getValue());
+         }
+      };
+      // the totals by origin airport kept in an aggregate store roll up
+      // to states, without a pass over the flights
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      if(store != null) {
+         accumulateTotals(store.rollUp(Dimension.ORIGIN, toState(repository),
+                                       Measure.FLIGHTS, Measure.CANCELLED),
+                          comparingByValue(reverseOrder()), limit, accumulator);
+         return;
+      }
+      try(FlightIterator iterator = repository.getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, accumulator);
+      }
    }
 
    public void reportTotalFlightsByDestinationState(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public String getKey(Flight source) {
-               return source.getDestination().getState();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%2s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
-            }
+      CountingAccumulator<Flight, String> accumulator = new CountingAccumulator<Flight, String>() {
+         @Override public boolean filter(Flight source) {
+            return source.notCancelled();
+         }
+         @Override public String getKey(Flight source) {
+            return source.getDestination().getState();
+         }
+         @Override public void forEach(Entry<String, Long> entry) {
+            context.getTerminal()
+                   .printf("%2s\t%,10d\n", 
+                           entry.getKey(), 
+                           entry.getValue());
          }
-      );
+      };
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      if(store != null) {
+         accumulateTotals(store.rollUp(Dimension.DESTINATION, toState(repository),
+                                       Measure.FLIGHTS, Measure.CANCELLED),
+                          comparingByValue(reverseOrder()), limit, accumulator);
+         return;
+      }
+      try(FlightIterator iterator = repository.getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, accumulator);
+      }
    }
 
    public void reportLongestFlights(ReportContext context) {
@@ -323,66 +524,85 @@ public class IteratorFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      List<Flight> flights = new ArrayList<>();
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.notCancelled() && flight.notDiverted()) {
-            flights.add(flight);
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         List<Flight> flights = new ArrayList<>();
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.notCancelled() && flight.notDiverted()) {
+               flights.add(flight);
+            }
          }
+         Collections.sort(flights, comparator);
+         int count = 0;
+         for(Flight flight : flights) {
+            context.getTerminal()
+                   .printf("%-8s  %10s\t  %2s\t %3s\t    %3s\t\t%6d\n", 
+                           flight.getFlightNumber(),
+                           flight.getDate(),
+                           flight.getCarrier().getCode(),
+                           flight.getOrigin().getIATA(),
+                           flight.getDestination().getIATA(),
+                           flight.getDistance()
+                   );
+            if(++count >= limit) {
+               break;
+            }         
+         }
+         flights.clear();
       }
-      Collections.sort(flights, comparator);
-      int count = 0;
-      for(Flight flight : flights) {
-         context.getTerminal()
-                .printf("%-8s  %10s\t  %2s\t %3s\t    %3s\t\t%6d\n", 
-                        flight.getFlightNumber(),
-                        flight.getDate(),
-                        flight.getCarrier().getCode(),
-                        flight.getOrigin().getIATA(),
-                        flight.getDestination().getIATA(),
-                        flight.getDistance()
-                );
-         if(++count >= limit) {
-            break;
-         }         
-      }
-      flights.clear();
    }
 
    public void reportTotalFlightsByDistanceRange(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByKey(), limit, 
-         new MapAccumulator<Flight, FlightDistanceRange, Long>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled() && source.notDiverted();
-            }
-            @Override public FlightDistanceRange getKey(Flight source) {
-               int distance = source.getDistance();
-               for(FlightDistanceRange range : DISTANCE_RANGES) {
-                  if(range.contains(distance)) {
-                     return range;
-                  }
-               }
-               throw new IllegalStateException("No range for distance of " + distance);
-            }
-            @Override public Long initializeValue(Flight source) {
-               return Long.valueOf(1);
-            }
-            @Override public Long updateValue(Flight source, Long value) {
-               return Long.valueOf(value.longValue() + 1);
+      if(context.isApproximate()) {
+         StratifiedSample sample = context.getRepository().getFlightSample(year);
+         accumulateEstimatedCounts(sample, comparingByKey(), limit, 
+            new EstimatingAccumulator<FlightDistanceRange>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled() && source.notDiverted();
+               }
+               @Override public FlightDistanceRange getKey(Flight source) {
+                  return getDistanceRange(source);
+               }
+               @Override public void forEach(Entry<FlightDistanceRange, Estimate> entry) {
+                  context.getTerminal()
+                         .printf("%-10s\t%,10.0f\t+/- %,.0f\n", 
+                                 entry.getKey(), 
+                                 entry.getValue().getValue(),
+                                 entry.getValue().getMargin());
+               }
             }
-            @Override public void forEach(Entry<FlightDistanceRange, Long> entry) {
-               context.getTerminal()
-                      .printf("%-10s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+         );
+         context.getTerminal().println(sample.describe());
+         return;
+      }
+
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByKey(), limit, 
+            new MapAccumulator<Flight, FlightDistanceRange, Long>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled() && source.notDiverted();
+               }
+               @Override public FlightDistanceRange getKey(Flight source) {
+                  return getDistanceRange(source);
+               }
+               @Override public Long initializeValue(Flight source) {
+                  return Long.valueOf(1);
+               }
+               @Override public Long updateValue(Flight source, Long value) {
+                  return Long.valueOf(value.longValue() + 1);
+               }
+               @Override public void forEach(Entry<FlightDistanceRange, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-10s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportDaysWithLeastCancellations(ReportContext context) {
@@ -398,90 +618,109 @@ public class IteratorFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparator, limit, 
-         new CountingAccumulator<Flight, ChronoLocalDate>() {
-            @Override public boolean filter(Flight source) {
-               return source.cancelled();
-            }
-            @Override public ChronoLocalDate getKey(Flight source) {
-               return source.getDate();
-            }
-            @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
-               context.getTerminal()
-                      .printf("%-10s       %,3d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparator, limit, 
+            new CountingAccumulator<Flight, ChronoLocalDate>() {
+               @Override public boolean filter(Flight source) {
+                  return source.cancelled();
+               }
+               @Override public ChronoLocalDate getKey(Flight source) {
+                  return source.getDate();
+               }
+               @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-10s       %,3d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalMonthlyFlights(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByKey(), limit, 
-         new CountingAccumulator<Flight, YearMonth>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public YearMonth getKey(Flight source) {
-               return source.getYearMonth();
-            }
-            @Override public void forEach(Entry<YearMonth, Long> entry) {
-               context.getTerminal()
-                      .printf("%s\t%,10d\n", 
-                              YEAR_MONTH_FORMAT.format(entry.getKey()), 
-                              entry.getValue());
-            }
+      CountingAccumulator<Flight, YearMonth> accumulator = new CountingAccumulator<Flight, YearMonth>() {
+         @Override public boolean filter(Flight source) {
+            return source.notCancelled();
+         }
+         @Override public YearMonth getKey(Flight source) {
+            return source.getYearMonth();
+         }
+         @Override public void forEach(Entry<YearMonth, Long> entry) {
+            context.getTerminal()
+                   .printf("%s\t%,10d\n", 
+                           YEAR_MONTH_FORMAT.format(entry.getKey()), 
+                           entry.getValue());
          }
-      );
+      };
+      // monthly totals are the sums of the daily totals of a store
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      if(store != null) {
+         Map<String, Long> months = store.rollUp(Dimension.DAY, new Function<String, String>() {
+            @Override public String apply(String day) {
+               return AggregateStore.getMonth(day);
+            }
+         }, Measure.FLIGHTS, Measure.CANCELLED);
+         Map<YearMonth, Long> totals = new HashMap<>();
+         for(Entry<String, Long> entry : months.entrySet()) {
+            totals.put(YearMonth.parse(entry.getKey()), entry.getValue());
+         }
+         accumulateTotals(totals, comparingByKey(), limit, accumulator);
+         return;
+      }
+      try(FlightIterator iterator = repository.getFlightIterator(year)) {
+         accumulate(iterator, comparingByKey(), limit, accumulator);
+      }
    }
 
    public void reportTotalDailyFlights(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByKey(), limit, 
-         new CountingAccumulator<Flight, ChronoLocalDate>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public ChronoLocalDate getKey(Flight source) {
-               return source.getDate();
-            }
-            @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
-               context.getTerminal()
-                      .printf("%s\t%,10d\n", entry.getKey(), entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByKey(), limit, 
+            new CountingAccumulator<Flight, ChronoLocalDate>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public ChronoLocalDate getKey(Flight source) {
+                  return source.getDate();
+               }
+               @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
+                  context.getTerminal()
+                         .printf("%s\t%,10d\n", entry.getKey(), entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByDayOfWeek(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByKey(), limit, 
-         new CountingAccumulator<Flight, DayOfWeek>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public DayOfWeek getKey(Flight source) {
-               return source.getDate().getDayOfWeek();
-            }
-            @Override public void forEach(Entry<DayOfWeek, Long> entry) {
-               context.getTerminal()
-                      .printf("%10s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByKey(), limit, 
+            new CountingAccumulator<Flight, DayOfWeek>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public DayOfWeek getKey(Flight source) {
+                  return source.getDate().getDayOfWeek();
+               }
+               @Override public void forEach(Entry<DayOfWeek, Long> entry) {
+                  context.getTerminal()
+                         .printf("%10s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostFlightsByDay(ReportContext context) {
@@ -497,78 +736,118 @@ public class IteratorFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparator, limit, 
-         new CountingAccumulator<Flight, ChronoLocalDate>() {
-            @Override public boolean filter(Flight source) {
-               return source.notCancelled();
-            }
-            @Override public ChronoLocalDate getKey(Flight source) {
-               return source.getDate();
-            }
-            @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
-               context.getTerminal()
-                      .printf("%s\t%,10d\n", entry.getKey(), entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparator, limit, 
+            new CountingAccumulator<Flight, ChronoLocalDate>() {
+               @Override public boolean filter(Flight source) {
+                  return source.notCancelled();
+               }
+               @Override public ChronoLocalDate getKey(Flight source) {
+                  return source.getDate();
+               }
+               @Override public void forEach(Entry<ChronoLocalDate, Long> entry) {
+                  context.getTerminal()
+                         .printf("%s\t%,10d\n", entry.getKey(), entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostFlightsByOriginByDay(ReportContext context) {
       final int year = context.getYear();
-      final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, PairGroup<Airport, LocalDate>>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled();
-            }
-            @Override public PairGroup<Airport, LocalDate> getKey(
-               Flight flight) {
-               return new PairGroup<Airport, LocalDate>(flight.getOrigin(), 
-                                                        flight.getDate());
-            }
-            @Override public void forEach(Entry<PairGroup<Airport, LocalDate>, 
-               Long> entry) {
-               PairGroup<Airport, LocalDate> key = entry.getKey();
-               context.getTerminal()
-                      .printf("%-30s\t%s\t%,10d\n", 
-                              left(key.getFirst().getName(), 30), 
-                              key.getSecond(), 
-                              entry.getValue()
-               );
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulateCounts(context, iterator, 
+            new CountingAccumulator<Flight, PairGroup<Airport, LocalDate>>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled();
+               }
+               @Override public PairGroup<Airport, LocalDate> getKey(
+                  Flight flight) {
+                  return new PairGroup<Airport, LocalDate>(flight.getOrigin(), 
+                                                           flight.getDate());
+               }
+               @Override public void forEach(Entry<PairGroup<Airport, LocalDate>, 
+                  Long> entry) {
+                  PairGroup<Airport, LocalDate> key = entry.getKey();
+                  context.getTerminal()
+                         .printf("%-30s\t%s\t%,10d\n", 
+                                 left(key.getFirst().getName(), 30), 
+                                 key.getSecond(), 
+                                 entry.getValue()
+                  );
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostFlightsByCarrierByDay(ReportContext context) {
       final int year = context.getYear();
-      final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, PairGroup<Carrier, LocalDate>>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled();
-            }
-            @Override public PairGroup<Carrier, LocalDate> getKey(
-               Flight flight) {
-               return new PairGroup<Carrier, LocalDate>(flight.getCarrier(), 
-                                                        flight.getDate());
-            }
-            @Override public void forEach(
-               Entry<PairGroup<Carrier, LocalDate>, Long> entry) {
-               PairGroup<Carrier, LocalDate> key = entry.getKey();
-               context.getTerminal()
-                      .printf("%-30s\t%s\t%,10d\n", 
-                              left(key.getFirst().getName(), 30), 
-                              key.getSecond(), 
-                              entry.getValue()
-               );
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulateCounts(context, iterator, 
+            new CountingAccumulator<Flight, PairGroup<Carrier, LocalDate>>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled();
+               }
+               @Override public PairGroup<Carrier, LocalDate> getKey(
+                  Flight flight) {
+                  return new PairGroup<Carrier, LocalDate>(flight.getCarrier(), 
+                                                           flight.getDate());
+               }
+               @Override public void forEach(
+                  Entry<PairGroup<Carrier, LocalDate>, Long> entry) {
+                  PairGroup<Carrier, LocalDate> key = entry.getKey();
+                  context.getTerminal()
+                         .printf("%-30s\t%s\t%,10d\n", 
+                                 left(key.getFirst().getName(), 30), 
+                                 key.getSecond(), 
+                                 entry.getValue()
+                  );
+               }
             }
+         );
+      }
+   }
+
+   private static FlightDistanceRange getDistanceRange(Flight flight) {
+      int distance = flight.getDistance();
+      for(FlightDistanceRange range : DISTANCE_RANGES) {
+         if(range.contains(distance)) {
+            return range;
+         }
+      }
+      throw new IllegalStateException("No range for distance of " + distance);
+   }
+
+   /**
+    * Count flights by key and pass the most frequent keys to the
+    * accumulator, exactly or, in approximate mode, with a heavy hitters
+    * sketch whose accuracy is printed after the results.
+    */
+   private static <K extends Comparable<K>> void accumulateCounts(ReportContext context, 
+      Iterator<Flight> iterator, CountingAccumulator<Flight, K> accumulator) {
+      final int limit = context.getLimit();
+      if(context.isApproximate()) {
+         HeavyHitters<K> sketch = accumulateHeavyHitters(iterator, limit, accumulator);
+         context.getTerminal().println(sketch.describeErrorBound());
+      } else {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, accumulator);
+      }
+   }
+
+   /**
+    * Returns a function from an airport's IATA code to its state, or null
+    * for an unknown airport.
+    */
+   private static Function<String, String> toState(final Repository repository) {
+      return new Function<String, String>() {
+         @Override public String apply(String iata) {
+            Airport airport = repository.getAirport(iata);
+            return airport == null ? null : airport.getState();
          }
-      );
+      };
    }
 }
\ No newline at end of file
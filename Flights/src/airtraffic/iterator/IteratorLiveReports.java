@@ -1,6 +1,19 @@
 package airtraffic.iterator;
 
-import java.util.Iterator;
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.beryx.textio.TextTerminal;
 
@@ -9,32 +22,44 @@ import airtraffic.AirportMetrics;
 import airtraffic.Carrier;
 import airtraffic.CarrierMetrics;
 import airtraffic.Flight;
+import airtraffic.FlightIterator;
 import airtraffic.LiveReports;
 import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.ingest.AggregateStore.Dimension;
+import airtraffic.ingest.AggregateStore.Measure;
+import airtraffic.live.AnomalyDetector;
+import airtraffic.live.AnomalyDetector.Alert;
+import airtraffic.live.FlowIterator;
+import airtraffic.live.Multicaster;
+import airtraffic.live.Multicaster.Branch;
+import airtraffic.live.Multicaster.Overflow;
+import airtraffic.live.ReplayEngine;
+import airtraffic.live.WindowedMetrics;
+import airtraffic.live.WindowedMetrics.Window;
 
 public class IteratorLiveReports implements LiveReports {
 
    @Override
    public void reportAirportMetrics(ReportContext context) {
-      final int year = context.getYear();
       final Airport airport = context.getAirport();
 
       TextTerminal<?> terminal = context.getTerminal();
       final AirportMetrics metrics = new AirportMetrics(airport);
-      Iterator<Flight> iterator = context.getRepository()
-                                         .getFlightIterator(year);
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.getOrigin().equals(airport) || 
-            flight.getDestination().equals(airport)) {
-            metrics.addFlight(flight);
-            terminal.printf("%,10d\t%,10d\t%,10d\t%,10d\t  %,10d", 
-                            metrics.getTotalFlights(), 
-                            metrics.getTotalCancelled(), 
-                            metrics.getTotalDiverted(), 
-                            metrics.getTotalOrigins(), 
-                            metrics.getTotalDestinations());
-            terminal.moveToLineStart();
+      try(FlightIterator iterator = getFlights(context)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.getOrigin().equals(airport) || 
+               flight.getDestination().equals(airport)) {
+               metrics.addFlight(flight);
+               terminal.printf("%,10d\t%,10d\t%,10d\t%,10d\t  %,10d", 
+                               metrics.getTotalFlights(), 
+                               metrics.getTotalCancelled(), 
+                               metrics.getTotalDiverted(), 
+                               metrics.getTotalOrigins(), 
+                               metrics.getTotalDestinations());
+               terminal.moveToLineStart();
+            }
          }
       }
 
@@ -42,26 +67,207 @@ public class IteratorLiveReports implements LiveReports {
    }
 
    public void reportCarrierMetrics(ReportContext context) {
-      final int year = context.getYear();
       final Carrier carrier = context.getCarrier();
 
       TextTerminal<?> terminal = context.getTerminal();
       final CarrierMetrics metrics = new CarrierMetrics(carrier);
-      Iterator<Flight> iterator = context.getRepository()
-                                         .getFlightIterator(year);
-      while(iterator.hasNext()) {
-         Flight flight = iterator.next();
-         if(flight.getCarrier().equals(carrier)) {
-            metrics.addFlight(flight);
-            terminal.printf("%,10d\t%,10d\t%,10d\t%,10d", 
-                            metrics.getTotalFlights(), 
-                            metrics.getTotalCancelled(), 
-                            metrics.getTotalDiverted(), 
-                            metrics.getAirports().size());
-            terminal.moveToLineStart();
+      try(FlightIterator iterator = getFlights(context)) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.getCarrier().equals(carrier)) {
+               metrics.addFlight(flight);
+               terminal.printf("%,10d\t%,10d\t%,10d\t%,10d", 
+                               metrics.getTotalFlights(), 
+                               metrics.getTotalCancelled(), 
+                               metrics.getTotalDiverted(), 
+                               metrics.getAirports().size());
+               terminal.moveToLineStart();
+            }
          }
       }
 
       terminal.println();
    }
+
+   /**
+    * Returns the flights for the year, replayed in departure order in
+    * replay mode.
+    */
+   private static FlightIterator getFlights(ReportContext context) {
+      if(!context.isReplay()) {
+         return context.getRepository().getFlightIterator(context.getYear());
+      }
+      final FlowIterator<Flight> iterator = ReplayEngine.of(context).iterator();
+      return new FlightIterator() {
+         @Override
+         public boolean hasNext() {
+            return iterator.hasNext();
+         }
+         @Override
+         public Flight next() {
+            return iterator.next();
+         }
+         @Override
+         public void close() {
+            iterator.close();
+         }
+      };
+   }
+
+   @Override
+   public void reportAirportConditions(ReportContext context) {
+      final Airport airport = context.getAirport();
+
+      TextTerminal<?> terminal = context.getTerminal();
+      WindowedMetrics<Airport> lastHour = 
+         WindowedMetrics.sliding(Duration.ofHours(1), Duration.ofMinutes(5));
+      WindowedMetrics<Airport> today = WindowedMetrics.tumbling(Duration.ofDays(1));
+      try(FlowIterator<Flight> iterator = ReplayEngine.of(context).iterator()) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(flight.getOrigin().equals(airport) || 
+               flight.getDestination().equals(airport)) {
+               lastHour.add(airport, flight);
+               today.add(airport, flight);
+               printConditions(terminal, today.getWatermark(), 
+                               lastHour.get(airport), today.get(airport));
+            }
+         }
+      }
+
+      terminal.println();
+   }
+
+   @Override
+   public void reportCarrierConditions(ReportContext context) {
+      final Carrier carrier = context.getCarrier();
+
+      TextTerminal<?> terminal = context.getTerminal();
+      WindowedMetrics<Carrier> lastHour = 
+         WindowedMetrics.sliding(Duration.ofHours(1), Duration.ofMinutes(5));
+      WindowedMetrics<Carrier> today = WindowedMetrics.tumbling(Duration.ofDays(1));
+      try(FlowIterator<Flight> iterator = ReplayEngine.of(context).iterator()) {
+         while(iterator.hasNext()) {
+            Flight flight = iterator.next();
+            if(carrier.equals(flight.getCarrier())) {
+               lastHour.add(carrier, flight);
+               today.add(carrier, flight);
+               printConditions(terminal, today.getWatermark(), 
+                               lastHour.get(carrier), today.get(carrier));
+            }
+         }
+      }
+
+      terminal.println();
+   }
+
+   private void printConditions(TextTerminal<?> terminal, LocalDateTime time, 
+                                Window lastHour, Window today) {
+      terminal.printf("%s\t%,9d\t%,9d\t%9.1f\t%,9d\t%,9d\t%9.1f", 
+                      EVENT_TIME_FORMAT.format(time), 
+                      lastHour.getFlights(), 
+                      lastHour.getCancelled(), 
+                      lastHour.getMeanArrivalDelay(), 
+                      today.getFlights(), 
+                      today.getCancelled(), 
+                      today.getMeanArrivalDelay());
+      terminal.moveToLineStart();
+   }
+
+   @Override
+   public void reportAnomalies(ReportContext context) {
+      final TextTerminal<?> terminal = context.getTerminal();
+      AnomalyDetector detector = new AnomalyDetector(new Consumer<Alert>() {
+         @Override
+         public void accept(Alert alert) {
+            printAlert(terminal, alert);
+         }
+      });
+      try(FlowIterator<Flight> iterator = ReplayEngine.of(context).iterator()) {
+         while(iterator.hasNext()) {
+            detector.accept(iterator.next());
+         }
+      }
+
+      terminal.printf("\n%,d alerts in %,d flights\n", detector.getAlerts(), detector.getFlights());
+   }
+
+   private void printAlert(TextTerminal<?> terminal, Alert alert) {
+      terminal.printf("%s\t%-7s\t%-4s\t%-13s\t%-7s\t%6.1f%%\t%6.1f%%\t%6.1f\t%s\n", 
+                      EVENT_TIME_FORMAT.format(alert.getTime()), 
+                      alert.getScope(), 
+                      alert.getKey(), 
+                      alert.getKind(), 
+                      alert.isCleared() ? "cleared" : "raised", 
+                      alert.getRate() * 100, 
+                      alert.getBaselineRate() * 100, 
+                      alert.getZScore(), 
+                      alert.getCause() != null ? alert.getCause() : "");
+   }
+
+   @Override
+   public void reportAirportDashboard(ReportContext context) {
+      Repository repository = context.getRepository();
+      TextTerminal<?> terminal = context.getTerminal();
+      List<Entry<String, Long>> origins = 
+         new ArrayList<>(repository.getAggregateStore(context.getYear())
+                                   .get(Dimension.ORIGIN, Measure.FLIGHTS)
+                                   .entrySet());
+      Collections.sort(origins, new Comparator<Entry<String, Long>>() {
+         @Override
+         public int compare(Entry<String, Long> e1, Entry<String, Long> e2) {
+            return e2.getValue().compareTo(e1.getValue());
+         }
+      });
+      Map<Airport, AirportMetrics> metrics = new LinkedHashMap<>();
+      Map<Airport, Branch> branches = new HashMap<>();
+      try(Multicaster multicaster = new Multicaster()) {
+         for(Entry<String, Long> origin : origins) {
+            if(metrics.size() == context.getLimit()) {
+               break;
+            }
+            final Airport airport = repository.getAirport(origin.getKey());
+            final AirportMetrics m = new AirportMetrics(airport);
+            metrics.put(airport, m);
+            branches.put(airport, multicaster.subscribe(new Predicate<Flight>() {
+               @Override
+               public boolean test(Flight flight) {
+                  return flight.getOrigin().equals(airport) || 
+                         flight.getDestination().equals(airport);
+               }
+            }, Multicaster.DEFAULT_CAPACITY, Overflow.DROP, new Consumer<Flight>() {
+               @Override
+               public void accept(Flight flight) {
+                  m.addFlight(flight);
+               }
+            }));
+         }
+         multicaster.connect(ReplayEngine.of(context));
+         while(!multicaster.awaitCompletion(DASHBOARD_REFRESH_MILLIS)) {
+            printDashboard(terminal, multicaster.getPublished(), metrics, branches);
+         }
+         printDashboard(terminal, multicaster.getPublished(), metrics, branches);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void printDashboard(TextTerminal<?> terminal, long published, 
+                               Map<Airport, AirportMetrics> metrics, 
+                               Map<Airport, Branch> branches) {
+      terminal.printf("\n%,d flights replayed\n", published);
+      terminal.println("Airport\t     Total\t Cancelled\t  Diverted\t  Buffered\t   Dropped");
+      terminal.println(repeat("-", 72));
+      for(Entry<Airport, AirportMetrics> entry : metrics.entrySet()) {
+         AirportMetrics m = entry.getValue();
+         Branch branch = branches.get(entry.getKey());
+         terminal.printf("%-7s\t%,10d\t%,10d\t%,10d\t%,10d\t%,10d\n", 
+                         entry.getKey().getIATA(), 
+                         m.getTotalFlights(), 
+                         m.getTotalCancelled(), 
+                         m.getTotalDiverted(), 
+                         branch.getBuffered(), 
+                         branch.getDropped());
+      }
+   }
 }
\ No newline at end of file
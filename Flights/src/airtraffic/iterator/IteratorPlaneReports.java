@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map.Entry;
 
 import airtraffic.Flight;
+import airtraffic.FlightIterator;
 import airtraffic.Plane;
 import airtraffic.Plane.AircraftType;
 import airtraffic.Plane.EngineType;
@@ -119,172 +120,179 @@ public class IteratorPlaneReports implements PlaneReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.cancelled() && flight.validTailNumber();
-            }
-            @Override public String getKey(Flight flight) {
-               return flight.getTailNumber();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%-8s\t%,6d\n", entry.getKey(), entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, String>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.cancelled() && flight.validTailNumber();
+               }
+               @Override public String getKey(Flight flight) {
+                  return flight.getTailNumber();
+               }
+               @Override public void forEach(Entry<String, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-8s\t%,6d\n", entry.getKey(), entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostFlightsByPlane(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, Plane>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled() && flight.validTailNumber();
-            }
-            @Override public Plane getKey(Flight flight) {
-               return flight.getPlane();
-            }
-            @Override public void forEach(Entry<Plane, Long> entry) {
-               Plane plane = entry.getKey();
-               context.getTerminal()
-                      .printf("%-8s  %-20s  %-10s  %,10d\n", 
-                              plane.getTailNumber(), 
-                              left(plane.getManufacturer(), 20),
-                              left(plane.getModel().getModelNumber(), 10),
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, Plane>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled() && flight.validTailNumber();
+               }
+               @Override public Plane getKey(Flight flight) {
+                  return flight.getPlane();
+               }
+               @Override public void forEach(Entry<Plane, Long> entry) {
+                  Plane plane = entry.getKey();
+                  context.getTerminal()
+                         .printf("%-8s  %-20s  %-10s  %,10d\n", 
+                                 plane.getTailNumber(), 
+                                 left(plane.getManufacturer(), 20),
+                                 left(plane.getModel().getModelNumber(), 10),
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportMostFlightsByPlaneModel(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, PlaneModel>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled() && 
-                      ! "UNKNOWN".equals(flight.getPlane().getManufacturer()); 
-            }
-            @Override public PlaneModel getKey(Flight flight) {
-               return flight.getPlane().getModel();
-            }
-            @Override public void forEach(Entry<PlaneModel, Long> entry) {
-               PlaneModel model = entry.getKey();
-               Long count = entry.getValue();
-               context.getTerminal()
-                      .printf("%-25s\t%-20s\t%,10d\t%8.1f",
-                              model.getManufacturer(),
-                              model.getModelNumber(),
-                              count,
-                              count.floatValue() / 365);
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, PlaneModel>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled() && 
+                         ! "UNKNOWN".equals(flight.getPlane().getManufacturer()); 
+               }
+               @Override public PlaneModel getKey(Flight flight) {
+                  return flight.getPlane().getModel();
+               }
+               @Override public void forEach(Entry<PlaneModel, Long> entry) {
+                  PlaneModel model = entry.getKey();
+                  Long count = entry.getValue();
+                  context.getTerminal()
+                         .printf("%-25s\t%-20s\t%,10d\t%8.1f",
+                                 model.getManufacturer(),
+                                 model.getModelNumber(),
+                                 count,
+                                 count.floatValue() / 365);
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByPlaneManufacturer(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled();
-            }
-            @Override public String getKey(Flight flight) {
-               return flight.getPlane().getManufacturer();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%-25s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, String>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled();
+               }
+               @Override public String getKey(Flight flight) {
+                  return flight.getPlane().getManufacturer();
+               }
+               @Override public void forEach(Entry<String, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-25s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByPlaneAgeRange(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByKey(), limit, 
-         new CountingAccumulator<Flight, PlaneAgeRange>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled() && flight.getPlane().getYear() > 0;
-            }
-            @Override public PlaneAgeRange getKey(Flight flight) {
-               int age = flight.getYear() - flight.getPlane().getYear();
-               for(PlaneAgeRange range : AGE_RANGES) {
-                  if(range.contains(age)) {
-                     return range;
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByKey(), limit, 
+            new CountingAccumulator<Flight, PlaneAgeRange>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled() && flight.getPlane().getYear() > 0;
+               }
+               @Override public PlaneAgeRange getKey(Flight flight) {
+                  int age = flight.getYear() - flight.getPlane().getYear();
+                  for(PlaneAgeRange range : AGE_RANGES) {
+                     if(range.contains(age)) {
+                        return range;
+                     }
                   }
+                  throw new IllegalStateException("No range for age of " + age);
+               }
+               @Override public void forEach(Entry<PlaneAgeRange, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-10s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
                }
-               throw new IllegalStateException("No range for age of " + age);
-            }
-            @Override public void forEach(Entry<PlaneAgeRange, Long> entry) {
-               context.getTerminal()
-                      .printf("%-10s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByAircraftType(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled();
-            }
-            @Override public String getKey(Flight flight) {
-               return flight.getPlane().getAircraftType().name();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%-25s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, String>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled();
+               }
+               @Override public String getKey(Flight flight) {
+                  return flight.getPlane().getAircraftType().name();
+               }
+               @Override public void forEach(Entry<String, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-25s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 
    public void reportTotalFlightsByEngineType(ReportContext context) {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      Iterator<Flight> iterator = context.getRepository().getFlightIterator(year);
-      accumulate(iterator, comparingByValue(reverseOrder()), limit, 
-         new CountingAccumulator<Flight, String>() {
-            @Override public boolean filter(Flight flight) {
-               return flight.notCancelled();
-            }
-            @Override public String getKey(Flight flight) {
-               return flight.getPlane().getEngineType().name();
-            }
-            @Override public void forEach(Entry<String, Long> entry) {
-               context.getTerminal()
-                      .printf("%-25s\t%,10d\n", 
-                              entry.getKey(), 
-                              entry.getValue());
+      try(FlightIterator iterator = context.getRepository().getFlightIterator(year)) {
+         accumulate(iterator, comparingByValue(reverseOrder()), limit, 
+            new CountingAccumulator<Flight, String>() {
+               @Override public boolean filter(Flight flight) {
+                  return flight.notCancelled();
+               }
+               @Override public String getKey(Flight flight) {
+                  return flight.getPlane().getEngineType().name();
+               }
+               @Override public void forEach(Entry<String, Long> entry) {
+                  context.getTerminal()
+                         .printf("%-25s\t%,10d\n", 
+                                 entry.getKey(), 
+                                 entry.getValue());
+               }
             }
-         }
-      );
+         );
+      }
    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package airtraffic.iterator;
+
+import airtraffic.Flight;
+
+/**
+ * Extension of EstimatingAccumulator for estimating how often an event,
+ * such as a cancellation, happens to the flights with each key.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public interface RateAccumulator<K> extends EstimatingAccumulator<K> {
+   boolean isEvent(Flight source);
+}
\ No newline at end of file
@@ -0,0 +1,360 @@
+package airtraffic.live;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.Flight;
+import airtraffic.Flight.CancellationCode;
+
+/**
+ * Watches a live stream of flights for bursts of cancellations or
+ * diversions at an airport or carrier, such as a storm closing an airport,
+ * and raises an alert when one starts and another when it has passed.
+ *
+ * For each airport and carrier the detector keeps two sets of counters
+ * that decay exponentially with event time: a recent set, with a half-life
+ * of an hour by default, and a baseline with a half-life of a week. A key
+ * is alerting when its recent rate is both above a fixed threshold and
+ * a number of standard deviations above its baseline rate, given the
+ * number of recent flights. It stops once the rate has fallen below half
+ * of either limit. Cancellations are counted at the origin airport and
+ * diversions at the destination, as in AirportMetrics, and cancellation
+ * alerts name the most common recent cause.
+ *
+ * Each flight updates a few counters for three keys, so a detector keeps
+ * up with millions of flights a second. It is meant to be used from one
+ * thread, the one reading the stream.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class AnomalyDetector implements Consumer<Flight> {
+   public static final Duration DEFAULT_HALF_LIFE = Duration.ofHours(1);
+   public static final Duration DEFAULT_BASELINE_HALF_LIFE = Duration.ofDays(7);
+   public static final double DEFAULT_RATE_THRESHOLD = 0.2;
+   public static final double DEFAULT_Z_THRESHOLD = 4.0;
+   public static final double DEFAULT_MIN_FLIGHTS = 10.0;
+   private static final int DECAY_TABLE_SIZE = 24 * 60;
+   private static final CancellationCode[] CAUSES = CancellationCode.values();
+
+   /**
+    * What an alert is about.
+    */
+   public enum Scope { AIRPORT, CARRIER }
+
+   /**
+    * The events whose rate an alert is raised for.
+    */
+   public enum Kind { CANCELLATIONS, DIVERSIONS }
+
+   private final Consumer<Alert> listener;
+   private final Map<Scope, Map<String, Counters>> counters = new EnumMap<>(Scope.class);
+   private double[] recentDecay;
+   private double[] baselineDecay;
+   private double rateThreshold = DEFAULT_RATE_THRESHOLD;
+   private double zThreshold = DEFAULT_Z_THRESHOLD;
+   private double minFlights = DEFAULT_MIN_FLIGHTS;
+   private long flights;
+   private long alerts;
+
+   public AnomalyDetector(Consumer<Alert> listener) {
+      this.listener = listener;
+      for(Scope scope : Scope.values()) {
+         counters.put(scope, new HashMap<>());
+      }
+      setHalfLife(DEFAULT_HALF_LIFE);
+      setBaselineHalfLife(DEFAULT_BASELINE_HALF_LIFE);
+   }
+
+   /**
+    * Set the half-life of the recent counters, which sets how quickly a
+    * burst is noticed and forgotten.
+    */
+   public AnomalyDetector setHalfLife(Duration halfLife) {
+      recentDecay = decayTable(halfLife);
+      return this;
+   }
+
+   /**
+    * Set the half-life of the baseline counters.
+    */
+   public AnomalyDetector setBaselineHalfLife(Duration halfLife) {
+      baselineDecay = decayTable(halfLife);
+      return this;
+   }
+
+   /**
+    * Set the lowest recent rate, between 0 and 1, that is alerted on.
+    */
+   public AnomalyDetector setRateThreshold(double rateThreshold) {
+      if(rateThreshold <= 0 || rateThreshold > 1) {
+         throw new IllegalArgumentException("Rate threshold must be in (0, 1]");
+      }
+      this.rateThreshold = rateThreshold;
+      return this;
+   }
+
+   /**
+    * Set how many standard deviations above the baseline the recent rate
+    * must be to alert.
+    */
+   public AnomalyDetector setZThreshold(double zThreshold) {
+      this.zThreshold = zThreshold;
+      return this;
+   }
+
+   /**
+    * Set the number of recent flights, after decay, a key needs before it
+    * can alert, so that one cancellation at a quiet airport does not.
+    */
+   public AnomalyDetector setMinFlights(double minFlights) {
+      this.minFlights = minFlights;
+      return this;
+   }
+
+   /**
+    * Returns the decay factors for whole minutes of elapsed time, up to a
+    * day. Longer gaps are computed as needed.
+    */
+   private static double[] decayTable(Duration halfLife) {
+      long minutes = halfLife.toMinutes();
+      if(minutes < 1) {
+         throw new IllegalArgumentException("Half-life must be at least a minute");
+      }
+      double[] table = new double[DECAY_TABLE_SIZE];
+      for(int i = 0; i < table.length; i++) {
+         table[i] = Math.pow(0.5, (double) i / minutes);
+      }
+      return table;
+   }
+
+   private static double decay(double[] table, long elapsed) {
+      if(elapsed < table.length) {
+         return table[(int) elapsed];
+      }
+      // table[1] is the decay of a minute
+      return Math.pow(table[1], elapsed);
+   }
+
+   @Override
+   public void accept(Flight flight) {
+      long time = ReplayEngine.getEventTime(flight);
+      Airport origin = flight.getOrigin();
+      Airport destination = flight.getDestination();
+      Carrier carrier = flight.getCarrier();
+      boolean cancelled = flight.cancelled();
+      boolean diverted = !cancelled && flight.diverted();
+      CancellationCode cause = cancelled ? flight.getCancellationCode() : null;
+      if(origin != null) {
+         update(Scope.AIRPORT, origin.getIATA(), time, cancelled, false, cause);
+      }
+      if(destination != null) {
+         update(Scope.AIRPORT, destination.getIATA(), time, false, diverted, null);
+      }
+      if(carrier != null) {
+         update(Scope.CARRIER, carrier.getCode(), time, cancelled, diverted, cause);
+      }
+      ++flights;
+   }
+
+   private void update(Scope scope, String key, long time, boolean cancelled,
+                       boolean diverted, CancellationCode cause) {
+      Map<String, Counters> map = counters.get(scope);
+      Counters c = map.get(key);
+      if(c == null) {
+         c = new Counters(time);
+         map.put(key, c);
+      }
+      c.add(time, cancelled, diverted, cause);
+      check(scope, key, c, Kind.CANCELLATIONS, time);
+      check(scope, key, c, Kind.DIVERSIONS, time);
+   }
+
+   private void check(Scope scope, String key, Counters c, Kind kind, long time) {
+      int k = kind.ordinal();
+      double events = c.recent[k];
+      double rate = events / c.recentFlights;
+      // smoothed so that a key with no events yet has a small baseline rate
+      double baseline = (c.baseline[k] + 1) / (c.baselineFlights + 2);
+      double z = (rate - baseline) / Math.sqrt(baseline * (1 - baseline) / c.recentFlights);
+      if(!c.alerting[k]) {
+         if(c.recentFlights >= minFlights && rate >= rateThreshold && z >= zThreshold) {
+            c.alerting[k] = true;
+            ++alerts;
+            listener.accept(new Alert(scope, key, kind, time, false, rate, baseline, z,
+                                      kind == Kind.CANCELLATIONS ? c.getCause() : null));
+         }
+      } else if(rate < rateThreshold / 2 || z < zThreshold / 2) {
+         c.alerting[k] = false;
+         listener.accept(new Alert(scope, key, kind, time, true, rate, baseline, z, null));
+      }
+   }
+
+   /**
+    * Returns the number of flights seen.
+    */
+   public long getFlights() {
+      return flights;
+   }
+
+   /**
+    * Returns the number of alerts raised, not counting the alerts that
+    * clear them.
+    */
+   public long getAlerts() {
+      return alerts;
+   }
+
+   /**
+    * The decayed counters of a key, as of the time of its latest flight.
+    */
+   private final class Counters {
+      private long time;
+      private double recentFlights;
+      private double baselineFlights;
+      private final double[] recent = new double[Kind.values().length];
+      private final double[] baseline = new double[Kind.values().length];
+      private final double[] causes = new double[CAUSES.length];
+      private final boolean[] alerting = new boolean[Kind.values().length];
+
+      Counters(long time) {
+         this.time = time;
+      }
+
+      void add(long now, boolean cancelled, boolean diverted, CancellationCode cause) {
+         // flights a little out of order are counted as if on time
+         if(now > time) {
+            double r = decay(recentDecay, now - time);
+            double b = decay(baselineDecay, now - time);
+            recentFlights *= r;
+            baselineFlights *= b;
+            for(int i = 0; i < recent.length; i++) {
+               recent[i] *= r;
+               baseline[i] *= b;
+            }
+            for(int i = 0; i < causes.length; i++) {
+               causes[i] *= r;
+            }
+            time = now;
+         }
+         recentFlights += 1;
+         baselineFlights += 1;
+         if(cancelled) {
+            recent[Kind.CANCELLATIONS.ordinal()] += 1;
+            baseline[Kind.CANCELLATIONS.ordinal()] += 1;
+            if(cause != null) {
+               causes[cause.ordinal()] += 1;
+            }
+         }
+         if(diverted) {
+            recent[Kind.DIVERSIONS.ordinal()] += 1;
+            baseline[Kind.DIVERSIONS.ordinal()] += 1;
+         }
+      }
+
+      CancellationCode getCause() {
+         int max = 0;
+         for(int i = 1; i < causes.length; i++) {
+            if(causes[i] > causes[max]) {
+               max = i;
+            }
+         }
+         return causes[max] > 0 ? CAUSES[max] : null;
+      }
+   }
+
+   /**
+    * A burst starting or, if cleared, ending at an airport or carrier.
+    */
+   public static final class Alert {
+      private final Scope scope;
+      private final String key;
+      private final Kind kind;
+      private final long time;
+      private final boolean cleared;
+      private final double rate;
+      private final double baseline;
+      private final double z;
+      private final CancellationCode cause;
+
+      Alert(Scope scope, String key, Kind kind, long time, boolean cleared,
+            double rate, double baseline, double z, CancellationCode cause) {
+         this.scope = scope;
+         this.key = key;
+         this.kind = kind;
+         this.time = time;
+         this.cleared = cleared;
+         this.rate = rate;
+         this.baseline = baseline;
+         this.z = z;
+         this.cause = cause;
+      }
+
+      public Scope getScope() {
+         return scope;
+      }
+
+      /**
+       * Returns the IATA code of the airport or the code of the carrier.
+       */
+      public String getKey() {
+         return key;
+      }
+
+      public Kind getKind() {
+         return kind;
+      }
+
+      /**
+       * Returns the scheduled departure of the flight that raised or
+       * cleared the alert.
+       */
+      public LocalDateTime getTime() {
+         return LocalDateTime.ofEpochSecond(time * 60, 0, ZoneOffset.UTC);
+      }
+
+      public boolean isCleared() {
+         return cleared;
+      }
+
+      /**
+       * Returns the recent rate of the events, between 0 and 1.
+       */
+      public double getRate() {
+         return rate;
+      }
+
+      public double getBaselineRate() {
+         return baseline;
+      }
+
+      /**
+       * Returns the number of standard deviations the recent rate is above
+       * the baseline rate.
+       */
+      public double getZScore() {
+         return z;
+      }
+
+      /**
+       * Returns the most common recent cause of cancellations, or null for
+       * diversions, cleared alerts and cancellations without a cause.
+       */
+      public CancellationCode getCause() {
+         return cause;
+      }
+
+      @Override
+      public String toString() {
+         return "Alert[" + scope + " " + key + " " + kind + (cleared ? " cleared" : "") +
+                " at " + getTime() + ", rate=" + rate + ", baseline=" + baseline +
+                ", z=" + z + (cause != null ? ", cause=" + cause : "") + "]";
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+package airtraffic.live;
+
+/**
+ * Interfaces for publishing items to subscribers with flow control, in the
+ * same shape as java.util.concurrent.Flow, which is not available on Java 8.
+ * A subscriber receives no more items than it has requested through its
+ * subscription, so a slow consumer holds back the publisher instead of
+ * being flooded by it.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class Flow {
+
+   private Flow() {
+   }
+
+   public interface Publisher<T> {
+      /**
+       * Add a subscriber, which receives onSubscribe first and then items
+       * as it requests them, until onComplete or onError.
+       */
+      void subscribe(Subscriber<? super T> subscriber);
+   }
+
+   public interface Subscriber<T> {
+      void onSubscribe(Subscription subscription);
+      void onNext(T item);
+      void onError(Throwable throwable);
+      void onComplete();
+   }
+
+   public interface Subscription {
+      /**
+       * Allow up to n more items to be delivered. The demand of successive
+       * requests adds up.
+       */
+      void request(long n);
+
+      /**
+       * Stop delivering items. Some items may still be delivered after
+       * this returns.
+       */
+      void cancel();
+   }
+}
\ No newline at end of file
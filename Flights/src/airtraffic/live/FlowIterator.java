@@ -0,0 +1,109 @@
+package airtraffic.live;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Subscriber that hands the items it receives to a consuming thread as an
+ * iterator. Items are requested in batches as the consumer takes them, so
+ * the publisher never gets more than a small buffer ahead of the consumer.
+ * Closing the iterator cancels the subscription.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlowIterator<T> implements Flow.Subscriber<T>, Iterator<T>, AutoCloseable {
+   private static final Object COMPLETE = new Object();
+
+   private final int batchSize;
+   private final BlockingQueue<Object> queue;
+   private volatile Flow.Subscription subscription;
+   private Object next;
+   private int taken;
+
+   public FlowIterator(int batchSize) {
+      this.batchSize = batchSize;
+      // room for two batches plus the completion signal
+      this.queue = new ArrayBlockingQueue<>(batchSize * 2 + 1);
+   }
+
+   @Override
+   public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(batchSize * 2);
+   }
+
+   @Override
+   public void onNext(T item) {
+      put(item);
+   }
+
+   @Override
+   public void onError(Throwable throwable) {
+      put(new Failure(throwable));
+   }
+
+   @Override
+   public void onComplete() {
+      put(COMPLETE);
+   }
+
+   private void put(Object signal) {
+      try {
+         queue.put(signal);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   @Override
+   public boolean hasNext() {
+      if(next == null) {
+         try {
+            next = queue.take();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while waiting for items", e);
+         }
+         if(next instanceof Failure) {
+            Throwable cause = ((Failure) next).cause;
+            throw cause instanceof RuntimeException ? (RuntimeException) cause :
+                                                      new IllegalStateException(cause);
+         }
+      }
+      return next != COMPLETE;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public T next() {
+      if(!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      T item = (T) next;
+      next = null;
+      if(++taken == batchSize) {
+         taken = 0;
+         subscription.request(batchSize);
+      }
+      return item;
+   }
+
+   @Override
+   public void close() {
+      if(subscription != null) {
+         subscription.cancel();
+      }
+      queue.clear();
+   }
+
+   private static final class Failure {
+      private final Throwable cause;
+
+      Failure(Throwable cause) {
+         this.cause = cause;
+      }
+   }
+}
\ No newline at end of file
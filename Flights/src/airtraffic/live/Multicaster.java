@@ -0,0 +1,378 @@
+package airtraffic.live;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Flight;
+
+/**
+ * Shares one live stream of flights between any number of subscribers, so
+ * that many dashboards can be fed from a single read of the flight data.
+ * Each subscriber has its own filter, its own bounded buffer and its own
+ * delivery thread, so a slow subscriber falls behind on its own rather
+ * than holding up the others.
+ *
+ * What happens when a subscriber's buffer is full is set per subscriber:
+ * BLOCK holds up the source until there is room, DROP discards the new
+ * flight, and CONFLATE discards the oldest buffered flight, so that the
+ * subscriber skips ahead and stays current. Dropped flights are counted.
+ *
+ * Flights are fully decoded before they are shared, and filters run on
+ * the thread of the source, so they should be cheap.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class Multicaster implements Flow.Subscriber<Flight>, AutoCloseable {
+   public static final int DEFAULT_CAPACITY = 4096;
+   private static final AtomicInteger THREADS = new AtomicInteger();
+
+   /**
+    * What to do with a flight for a subscriber whose buffer is full.
+    */
+   public enum Overflow { BLOCK, DROP, CONFLATE }
+
+   private final Logger logger = LoggerFactory.getLogger(Multicaster.class);
+   private final List<Branch> branches = new CopyOnWriteArrayList<>();
+   private volatile Flow.Subscription source;
+   private long published;
+   private boolean sourceDone;
+   private Throwable sourceError;
+
+   /**
+    * Start taking flights from a publisher, such as a replay. Subscribers
+    * added before this see every flight; those added later see the
+    * flights from then on.
+    */
+   public Multicaster connect(Flow.Publisher<Flight> publisher) {
+      publisher.subscribe(this);
+      return this;
+   }
+
+   /**
+    * Add a subscriber to the flights that match a filter, buffering up to
+    * capacity flights for it.
+    */
+   public Branch subscribe(Predicate<? super Flight> filter, int capacity, Overflow overflow,
+                           Flow.Subscriber<? super Flight> subscriber) {
+      Branch branch = new Branch(filter, capacity, overflow, subscriber);
+      branches.add(branch);
+      synchronized(this) {
+         if(sourceDone) {
+            branch.finish(sourceError);
+         }
+      }
+      Thread thread = new Thread(branch, "multicast-" + THREADS.incrementAndGet());
+      thread.setDaemon(true);
+      thread.start();
+      return branch;
+   }
+
+   /**
+    * Add a consumer of the flights that match a filter, which is given
+    * every flight it is not too slow for.
+    */
+   public Branch subscribe(Predicate<? super Flight> filter, int capacity, Overflow overflow,
+                           Consumer<? super Flight> consumer) {
+      return subscribe(filter, capacity, overflow, new Flow.Subscriber<Flight>() {
+         @Override
+         public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+         }
+
+         @Override
+         public void onNext(Flight item) {
+            consumer.accept(item);
+         }
+
+         @Override
+         public void onError(Throwable throwable) {
+            logger.error("Live flight stream failed", throwable);
+         }
+
+         @Override
+         public void onComplete() {
+         }
+      });
+   }
+
+   @Override
+   public void onSubscribe(Flow.Subscription subscription) {
+      source = subscription;
+      subscription.request(Long.MAX_VALUE);
+   }
+
+   @Override
+   public void onNext(Flight flight) {
+      flight.decodeAll();
+      for(Branch branch : branches) {
+         branch.offer(flight);
+      }
+      synchronized(this) {
+         ++published;
+      }
+   }
+
+   @Override
+   public void onError(Throwable throwable) {
+      finishSource(throwable);
+   }
+
+   @Override
+   public void onComplete() {
+      finishSource(null);
+   }
+
+   private void finishSource(Throwable error) {
+      synchronized(this) {
+         sourceDone = true;
+         sourceError = error;
+         notifyAll();
+      }
+      for(Branch branch : branches) {
+         branch.finish(error);
+      }
+   }
+
+   /**
+    * Returns the number of flights taken from the source.
+    */
+   public synchronized long getPublished() {
+      return published;
+   }
+
+   /**
+    * Wait up to the given time for the source to finish and every
+    * subscriber to be given its remaining flights. Returns true if they
+    * have.
+    */
+   public synchronized boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+      long due = System.currentTimeMillis() + timeoutMillis;
+      long now;
+      while(!isComplete() && (now = System.currentTimeMillis()) < due) {
+         wait(due - now);
+      }
+      return isComplete();
+   }
+
+   private synchronized boolean isComplete() {
+      if(!sourceDone) {
+         return false;
+      }
+      for(Branch branch : branches) {
+         if(!branch.isDone()) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Forget a branch whose subscriber has been given its terminal signal
+    * or has cancelled, so that flights are no longer offered to it and it
+    * can be collected.
+    */
+   private void branchDone(Branch branch) {
+      branches.remove(branch);
+      synchronized(this) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * Stop taking flights from the source and cancel every subscriber.
+    */
+   @Override
+   public void close() {
+      if(source != null) {
+         source.cancel();
+      }
+      for(Branch branch : branches) {
+         branch.cancel();
+      }
+   }
+
+   /**
+    * A subscriber, its filter and the flights buffered for it.
+    */
+   public final class Branch implements Flow.Subscription, Runnable {
+      private final Predicate<? super Flight> filter;
+      private final Overflow overflow;
+      private final Flow.Subscriber<? super Flight> subscriber;
+      private final Flight[] buffer;
+      private int head;
+      private int size;
+      private long demand;
+      private long delivered;
+      private long dropped;
+      private boolean cancelled;
+      private boolean finished;
+      private boolean done;
+      private Throwable error;
+
+      Branch(Predicate<? super Flight> filter, int capacity, Overflow overflow,
+             Flow.Subscriber<? super Flight> subscriber) {
+         if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+         }
+         this.filter = filter;
+         this.overflow = overflow;
+         this.subscriber = subscriber;
+         this.buffer = new Flight[capacity];
+      }
+
+      void offer(Flight flight) {
+         if(!filter.test(flight)) {
+            return;
+         }
+         synchronized(this) {
+            if(cancelled || finished) {
+               return;
+            }
+            if(size == buffer.length) {
+               switch(overflow) {
+                  case BLOCK:
+                     try {
+                        while(size == buffer.length && !cancelled) {
+                           wait();
+                        }
+                     } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        ++dropped;
+                        return;
+                     }
+                     if(cancelled) {
+                        return;
+                     }
+                     break;
+                  case DROP:
+                     ++dropped;
+                     return;
+                  case CONFLATE:
+                     buffer[head] = null;
+                     head = (head + 1) % buffer.length;
+                     --size;
+                     ++dropped;
+                     break;
+               }
+            }
+            buffer[(head + size) % buffer.length] = flight;
+            ++size;
+            notifyAll();
+         }
+      }
+
+      synchronized void finish(Throwable error) {
+         finished = true;
+         this.error = error;
+         notifyAll();
+      }
+
+      @Override
+      public synchronized void request(long n) {
+         if(n <= 0) {
+            error = new IllegalArgumentException("Requested " + n + " items");
+            cancelled = true;
+         } else {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+         }
+         notifyAll();
+      }
+
+      @Override
+      public void cancel() {
+         synchronized(this) {
+            cancelled = true;
+            notifyAll();
+         }
+         branches.remove(this);
+      }
+
+      @Override
+      public void run() {
+         try {
+            subscriber.onSubscribe(this);
+            Flight flight;
+            while((flight = take()) != null) {
+               subscriber.onNext(flight);
+            }
+            Throwable failure;
+            boolean complete;
+            synchronized(this) {
+               failure = error;
+               complete = !cancelled || failure != null;
+            }
+            if(failure != null) {
+               subscriber.onError(failure);
+            } else if(complete) {
+               subscriber.onComplete();
+            }
+         } catch (InterruptedException e) {
+            logger.debug("Subscriber interrupted");
+         } catch (RuntimeException e) {
+            logger.error("Subscriber failed, cancelling it", e);
+         } finally {
+            synchronized(this) {
+               cancelled = true;
+               done = true;
+               Arrays.fill(buffer, null);
+               size = 0;
+               notifyAll();
+            }
+            branchDone(this);
+         }
+      }
+
+      /**
+       * Wait for the next flight there is demand for. Returns null once
+       * the branch is cancelled, or finished and drained.
+       */
+      private synchronized Flight take() throws InterruptedException {
+         while(!cancelled && !(size > 0 && demand > 0) && !(finished && size == 0)) {
+            wait();
+         }
+         if(cancelled || size == 0) {
+            return null;
+         }
+         Flight flight = buffer[head];
+         buffer[head] = null;
+         head = (head + 1) % buffer.length;
+         --size;
+         --demand;
+         ++delivered;
+         notifyAll();
+         return flight;
+      }
+
+      synchronized boolean isDone() {
+         return done;
+      }
+
+      /**
+       * Returns the number of flights given to the subscriber.
+       */
+      public synchronized long getDelivered() {
+         return delivered;
+      }
+
+      /**
+       * Returns the number of flights dropped because the buffer was full.
+       */
+      public synchronized long getDropped() {
+         return dropped;
+      }
+
+      /**
+       * Returns the number of flights waiting in the buffer.
+       */
+      public synchronized int getBuffered() {
+         return size;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,400 @@
+package airtraffic.live;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Flight;
+import airtraffic.ReportContext;
+import airtraffic.Repository;
+
+/**
+ * Publishes the flights of one or more years in the order of their
+ * scheduled departure, as they would have been seen live, at a multiple
+ * of real time or as fast as subscribers take them. Each subscriber gets
+ * its own replay on its own thread, and a flight is only published once
+ * the subscriber has requested it.
+ *
+ * The flight data files are not in departure order, so they are first
+ * read in runs of a fixed number of flights, each sorted and spilled to a
+ * temporary file, and the runs are then merged. Memory use depends on the
+ * run size and not on the number of flights replayed.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ReplayEngine implements Flow.Publisher<Flight> {
+   public static final int DEFAULT_RUN_SIZE = 250_000;
+   public static final int DEFAULT_BATCH_SIZE = 256;
+   private static final long MINUTES_PER_DAY = 24 * 60;
+   private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+   private final Logger logger = LoggerFactory.getLogger(ReplayEngine.class);
+   private final Repository repository;
+   private final int[] years;
+   private double speed;
+   private int runSize = DEFAULT_RUN_SIZE;
+
+   public ReplayEngine(Repository repository, int... years) {
+      if(years.length == 0) {
+         throw new IllegalArgumentException("No years to replay");
+      }
+      this.repository = repository;
+      this.years = years.clone();
+   }
+
+   /**
+    * Returns an engine that replays the year of a report at the report's
+    * replay speed.
+    */
+   public static ReplayEngine of(ReportContext context) {
+      return new ReplayEngine(context.getRepository(), context.getYear())
+                .setSpeed(context.getReplaySpeed());
+   }
+
+   public double getSpeed() {
+      return speed;
+   }
+
+   /**
+    * Set how many times faster than real time flights are published, for
+    * example 60 to replay an hour of departures a minute. A speed of zero,
+    * the default, publishes flights as fast as subscribers request them.
+    */
+   public ReplayEngine setSpeed(double speed) {
+      if(speed < 0) {
+         throw new IllegalArgumentException("Speed cannot be negative");
+      }
+      this.speed = speed;
+      return this;
+   }
+
+   /**
+    * Set the number of flights sorted in memory at a time.
+    */
+   public ReplayEngine setRunSize(int runSize) {
+      if(runSize < 1) {
+         throw new IllegalArgumentException("Run size must be positive");
+      }
+      this.runSize = runSize;
+      return this;
+   }
+
+   /**
+    * Returns the scheduled departure of a flight, in minutes from the
+    * epoch, by which flights are replayed.
+    */
+   public static long getEventTime(Flight flight) {
+      int time = flight.getCRSDepartureTime();
+      return flight.getDate().toEpochDay() * MINUTES_PER_DAY + (time / 100) * 60 + time % 100;
+   }
+
+   @Override
+   public void subscribe(Flow.Subscriber<? super Flight> subscriber) {
+      Thread thread = new Thread(new Replay(subscriber), "replay");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Returns the replayed flights as an iterator, which holds back the
+    * replay until the caller takes them. Close it to stop early.
+    */
+   public FlowIterator<Flight> iterator() {
+      FlowIterator<Flight> iterator = new FlowIterator<>(DEFAULT_BATCH_SIZE);
+      subscribe(iterator);
+      return iterator;
+   }
+
+   /**
+    * Returns the replayed flights as a sequential stream, which must be
+    * closed if it is not read to the end.
+    */
+   public Stream<Flight> stream() {
+      FlowIterator<Flight> iterator = iterator();
+      return StreamSupport.stream(spliteratorUnknownSize(iterator, ORDERED | NONNULL), false)
+                          .onClose(iterator::close);
+   }
+
+   /**
+    * A flight record with the time it is replayed at.
+    */
+   private static final class Event {
+      private final long time;
+      private final String line;
+
+      Event(long time, String line) {
+         this.time = time;
+         this.line = line;
+      }
+   }
+
+   /**
+    * A sorted run of events, read one at a time during the merge.
+    */
+   private interface Run extends Closeable {
+      /**
+       * Returns the next event of the run, or null at its end.
+       */
+      Event next() throws IOException;
+   }
+
+   private static final class MemoryRun implements Run {
+      private final Event[] events;
+      private final int size;
+      private int position;
+
+      MemoryRun(Event[] events, int size) {
+         this.events = events;
+         this.size = size;
+      }
+
+      @Override
+      public Event next() {
+         return position < size ? events[position++] : null;
+      }
+
+      @Override
+      public void close() {
+      }
+   }
+
+   private static final class FileRun implements Run {
+      private final Path path;
+      private final BufferedReader reader;
+
+      FileRun(Path path) throws IOException {
+         this.path = path;
+         this.reader = Files.newBufferedReader(path, ISO_8859_1);
+      }
+
+      @Override
+      public Event next() throws IOException {
+         String line = reader.readLine();
+         if(line == null) {
+            return null;
+         }
+         int tab = line.indexOf('\t');
+         return new Event(Long.parseLong(line.substring(0, tab)), line.substring(tab + 1));
+      }
+
+      @Override
+      public void close() throws IOException {
+         reader.close();
+         Files.deleteIfExists(path);
+      }
+   }
+
+   /**
+    * The head of a run during the merge. Ties are broken by run, so flights
+    * with the same departure keep their order in the files.
+    */
+   private static final class Head {
+      private final Run run;
+      private final int index;
+      private Event event;
+
+      Head(Run run, int index) {
+         this.run = run;
+         this.index = index;
+      }
+   }
+
+   private static final Comparator<Head> HEAD_ORDER = (h1, h2) ->
+      h1.event.time != h2.event.time ? Long.compare(h1.event.time, h2.event.time) :
+                                       Integer.compare(h1.index, h2.index);
+
+   /**
+    * Replays the flights to a single subscriber.
+    */
+   private final class Replay implements Flow.Subscription, Runnable {
+      private final Flow.Subscriber<? super Flight> subscriber;
+      private final List<Run> runs = new ArrayList<>();
+      private Path tempDir;
+      private long demand;
+      private boolean cancelled;
+      private IllegalArgumentException invalidRequest;
+
+      Replay(Flow.Subscriber<? super Flight> subscriber) {
+         this.subscriber = subscriber;
+      }
+
+      @Override
+      public synchronized void request(long n) {
+         if(n <= 0) {
+            invalidRequest = new IllegalArgumentException("Requested " + n + " items");
+         } else {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+         }
+         notifyAll();
+      }
+
+      @Override
+      public synchronized void cancel() {
+         cancelled = true;
+         notifyAll();
+      }
+
+      @Override
+      public void run() {
+         subscriber.onSubscribe(this);
+         try {
+            long start = System.currentTimeMillis();
+            sortRuns();
+            logger.debug("Sorted {} runs in {} ms", runs.size(),
+                         System.currentTimeMillis() - start);
+            merge();
+         } catch (Throwable e) {
+            if(!isCancelled()) {
+               subscriber.onError(e);
+            }
+         } finally {
+            closeRuns();
+         }
+      }
+
+      private synchronized boolean isCancelled() {
+         return cancelled;
+      }
+
+      /**
+       * Read the flights in runs, sorting each one by departure. Every run
+       * but the last is written to a temporary file.
+       */
+      private void sortRuns() throws IOException {
+         Event[] events = new Event[runSize];
+         int size = 0;
+         for(int year : years) {
+            try(Stream<String> lines = repository.getFlightLines(year)) {
+               Iterator<String> iterator = lines.iterator();
+               while(iterator.hasNext() && !isCancelled()) {
+                  String line = iterator.next();
+                  events[size++] = new Event(getEventTime(new Flight(line, repository)), line);
+                  if(size == runSize) {
+                     spill(events, size);
+                     size = 0;
+                  }
+               }
+            }
+         }
+         Arrays.sort(events, 0, size, (e1, e2) -> Long.compare(e1.time, e2.time));
+         runs.add(new MemoryRun(events, size));
+      }
+
+      private void spill(Event[] events, int size) throws IOException {
+         Arrays.sort(events, 0, size, (e1, e2) -> Long.compare(e1.time, e2.time));
+         if(tempDir == null) {
+            tempDir = Files.createTempDirectory("replay");
+         }
+         Path path = tempDir.resolve("run-" + runs.size());
+         try(BufferedWriter writer = Files.newBufferedWriter(path, ISO_8859_1)) {
+            for(int i = 0; i < size; i++) {
+               writer.write(Long.toString(events[i].time));
+               writer.write('\t');
+               writer.write(events[i].line);
+               writer.newLine();
+               events[i] = null;
+            }
+         }
+         runs.add(new FileRun(path));
+      }
+
+      private void merge() throws IOException, InterruptedException {
+         PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, runs.size()), HEAD_ORDER);
+         for(int i = 0; i < runs.size(); i++) {
+            Head head = new Head(runs.get(i), i);
+            head.event = head.run.next();
+            if(head.event != null) {
+               heads.add(head);
+            }
+         }
+         long firstTime = heads.isEmpty() ? 0 : heads.peek().event.time;
+         long startMillis = System.currentTimeMillis();
+         while(!heads.isEmpty()) {
+            if(!awaitDemand()) {
+               return;
+            }
+            Head head = heads.poll();
+            Event event = head.event;
+            if(speed > 0 && !awaitTime(startMillis +
+                                       (long) ((event.time - firstTime) * MILLIS_PER_MINUTE / speed))) {
+               return;
+            }
+            subscriber.onNext(new Flight(event.line, repository));
+            head.event = head.run.next();
+            if(head.event != null) {
+               heads.add(head);
+            }
+         }
+         if(!isCancelled()) {
+            subscriber.onComplete();
+         }
+      }
+
+      /**
+       * Wait until the subscriber has requested another flight. Returns
+       * false if the subscription was cancelled.
+       */
+      private synchronized boolean awaitDemand() throws InterruptedException {
+         while(demand == 0 && !cancelled && invalidRequest == null) {
+            wait();
+         }
+         if(invalidRequest != null) {
+            throw invalidRequest;
+         }
+         if(cancelled) {
+            return false;
+         }
+         demand--;
+         return true;
+      }
+
+      /**
+       * Wait until the given time, when the next flight is due. Returns
+       * false if the subscription was cancelled meanwhile.
+       */
+      private synchronized boolean awaitTime(long due) throws InterruptedException {
+         long now;
+         while(!cancelled && (now = System.currentTimeMillis()) < due) {
+            wait(due - now);
+         }
+         return !cancelled;
+      }
+
+      private void closeRuns() {
+         for(Run run : runs) {
+            try {
+               run.close();
+            } catch (IOException e) {
+               logger.warn("Unable to remove replay run", e);
+            }
+         }
+         runs.clear();
+         if(tempDir != null) {
+            try {
+               Files.deleteIfExists(tempDir);
+            } catch (IOException e) {
+               logger.warn("Unable to remove {}", tempDir, e);
+            }
+         }
+      }
+   }
+}
\ No newline at end of file
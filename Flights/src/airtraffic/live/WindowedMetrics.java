@@ -0,0 +1,246 @@
+package airtraffic.live;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import airtraffic.Flight;
+
+/**
+ * Flight totals over a window of event time for each of a number of keys,
+ * such as airports or carriers. The window is divided into panes, and each
+ * key keeps a ring buffer with one slot per pane, so adding a flight costs
+ * the same however many flights are in the window and each key uses a
+ * fixed amount of memory.
+ *
+ * A tumbling window has a single pane and starts afresh at each multiple
+ * of its size, so a one day tumbling window covers the day so far. A
+ * sliding window covers the last size of event time, advancing a pane at
+ * a time, so a one hour window with five minute panes covers the last
+ * hour to within five minutes.
+ *
+ * Event time is the scheduled departure of each flight, and the window
+ * ends at the latest event time seen. Flights too old to fall into the
+ * window when they arrive are not counted, so flights should be added in
+ * roughly departure order, as a replay publishes them.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class WindowedMetrics<K> {
+   private static final int FLIGHTS = 0;
+   private static final int CANCELLED = 1;
+   private static final int DIVERTED = 2;
+   private static final int ARRIVED = 3;
+   private static final int ARRIVAL_DELAY = 4;
+   private static final int FIELDS = 5;
+
+   private final long paneMinutes;
+   private final int panes;
+   private final Map<K, Ring> rings = new HashMap<>();
+   private long watermark = Long.MIN_VALUE;
+   private long late;
+
+   private WindowedMetrics(long paneMinutes, int panes) {
+      if(paneMinutes < 1) {
+         throw new IllegalArgumentException("Panes must be at least a minute");
+      }
+      this.paneMinutes = paneMinutes;
+      this.panes = panes;
+   }
+
+   /**
+    * Returns metrics over consecutive, non-overlapping windows of the
+    * given size.
+    */
+   public static <K> WindowedMetrics<K> tumbling(Duration size) {
+      return new WindowedMetrics<>(size.toMinutes(), 1);
+   }
+
+   /**
+    * Returns metrics over a window of the given size that advances by the
+    * given slide, which must divide the size.
+    */
+   public static <K> WindowedMetrics<K> sliding(Duration size, Duration slide) {
+      long sizeMinutes = size.toMinutes();
+      long slideMinutes = slide.toMinutes();
+      if(slideMinutes < 1 || sizeMinutes % slideMinutes != 0) {
+         throw new IllegalArgumentException("Slide must divide window size");
+      }
+      return new WindowedMetrics<>(slideMinutes, (int) (sizeMinutes / slideMinutes));
+   }
+
+   /**
+    * Add a flight to the window of a key.
+    */
+   public synchronized WindowedMetrics<K> add(K key, Flight flight) {
+      long time = ReplayEngine.getEventTime(flight);
+      long pane = Math.floorDiv(time, paneMinutes);
+      if(time > watermark) {
+         watermark = time;
+      } else if(pane <= Math.floorDiv(watermark, paneMinutes) - panes) {
+         ++late;
+         return this;
+      }
+      Ring ring = rings.get(key);
+      if(ring == null) {
+         ring = new Ring();
+         rings.put(key, ring);
+      }
+      ring.add(pane, flight);
+      return this;
+   }
+
+   /**
+    * Returns the totals of a key over the current window, which are zero
+    * if the key has no flights in it. The window has no start or end
+    * until a flight has been added.
+    */
+   public synchronized Window get(K key) {
+      long[] totals = new long[FIELDS];
+      if(watermark == Long.MIN_VALUE) {
+         return new Window(null, null, totals);
+      }
+      long lastPane = Math.floorDiv(watermark, paneMinutes);
+      Ring ring = rings.get(key);
+      if(ring != null) {
+         ring.sum(lastPane, totals);
+      }
+      return new Window(toDateTime((lastPane - panes + 1) * paneMinutes),
+                        toDateTime((lastPane + 1) * paneMinutes), totals);
+   }
+
+   /**
+    * Returns the keys flights have been added for.
+    */
+   public synchronized Set<K> getKeys() {
+      return Collections.unmodifiableSet(new HashSet<>(rings.keySet()));
+   }
+
+   /**
+    * Returns the latest event time seen, or null if there is none yet.
+    */
+   public synchronized LocalDateTime getWatermark() {
+      return watermark == Long.MIN_VALUE ? null : toDateTime(watermark);
+   }
+
+   /**
+    * Returns the number of flights not counted because their window had
+    * already passed.
+    */
+   public synchronized long getLateFlights() {
+      return late;
+   }
+
+   public Duration getSize() {
+      return Duration.ofMinutes(paneMinutes * panes);
+   }
+
+   private static LocalDateTime toDateTime(long minutes) {
+      return LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+   }
+
+   /**
+    * The panes of a key. Slot i holds the pane whose number modulo the
+    * number of panes is i, and is reset when a newer pane reuses it.
+    */
+   private final class Ring {
+      private final long[] ids = new long[panes];
+      private final long[][] totals = new long[panes][FIELDS];
+
+      Ring() {
+         Arrays.fill(ids, Long.MIN_VALUE);
+      }
+
+      void add(long pane, Flight flight) {
+         int slot = (int) Math.floorMod(pane, (long) panes);
+         long[] total = totals[slot];
+         if(ids[slot] != pane) {
+            if(ids[slot] > pane) {
+               return;     // slot already holds a newer pane
+            }
+            ids[slot] = pane;
+            Arrays.fill(total, 0);
+         }
+         total[FLIGHTS]++;
+         if(flight.cancelled()) {
+            total[CANCELLED]++;
+         } else if(flight.diverted()) {
+            total[DIVERTED]++;
+         } else {
+            total[ARRIVED]++;
+            total[ARRIVAL_DELAY] += flight.getArrivalDelay();
+         }
+      }
+
+      void sum(long lastPane, long[] result) {
+         for(int slot = 0; slot < panes; slot++) {
+            if(ids[slot] > lastPane - panes && ids[slot] <= lastPane) {
+               for(int i = 0; i < FIELDS; i++) {
+                  result[i] += totals[slot][i];
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * The totals of a key over one window. Arrival delay is averaged over
+    * the flights that arrived, which are those neither cancelled nor
+    * diverted.
+    */
+   public static final class Window {
+      private final LocalDateTime start;
+      private final LocalDateTime end;
+      private final long[] totals;
+
+      Window(LocalDateTime start, LocalDateTime end, long[] totals) {
+         this.start = start;
+         this.end = end;
+         this.totals = totals;
+      }
+
+      public LocalDateTime getStart() {
+         return start;
+      }
+
+      public LocalDateTime getEnd() {
+         return end;
+      }
+
+      public long getFlights() {
+         return totals[FLIGHTS];
+      }
+
+      public long getCancelled() {
+         return totals[CANCELLED];
+      }
+
+      public long getDiverted() {
+         return totals[DIVERTED];
+      }
+
+      public double getCancellationRate() {
+         return totals[FLIGHTS] == 0 ? 0.0 : (double) totals[CANCELLED] / totals[FLIGHTS];
+      }
+
+      /**
+       * Returns the mean arrival delay in minutes, or zero if no flights
+       * arrived in the window.
+       */
+      public double getMeanArrivalDelay() {
+         return totals[ARRIVED] == 0 ? 0.0 : (double) totals[ARRIVAL_DELAY] / totals[ARRIVED];
+      }
+
+      @Override
+      public String toString() {
+         return "Window[" + start + " - " + end + ", flights=" + getFlights() +
+                ", cancelled=" + getCancelled() + ", diverted=" + getDiverted() + "]";
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,436 @@
+package airtraffic.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Flight;
+import airtraffic.FlightQuery;
+import airtraffic.Repository;
+import airtraffic.RepositoryException;
+
+/**
+ * Reads, parses and aggregates a flight data file in three stages, each
+ * on its own threads. A reader thread reads the file in large blocks of
+ * whole lines, a pool of parser threads turns each block into a batch of
+ * the flights that satisfy a query, and a pool of aggregator threads
+ * feeds the batches to a collector, each into its own container. The
+ * stages are connected by bounded ring buffers, so a slow stage holds up
+ * the stages before it rather than letting work pile up in memory.
+ *
+ * The depth of each buffer and the time each stage has spent waiting on
+ * its neighbours are available while the pipeline runs, and are logged
+ * when it finishes together with the stage that held it up. As with an
+ * unordered parallel stream, flights are not collected in file order.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class FlightPipeline {
+   public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+   public static final int DEFAULT_QUEUE_CAPACITY = 16;
+   private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+   /**
+    * The stages of the pipeline.
+    */
+   public enum Stage { READ, PARSE, AGGREGATE }
+
+   private final Logger logger = LoggerFactory.getLogger(FlightPipeline.class);
+   private final int year;
+   private final FlightQuery query;
+   private final Repository repository;
+   private int parsers = Math.max(1, CPUS / 2);
+   private int aggregators = Math.max(1, CPUS / 4);
+   private int blockSize = DEFAULT_BLOCK_SIZE;
+   private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+   private volatile Run run;
+
+   public FlightPipeline(int year, FlightQuery query, Repository repository) {
+      this.year = year;
+      this.query = query;
+      this.repository = repository;
+   }
+
+   public FlightPipeline setParsers(int parsers) {
+      if(parsers < 1) {
+         throw new IllegalArgumentException("Need at least one parser");
+      }
+      this.parsers = parsers;
+      return this;
+   }
+
+   public FlightPipeline setAggregators(int aggregators) {
+      if(aggregators < 1) {
+         throw new IllegalArgumentException("Need at least one aggregator");
+      }
+      this.aggregators = aggregators;
+      return this;
+   }
+
+   /**
+    * Set the number of bytes read at a time. Lines longer than a block
+    * are read whole into a larger one.
+    */
+   public FlightPipeline setBlockSize(int blockSize) {
+      if(blockSize < 1) {
+         throw new IllegalArgumentException("Block size must be positive");
+      }
+      this.blockSize = blockSize;
+      return this;
+   }
+
+   /**
+    * Set the number of blocks, and of batches, that can wait between two
+    * stages.
+    */
+   public FlightPipeline setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+   }
+
+   /**
+    * Run the pipeline, collecting the flights that satisfy the query with
+    * the given collector. Each aggregator thread has its own container,
+    * and the containers are combined at the end.
+    */
+   public synchronized <A, R> R collect(Collector<? super Flight, A, R> collector) {
+      Run current = new Run();
+      run = current;
+      List<Thread> threads = new ArrayList<>();
+      threads.add(new Thread(current::read, "pipeline-reader"));
+      AtomicInteger activeParsers = new AtomicInteger(parsers);
+      for(int i = 0; i < parsers; i++) {
+         threads.add(new Thread(() -> current.parse(activeParsers), "pipeline-parser-" + i));
+      }
+      AtomicReferenceArray<A> containers = new AtomicReferenceArray<>(aggregators);
+      for(int i = 0; i < aggregators; i++) {
+         final int index = i;
+         threads.add(new Thread(() -> {
+            containers.set(index, current.aggregate(collector.supplier().get(),
+                                                    collector.accumulator()));
+         }, "pipeline-aggregator-" + i));
+      }
+      for(Thread thread : threads) {
+         thread.setDaemon(true);
+         thread.start();
+      }
+      try {
+         for(Thread thread : threads) {
+            thread.join();
+         }
+      } catch (InterruptedException e) {
+         current.abort(e);
+         Thread.currentThread().interrupt();
+      }
+      current.finish();
+      Throwable failure = current.failure.get();
+      if(failure != null) {
+         throw failure instanceof RuntimeException ? (RuntimeException) failure :
+                                                     new RepositoryException(failure);
+      }
+      logger.debug("{}", current.getStatistics());
+      BinaryOperator<A> combiner = collector.combiner();
+      A result = containers.get(0);
+      for(int i = 1; i < aggregators; i++) {
+         result = combiner.apply(result, containers.get(i));
+      }
+      return finish(collector, result);
+   }
+
+   @SuppressWarnings("unchecked")
+   private static <A, R> R finish(Collector<? super Flight, A, R> collector, A container) {
+      return collector.characteristics().contains(Characteristics.IDENTITY_FINISH) ?
+             (R) container : collector.finisher().apply(container);
+   }
+
+   /**
+    * Returns the statistics of the pipeline as it runs, or of its last run
+    * once it has finished, or null if it has not been run.
+    */
+   public Statistics getStatistics() {
+      Run current = run;
+      return current == null ? null : current.getStatistics();
+   }
+
+   /**
+    * A block of whole lines of the file.
+    */
+   private static final class Block {
+      private final byte[] data;
+      private final int start;
+      private final int end;
+
+      Block(byte[] data, int start, int end) {
+         this.data = data;
+         this.start = start;
+         this.end = end;
+      }
+   }
+
+   /**
+    * The buffers and counters of one run of the pipeline.
+    */
+   private final class Run {
+      private final RingBuffer<Block> blocks = new RingBuffer<>(queueCapacity);
+      private final RingBuffer<List<Flight>> batches = new RingBuffer<>(queueCapacity);
+      private final AtomicReference<Throwable> failure = new AtomicReference<>();
+      private final LongAdder bytesRead = new LongAdder();
+      private final LongAdder flightsParsed = new LongAdder();
+      private final LongAdder flightsAggregated = new LongAdder();
+      private final long startNanos = System.nanoTime();
+      private volatile long endNanos;
+
+      void read() {
+         try(InputStream in = repository.openFlightData(year)) {
+            byte[] carry = new byte[0];
+            boolean header = true;
+            boolean eof = false;
+            while(!eof && failure.get() == null) {
+               byte[] data = new byte[Math.max(blockSize, carry.length * 2)];
+               System.arraycopy(carry, 0, data, 0, carry.length);
+               int length = carry.length;
+               while(length < data.length) {
+                  int n = in.read(data, length, data.length - length);
+                  if(n < 0) {
+                     eof = true;
+                     break;
+                  }
+                  length += n;
+                  bytesRead.add(n);
+               }
+               int end = eof ? length : lastLineEnd(data, length);
+               carry = new byte[length - end];
+               System.arraycopy(data, end, carry, 0, carry.length);
+               int start = 0;
+               if(header && end > 0) {
+                  // skip the header, or everything if the file is only a header
+                  start = firstLineEnd(data, end);
+                  if(start == 0) {
+                     start = end;
+                  }
+                  header = false;
+               }
+               if(end > start && !blocks.put(new Block(data, start, end))) {
+                  break;
+               }
+            }
+         } catch (IOException | RuntimeException e) {
+            abort(e);
+         } finally {
+            blocks.close();
+         }
+      }
+
+      void parse(AtomicInteger activeParsers) {
+         try {
+            Block block;
+            while(failure.get() == null && (block = blocks.take()) != null) {
+               List<Flight> batch = new ArrayList<>();
+               Iterator<Flight> flights =
+                  repository.getFlightIterator(block.data, block.start, block.end, query);
+               while(flights.hasNext()) {
+                  batch.add(flights.next());
+               }
+               flightsParsed.add(batch.size());
+               if(!batch.isEmpty() && !batches.put(batch)) {
+                  break;
+               }
+            }
+         } catch (RuntimeException e) {
+            abort(e);
+         } finally {
+            if(activeParsers.decrementAndGet() == 0) {
+               batches.close();
+            }
+         }
+      }
+
+      <A> A aggregate(A container, BiConsumer<A, ? super Flight> accumulator) {
+         try {
+            List<Flight> batch;
+            while(failure.get() == null && (batch = batches.take()) != null) {
+               for(Flight flight : batch) {
+                  accumulator.accept(container, flight);
+               }
+               flightsAggregated.add(batch.size());
+            }
+         } catch (RuntimeException e) {
+            abort(e);
+         }
+         return container;
+      }
+
+      void abort(Throwable e) {
+         failure.compareAndSet(null, e);
+         blocks.close();
+         batches.close();
+      }
+
+      void finish() {
+         endNanos = System.nanoTime();
+      }
+
+      Statistics getStatistics() {
+         long end = endNanos;
+         long elapsed = Math.max(1, (end == 0 ? System.nanoTime() : end) - startNanos);
+         double readIdle = (double) blocks.getProducerWaitNanos() / elapsed;
+         double parseIdle = (double) (blocks.getConsumerWaitNanos() +
+                                      batches.getProducerWaitNanos()) / (parsers * elapsed);
+         double aggregateIdle = (double) batches.getConsumerWaitNanos() / (aggregators * elapsed);
+         return new Statistics(elapsed, bytesRead.sum(), flightsParsed.sum(),
+                               flightsAggregated.sum(), blocks.size(), blocks.getCapacity(),
+                               batches.size(), batches.getCapacity(),
+                               Math.min(1.0, readIdle), Math.min(1.0, parseIdle),
+                               Math.min(1.0, aggregateIdle));
+      }
+   }
+
+   /**
+    * Returns the index after the last newline before length, or zero if
+    * there is none.
+    */
+   private static int lastLineEnd(byte[] data, int length) {
+      for(int i = length - 1; i >= 0; i--) {
+         if(data[i] == '\n') {
+            return i + 1;
+         }
+      }
+      return 0;
+   }
+
+   /**
+    * Returns the index after the first newline before length, or zero if
+    * there is none.
+    */
+   private static int firstLineEnd(byte[] data, int length) {
+      for(int i = 0; i < length; i++) {
+         if(data[i] == '\n') {
+            return i + 1;
+         }
+      }
+      return 0;
+   }
+
+   /**
+    * The progress of a pipeline and how busy its stages are. The idle
+    * fraction of a stage is the share of its threads' time spent waiting
+    * for input or for room for output; the stage idle least is the one
+    * holding the pipeline up.
+    */
+   public static final class Statistics {
+      private final long elapsedNanos;
+      private final long bytesRead;
+      private final long flightsParsed;
+      private final long flightsAggregated;
+      private final int blockQueueDepth;
+      private final int blockQueueCapacity;
+      private final int batchQueueDepth;
+      private final int batchQueueCapacity;
+      private final double readIdle;
+      private final double parseIdle;
+      private final double aggregateIdle;
+
+      Statistics(long elapsedNanos, long bytesRead, long flightsParsed, long flightsAggregated,
+                 int blockQueueDepth, int blockQueueCapacity, int batchQueueDepth,
+                 int batchQueueCapacity, double readIdle, double parseIdle, double aggregateIdle) {
+         this.elapsedNanos = elapsedNanos;
+         this.bytesRead = bytesRead;
+         this.flightsParsed = flightsParsed;
+         this.flightsAggregated = flightsAggregated;
+         this.blockQueueDepth = blockQueueDepth;
+         this.blockQueueCapacity = blockQueueCapacity;
+         this.batchQueueDepth = batchQueueDepth;
+         this.batchQueueCapacity = batchQueueCapacity;
+         this.readIdle = readIdle;
+         this.parseIdle = parseIdle;
+         this.aggregateIdle = aggregateIdle;
+      }
+
+      public long getElapsedMillis() {
+         return elapsedNanos / 1_000_000;
+      }
+
+      public long getBytesRead() {
+         return bytesRead;
+      }
+
+      public long getFlightsParsed() {
+         return flightsParsed;
+      }
+
+      public long getFlightsAggregated() {
+         return flightsAggregated;
+      }
+
+      /**
+       * Returns the number of blocks read but not yet parsed.
+       */
+      public int getBlockQueueDepth() {
+         return blockQueueDepth;
+      }
+
+      public int getBlockQueueCapacity() {
+         return blockQueueCapacity;
+      }
+
+      /**
+       * Returns the number of batches parsed but not yet aggregated.
+       */
+      public int getBatchQueueDepth() {
+         return batchQueueDepth;
+      }
+
+      public int getBatchQueueCapacity() {
+         return batchQueueCapacity;
+      }
+
+      /**
+       * Returns the share of its time a stage has spent waiting, from 0
+       * to 1.
+       */
+      public double getIdle(Stage stage) {
+         switch(stage) {
+            case READ:  return readIdle;
+            case PARSE: return parseIdle;
+            default:    return aggregateIdle;
+         }
+      }
+
+      /**
+       * Returns the stage that waited least, which the others waited on.
+       */
+      public Stage getBottleneck() {
+         Stage bottleneck = Stage.READ;
+         for(Stage stage : Stage.values()) {
+            if(getIdle(stage) < getIdle(bottleneck)) {
+               bottleneck = stage;
+            }
+         }
+         return bottleneck;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("Pipeline read %,d bytes, parsed %,d and aggregated %,d flights " +
+                              "in %,d ms; blocks queued %d/%d, batches queued %d/%d; " +
+                              "idle read %.0f%%, parse %.0f%%, aggregate %.0f%%; %s bound",
+                              bytesRead, flightsParsed, flightsAggregated, getElapsedMillis(),
+                              blockQueueDepth, blockQueueCapacity, batchQueueDepth,
+                              batchQueueCapacity, readIdle * 100, parseIdle * 100,
+                              aggregateIdle * 100, getBottleneck().name().toLowerCase());
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,196 @@
+package airtraffic.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue between the stages of a pipeline, built on an array
+ * whose slots carry sequence numbers. Producers and consumers claim slots
+ * with a compare-and-set on the head or the tail and never lock, so a
+ * single producer feeding many consumers, as the reader feeds the
+ * parsers, only contends on the consumer side.
+ *
+ * When the buffer is full a producer waits, and when it is empty a
+ * consumer waits, by spinning briefly and then parking. The time spent
+ * waiting on each side is recorded, and together with the depth shows
+ * which side of the buffer is holding the pipeline up.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class RingBuffer<T> {
+   private static final int SPINS = 100;
+   private static final long PARK_NANOS = 50_000;
+
+   private final int mask;
+   private final AtomicLongArray sequences;
+   private final AtomicReferenceArray<T> items;
+   private final AtomicLong head = new AtomicLong();
+   private final AtomicLong tail = new AtomicLong();
+   private final LongAdder producerWaitNanos = new LongAdder();
+   private final LongAdder consumerWaitNanos = new LongAdder();
+   private volatile boolean closed;
+
+   /**
+    * Create a buffer holding at least the given number of items, rounded
+    * up to a power of two. The sequence numbers need at least two slots
+    * to tell a full slot from an empty one.
+    */
+   public RingBuffer(int capacity) {
+      if(capacity < 1 || capacity > 1 << 30) {
+         throw new IllegalArgumentException("Invalid capacity " + capacity);
+      }
+      int size = Math.max(2, Integer.highestOneBit(capacity));
+      if(size < capacity) {
+         size <<= 1;
+      }
+      this.mask = size - 1;
+      this.sequences = new AtomicLongArray(size);
+      this.items = new AtomicReferenceArray<>(size);
+      for(int i = 0; i < size; i++) {
+         sequences.set(i, i);
+      }
+   }
+
+   /**
+    * Add an item if there is room. Returns false if the buffer is full.
+    */
+   public boolean offer(T item) {
+      long position = tail.get();
+      while(true) {
+         int index = (int) position & mask;
+         long difference = sequences.get(index) - position;
+         if(difference == 0) {
+            if(tail.compareAndSet(position, position + 1)) {
+               items.set(index, item);
+               sequences.set(index, position + 1);
+               return true;
+            }
+            position = tail.get();
+         } else if(difference < 0) {
+            return false;
+         } else {
+            position = tail.get();
+         }
+      }
+   }
+
+   /**
+    * Remove an item if there is one. Returns null if the buffer is empty.
+    */
+   public T poll() {
+      long position = head.get();
+      while(true) {
+         int index = (int) position & mask;
+         long difference = sequences.get(index) - (position + 1);
+         if(difference == 0) {
+            if(head.compareAndSet(position, position + 1)) {
+               T item = items.getAndSet(index, null);
+               sequences.set(index, position + mask + 1);
+               return item;
+            }
+            position = head.get();
+         } else if(difference < 0) {
+            return null;
+         } else {
+            position = head.get();
+         }
+      }
+   }
+
+   /**
+    * Add an item, waiting for room if the buffer is full. Returns false,
+    * without adding it, if the buffer is closed meanwhile.
+    */
+   public boolean put(T item) {
+      if(offer(item)) {
+         return true;
+      }
+      long start = System.nanoTime();
+      try {
+         for(int spins = 0; !closed; spins++) {
+            if(offer(item)) {
+               return true;
+            }
+            pause(spins);
+         }
+         return false;
+      } finally {
+         producerWaitNanos.add(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Remove an item, waiting for one if the buffer is empty. Returns null
+    * once the buffer is closed and empty.
+    */
+   public T take() {
+      T item = poll();
+      if(item != null) {
+         return item;
+      }
+      long start = System.nanoTime();
+      try {
+         for(int spins = 0; ; spins++) {
+            // check closed first, as an item put before closing must be seen
+            boolean done = closed;
+            item = poll();
+            if(item != null || done) {
+               return item;
+            }
+            pause(spins);
+         }
+      } finally {
+         consumerWaitNanos.add(System.nanoTime() - start);
+      }
+   }
+
+   private static void pause(int spins) {
+      if(spins < SPINS) {
+         Thread.yield();
+      } else {
+         LockSupport.parkNanos(PARK_NANOS);
+      }
+   }
+
+   /**
+    * Signal that no more items will be added. Consumers take the items
+    * still in the buffer and then see its end.
+    */
+   public void close() {
+      closed = true;
+   }
+
+   public boolean isClosed() {
+      return closed;
+   }
+
+   public int getCapacity() {
+      return mask + 1;
+   }
+
+   /**
+    * Returns the number of items in the buffer, which may be out of date
+    * as soon as it is returned.
+    */
+   public int size() {
+      long size = tail.get() - head.get();
+      return (int) Math.max(0, Math.min(size, mask + 1));
+   }
+
+   /**
+    * Returns the total time producers have waited for room.
+    */
+   public long getProducerWaitNanos() {
+      return producerWaitNanos.sum();
+   }
+
+   /**
+    * Returns the total time consumers have waited for items.
+    */
+   public long getConsumerWaitNanos() {
+      return consumerWaitNanos.sum();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package airtraffic.registry;
+
+import static java.util.stream.Collectors.joining;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.apache.commons.lang3.StringUtils.splitByCharacterTypeCamelCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A registered reports application and the reports it offers.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class AppEntry {
+   private final Class<?> appClass;
+   private final Supplier<?> factory;
+   private final List<ReportEntry> reports;
+
+   AppEntry(Class<?> appClass, Supplier<?> factory, List<ReportEntry> reports) {
+      this.appClass = appClass;
+      this.factory = factory;
+      this.reports = Collections.unmodifiableList(reports);
+   }
+
+   public Class<?> getAppClass() {
+      return appClass;
+   }
+
+   public String getDescription() {
+      String name = appClass.getSimpleName().replace("App", EMPTY);
+      String[] words = splitByCharacterTypeCamelCase(name);
+      return Arrays.stream(words).collect(joining(" "));
+   }
+
+   /**
+    * Create a new instance of the application.
+    */
+   public Object newInstance() {
+      return factory.get();
+   }
+
+   /**
+    * Returns the reports offered by the application, sorted by name.
+    */
+   public List<ReportEntry> getReports() {
+      return reports;
+   }
+
+   @Override
+   public String toString() {
+      return appClass.getName();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package airtraffic.registry;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.reflect.ClassPath;
+
+import airtraffic.ReportContext;
+
+/**
+ * Registry that discovers applications at runtime by scanning the
+ * classpath and reflecting over report methods. Used only when the
+ * generated registry is not available, and as a baseline for the startup
+ * benchmark.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ReflectiveReportRegistry extends ReportRegistry {
+   private static final String APP_PACKAGE = "airtraffic.app";
+
+   public ReflectiveReportRegistry() {
+      try {
+         ClassLoader cl = getClass().getClassLoader();
+         for(ClassPath.ClassInfo info : ClassPath.from(cl).getTopLevelClasses(APP_PACKAGE)) {
+            Class<?> klass = info.load();
+            if(klass.isAnnotationPresent(ReportApp.class) &&
+               !Modifier.isAbstract(klass.getModifiers())) {
+               register(klass);
+            }
+         }
+      } catch (IOException e) {
+         throw new IllegalStateException("Unable to scan package " + APP_PACKAGE, e);
+      }
+   }
+
+   private void register(Class<?> appClass) {
+      List<Class<?>> interfaces = new ArrayList<>();
+      for(Class<?> reportInterface : appClass.getInterfaces()) {
+         List<ReportEntry> entries = new ArrayList<>();
+         for(Method method : reportInterface.getMethods()) {
+            if(isReportMethod(method)) {
+               entries.add(new ReportEntry(method.getName(), (target, context) -> {
+                  try {
+                     method.invoke(target, context);
+                  } catch (InvocationTargetException e) {
+                     if(e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                     }
+                     throw new IllegalStateException(e.getCause());
+                  } catch (IllegalAccessException e) {
+                     throw new IllegalStateException(e);
+                  }
+               }));
+            }
+         }
+         if(!entries.isEmpty()) {
+            addReports(reportInterface, entries.toArray(new ReportEntry[0]));
+            interfaces.add(reportInterface);
+         }
+      }
+      addApp(appClass, () -> {
+         try {
+            return appClass.newInstance();
+         } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+         }
+      }, interfaces.toArray(new Class<?>[0]));
+   }
+
+   private static boolean isReportMethod(Method method) {
+      return method.getName().startsWith(ReportEntry.METHOD_NAME_PREFIX) &&
+             method.getParameterTypes().length == 1 &&
+             method.getParameterTypes()[0] == ReportContext.class &&
+             method.getReturnType() == Void.TYPE;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package airtraffic.registry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interactive reports application. At build time the registry
+ * processor records every annotated class, together with the report
+ * methods of the interfaces it implements, in a generated ReportRegistry,
+ * so applications and reports can be listed and invoked without scanning
+ * the classpath or using reflection.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ReportApp {
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package airtraffic.registry;
+
+import static java.util.stream.Collectors.joining;
+import static org.apache.commons.lang3.StringUtils.splitByCharacterTypeCamelCase;
+
+import java.util.Arrays;
+
+import airtraffic.ReportContext;
+
+/**
+ * A report method, with a handle that invokes it directly on any object
+ * implementing the interface that declares it.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ReportEntry {
+   public static final String METHOD_NAME_PREFIX = "report";
+
+   @FunctionalInterface
+   public interface Invoker {
+      void invoke(Object target, ReportContext context);
+   }
+
+   private final String name;
+   private final Invoker invoker;
+
+   public ReportEntry(String name, Invoker invoker) {
+      this.name = name;
+      this.invoker = invoker;
+   }
+
+   /**
+    * Returns the name of the report method.
+    */
+   public String getName() {
+      return name;
+   }
+
+   /**
+    * Returns the name of the report without the method prefix.
+    */
+   public String getShortName() {
+      return name.substring(METHOD_NAME_PREFIX.length());
+   }
+
+   public String getDescription() {
+      String[] words = splitByCharacterTypeCamelCase(getShortName());
+      return Arrays.stream(words).collect(joining(" "));
+   }
+
+   public void invoke(Object target, ReportContext context) {
+      invoker.invoke(target, context);
+   }
+
+   @Override
+   public String toString() {
+      return name;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package airtraffic.registry;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the reports applications and the reports declared by each report
+ * interface. The registry used at runtime is generated at build time by
+ * ReportRegistryProcessor. If it is missing, for example when the sources
+ * are compiled without annotation processing, the registry falls back to
+ * discovering applications reflectively.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public abstract class ReportRegistry {
+   static final String GENERATED_CLASS_NAME = "airtraffic.registry.GeneratedReportRegistry";
+   private static final Logger LOGGER = LoggerFactory.getLogger(ReportRegistry.class);
+   private static volatile ReportRegistry instance;
+
+   private final List<AppEntry> apps = new ArrayList<>();
+   private final Map<Class<?>, List<ReportEntry>> reports = new LinkedHashMap<>();
+
+   public static ReportRegistry getInstance() {
+      if(instance == null) {
+         synchronized(ReportRegistry.class) {
+            if(instance == null) {
+               instance = load();
+            }
+         }
+      }
+      return instance;
+   }
+
+   private static ReportRegistry load() {
+      try {
+         return (ReportRegistry) Class.forName(GENERATED_CLASS_NAME).newInstance();
+      } catch (ReflectiveOperationException e) {
+         LOGGER.warn("Generated report registry not found, using reflection");
+         return new ReflectiveReportRegistry();
+      }
+   }
+
+   /**
+    * Register the reports declared by an interface.
+    */
+   protected void addReports(Class<?> reportInterface, ReportEntry... entries) {
+      List<ReportEntry> list = new ArrayList<>(Arrays.asList(entries));
+      list.sort(Comparator.comparing(ReportEntry::getName));
+      reports.put(reportInterface, Collections.unmodifiableList(list));
+   }
+
+   /**
+    * Register an application that implements the given report interfaces,
+    * which must already have been registered.
+    */
+   protected void addApp(Class<?> appClass, Supplier<?> factory, Class<?>... reportInterfaces) {
+      List<ReportEntry> list = Arrays.stream(reportInterfaces)
+                                     .flatMap(i -> getReports(i).stream())
+                                     .sorted(Comparator.comparing(ReportEntry::getName))
+                                     .collect(toList());
+      apps.add(new AppEntry(appClass, factory, list));
+      apps.sort(Comparator.comparing(app -> app.getAppClass().getName()));
+   }
+
+   /**
+    * Returns the applications, sorted by class name.
+    */
+   public List<AppEntry> getApps() {
+      return Collections.unmodifiableList(apps);
+   }
+
+   /**
+    * Returns the entry for an application class, or null if the class is
+    * not registered.
+    */
+   public AppEntry getApp(Class<?> appClass) {
+      for(AppEntry app : apps) {
+         if(app.getAppClass() == appClass) {
+            return app;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Returns the reports declared by an interface, sorted by name.
+    */
+   public List<ReportEntry> getReports(Class<?> reportInterface) {
+      return reports.getOrDefault(reportInterface, Collections.emptyList());
+   }
+}
\ No newline at end of file
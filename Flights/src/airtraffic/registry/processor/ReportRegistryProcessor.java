@@ -0,0 +1,220 @@
+package airtraffic.registry.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates airtraffic.registry.GeneratedReportRegistry from the classes
+ * annotated with ReportApp. For each application the registry records a
+ * factory and the report methods of the interfaces it implements. Reports
+ * are invoked through generated switch-based invokers, so neither
+ * reflection nor lambda bootstrapping is needed at startup.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+@SupportedAnnotationTypes(ReportRegistryProcessor.ANNOTATION_NAME)
+public final class ReportRegistryProcessor extends AbstractProcessor {
+   static final String ANNOTATION_NAME = "airtraffic.registry.ReportApp";
+   private static final String PACKAGE_NAME = "airtraffic.registry";
+   private static final String CLASS_NAME = "GeneratedReportRegistry";
+   private static final String CONTEXT_NAME = "airtraffic.ReportContext";
+   private static final String METHOD_NAME_PREFIX = "report";
+
+   /** report interface name -> report method names */
+   private final Map<String, Set<String>> interfaces = new TreeMap<>();
+   /** app class name -> report interface names */
+   private final Map<String, List<String>> apps = new TreeMap<>();
+   private boolean generated;
+
+   @Override
+   public SourceVersion getSupportedSourceVersion() {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION_NAME);
+      if(annotation == null) {
+         return false;
+      }
+      for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+         if(validApp(element)) {
+            addApp((TypeElement) element);
+         }
+      }
+      if(!generated && !apps.isEmpty() && !roundEnv.processingOver()) {
+         generate();
+         generated = true;
+      }
+      return true;
+   }
+
+   private boolean validApp(Element element) {
+      if(element.getKind() != ElementKind.CLASS ||
+         element.getModifiers().contains(Modifier.ABSTRACT)) {
+         error(element, "@ReportApp must be placed on a concrete class");
+         return false;
+      }
+      if(!element.getModifiers().contains(Modifier.PUBLIC)) {
+         error(element, "@ReportApp classes must be public");
+         return false;
+      }
+      for(ExecutableElement c : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+         if(c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+         }
+      }
+      error(element, "@ReportApp classes need a public no-argument constructor");
+      return false;
+   }
+
+   private void addApp(TypeElement app) {
+      List<String> names = new ArrayList<>();
+      for(TypeMirror mirror : app.getInterfaces()) {
+         TypeElement reportInterface =
+            (TypeElement) processingEnv.getTypeUtils().asElement(mirror);
+         Set<String> methods = new TreeSet<>();
+         for(ExecutableElement method :
+               ElementFilter.methodsIn(processingEnv.getElementUtils()
+                                                    .getAllMembers(reportInterface))) {
+            if(isReportMethod(method)) {
+               methods.add(method.getSimpleName().toString());
+            }
+         }
+         if(!methods.isEmpty()) {
+            String name = reportInterface.getQualifiedName().toString();
+            interfaces.put(name, methods);
+            names.add(name);
+         }
+      }
+      apps.put(app.getQualifiedName().toString(), names);
+   }
+
+   private static boolean isReportMethod(ExecutableElement method) {
+      return method.getSimpleName().toString().startsWith(METHOD_NAME_PREFIX) &&
+             method.getReturnType().getKind() == TypeKind.VOID &&
+             method.getParameters().size() == 1 &&
+             method.getParameters().get(0).asType().toString().equals(CONTEXT_NAME);
+   }
+
+   private void generate() {
+      try {
+         JavaFileObject file =
+            processingEnv.getFiler().createSourceFile(PACKAGE_NAME + "." + CLASS_NAME);
+         try(PrintWriter out = new PrintWriter(file.openWriter())) {
+            write(out);
+         }
+      } catch (IOException e) {
+         processingEnv.getMessager()
+                      .printMessage(Diagnostic.Kind.ERROR, "Unable to write registry: " + e);
+      }
+   }
+
+   private void write(PrintWriter out) {
+      out.println("package " + PACKAGE_NAME + ";");
+      out.println();
+      out.println("/**");
+      out.println(" * Generated by ReportRegistryProcessor. Do not edit.");
+      out.println(" */");
+      out.println("public final class " + CLASS_NAME + " extends ReportRegistry {");
+      int n = 0;
+      for(Map.Entry<String, Set<String>> e : interfaces.entrySet()) {
+         writeInvoker(out, "Invoker" + n++, e.getKey(), e.getValue());
+      }
+      writeFactory(out);
+      out.println();
+      out.println("   public " + CLASS_NAME + "() {");
+      n = 0;
+      for(Map.Entry<String, Set<String>> e : interfaces.entrySet()) {
+         String invoker = "Invoker" + n++;
+         out.println("      addReports(" + e.getKey() + ".class,");
+         int index = 0;
+         for(String method : e.getValue()) {
+            out.print("                 new ReportEntry(\"" + method + "\", new " +
+                      invoker + "(" + index + "))");
+            out.println(++index < e.getValue().size() ? "," : ");");
+         }
+      }
+      int index = 0;
+      for(Map.Entry<String, List<String>> e : apps.entrySet()) {
+         out.print("      addApp(" + e.getKey() + ".class, new Factory(" + index++ + ")");
+         for(String reportInterface : e.getValue()) {
+            out.print(", " + reportInterface + ".class");
+         }
+         out.println(");");
+      }
+      out.println("   }");
+      out.println("}");
+   }
+
+   private void writeInvoker(PrintWriter out, String name, String reportInterface,
+                             Set<String> methods) {
+      out.println();
+      out.println("   private static final class " + name + " implements ReportEntry.Invoker {");
+      out.println("      private final int index;");
+      out.println();
+      out.println("      " + name + "(int index) {");
+      out.println("         this.index = index;");
+      out.println("      }");
+      out.println();
+      out.println("      @Override");
+      out.println("      public void invoke(Object target, " + CONTEXT_NAME + " context) {");
+      out.println("         " + reportInterface + " reports = (" + reportInterface + ") target;");
+      out.println("         switch(index) {");
+      int index = 0;
+      for(String method : methods) {
+         out.println("            case " + index++ + ": reports." + method + "(context); break;");
+      }
+      out.println("            default: throw new IllegalStateException(\"No report \" + index);");
+      out.println("         }");
+      out.println("      }");
+      out.println("   }");
+   }
+
+   private void writeFactory(PrintWriter out) {
+      out.println();
+      out.println("   private static final class Factory implements java.util.function.Supplier<Object> {");
+      out.println("      private final int index;");
+      out.println();
+      out.println("      Factory(int index) {");
+      out.println("         this.index = index;");
+      out.println("      }");
+      out.println();
+      out.println("      @Override");
+      out.println("      public Object get() {");
+      out.println("         switch(index) {");
+      int index = 0;
+      for(String app : apps.keySet()) {
+         out.println("            case " + index++ + ": return new " + app + "();");
+      }
+      out.println("            default: throw new IllegalStateException(\"No app \" + index);");
+      out.println("         }");
+      out.println("      }");
+      out.println("   }");
+   }
+
+   private void error(Element element, String message) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+   }
+}
\ No newline at end of file
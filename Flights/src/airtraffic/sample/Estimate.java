@@ -0,0 +1,58 @@
+package airtraffic.sample;
+
+import java.util.Comparator;
+
+/**
+ * A value estimated from a sample, with the standard error of the
+ * estimate. The confidence interval is the normal approximation at 95%
+ * confidence.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class Estimate {
+   public static final double CONFIDENCE = 0.95;
+   private static final double Z = 1.96;
+
+   private final double value;
+   private final double standardError;
+
+   public Estimate(double value, double standardError) {
+      this.value = value;
+      this.standardError = standardError;
+   }
+
+   /**
+    * Returns a comparator that orders estimates by value, lowest first.
+    */
+   public static Comparator<Estimate> valueComparator() {
+      return (e1, e2) -> Double.compare(e1.value, e2.value);
+   }
+
+   public double getValue() {
+      return value;
+   }
+
+   public double getStandardError() {
+      return standardError;
+   }
+
+   /**
+    * Returns the half width of the confidence interval.
+    */
+   public double getMargin() {
+      return Z * standardError;
+   }
+
+   public double getLower() {
+      return value - getMargin();
+   }
+
+   public double getUpper() {
+      return value + getMargin();
+   }
+
+   @Override
+   public String toString() {
+      return String.format("%.2f +/- %.2f", value, getMargin());
+   }
+}
\ No newline at end of file
@@ -0,0 +1,319 @@
+package airtraffic.sample;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import airtraffic.Carrier;
+import airtraffic.Flight;
+import airtraffic.Repository;
+
+/**
+ * A random sample of a year's flights, stratified by carrier and month, for
+ * answering reports approximately in a fraction of the time of a full scan.
+ * Up to a fixed number of flights is kept from each stratum, so that small
+ * carriers are as well represented as large ones, and each sampled flight
+ * stands for the flights of its stratum that were not sampled. Estimates
+ * come with confidence intervals computed from the variance within each
+ * stratum.
+ *
+ * Samples are built in a single pass over the flight data and written to
+ * the cache directory, so they are only built again when the data changes.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class StratifiedSample {
+   public static final int DEFAULT_STRATUM_SIZE = 500;
+   private static final String SAMPLE_FILE = "sample.csv";
+   private static final String PROPERTIES_FILE = "sample.properties";
+
+   /**
+    * The flights sampled from one carrier and month, and the number of
+    * flights they were sampled from.
+    */
+   private static final class Stratum {
+      private final List<Flight> flights = new ArrayList<>();
+      private long population;
+
+      /**
+       * Add a sampled flight, with every field decoded, since the sample is
+       * shared by reports on other threads and reading a decoded flight no
+       * longer changes it.
+       */
+      void add(Flight flight) {
+         flights.add(flight.decodeAll());
+      }
+
+      /**
+       * Returns the contribution of this stratum to the variance of an
+       * estimated total, given the sample variance of the values summed.
+       */
+      double getTotalVariance(double variance) {
+         int n = flights.size();
+         double N = population;
+         return N * N * (1.0 - n / N) * variance / n;
+      }
+   }
+
+   private final int year;
+   private final Collection<Stratum> strata;
+   private final long population;
+   private final int size;
+
+   private StratifiedSample(int year, Collection<Stratum> strata) {
+      this.year = year;
+      this.strata = strata;
+      long population = 0;
+      int size = 0;
+      for(Stratum stratum : strata) {
+         population += stratum.population;
+         size += stratum.flights.size();
+      }
+      this.population = population;
+      this.size = size;
+   }
+
+   /**
+    * Returns the sample of the flights for a year, reading it from the
+    * cache directory if it was built from the current version of the
+    * year's flight data, otherwise building it and writing it there.
+    */
+   public static StratifiedSample load(int year, Path cacheDir, int stratumSize,
+                                       Repository repository) throws IOException {
+      Path dir = cacheDir.resolve(Integer.toString(year));
+      String source = repository.getFlightSource(year);
+      StratifiedSample sample = open(year, dir, source, stratumSize, repository);
+      return sample != null ? sample : build(year, dir, source, stratumSize, repository);
+   }
+
+   private static StratifiedSample open(int year, Path dir, String source, int stratumSize,
+                                        Repository repository) throws IOException {
+      Path propertiesPath = dir.resolve(PROPERTIES_FILE);
+      if(Files.notExists(propertiesPath)) {
+         return null;
+      }
+      Properties properties = new Properties();
+      try(InputStream in = Files.newInputStream(propertiesPath)) {
+         properties.load(in);
+      }
+      if(!source.equals(properties.remove("source")) ||
+         !Integer.toString(stratumSize).equals(properties.remove("stratumSize"))) {
+         return null;
+      }
+      Map<String, Stratum> strata = new LinkedHashMap<>();
+      for(String key : properties.stringPropertyNames()) {
+         strata.computeIfAbsent(key, k -> new Stratum()).population =
+            Long.parseLong(properties.getProperty(key));
+      }
+      try(BufferedReader reader = Files.newBufferedReader(dir.resolve(SAMPLE_FILE), UTF_8)) {
+         reader.readLine();      // skip header
+         String line;
+         while((line = reader.readLine()) != null) {
+            Flight flight = new Flight(line, repository);
+            Stratum stratum = strata.get(getStratumKey(flight));
+            if(stratum == null) {
+               return null;
+            }
+            stratum.add(flight);
+         }
+      }
+      return new StratifiedSample(year, strata.values());
+   }
+
+   /**
+    * Sample the source file with a reservoir of lines per stratum. The
+    * random number generator is seeded with the year so that the same data
+    * always gives the same sample.
+    */
+   private static StratifiedSample build(int year, Path dir, String source, int stratumSize,
+                                         Repository repository) throws IOException {
+      Map<String, Stratum> strata = new LinkedHashMap<>();
+      Map<String, List<String>> reservoirs = new LinkedHashMap<>();
+      Random random = new Random(year);
+      String header;
+      try(InputStream in = repository.openFlightData(year);
+          BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8))) {
+         header = reader.readLine();
+         String line;
+         while((line = reader.readLine()) != null) {
+            String key = getStratumKey(new Flight(line, repository));
+            Stratum stratum = strata.computeIfAbsent(key, k -> new Stratum());
+            List<String> reservoir = reservoirs.computeIfAbsent(key, k -> new ArrayList<>());
+            stratum.population++;
+            if(reservoir.size() < stratumSize) {
+               reservoir.add(line);
+            } else {
+               long i = (long) (random.nextDouble() * stratum.population);
+               if(i < stratumSize) {
+                  reservoir.set((int) i, line);
+               }
+            }
+         }
+      }
+      write(year, dir, source, stratumSize, header, strata, reservoirs);
+      reservoirs.forEach((key, reservoir) -> {
+         Stratum stratum = strata.get(key);
+         for(String line : reservoir) {
+            stratum.add(new Flight(line, repository));
+         }
+      });
+      return new StratifiedSample(year, strata.values());
+   }
+
+   private static void write(int year, Path dir, String source, int stratumSize, String header,
+                             Map<String, Stratum> strata,
+                             Map<String, List<String>> reservoirs) throws IOException {
+      Files.createDirectories(dir);
+      Files.deleteIfExists(dir.resolve(PROPERTIES_FILE));
+      Properties properties = new Properties();
+      try(BufferedWriter writer = Files.newBufferedWriter(dir.resolve(SAMPLE_FILE), UTF_8)) {
+         writer.write(header);
+         writer.newLine();
+         for(Map.Entry<String, List<String>> e : reservoirs.entrySet()) {
+            for(String line : e.getValue()) {
+               writer.write(line);
+               writer.newLine();
+            }
+            properties.setProperty(e.getKey(), Long.toString(strata.get(e.getKey()).population));
+         }
+      }
+      properties.setProperty("source", source);
+      properties.setProperty("stratumSize", Integer.toString(stratumSize));
+      // written last, so an interrupted write leaves no usable sample
+      try(OutputStream out = Files.newOutputStream(dir.resolve(PROPERTIES_FILE))) {
+         properties.store(out, "Flight sample for " + year);
+      }
+   }
+
+   private static String getStratumKey(Flight flight) {
+      Carrier carrier = flight.getCarrier();
+      return (carrier == null ? "" : carrier.getCode()) + "." + flight.getMonth();
+   }
+
+   public int getYear() {
+      return year;
+   }
+
+   /**
+    * Returns the number of flights in the sample.
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Returns the number of flights the sample was drawn from.
+    */
+   public long getPopulation() {
+      return population;
+   }
+
+   /**
+    * Estimate the number of flights in the year with each key, counting
+    * only flights that pass the filter.
+    */
+   public <K> Map<K, Estimate> estimateCounts(Predicate<Flight> filter,
+                                              Function<Flight, K> key) {
+      Map<K, double[]> totals = new HashMap<>();       // count and variance
+      for(Stratum stratum : strata) {
+         Map<K, Integer> counts = new HashMap<>();
+         for(Flight flight : stratum.flights) {
+            if(filter.test(flight)) {
+               counts.merge(key.apply(flight), 1, Integer::sum);
+            }
+         }
+         int n = stratum.flights.size();
+         for(Map.Entry<K, Integer> e : counts.entrySet()) {
+            double p = (double) e.getValue() / n;
+            double[] total = totals.computeIfAbsent(e.getKey(), k -> new double[2]);
+            total[0] += stratum.population * p;
+            total[1] += n > 1 ? stratum.getTotalVariance(p * (1 - p) * n / (n - 1)) : 0;
+         }
+      }
+      Map<K, Estimate> result = new HashMap<>();
+      totals.forEach((k, total) -> result.put(k, new Estimate(total[0], Math.sqrt(total[1]))));
+      return result;
+   }
+
+   /**
+    * Estimate, for each key, the fraction of flights passing the filter
+    * for which the event happened, such as the cancellation rate of each
+    * carrier. The variance of each ratio is found by linearization.
+    */
+   public <K> Map<K, Estimate> estimateRates(Predicate<Flight> filter, Function<Flight, K> key,
+                                             Predicate<Flight> event) {
+      List<Map<K, int[]>> counts = new ArrayList<>(strata.size());
+      Map<K, double[]> totals = new HashMap<>();       // flights, events and variance
+      for(Stratum stratum : strata) {
+         Map<K, int[]> stratumCounts = new HashMap<>();
+         for(Flight flight : stratum.flights) {
+            if(filter.test(flight)) {
+               int[] count = stratumCounts.computeIfAbsent(key.apply(flight), k -> new int[2]);
+               count[0]++;
+               if(event.test(flight)) {
+                  count[1]++;
+               }
+            }
+         }
+         double weight = (double) stratum.population / stratum.flights.size();
+         stratumCounts.forEach((k, count) -> {
+            double[] total = totals.computeIfAbsent(k, x -> new double[3]);
+            total[0] += weight * count[0];
+            total[1] += weight * count[1];
+         });
+         counts.add(stratumCounts);
+      }
+      int i = 0;
+      for(Stratum stratum : strata) {
+         int n = stratum.flights.size();
+         for(Map.Entry<K, int[]> e : counts.get(i++).entrySet()) {
+            double[] total = totals.get(e.getKey());
+            double rate = total[1] / total[0];
+            int flights = e.getValue()[0];
+            int events = e.getValue()[1];
+            // residuals of event - rate over the stratum, zero for other keys
+            double sum = events - rate * flights;
+            double sumOfSquares = events * (1 - rate) * (1 - rate) +
+                                  (flights - events) * rate * rate;
+            if(n > 1) {
+               total[2] += stratum.getTotalVariance((sumOfSquares - sum * sum / n) / (n - 1));
+            }
+         }
+      }
+      Map<K, Estimate> result = new HashMap<>();
+      totals.forEach((k, total) -> result.put(k, new Estimate(total[1] / total[0],
+                                                              Math.sqrt(total[2]) / total[0])));
+      return result;
+   }
+
+   /**
+    * Returns a note describing the sample, for printing after a report.
+    */
+   public String describe() {
+      return String.format("Estimated from %,d of %,d flights sampled by carrier and month; " +
+                           "intervals are at %.0f%% confidence",
+                           size, population, Estimate.CONFIDENCE * 100.0);
+   }
+
+   @Override
+   public String toString() {
+      return "StratifiedSample[year=" + year + ", size=" + size + ", strata=" + strata.size() + "]";
+   }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package airtraffic.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.beryx.textio.mock.MockTextTerminal;
+
+/**
+ * Terminal that records everything a report prints, so the output can be
+ * returned to a remote client. Each instance serves a single request.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class CapturingTerminal extends MockTextTerminal {
+   private final StringBuilder output = new StringBuilder();
+
+   @Override
+   public void rawPrint(String message) {
+      output.append(message);
+   }
+
+   @Override
+   public void println() {
+      output.append('\n');
+   }
+
+   String getText() {
+      return output.toString();
+   }
+
+   /**
+    * Returns the non-blank lines of output.
+    */
+   List<String> getLines() {
+      List<String> lines = new ArrayList<>();
+      for(String line : output.toString().split("\n")) {
+         if(!line.trim().isEmpty()) {
+            lines.add(line);
+         }
+      }
+      return lines;
+   }
+}
\ No newline at end of file
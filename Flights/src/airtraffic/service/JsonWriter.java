@@ -0,0 +1,105 @@
+package airtraffic.service;
+
+/**
+ * Minimal streaming writer for the JSON documents returned by the report
+ * service. Callers are responsible for producing well-formed structure;
+ * the writer only takes care of separators and string escaping.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+final class JsonWriter {
+   private final StringBuilder out = new StringBuilder();
+   private boolean first = true;
+
+   JsonWriter beginObject() {
+      separate();
+      out.append('{');
+      first = true;
+      return this;
+   }
+
+   JsonWriter endObject() {
+      out.append('}');
+      first = false;
+      return this;
+   }
+
+   JsonWriter beginArray() {
+      separate();
+      out.append('[');
+      first = true;
+      return this;
+   }
+
+   JsonWriter endArray() {
+      out.append(']');
+      first = false;
+      return this;
+   }
+
+   JsonWriter name(String name) {
+      separate();
+      string(name);
+      out.append(':');
+      first = true;       // the value that follows needs no separator
+      return this;
+   }
+
+   JsonWriter value(String value) {
+      separate();
+      if(value == null) {
+         out.append("null");
+      } else {
+         string(value);
+      }
+      first = false;
+      return this;
+   }
+
+   JsonWriter value(long value) {
+      separate();
+      out.append(value);
+      first = false;
+      return this;
+   }
+
+   JsonWriter value(boolean value) {
+      separate();
+      out.append(value);
+      first = false;
+      return this;
+   }
+
+   private void separate() {
+      if(!first) {
+         out.append(',');
+      }
+      first = false;
+   }
+
+   private void string(String s) {
+      out.append('"');
+      for(int i = 0; i < s.length(); i++) {
+         char c = s.charAt(i);
+         switch(c) {
+            case '"':  out.append("\\\""); break;
+            case '\\': out.append("\\\\"); break;
+            case '\n': out.append("\\n");  break;
+            case '\r': out.append("\\r");  break;
+            case '\t': out.append("\\t");  break;
+            default:
+               if(c < 0x20) {
+                  out.append(String.format("\\u%04x", (int) c));
+               } else {
+                  out.append(c);
+               }
+         }
+      }
+      out.append('"');
+   }
+
+   @Override
+   public String toString() {
+      return out.toString();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+package airtraffic.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.Repository;
+import airtraffic.ingest.FlightIngester;
+
+/**
+ * Long-running daemon that keeps the repository and its flight data loaded
+ * and serves reports over HTTP on the loopback interface. Results are
+ * returned as JSON.
+ *
+ * <pre>
+ * GET /reports                                list the available reports
+ * GET /reports/{family}/{report}?year=2008&amp;... run a report
+ * GET /status                                 report execution statistics
+ * GET /airports?q=hous&amp;limit=10                search airports by code, name or city
+ * GET /carriers?q=united&amp;limit=10              search carriers by code or name
+ * </pre>
+ *
+ * If an ingest directory is configured, new flight files moved into it are
+ * added to the data while the server runs.
+ *
+ * Usage: ReportServer [port] [threads] [queue size]
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ReportServer {
+   private static final int DEFAULT_PORT = 8080;
+   private static final int DEFAULT_QUEUE_SIZE = 100;
+   private static final String REPORTS_PATH = "/reports";
+   private static final String STATUS_PATH = "/status";
+   private static final String AIRPORTS_PATH = "/airports";
+   private static final String CARRIERS_PATH = "/carriers";
+   private static final int DEFAULT_SEARCH_LIMIT = 10;
+
+   private final Logger logger = LoggerFactory.getLogger(ReportServer.class);
+   private final Repository repository;
+   private final ReportService service;
+   private final HttpServer server;
+   private final ThreadPoolExecutor dispatcher;
+   private final FlightIngester ingester;
+
+   public ReportServer(int port, int threads, int queueSize) throws IOException {
+      this.repository = new Repository();
+      this.repository.setResident(true);
+      this.repository.loadReferenceData();
+      for(int year : repository.getFlightYears()) {
+         repository.getFlightTable(year).close();
+      }
+      this.ingester = repository.getIngestPath() == null ? null :
+                      FlightIngester.start(repository, repository.getIngestPath());
+      this.service = new ReportService(repository, threads, queueSize);
+      this.dispatcher = createDispatcher(threads + queueSize);
+      this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+      this.server.createContext(REPORTS_PATH, handler(this::handleReports));
+      this.server.createContext(STATUS_PATH, handler(this::handleStatus));
+      this.server.createContext(AIRPORTS_PATH, handler(this::handleAirports));
+      this.server.createContext(CARRIERS_PATH, handler(this::handleCarriers));
+      this.server.setExecutor(dispatcher);
+   }
+
+   /**
+    * Create the pool that handles requests. A request for a report holds
+    * its thread until the report finishes, so there is one thread for each
+    * report the service can run or queue. Beyond that, requests are handled
+    * on the server's own thread, where a report request finds the service
+    * saturated and is answered at once with a 503, and the server accepts
+    * no more connections until it has been.
+    */
+   private static ThreadPoolExecutor createDispatcher(int size) {
+      AtomicInteger count = new AtomicInteger();
+      return new ThreadPoolExecutor(0, size, 60, TimeUnit.SECONDS,
+                                    new SynchronousQueue<>(),
+                                    r -> {
+                                       Thread t = new Thread(r, "http-" + count.incrementAndGet());
+                                       t.setDaemon(true);
+                                       return t;
+                                    },
+                                    new ThreadPoolExecutor.CallerRunsPolicy());
+   }
+
+   public static void main(String[] args) throws Exception {
+      int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+      int threads = args.length > 1 ? Integer.parseInt(args[1]) :
+                                      Runtime.getRuntime().availableProcessors();
+      int queueSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_QUEUE_SIZE;
+      ReportServer server = new ReportServer(port, threads, queueSize);
+      Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+      server.start();
+   }
+
+   public void start() {
+      server.start();
+      logger.info("Report server listening on {}", server.getAddress());
+   }
+
+   public void stop() {
+      server.stop(1);
+      if(ingester != null) {
+         try {
+            ingester.close();
+         } catch (IOException e) {
+            logger.warn("Unable to stop ingestion", e);
+         }
+      }
+      dispatcher.shutdown();
+      service.close();
+      repository.close();
+   }
+
+   /**
+    * Wrap a handler so that a request it fails on unexpectedly is still
+    * answered, with a 500, rather than left without a response.
+    */
+   private HttpHandler handler(HttpHandler handler) {
+      return exchange -> {
+         try {
+            handler.handle(exchange);
+         } catch (RuntimeException e) {
+            logger.error("Request {} failed", exchange.getRequestURI(), e);
+            sendError(exchange, 500, "Internal error");
+         } finally {
+            exchange.close();
+         }
+      };
+   }
+
+   private void handleReports(HttpExchange exchange) throws IOException {
+      String path = exchange.getRequestURI().getPath();
+      String[] parts = path.substring(REPORTS_PATH.length()).split("/");
+      if(!"GET".equals(exchange.getRequestMethod())) {
+         sendError(exchange, 405, "Method not allowed");
+      } else if(parts.length <= 1) {
+         JsonWriter json = new JsonWriter().beginObject().name("reports").beginArray();
+         service.getReportNames().forEach(json::value);
+         send(exchange, 200, json.endArray().endObject().toString());
+      } else if(parts.length == 3) {
+         executeReport(exchange, parts[1], parts[2]);
+      } else {
+         sendError(exchange, 404, "Not found: " + path);
+      }
+   }
+
+   private void executeReport(HttpExchange exchange, String family, String report)
+      throws IOException {
+      try {
+         Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+         ReportService.Result result = service.submit(family, report, parameters).get();
+         send(exchange, 200, result.toJson());
+      } catch (IllegalArgumentException e) {
+         sendError(exchange, 400, e.getMessage());
+      } catch (RejectedExecutionException e) {
+         sendError(exchange, 503, "Too many requests");
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         sendError(exchange, 503, "Interrupted");
+      } catch (ExecutionException e) {
+         logger.error("Report {}/{} failed", family, report, e.getCause());
+         sendError(exchange, 500, String.valueOf(e.getCause().getMessage()));
+      }
+   }
+
+   private void handleStatus(HttpExchange exchange) throws IOException {
+      JsonWriter json = new JsonWriter();
+      json.beginObject()
+          .name("resident").value(repository.isResident())
+          .name("active").value(service.getActiveCount())
+          .name("queued").value(service.getQueuedCount())
+          .name("completed").value(service.getCompletedCount())
+          .endObject();
+      send(exchange, 200, json.toString());
+   }
+
+   private void handleAirports(HttpExchange exchange) throws IOException {
+      Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+      JsonWriter json = new JsonWriter().beginObject().name("airports").beginArray();
+      for(Airport airport : repository.searchAirports(parameters.get("q"), getLimit(parameters))) {
+         json.beginObject()
+             .name("iata").value(airport.getIATA())
+             .name("name").value(airport.getName())
+             .name("city").value(airport.getCity())
+             .name("state").value(airport.getState())
+             .endObject();
+      }
+      send(exchange, 200, json.endArray().endObject().toString());
+   }
+
+   private void handleCarriers(HttpExchange exchange) throws IOException {
+      Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+      JsonWriter json = new JsonWriter().beginObject().name("carriers").beginArray();
+      for(Carrier carrier : repository.searchCarriers(parameters.get("q"), getLimit(parameters))) {
+         json.beginObject()
+             .name("code").value(carrier.getCode())
+             .name("name").value(carrier.getName())
+             .endObject();
+      }
+      send(exchange, 200, json.endArray().endObject().toString());
+   }
+
+   private static int getLimit(Map<String, String> parameters) {
+      try {
+         return Integer.parseInt(parameters.getOrDefault("limit", 
+                                                          String.valueOf(DEFAULT_SEARCH_LIMIT)));
+      } catch (NumberFormatException e) {
+         return DEFAULT_SEARCH_LIMIT;
+      }
+   }
+
+   private static Map<String, String> parseQuery(String query)
+      throws UnsupportedEncodingException {
+      Map<String, String> parameters = new HashMap<>();
+      if(query != null) {
+         for(String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if(equals > 0) {
+               parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                              URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+         }
+      }
+      return parameters;
+   }
+
+   private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+      send(exchange, status, new JsonWriter().beginObject()
+                                             .name("error").value(message)
+                                             .endObject()
+                                             .toString());
+   }
+
+   private static void send(HttpExchange exchange, int status, String body) throws IOException {
+      byte[] bytes = body.getBytes(UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      exchange.sendResponseHeaders(status, bytes.length);
+      try(OutputStream out = exchange.getResponseBody()) {
+         out.write(bytes);
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,393 @@
+package airtraffic.service;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.beryx.textio.TextTerminal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import airtraffic.Airport;
+import airtraffic.AirportReports;
+import airtraffic.Carrier;
+import airtraffic.CarrierReports;
+import airtraffic.DelayReports;
+import airtraffic.FlightReports;
+import airtraffic.GeoLocation;
+import airtraffic.PlaneReports;
+import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.cube.CubeCarrierReports;
+import airtraffic.cube.CubeFlightReports;
+import airtraffic.exec.BatchDelayReports;
+import airtraffic.exec.BatchFlightReports;
+import airtraffic.iterator.IteratorAirportReports;
+import airtraffic.iterator.IteratorCarrierReports;
+import airtraffic.iterator.IteratorDelayReports;
+import airtraffic.iterator.IteratorFlightReports;
+import airtraffic.iterator.IteratorPlaneReports;
+import airtraffic.registry.ReportEntry;
+import airtraffic.registry.ReportRegistry;
+import airtraffic.stream.StreamAirportReports;
+import airtraffic.stream.StreamCarrierReports;
+import airtraffic.stream.StreamDelayReports;
+import airtraffic.stream.StreamFlightReports;
+import airtraffic.stream.StreamPlaneReports;
+
+/**
+ * Runs reports on behalf of remote clients against a single, shared
+ * repository whose reference and flight data stay loaded between requests.
+ * Reports execute on a bounded pool; requests that arrive when every
+ * worker is busy and the queue is full are rejected rather than queued
+ * without limit.
+ *
+ * The live reports are not offered. They replay a year of flights, which
+ * takes as long as the replay speed makes it, and redraw their progress
+ * until it ends, so they would hold a worker and buffer their output for
+ * the whole replay.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class ReportService implements AutoCloseable {
+   private static final String DEFAULT_STYLE = "stream";
+
+   /**
+    * A group of reports described by one interface, with an
+    * implementation for each style.
+    */
+   private static final class ReportFamily {
+      private final Map<String, ReportEntry> reports = new LinkedHashMap<>();
+      private final Map<String, Object> impls = new LinkedHashMap<>();
+      private final Map<String, List<String>> required = new HashMap<>();
+
+      ReportFamily(Class<?> reportInterface, Object iteratorImpl, Object streamImpl) {
+         for(ReportEntry report : ReportRegistry.getInstance().getReports(reportInterface)) {
+            reports.put(report.getShortName().toLowerCase(), report);
+         }
+         impls.put("iterator", iteratorImpl);
+         impls.put("stream", streamImpl);
+      }
+
+      /**
+       * Add an implementation in another style.
+       */
+      ReportFamily with(String style, Object impl) {
+         impls.put(style, impl);
+         return this;
+      }
+
+      /**
+       * Declare the parameters a report cannot run without, so requests
+       * that lack them are rejected before they are queued.
+       */
+      ReportFamily requires(String report, String... parameters) {
+         String key = report.toLowerCase();
+         if(!reports.containsKey(key)) {
+            throw new IllegalArgumentException("Unknown report: " + report);
+         }
+         required.put(key, Arrays.asList(parameters));
+         return this;
+      }
+
+      List<String> getRequiredParameters(String report) {
+         return required.getOrDefault(report.toLowerCase(), Collections.emptyList());
+      }
+   }
+
+   /**
+    * The outcome of running a report.
+    */
+   public static final class Result {
+      private final String report;
+      private final String style;
+      private final long elapsedMillis;
+      private final List<String> lines;
+
+      Result(String report, String style, long elapsedMillis, List<String> lines) {
+         this.report = report;
+         this.style = style;
+         this.elapsedMillis = elapsedMillis;
+         this.lines = lines;
+      }
+
+      public String getReport() {
+         return report;
+      }
+
+      public String getStyle() {
+         return style;
+      }
+
+      public long getElapsedMillis() {
+         return elapsedMillis;
+      }
+
+      public List<String> getLines() {
+         return lines;
+      }
+
+      /**
+       * Render the result as JSON. Each line of output is also split into
+       * columns at its tab characters.
+       */
+      public String toJson() {
+         JsonWriter json = new JsonWriter();
+         json.beginObject()
+             .name("report").value(report)
+             .name("style").value(style)
+             .name("elapsedMillis").value(elapsedMillis)
+             .name("rows").beginArray();
+         for(String line : lines) {
+            json.beginArray();
+            for(String column : line.trim().split("\t+")) {
+               json.value(column.trim());
+            }
+            json.endArray();
+         }
+         json.endArray().endObject();
+         return json.toString();
+      }
+   }
+
+   private final Logger logger = LoggerFactory.getLogger(ReportService.class);
+   private final Map<String, ReportFamily> families = new LinkedHashMap<>();
+   private final Repository repository;
+   private final ThreadPoolExecutor executor;
+
+   public ReportService(Repository repository, int threads, int queueSize) {
+      this.repository = repository;
+      families.put("airport", new ReportFamily(AirportReports.class,
+                                               new IteratorAirportReports(),
+                                               new StreamAirportReports())
+                                  .requires("AirportsForState", "state")
+                                  .requires("AirportsNearLocation", "latitude", "longitude"));
+      families.put("carrier", new ReportFamily(CarrierReports.class,
+                                               new IteratorCarrierReports(),
+                                               new StreamCarrierReports())
+                                  .with("cube", new CubeCarrierReports()));
+      families.put("delay", new ReportFamily(DelayReports.class,
+                                             new IteratorDelayReports(),
+                                             new StreamDelayReports())
+                                .with("batch", new BatchDelayReports()));
+      families.put("flight", new ReportFamily(FlightReports.class,
+                                              new IteratorFlightReports(),
+                                              new StreamFlightReports())
+                                 .with("batch", new BatchFlightReports())
+                                 .with("cube", new CubeFlightReports())
+                                 .requires("TotalFlightsFromOrigin", "origin")
+                                 .requires("TotalFlightsToDestination", "destination")
+                                 .requires("TotalFlightsFromOriginToDestination", "origin", "destination")
+                                 .requires("TopDestinationsFromOrigin", "origin"));
+      families.put("plane", new ReportFamily(PlaneReports.class,
+                                             new IteratorPlaneReports(),
+                                             new StreamPlaneReports()));
+      AtomicInteger count = new AtomicInteger();
+      this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                             new ArrayBlockingQueue<>(queueSize),
+                                             r -> {
+                                                Thread t = new Thread(r, "report-" + count.incrementAndGet());
+                                                t.setDaemon(true);
+                                                return t;
+                                             },
+                                             new ThreadPoolExecutor.AbortPolicy());
+   }
+
+   /**
+    * Returns the names of the available reports, in the form family/name.
+    */
+   public List<String> getReportNames() {
+      return families.entrySet()
+                     .stream()
+                     .flatMap(e -> e.getValue().reports.values()
+                                    .stream()
+                                    .map(r -> e.getKey() + "/" + r.getShortName()))
+                     .collect(toList());
+   }
+
+   public int getActiveCount() {
+      return executor.getActiveCount();
+   }
+
+   public int getQueuedCount() {
+      return executor.getQueue().size();
+   }
+
+   public long getCompletedCount() {
+      return executor.getCompletedTaskCount();
+   }
+
+   /**
+    * Queue a report for execution and capture its output. The parameters
+    * supply the report context: style, year, limit, airport, origin,
+    * destination, carrier, state, latitude, longitude, distance and
+    * approximate, as each report requires. The parameters are checked
+    * before the report is queued.
+    *
+    * @throws IllegalArgumentException if the report or a parameter is invalid
+    *         or missing
+    * @throws java.util.concurrent.RejectedExecutionException if the service is saturated
+    */
+   public CompletableFuture<Result> submit(String family, String report,
+                                           Map<String, String> parameters) {
+      CapturingTerminal terminal = new CapturingTerminal();
+      String style = getStyle(parameters);
+      String name = getReportName(family, report);
+      return submit(family, report, parameters, terminal)
+                .thenApply(elapsed -> new Result(name, style, elapsed, terminal.getLines()));
+   }
+
+   /**
+    * Queue a report for execution, writing its output to the given
+    * terminal. The future completes with the elapsed time in milliseconds.
+    *
+    * @throws IllegalArgumentException if the report or a parameter is invalid
+    *         or missing
+    * @throws java.util.concurrent.RejectedExecutionException if the service is saturated
+    */
+   public CompletableFuture<Long> submit(String family, String report,
+                                         Map<String, String> parameters,
+                                         TextTerminal<?> terminal) {
+      ReportEntry entry = getReport(family, report);
+      ReportFamily reportFamily = families.get(family.toLowerCase());
+      String style = getStyle(parameters);
+      Object impl = reportFamily.impls.get(style);
+      if(impl == null) {
+         throw new IllegalArgumentException("Unknown style: " + style);
+      }
+      for(String parameter : reportFamily.getRequiredParameters(report)) {
+         if(!parameters.containsKey(parameter)) {
+            throw new IllegalArgumentException("Missing " + parameter);
+         }
+      }
+      ReportContext context = createReportContext(parameters).setTerminal(terminal);
+      String name = getReportName(family, report);
+      return CompletableFuture.supplyAsync(() -> {
+         long start = System.currentTimeMillis();
+         entry.invoke(impl, context);
+         long elapsed = System.currentTimeMillis() - start;
+         logger.debug("Executed {} ({}) in {} ms", name, style, elapsed);
+         return elapsed;
+      }, executor);
+   }
+
+   private ReportEntry getReport(String family, String report) {
+      ReportFamily reportFamily = families.get(family.toLowerCase());
+      ReportEntry entry = reportFamily == null ? null : reportFamily.reports.get(report.toLowerCase());
+      if(entry == null) {
+         throw new IllegalArgumentException("Unknown report: " + family + "/" + report);
+      }
+      return entry;
+   }
+
+   /**
+    * Returns the canonical name, family/Report, of a report.
+    */
+   public String getReportName(String family, String report) {
+      return family.toLowerCase() + "/" + getReport(family, report).getShortName();
+   }
+
+   private static String getStyle(Map<String, String> parameters) {
+      return parameters.getOrDefault("style", DEFAULT_STYLE).toLowerCase();
+   }
+
+   private ReportContext createReportContext(Map<String, String> parameters) {
+      ReportContext context = new ReportContext().setRepository(repository);
+      int latestYear = Collections.max(repository.getFlightYears());
+      context.setYear(getInt(parameters, "year", latestYear));
+      if(!repository.getFlightYears().contains(context.getYear())) {
+         throw new IllegalArgumentException("No flight data for year " + context.getYear());
+      }
+      context.setLimit(getPositiveInt(parameters, "limit", 10));
+      context.setDistance(getPositiveInt(parameters, "distance", 100));
+      context.setApproximate(Boolean.parseBoolean(parameters.get("approximate")));
+      if(parameters.containsKey("airport")) {
+         context.setAirport(getAirport(parameters.get("airport")));
+      }
+      if(parameters.containsKey("origin")) {
+         context.setOrigin(getAirport(parameters.get("origin")));
+      }
+      if(parameters.containsKey("destination")) {
+         context.setDestination(getAirport(parameters.get("destination")));
+      }
+      if(parameters.containsKey("carrier")) {
+         Carrier carrier = repository.getCarrier(parameters.get("carrier"));
+         if(carrier == null) {
+            throw new IllegalArgumentException("Unknown carrier: " + parameters.get("carrier"));
+         }
+         context.setCarrier(carrier);
+      }
+      if(parameters.containsKey("state")) {
+         context.setState(parameters.get("state").toUpperCase());
+      }
+      if(parameters.containsKey("latitude") || parameters.containsKey("longitude")) {
+         final double latitude = getDouble(parameters, "latitude", -90.0, 90.0);
+         final double longitude = getDouble(parameters, "longitude", -180.0, 180.0);
+         context.setLocation(new GeoLocation() {
+            @Override public double getLatitude()  { return latitude;  }
+            @Override public double getLongitude() { return longitude; }
+         });
+      }
+      return context;
+   }
+
+   private Airport getAirport(String iata) {
+      Airport airport = repository.getAirport(iata);
+      if(airport == null) {
+         throw new IllegalArgumentException("Unknown airport: " + iata);
+      }
+      return airport;
+   }
+
+   private static int getInt(Map<String, String> parameters, String name, int defaultValue) {
+      String value = parameters.get(name);
+      if(value == null) {
+         return defaultValue;
+      }
+      try {
+         return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid " + name + ": " + value);
+      }
+   }
+
+   private static int getPositiveInt(Map<String, String> parameters, String name, int defaultValue) {
+      int value = getInt(parameters, name, defaultValue);
+      if(value <= 0) {
+         throw new IllegalArgumentException("Invalid " + name + ": " + value);
+      }
+      return value;
+   }
+
+   private static double getDouble(Map<String, String> parameters, String name,
+                                   double min, double max) {
+      String value = parameters.get(name);
+      if(value == null) {
+         throw new IllegalArgumentException("Missing " + name);
+      }
+      try {
+         double result = Double.parseDouble(value);
+         if(result >= min && result <= max) {
+            return result;
+         }
+      } catch (NumberFormatException e) {
+         // reported below
+      }
+      throw new IllegalArgumentException("Invalid " + name + ": " + value);
+   }
+
+   @Override
+   public void close() {
+      executor.shutdown();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package airtraffic.sketch;
+
+/**
+ * Estimates how often each key has been added, in a fixed amount of memory
+ * however many distinct keys there are, using a Count-Min sketch. Each key
+ * increments one counter in every row and its count is estimated by the
+ * smallest of those counters. Each row picks its counter by mixing the
+ * key's 64 bit hash, as given by KeyFunnel.hash(), with a seed of its
+ * own, so keys that share a counter in one row are unlikely to share one
+ * in another. Estimates are never too low; with the given confidence they
+ * are too high by at most the error bound, which is a small fraction of
+ * the total count. Sketches of the same dimensions can be merged.
+ *
+ * Sketches are not thread-safe.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class CountMinSketch {
+   public static final int DEFAULT_WIDTH = 1 << 15;
+   public static final int DEFAULT_DEPTH = 5;
+
+   private static final long ROW_SEED = 0x9E3779B97F4A7C15L;
+
+   private final int width;
+   private final int depth;
+   private final int[] counters;
+   private long total;
+
+   public CountMinSketch() {
+      this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+   }
+
+   /**
+    * Create a sketch with depth rows of width counters. The error bound is
+    * e / width of the total count, with a confidence of 1 - e^-depth.
+    */
+   public CountMinSketch(int width, int depth) {
+      if(width < 1 || depth < 1) {
+         throw new IllegalArgumentException("Width and depth must be positive");
+      }
+      this.width = width;
+      this.depth = depth;
+      this.counters = new int[width * depth];
+   }
+
+   public void add(long hash, int count) {
+      for(int row = 0; row < depth; row++) {
+         counters[row * width + index(hash, row)] += count;
+      }
+      total += count;
+   }
+
+   /**
+    * Returns the estimated count for the hash of a key.
+    */
+   public long estimate(long hash) {
+      long min = Long.MAX_VALUE;
+      for(int row = 0; row < depth; row++) {
+         min = Math.min(min, counters[row * width + index(hash, row)]);
+      }
+      return min;
+   }
+
+   /**
+    * Returns the column of a row that a hash counts in, by mixing the hash
+    * with the row's seed through the MurmurHash3 finalizer.
+    */
+   private int index(long hash, int row) {
+      long h = hash ^ ROW_SEED * (row + 1);
+      h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+      h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+      h ^= h >>> 33;
+      return (int) ((h >>> 1) % width);
+   }
+
+   /**
+    * Merge the other sketch into this one.
+    */
+   public CountMinSketch merge(CountMinSketch other) {
+      if(other.width != width || other.depth != depth) {
+         throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+      }
+      for(int i = 0; i < counters.length; i++) {
+         counters[i] += other.counters[i];
+      }
+      total += other.total;
+      return this;
+   }
+
+   /**
+    * Returns the sum of all counts added.
+    */
+   public long getTotal() {
+      return total;
+   }
+
+   /**
+    * Returns the most that an estimate can exceed the true count by, at
+    * the sketch's confidence.
+    */
+   public long getErrorBound() {
+      return (long) Math.ceil(Math.E / width * total);
+   }
+
+   public double getConfidence() {
+      return 1.0 - Math.exp(-depth);
+   }
+
+   /**
+    * Returns the number of bytes used by the counters.
+    */
+   public long getMemoryUsage() {
+      return 4L * counters.length;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package airtraffic.sketch;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Finds the most frequent keys in a single pass and in fixed memory, for
+ * groupings with too many distinct keys to count exactly, such as flights
+ * by airport and day. Every key is counted in a Count-Min sketch and the
+ * keys with the highest estimates so far are kept as candidates, so only
+ * a small multiple of the number of keys wanted is ever held in memory.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public final class HeavyHitters<K> {
+   private static final int CANDIDATES_PER_RESULT = 4;
+   private static final int MIN_CANDIDATES = 64;
+
+   private final CountMinSketch sketch;
+   private final int capacity;
+   private final Map<K, Long> candidates = new HashMap<>();
+   private K minKey;                  // candidate with the lowest estimate, or null if unknown
+
+   /**
+    * Create a sketch that can report up to limit heavy hitters.
+    */
+   public HeavyHitters(int limit) {
+      this(limit, new CountMinSketch());
+   }
+
+   public HeavyHitters(int limit, CountMinSketch sketch) {
+      this.capacity = Math.max(MIN_CANDIDATES, (int) Math.min(Integer.MAX_VALUE / 8,
+                                                               (long) limit * CANDIDATES_PER_RESULT));
+      this.sketch = sketch;
+   }
+
+   /**
+    * Returns a collector that finds the limit most frequent keys the
+    * function extracts from the elements.
+    */
+   public static <T, K> Collector<T, HeavyHitters<K>, HeavyHitters<K>> collector(
+      Function<? super T, ? extends K> key, int limit) {
+      return Collector.of(() -> new HeavyHitters<K>(limit),
+                          (h, t) -> h.add(key.apply(t)),
+                          HeavyHitters::merge);
+   }
+
+   public HeavyHitters<K> add(K key) {
+      long hash = KeyFunnel.hash(key);
+      sketch.add(hash, 1);
+      offer(key, sketch.estimate(hash));
+      return this;
+   }
+
+   private void offer(K key, long estimate) {
+      if(candidates.containsKey(key)) {
+         candidates.put(key, estimate);
+         if(key.equals(minKey)) {
+            minKey = null;
+         }
+      } else if(candidates.size() < capacity) {
+         candidates.put(key, estimate);
+         if(minKey != null && estimate < candidates.get(minKey)) {
+            minKey = key;
+         }
+      } else {
+         K min = getMinKey();
+         if(estimate > candidates.get(min)) {
+            candidates.remove(min);
+            candidates.put(key, estimate);
+            minKey = null;
+         }
+      }
+   }
+
+   private K getMinKey() {
+      if(minKey == null) {
+         long min = Long.MAX_VALUE;
+         for(Entry<K, Long> e : candidates.entrySet()) {
+            if(e.getValue() < min) {
+               min = e.getValue();
+               minKey = e.getKey();
+            }
+         }
+      }
+      return minKey;
+   }
+
+   /**
+    * Merge the other sketch, built over different data, into this one.
+    */
+   public HeavyHitters<K> merge(HeavyHitters<K> other) {
+      sketch.merge(other.sketch);
+      List<K> keys = new ArrayList<>(candidates.keySet());
+      keys.addAll(other.candidates.keySet());
+      candidates.clear();
+      minKey = null;
+      for(K key : keys) {
+         offer(key, sketch.estimate(KeyFunnel.hash(key)));
+      }
+      return this;
+   }
+
+   /**
+    * Returns up to limit keys with their estimated counts, most frequent
+    * first.
+    */
+   public List<Entry<K, Long>> getTop(int limit) {
+      List<Entry<K, Long>> result = new ArrayList<>(candidates.size());
+      for(Entry<K, Long> e : candidates.entrySet()) {
+         result.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+      }
+      result.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+      return result.size() > limit ? result.subList(0, limit) : result;
+   }
+
+   /**
+    * Returns the most that an estimated count can exceed the true count by.
+    */
+   public long getErrorBound() {
+      return sketch.getErrorBound();
+   }
+
+   public double getConfidence() {
+      return sketch.getConfidence();
+   }
+
+   /**
+    * Returns a note describing the accuracy of the estimates, for printing
+    * after a report.
+    */
+   public String describeErrorBound() {
+      return String.format("Approximate counts over %,d flights; each may be too high by " +
+                           "up to %,d (%.1f%% confidence)",
+                           sketch.getTotal(), getErrorBound(), getConfidence() * 100.0);
+   }
+}
\ No newline at end of file
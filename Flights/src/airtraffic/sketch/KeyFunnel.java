@@ -0,0 +1,78 @@
+package airtraffic.sketch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.time.chrono.ChronoLocalDate;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.PrimitiveSink;
+
+import airtraffic.Airport;
+import airtraffic.Carrier;
+import airtraffic.PairGroup;
+import airtraffic.Route;
+
+/**
+ * Writes the values identifying a sketch key to a hash, so that the
+ * sketches hash the full contents of a key rather than its 32 bit hash
+ * code: the characters of a CharSequence, the value of an integral Number,
+ * the day of a date, the code of an airport or carrier, the airports of a
+ * route and both members of a pair. Other keys are hashed from their
+ * hashCode(), so those with equal hash codes share every counter and their
+ * estimates include each other's counts.
+ *
+ * The domain classes know nothing of hashing; the knowledge of which of
+ * their values identify them is kept here.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public enum KeyFunnel implements Funnel<Object> {
+   INSTANCE;
+
+   private static final HashFunction HASH = Hashing.murmur3_128();
+
+   /**
+    * Returns a 64 bit hash of a key, computed from the values identifying
+    * it.
+    */
+   public static long hash(Object key) {
+      Hasher hasher = HASH.newHasher();
+      INSTANCE.funnel(key, hasher);
+      return hasher.hash().asLong();
+   }
+
+   @Override
+   public void funnel(Object key, PrimitiveSink sink) {
+      if(key == null) {
+         sink.putByte((byte) 0);
+      } else if(key instanceof CharSequence) {
+         CharSequence chars = (CharSequence) key;
+         sink.putInt(chars.length()).putString(chars, UTF_8);
+      } else if(key instanceof Long || key instanceof Integer ||
+                key instanceof Short || key instanceof Byte) {
+         sink.putLong(((Number) key).longValue());
+      } else if(key instanceof ChronoLocalDate) {
+         sink.putLong(((ChronoLocalDate) key).toEpochDay());
+      } else if(key instanceof Airport) {
+         funnel(((Airport) key).getIATA(), sink);
+      } else if(key instanceof Carrier) {
+         funnel(((Carrier) key).getCode(), sink);
+      } else if(key instanceof Route) {
+         // routes are the same in either direction, so the airports are
+         // hashed in the order they are printed
+         Route route = (Route) key;
+         boolean ordered = route.getFirst().compareTo(route.getSecond()) >= 0;
+         funnel(ordered ? route.getFirst() : route.getSecond(), sink);
+         funnel(ordered ? route.getSecond() : route.getFirst(), sink);
+      } else if(key instanceof PairGroup) {
+         PairGroup<?, ?> pair = (PairGroup<?, ?>) key;
+         funnel(pair.getFirst(), sink);
+         funnel(pair.getSecond(), sink);
+      } else {
+         sink.putInt(key.hashCode());
+      }
+   }
+}
\ No newline at end of file
@@ -8,10 +8,12 @@ import static java.util.Comparator.comparing;
 import static org.apache.commons.lang3.StringUtils.left;
 
 import java.util.HashMap;
+import java.util.stream.Stream;
 
 import airtraffic.Airport;
 import airtraffic.AirportMetrics;
 import airtraffic.AirportReports;
+import airtraffic.Flight;
 import airtraffic.GeoLocation;
 import airtraffic.ReportContext;
 
@@ -60,25 +62,26 @@ public class StreamAirportReports implements AirportReports {
    public void reportAirportMetrics(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .collect(HashMap::new, 
-                      AirportMetrics.accumulator(), 
-                      AirportMetrics.combiner())
-             .values()
-             .stream()
-             .sorted(comparing(AirportMetrics::getSubject))
-             .forEach(metrics -> {
-                Airport airport = metrics.getSubject();
-                String name = airport.getName();
-                context.getTerminal()
-                       .printf("%3s     %-30s     %,9d    %6.1f        %6.1f\n", 
-                               airport.getIATA(),
-                               name.substring(0, Math.min(name.length(), 29)),
-                               metrics.getTotalFlights(),
-                               metrics.getCancellationRate() * 100.0,
-                               metrics.getDiversionRate() * 100.0);
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.collect(HashMap::new,
+                         AirportMetrics.accumulator(), 
+                         AirportMetrics.combiner())
+                .values()
+                .stream()
+                .sorted(comparing(AirportMetrics::getSubject))
+                .forEach(metrics -> {
+                   Airport airport = metrics.getSubject();
+                   String name = airport.getName();
+                   context.getTerminal()
+                          .printf("%3s     %-30s     %,9d    %6.1f        %6.1f      %,6d\n", 
+                                  airport.getIATA(),
+                                  name.substring(0, Math.min(name.length(), 29)),
+                                  metrics.getTotalFlights(),
+                                  metrics.getCancellationRate() * 100.0,
+                                  metrics.getDiversionRate() * 100.0,
+                                  metrics.getDistinctRoutes());
+                });
+      }
    }
 
    @Override
@@ -86,25 +89,25 @@ public class StreamAirportReports implements AirportReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .collect(HashMap::new, 
-                      AirportMetrics.accumulator(), 
-                      AirportMetrics.combiner())
-             .values()
-             .stream()
-             .filter(metrics -> metrics.getTotalCancelled() > 0)
-             .sorted(highestCancellationRateComparator())
-             .limit(limit)
-             .forEach(metrics -> {
-                Airport airport = metrics.getSubject();
-                String name = airport.getName();
-                context.getTerminal()
-                       .printf("%3s\t%-30s\t%6.1f\n", 
-                               airport.getIATA(),
-                               left(name, 30),
-                               metrics.getCancellationRate() * 100.0
-                );
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.collect(HashMap::new,
+                         AirportMetrics.accumulator(), 
+                         AirportMetrics.combiner())
+                .values()
+                .stream()
+                .filter(metrics -> metrics.getTotalCancelled() > 0)
+                .sorted(highestCancellationRateComparator())
+                .limit(limit)
+                .forEach(metrics -> {
+                   Airport airport = metrics.getSubject();
+                   String name = airport.getName();
+                   context.getTerminal()
+                          .printf("%3s\t%-30s\t%6.1f\n", 
+                                  airport.getIATA(),
+                                  left(name, 30),
+                                  metrics.getCancellationRate() * 100.0
+                   );
+                });
+      }
    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package airtraffic.stream;
 
 import static airtraffic.FlightBasedMetrics.highestCancellationRateComparator;
+import static airtraffic.FlightField.CANCELLED;
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightQuery.select;
 import static java.util.Comparator.comparing;
 import static java.util.Comparator.reverseOrder;
 import static java.util.Map.Entry.comparingByValue;
@@ -9,12 +12,16 @@ import static java.util.stream.Collectors.groupingBy;
 import static org.apache.commons.lang3.StringUtils.left;
 
 import java.util.HashMap;
+import java.util.stream.Stream;
 
 import airtraffic.Carrier;
 import airtraffic.CarrierMetrics;
 import airtraffic.CarrierReports;
 import airtraffic.Flight;
+import airtraffic.FlightQuery;
 import airtraffic.ReportContext;
+import airtraffic.sample.Estimate;
+import airtraffic.sample.StratifiedSample;
 
 public class StreamCarrierReports implements CarrierReports {
 
@@ -23,46 +30,47 @@ public class StreamCarrierReports implements CarrierReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.cancelled())
-             .collect(groupingBy(Flight::getCarrier, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%-24s\t%,8d\n", 
-                                                 left(e.getKey().getName(), 24), 
-                                                 e.getValue())
-             );
+      FlightQuery query = select(CARRIER).where(CANCELLED, true);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getCarrier, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%-24s\t%,8d\n", 
+                                                    left(e.getKey().getName(), 24), 
+                                                    e.getValue())
+                );
+      }
    }
 
    @Override
    public void reportCarrierMetrics(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .collect(HashMap::new, 
-                      CarrierMetrics.accumulator(), 
-                      CarrierMetrics.combiner())
-             .values()
-             .stream()
-             .sorted(comparing(CarrierMetrics::getSubject))
-             .forEach(metrics -> {
-                Carrier carrier = metrics.getSubject();
-                String name = carrier.getName();
-                context.getTerminal()
-                       .printf(" %2s     %-30s     %,9d    %6.1f        %6.1f         %,5d\n", 
-                               carrier.getCode(),
-                               left(name, 30),
-                               metrics.getTotalFlights(),
-                               metrics.getCancellationRate() * 100.0,
-                               metrics.getDiversionRate() * 100.0,
-                               metrics.getAirports().size()
-                );
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.collect(HashMap::new,
+                         CarrierMetrics.accumulator(), 
+                         CarrierMetrics.combiner())
+                .values()
+                .stream()
+                .sorted(comparing(CarrierMetrics::getSubject))
+                .forEach(metrics -> {
+                   Carrier carrier = metrics.getSubject();
+                   String name = carrier.getName();
+                   context.getTerminal()
+                          .printf(" %2s     %-30s     %,9d    %6.1f        %6.1f         %,5d     %,6d\n", 
+                                  carrier.getCode(),
+                                  left(name, 30),
+                                  metrics.getTotalFlights(),
+                                  metrics.getCancellationRate() * 100.0,
+                                  metrics.getDiversionRate() * 100.0,
+                                  metrics.getAirports().size(),
+                                  metrics.getDistinctTailNumbers()
+                   );
+                });
+      }
    }
 
    @Override
@@ -70,20 +78,38 @@ public class StreamCarrierReports implements CarrierReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .collect(HashMap::new, 
-                      CarrierMetrics.accumulator(), 
-                      CarrierMetrics.combiner())
-             .values()
-             .stream()
-             .filter(metrics -> metrics.getTotalCancelled() > 0)
-             .sorted(highestCancellationRateComparator())
-             .limit(limit)
-             .forEach(m -> context.getTerminal()
-                                  .printf("%-30s\t%6.1f\n", 
-                                          m.getSubject().getName(),
-                                          m.getCancellationRate() * 100.0)
-             );
+      if(context.isApproximate()) {
+         StratifiedSample sample = context.getRepository().getFlightSample(year);
+         sample.estimateRates(f -> true, Flight::getCarrier, Flight::cancelled)
+               .entrySet()
+               .stream()
+               .filter(e -> e.getValue().getValue() > 0)
+               .sorted(comparingByValue(Estimate.valueComparator().reversed()))
+               .limit(limit)
+               .forEach(e -> context.getTerminal()
+                                    .printf("%-30s\t%6.1f\t+/- %.1f\n", 
+                                            left(e.getKey().getName(), 30),
+                                            e.getValue().getValue() * 100.0,
+                                            e.getValue().getMargin() * 100.0)
+               );
+         context.getTerminal().println(sample.describe());
+         return;
+      }
+
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.collect(HashMap::new,
+                         CarrierMetrics.accumulator(), 
+                         CarrierMetrics.combiner())
+                .values()
+                .stream()
+                .filter(metrics -> metrics.getTotalCancelled() > 0)
+                .sorted(highestCancellationRateComparator())
+                .limit(limit)
+                .forEach(m -> context.getTerminal()
+                                     .printf("%-30s\t%6.1f\n", 
+                                             m.getSubject().getName(),
+                                             m.getCancellationRate() * 100.0)
+                );
+      }
    }
 }
\ No newline at end of file
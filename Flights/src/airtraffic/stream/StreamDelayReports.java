@@ -0,0 +1,107 @@
+package airtraffic.stream;
+
+import static airtraffic.DelayCauses.highestTotalMinutesComparator;
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightField.DESTINATION;
+import static airtraffic.FlightField.MONTH;
+import static airtraffic.FlightField.ORIGIN;
+import static airtraffic.FlightField.YEAR;
+import static airtraffic.FlightQuery.select;
+import static airtraffic.FlightReports.YEAR_MONTH_FORMAT;
+import static java.util.Map.Entry.comparingByKey;
+import static java.util.Map.Entry.comparingByValue;
+import static org.apache.commons.lang3.StringUtils.left;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import airtraffic.DelayCauses;
+import airtraffic.DelayCauses.Cause;
+import airtraffic.DelayReports;
+import airtraffic.Flight;
+import airtraffic.FlightField;
+import airtraffic.FlightQuery;
+import airtraffic.ReportContext;
+
+/**
+ * Attribute minutes of delay to their causes using Java 8 streams. Each
+ * report reads only the fields it needs and totals the causes by key in
+ * one pass of a parallel stream.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class StreamDelayReports implements DelayReports {
+   @Override
+   public void reportDelayCausesByAirport(ReportContext context) {
+      report(context, query(ORIGIN), Flight::getOrigin,
+             comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+             airport -> left(airport.getIATA() + "  " + airport.getName(), 30));
+   }
+
+   @Override
+   public void reportDelayCausesByCarrier(ReportContext context) {
+      report(context, query(CARRIER), Flight::getCarrier,
+             comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+             carrier -> left(carrier.getName(), 30));
+   }
+
+   @Override
+   public void reportDelayCausesByMonth(ReportContext context) {
+      report(context, query(YEAR, MONTH), Flight::getYearMonth,
+             comparingByKey(), Integer.MAX_VALUE,
+             month -> YEAR_MONTH_FORMAT.format(month));
+   }
+
+   @Override
+   public void reportDelayCausesByRoute(ReportContext context) {
+      report(context, query(ORIGIN, DESTINATION), Flight::getRoute,
+             comparingByValue(highestTotalMinutesComparator()), context.getLimit(),
+             route -> route.toString());
+   }
+
+   private static FlightQuery query(FlightField... keys) {
+      return select(Stream.concat(Stream.of(keys), Stream.of(Cause.values()).map(Cause::getField))
+                          .toArray(FlightField[]::new));
+   }
+
+   /**
+    * Print the totals for all delayed flights and then for the first limit
+    * keys in the comparator's order.
+    */
+   private static <K> void report(ReportContext context, FlightQuery query, 
+      Function<Flight, K> key, Comparator<Entry<K, DelayCauses>> comparator, int limit, 
+      Function<K, String> label) {
+      Map<K, DelayCauses> causes;
+      try(Stream<Flight> flights = context.getRepository()
+                                          .getFlightStream(context.getYear(), query)) {
+         causes = flights.parallel()
+                         .filter(DelayCauses::isDelayed)
+                         .collect(DelayCauses.groupingByKey(key));
+      }
+      print(context, "All delayed flights", 
+            causes.values()
+                  .stream()
+                  .collect(DelayCauses::new, DelayCauses::merge, DelayCauses::merge));
+      causes.entrySet()
+            .stream()
+            .sorted(comparator)
+            .limit(limit)
+            .forEachOrdered(e -> print(context, label.apply(e.getKey()), e.getValue()));
+   }
+
+   private static void print(ReportContext context, String label, DelayCauses causes) {
+      context.getTerminal()
+             .printf(DELAY_CAUSES_FORMAT,
+                     label,
+                     causes.getDelayedFlights(),
+                     causes.getTotalMinutes(),
+                     causes.getShare(Cause.CARRIER) * 100.0,
+                     causes.getShare(Cause.WEATHER) * 100.0,
+                     causes.getShare(Cause.NAS) * 100.0,
+                     causes.getShare(Cause.SECURITY) * 100.0,
+                     causes.getShare(Cause.LATE_AIRCRAFT) * 100.0);
+   }
+}
\ No newline at end of file
@@ -1,7 +1,20 @@
 package airtraffic.stream;
 
+import static airtraffic.FlightField.ARRIVAL_DELAY;
+import static airtraffic.FlightField.CANCELLED;
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightField.DAY_OF_MONTH;
+import static airtraffic.FlightField.DEPARTURE_DELAY;
+import static airtraffic.FlightField.DESTINATION;
+import static airtraffic.FlightField.DIVERTED;
+import static airtraffic.FlightField.MONTH;
+import static airtraffic.FlightField.ORIGIN;
+import static airtraffic.FlightField.TAXI_OUT;
+import static airtraffic.FlightField.YEAR;
+import static airtraffic.FlightQuery.select;
 import static airtraffic.PairGroup.pairAirportDay;
 import static airtraffic.PairGroup.pairCarrierDay;
+import static airtraffic.sketch.QuantileSketch.highestQuantileComparator;
 import static java.util.Comparator.comparingInt;
 import static java.util.Comparator.reverseOrder;
 import static java.util.Map.Entry.comparingByKey;
@@ -9,21 +22,36 @@ import static java.util.Map.Entry.comparingByValue;
 import static java.util.stream.Collectors.averagingInt;
 import static java.util.stream.Collectors.counting;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toMap;
 import static org.apache.commons.lang3.StringUtils.left;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import airtraffic.Airport;
 import airtraffic.Carrier;
 import airtraffic.Flight;
 import airtraffic.FlightDistanceRange;
+import airtraffic.FlightQuery;
 import airtraffic.FlightReports;
 import airtraffic.PairGroup;
 import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.ingest.AggregateStore;
+import airtraffic.ingest.AggregateStore.Dimension;
+import airtraffic.ingest.AggregateStore.Measure;
+import airtraffic.sample.Estimate;
+import airtraffic.sample.StratifiedSample;
+import airtraffic.sketch.HeavyHitters;
+import airtraffic.sketch.QuantileSketch;
 
 /**
  * Generate various flight statistics using Java 8 streams.
@@ -45,12 +73,12 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final Airport origin = context.getOrigin();
 
-      long count = context.getRepository()
-                          .getFlightStream(year)
-                          .parallel()
-                          .filter(f -> f.notCancelled() && 
-                                       f.getOrigin().equals(origin))
-                          .count();
+      FlightQuery query = select().whereEquals(ORIGIN, origin.getIATA())
+                                 .where(CANCELLED, false);
+      long count;
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         count = flights.count();
+      }
 
       context.getTerminal()
              .printf("Total flights from %s is %,d\n", 
@@ -63,13 +91,13 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final Airport destination = context.getDestination();
 
-      long count = context.getRepository()
-                          .getFlightStream(year)
-                          .parallel()
-                          .filter(f -> f.notCancelled() && 
-                                       f.notDiverted() && 
-                                       f.getDestination().equals(destination))
-                          .count();
+      FlightQuery query = select().whereEquals(DESTINATION, destination.getIATA())
+                                 .where(CANCELLED, false)
+                                 .where(DIVERTED, false);
+      long count;
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         count = flights.count();
+      }
 
       context.getTerminal()
              .printf("Total flights to %s is %,d\n", 
@@ -83,13 +111,14 @@ public class StreamFlightReports implements FlightReports {
       final Airport origin = context.getOrigin();
       final Airport destination = context.getDestination();
 
-      long count = context.getRepository()
-                          .getFlightStream(year)
-                          .filter(f -> f.notCancelled() && 
-                                       f.notDiverted() &&
-                                       f.getOrigin().equals(origin) &&
-                                       f.getDestination().equals(destination))
-                          .count();
+      FlightQuery query = select().whereEquals(ORIGIN, origin.getIATA())
+                                 .whereEquals(DESTINATION, destination.getIATA())
+                                 .where(CANCELLED, false)
+                                 .where(DIVERTED, false);
+      long count;
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         count = flights.count();
+      }
 
       context.getTerminal()
              .printf("Total of %,d flights from %s (%s)\nto %s (%s)\n", 
@@ -105,18 +134,18 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(Flight::getOrigin, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%3s\t\t%,10d\n", 
-                                                 e.getKey().getIATA(), 
-                                                 e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .collect(groupingBy(Flight::getOrigin, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%,10d\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue()));
+      }
    }
 
    @Override
@@ -125,36 +154,32 @@ public class StreamFlightReports implements FlightReports {
       final Airport origin = context.getOrigin();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled() && f.getOrigin().equals(origin))
-             .collect(groupingBy(Flight::getDestination, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%3s\t\t%,10d\n", 
-                                                 e.getKey().getIATA(), 
-                                                 e.getValue()));
+      FlightQuery query = select(DESTINATION).whereEquals(ORIGIN, origin.getIATA())
+                                             .where(CANCELLED, false);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getDestination, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%,10d\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue()));
+      }
    }
 
    @Override
    public void reportMostPopularRoutes(ReportContext context) {
       final int year = context.getYear();
-      final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .collect(groupingBy(Flight::getRoute, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%s\t%,10d\n", 
-                                                 e.getKey(), 
-                                                 e.getValue().intValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         reportTopCounts(context, flights, Flight::getRoute,
+                         e -> context.getTerminal()
+                                     .printf("%s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue().intValue()));
+      }
    }
 
    @Override
@@ -162,19 +187,19 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(Flight::getOrigin, 
-                                 averagingInt(f -> f.getDepartureDelay())))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%3s\t\t%.0f\n", 
-                                                 e.getKey().getIATA(), 
-                                                 e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .collect(groupingBy(Flight::getOrigin, 
+                                    averagingInt(f -> f.getDepartureDelay())))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%.0f\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue()));
+      }
    }
 
    @Override
@@ -182,19 +207,109 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled() && f.notDiverted())
-             .collect(groupingBy(Flight::getDestination, 
-                                 averagingInt(f -> f.getArrivalDelay())))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%3s\t\t\t%.0f\n", 
-                                                 e.getKey().getIATA(), 
-                                                 e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled() && f.notDiverted())
+                .collect(groupingBy(Flight::getDestination, 
+                                    averagingInt(f -> f.getArrivalDelay())))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t\t%.0f\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue()));
+      }
+   }
+
+   @Override
+   public void reportDepartureDelayPercentilesByOrigin(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      FlightQuery query = select(ORIGIN, DEPARTURE_DELAY).where(CANCELLED, false);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getOrigin,
+                                    QuantileSketch.collector(Flight::getDepartureDelay)))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(highestQuantileComparator(0.9)))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%6.0f\t%6.0f\t%6.0f\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue().getQuantile(0.5),
+                                                    e.getValue().getQuantile(0.9),
+                                                    e.getValue().getQuantile(0.99)));
+      }
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByCarrier(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      FlightQuery query = select(CARRIER, ARRIVAL_DELAY).where(CANCELLED, false)
+                                                        .where(DIVERTED, false);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getCarrier,
+                                    QuantileSketch.collector(Flight::getArrivalDelay)))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(highestQuantileComparator(0.9)))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%-24s\t%6.0f\t%6.0f\t%6.0f\n", 
+                                                    left(e.getKey().getName(), 24), 
+                                                    e.getValue().getQuantile(0.5),
+                                                    e.getValue().getQuantile(0.9),
+                                                    e.getValue().getQuantile(0.99)));
+      }
+   }
+
+   @Override
+   public void reportArrivalDelayPercentilesByRoute(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      FlightQuery query = select(ORIGIN, DESTINATION, ARRIVAL_DELAY).where(CANCELLED, false)
+                                                                    .where(DIVERTED, false);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getRoute,
+                                    QuantileSketch.collector(Flight::getArrivalDelay)))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(highestQuantileComparator(0.9)))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%-10s\t%6.0f\t%6.0f\t%6.0f\n", 
+                                                    e.getKey(), 
+                                                    e.getValue().getQuantile(0.5),
+                                                    e.getValue().getQuantile(0.9),
+                                                    e.getValue().getQuantile(0.99)));
+      }
+   }
+
+   @Override
+   public void reportTaxiOutPercentilesByOrigin(ReportContext context) {
+      final int year = context.getYear();
+      final int limit = context.getLimit();
+
+      FlightQuery query = select(ORIGIN, TAXI_OUT).where(CANCELLED, false);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getOrigin,
+                                    QuantileSketch.collector(Flight::getTaxiOut)))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(highestQuantileComparator(0.9)))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%6.0f\t%6.0f\t%6.0f\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue().getQuantile(0.5),
+                                                    e.getValue().getQuantile(0.9),
+                                                    e.getValue().getQuantile(0.99)));
+      }
    }
 
    @Override
@@ -202,18 +317,18 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.cancelled())
-             .collect(groupingBy(Flight::getOrigin, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%3s\t\t%,8d\n", 
-                                                 e.getKey().getIATA(), 
-                                                 e.getValue()));
+      FlightQuery query = select(ORIGIN).where(CANCELLED, true);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getOrigin, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(e -> context.getTerminal()
+                                            .printf("%3s\t\t%,8d\n", 
+                                                    e.getKey().getIATA(), 
+                                                    e.getValue()));
+      }
    }
 
    @Override
@@ -221,19 +336,45 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .map(f -> f.getOrigin())
-             .collect(groupingBy(Airport::getState, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%2s\t%,10d\n", 
-                                                 e.getKey(), 
-                                                 e.getValue()));
+      if(context.isApproximate()) {
+         StratifiedSample sample = context.getRepository().getFlightSample(year);
+         sample.estimateCounts(Flight::notCancelled, f -> f.getOrigin().getState())
+               .entrySet()
+               .stream()
+               .sorted(comparingByValue(Estimate.valueComparator().reversed()))
+               .limit(limit)
+               .forEachOrdered(e -> context.getTerminal()
+                                           .printf("%2s\t%,10.0f\t+/- %,.0f\n", 
+                                                   e.getKey(), 
+                                                   e.getValue().getValue(),
+                                                   e.getValue().getMargin()));
+         context.getTerminal().println(sample.describe());
+         return;
+      }
+
+      // the totals by origin airport kept in an aggregate store roll up
+      // to states, without a pass over the flights
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      Map<String, Long> totals;
+      if(store != null) {
+         totals = store.rollUp(Dimension.ORIGIN, toState(repository), Measure.FLIGHTS, Measure.CANCELLED);
+      } else {
+         try(Stream<Flight> flights = repository.getFlightStream(year)) {
+            totals = flights.filter(f -> f.notCancelled())
+                            .map(f -> f.getOrigin())
+                            .collect(groupingBy(Airport::getState, counting()));
+         }
+      }
+      totals.entrySet()
+            .stream()
+            .filter(e -> e.getValue() > 0)
+            .sorted(comparingByValue(reverseOrder()))
+            .limit(limit)
+            .forEachOrdered(e -> context.getTerminal()
+                                        .printf("%2s\t%,10d\n", 
+                                                e.getKey(), 
+                                                e.getValue()));
    }
 
    @Override
@@ -241,20 +382,29 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .parallel()
-             .filter(f -> f.notCancelled() && f.notDiverted())
-             .map(f -> f.getDestination())
-             .collect(groupingBy(Airport::getState, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEachOrdered(e -> context.getTerminal()
-                                         .printf("%2s\t%,10d\n", 
-                                                 e.getKey(), 
-                                                 e.getValue()));
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      Map<String, Long> totals;
+      if(store != null) {
+         totals = store.rollUp(Dimension.DESTINATION, toState(repository),
+                               Measure.FLIGHTS, Measure.CANCELLED, Measure.DIVERTED);
+      } else {
+         try(Stream<Flight> flights = repository.getFlightStream(year)) {
+            totals = flights.parallel()
+                            .filter(f -> f.notCancelled() && f.notDiverted())
+                            .map(f -> f.getDestination())
+                            .collect(groupingBy(Airport::getState, counting()));
+         }
+      }
+      totals.entrySet()
+            .stream()
+            .filter(e -> e.getValue() > 0)
+            .sorted(comparingByValue(reverseOrder()))
+            .limit(limit)
+            .forEachOrdered(e -> context.getTerminal()
+                                        .printf("%2s\t%,10d\n", 
+                                                e.getKey(), 
+                                                e.getValue()));
    }
 
    @Override
@@ -271,38 +421,54 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled() && f.notDiverted())
-             .sorted(comparator)
-             .limit(limit)
-             .forEach(f -> context.getTerminal()
-                                  .printf("%-8s  %10s\t  %2s\t %3s\t    %3s\t\t%6d\n",
-                                          f.getFlightNumber(),
-                                          f.getDate(),
-                                          f.getCarrier().getCode(),
-                                          f.getOrigin().getIATA(),
-                                          f.getDestination().getIATA(),
-                                          f.getDistance()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled() && f.notDiverted())
+                .sorted(comparator)
+                .limit(limit)
+                .forEach(f -> context.getTerminal()
+                                     .printf("%-8s  %10s\t  %2s\t %3s\t    %3s\t\t%6d\n",
+                                             f.getFlightNumber(),
+                                             f.getDate(),
+                                             f.getCarrier().getCode(),
+                                             f.getOrigin().getIATA(),
+                                             f.getDestination().getIATA(),
+                                             f.getDistance()));
+      }
    }
 
    @Override
    public void reportTotalFlightsByDistanceRange(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .parallel()
-             .filter(f -> f.notCancelled() && f.notDiverted())
-             .collect(groupingBy(FlightDistanceRange.classifier(DISTANCE_RANGES),
-                                 counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByKey())
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-10s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      if(context.isApproximate()) {
+         StratifiedSample sample = context.getRepository().getFlightSample(year);
+         sample.estimateCounts(f -> f.notCancelled() && f.notDiverted(),
+                               FlightDistanceRange.classifier(DISTANCE_RANGES))
+               .entrySet()
+               .stream()
+               .sorted(comparingByKey())
+               .forEach(e -> context.getTerminal()
+                                    .printf("%-10s\t%,10.0f\t+/- %,.0f\n", 
+                                            e.getKey(), 
+                                            e.getValue().getValue(),
+                                            e.getValue().getMargin()));
+         context.getTerminal().println(sample.describe());
+         return;
+      }
+
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.parallel()
+                .filter(f -> f.notCancelled() && f.notDiverted())
+                .collect(groupingBy(FlightDistanceRange.classifier(DISTANCE_RANGES),
+                                    counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByKey())
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-10s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
@@ -320,69 +486,81 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.cancelled())
-             .collect(groupingBy(Flight::getDate, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparator)
-             .limit(limit)
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-10s       %,3d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      FlightQuery query = select(YEAR, MONTH, DAY_OF_MONTH).where(CANCELLED, true);
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year, query)) {
+         flights.collect(groupingBy(Flight::getDate, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparator)
+                .limit(limit)
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-10s       %,3d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportTotalMonthlyFlights(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(Flight::getYearMonth, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByKey())
-             .forEach(e -> context.getTerminal()
-                                  .printf("%s\t%,10d\n", 
-                                          YEAR_MONTH_FORMAT.format(e.getKey()), 
-                                          e.getValue()));
+      // monthly totals are the sums of the daily totals of a store
+      Repository repository = context.getRepository();
+      AggregateStore store = repository.findAggregateStore(year);
+      Map<YearMonth, Long> totals;
+      if(store != null) {
+         totals = store.rollUp(Dimension.DAY, AggregateStore::getMonth, Measure.FLIGHTS, Measure.CANCELLED)
+                       .entrySet()
+                       .stream()
+                       .collect(toMap(e -> YearMonth.parse(e.getKey()), Entry::getValue));
+      } else {
+         try(Stream<Flight> flights = repository.getFlightStream(year)) {
+            totals = flights.filter(f -> f.notCancelled())
+                            .collect(groupingBy(Flight::getYearMonth, counting()));
+         }
+      }
+      totals.entrySet()
+            .stream()
+            .filter(e -> e.getValue() > 0)
+            .sorted(comparingByKey())
+            .forEach(e -> context.getTerminal()
+                                 .printf("%s\t%,10d\n", 
+                                         YEAR_MONTH_FORMAT.format(e.getKey()), 
+                                         e.getValue()));
    }
    @Override
    public void reportTotalDailyFlights(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(Flight::getDate, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByKey())
-             .forEach(e -> context.getTerminal()
-                                  .printf("%s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .collect(groupingBy(Flight::getDate, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByKey())
+                .forEach(e -> context.getTerminal()
+                                     .printf("%s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportTotalFlightsByDayOfWeek(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .map(f -> f.getDate())
-             .collect(groupingBy(LocalDate::getDayOfWeek, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByKey())
-             .forEach(e -> context.getTerminal()
-                                  .printf("%10s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .map(f -> f.getDate())
+                .collect(groupingBy(LocalDate::getDayOfWeek, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByKey())
+                .forEach(e -> context.getTerminal()
+                                     .printf("%10s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
@@ -400,67 +578,88 @@ public class StreamFlightReports implements FlightReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(Flight::getDate, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparator)
-             .limit(limit)
-             .forEach(e -> context.getTerminal()
-                                  .printf("%s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .collect(groupingBy(Flight::getDate, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparator)
+                .limit(limit)
+                .forEach(e -> context.getTerminal()
+                                     .printf("%s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportMostFlightsByOriginByDay(ReportContext context) {
       final int year = context.getYear();
-      final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(f -> pairAirportDay(f.getOrigin(), 
-                                                     f.getDate()), 
-                                 counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEach(entry -> {
-                PairGroup<Airport, LocalDate> key = entry.getKey();
-                context.getTerminal()
-                       .printf("%-30s\t%s\t%,10d\n", 
-                               left(key.getFirst().getName(), 30), 
-                               key.getSecond(), 
-                               entry.getValue());
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         reportTopCounts(context, 
+                         flights.filter(f -> f.notCancelled()),
+                         f -> pairAirportDay(f.getOrigin(), f.getDate()),
+                         entry -> {
+                            PairGroup<Airport, LocalDate> key = entry.getKey();
+                            context.getTerminal()
+                                   .printf("%-30s\t%s\t%,10d\n", 
+                                           left(key.getFirst().getName(), 30), 
+                                           key.getSecond(), 
+                                           entry.getValue());
+                         });
+      }
    }
 
    @Override
    public void reportMostFlightsByCarrierByDay(ReportContext context) {
       final int year = context.getYear();
+
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         reportTopCounts(context, 
+                         flights.filter(f -> f.notCancelled()),
+                         f -> pairCarrierDay(f.getCarrier(), f.getDate()),
+                         entry -> {
+                            PairGroup<Carrier, LocalDate> key = entry.getKey();
+                            context.getTerminal()
+                                   .printf("%-30s\t%s\t%,10d\n", 
+                                           left(key.getFirst().getName(), 30), 
+                                           key.getSecond(), 
+                                           entry.getValue());
+                         });
+      }
+   }
+
+   /**
+    * Print the limit most frequent keys of the flights with their counts,
+    * largest first. In approximate mode the keys are found with a heavy
+    * hitters sketch, in fixed memory, instead of by counting every key.
+    */
+   private static <K> void reportTopCounts(ReportContext context, Stream<Flight> flights, 
+      Function<Flight, K> key, Consumer<Entry<K, Long>> printer) {
       final int limit = context.getLimit();
+      if(context.isApproximate()) {
+         HeavyHitters<K> top = flights.collect(HeavyHitters.collector(key, limit));
+         top.getTop(limit).forEach(printer);
+         context.getTerminal().println(top.describeErrorBound());
+      } else {
+         flights.collect(groupingBy(key, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEachOrdered(printer);
+      }
+   }
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .collect(groupingBy(f -> pairCarrierDay(f.getCarrier(), 
-                                                     f.getDate()),
-                                 counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEach(entry -> {
-                PairGroup<Carrier, LocalDate> key = entry.getKey();
-                context.getTerminal()
-                       .printf("%-30s\t%s\t%,10d\n", 
-                               left(key.getFirst().getName(), 30), 
-                               key.getSecond(), 
-                               entry.getValue());
-             });
+   /**
+    * Returns a function from an airport's IATA code to its state, or null
+    * for an unknown airport.
+    */
+   private static Function<String, String> toState(Repository repository) {
+      return iata -> {
+         Airport airport = repository.getAirport(iata);
+         return airport == null ? null : airport.getState();
+      };
    }
 }
\ No newline at end of file
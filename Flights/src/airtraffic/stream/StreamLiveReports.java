@@ -1,13 +1,37 @@
 package airtraffic.stream;
 
+import static airtraffic.FlightField.CARRIER;
+import static airtraffic.FlightQuery.selectAll;
+import static org.apache.commons.lang3.StringUtils.repeat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
 import org.beryx.textio.TextTerminal;
 
 import airtraffic.Airport;
 import airtraffic.AirportMetrics;
 import airtraffic.Carrier;
 import airtraffic.CarrierMetrics;
+import airtraffic.Flight;
 import airtraffic.LiveReports;
 import airtraffic.ReportContext;
+import airtraffic.Repository;
+import airtraffic.ingest.AggregateStore.Dimension;
+import airtraffic.ingest.AggregateStore.Measure;
+import airtraffic.live.AnomalyDetector;
+import airtraffic.live.AnomalyDetector.Alert;
+import airtraffic.live.Multicaster;
+import airtraffic.live.Multicaster.Branch;
+import airtraffic.live.Multicaster.Overflow;
+import airtraffic.live.ReplayEngine;
+import airtraffic.live.WindowedMetrics;
+import airtraffic.live.WindowedMetrics.Window;
 
 public class StreamLiveReports implements LiveReports {
 
@@ -18,20 +42,22 @@ public class StreamLiveReports implements LiveReports {
 
       TextTerminal<?> terminal = context.getTerminal();
       final AirportMetrics metrics = new AirportMetrics(airport);
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(flight -> flight.getOrigin().equals(airport) || 
-                               flight.getDestination().equals(airport))
-             .forEach(flight -> {
-                metrics.addFlight(flight);
-                terminal.printf("%,10d\t%,10d\t%,10d\t%,10d\t  %,10d", 
-                                metrics.getTotalFlights(), 
-                                metrics.getTotalCancelled(), 
-                                metrics.getTotalDiverted(), 
-                                metrics.getTotalOrigins(), 
-                                metrics.getTotalDestinations());
-                terminal.moveToLineStart();
-             });
+      try(Stream<Flight> flights = context.isReplay() ? 
+             ReplayEngine.of(context).stream() : 
+             context.getRepository().getFlightStream(year)) {
+         flights.filter(flight -> flight.getOrigin().equals(airport) || 
+                                  flight.getDestination().equals(airport))
+                .forEach(flight -> {
+                   metrics.addFlight(flight);
+                   terminal.printf("%,10d\t%,10d\t%,10d\t%,10d\t  %,10d", 
+                                   metrics.getTotalFlights(), 
+                                   metrics.getTotalCancelled(), 
+                                   metrics.getTotalDiverted(), 
+                                   metrics.getTotalOrigins(), 
+                                   metrics.getTotalDestinations());
+                   terminal.moveToLineStart();
+                });
+      }
 
       terminal.println();
    }
@@ -43,19 +69,150 @@ public class StreamLiveReports implements LiveReports {
 
       TextTerminal<?> terminal = context.getTerminal();
       final CarrierMetrics metrics = new CarrierMetrics(carrier);
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(flight -> flight.getCarrier().equals(carrier))
-             .forEach(flight -> {
-                metrics.addFlight(flight);
-                terminal.printf("%,10d\t%,10d\t%,10d\t%,10d",
-                                metrics.getTotalFlights(), 
-                                metrics.getTotalCancelled(), 
-                                metrics.getTotalDiverted(), 
-                                metrics.getAirports().size());
-                terminal.moveToLineStart();
-             });
+      try(Stream<Flight> flights = context.isReplay() ? 
+             ReplayEngine.of(context).stream().filter(flight -> carrier.equals(flight.getCarrier())) : 
+             context.getRepository().getFlightStream(year, selectAll().whereEquals(CARRIER, carrier.getCode()))) {
+         flights.forEach(flight -> {
+                   metrics.addFlight(flight);
+                   terminal.printf("%,10d\t%,10d\t%,10d\t%,10d",
+                                   metrics.getTotalFlights(), 
+                                   metrics.getTotalCancelled(), 
+                                   metrics.getTotalDiverted(), 
+                                   metrics.getAirports().size());
+                   terminal.moveToLineStart();
+                });
+      }
 
       terminal.println();
    }
+
+   @Override
+   public void reportAirportConditions(ReportContext context) {
+      final Airport airport = context.getAirport();
+
+      TextTerminal<?> terminal = context.getTerminal();
+      final WindowedMetrics<Airport> lastHour = 
+         WindowedMetrics.sliding(Duration.ofHours(1), Duration.ofMinutes(5));
+      final WindowedMetrics<Airport> today = WindowedMetrics.tumbling(Duration.ofDays(1));
+      try(Stream<Flight> flights = ReplayEngine.of(context).stream()) {
+         flights.filter(flight -> flight.getOrigin().equals(airport) || 
+                                  flight.getDestination().equals(airport))
+                .forEach(flight -> {
+                   lastHour.add(airport, flight);
+                   today.add(airport, flight);
+                   printConditions(terminal, today.getWatermark(), 
+                                   lastHour.get(airport), today.get(airport));
+                });
+      }
+
+      terminal.println();
+   }
+
+   @Override
+   public void reportCarrierConditions(ReportContext context) {
+      final Carrier carrier = context.getCarrier();
+
+      TextTerminal<?> terminal = context.getTerminal();
+      final WindowedMetrics<Carrier> lastHour = 
+         WindowedMetrics.sliding(Duration.ofHours(1), Duration.ofMinutes(5));
+      final WindowedMetrics<Carrier> today = WindowedMetrics.tumbling(Duration.ofDays(1));
+      try(Stream<Flight> flights = ReplayEngine.of(context).stream()) {
+         flights.filter(flight -> carrier.equals(flight.getCarrier()))
+                .forEach(flight -> {
+                   lastHour.add(carrier, flight);
+                   today.add(carrier, flight);
+                   printConditions(terminal, today.getWatermark(), 
+                                   lastHour.get(carrier), today.get(carrier));
+                });
+      }
+
+      terminal.println();
+   }
+
+   private void printConditions(TextTerminal<?> terminal, LocalDateTime time, 
+                                Window lastHour, Window today) {
+      terminal.printf("%s\t%,9d\t%,9d\t%9.1f\t%,9d\t%,9d\t%9.1f", 
+                      EVENT_TIME_FORMAT.format(time), 
+                      lastHour.getFlights(), 
+                      lastHour.getCancelled(), 
+                      lastHour.getMeanArrivalDelay(), 
+                      today.getFlights(), 
+                      today.getCancelled(), 
+                      today.getMeanArrivalDelay());
+      terminal.moveToLineStart();
+   }
+
+   @Override
+   public void reportAnomalies(ReportContext context) {
+      TextTerminal<?> terminal = context.getTerminal();
+      AnomalyDetector detector = new AnomalyDetector(alert -> printAlert(terminal, alert));
+      try(Stream<Flight> flights = ReplayEngine.of(context).stream()) {
+         flights.forEach(detector);
+      }
+
+      terminal.printf("\n%,d alerts in %,d flights\n", detector.getAlerts(), detector.getFlights());
+   }
+
+   private void printAlert(TextTerminal<?> terminal, Alert alert) {
+      terminal.printf("%s\t%-7s\t%-4s\t%-13s\t%-7s\t%6.1f%%\t%6.1f%%\t%6.1f\t%s\n", 
+                      EVENT_TIME_FORMAT.format(alert.getTime()), 
+                      alert.getScope(), 
+                      alert.getKey(), 
+                      alert.getKind(), 
+                      alert.isCleared() ? "cleared" : "raised", 
+                      alert.getRate() * 100, 
+                      alert.getBaselineRate() * 100, 
+                      alert.getZScore(), 
+                      alert.getCause() != null ? alert.getCause() : "");
+   }
+
+   @Override
+   public void reportAirportDashboard(ReportContext context) {
+      final Repository repository = context.getRepository();
+      TextTerminal<?> terminal = context.getTerminal();
+      Map<Airport, AirportMetrics> metrics = new LinkedHashMap<>();
+      Map<Airport, Branch> branches = new HashMap<>();
+      try(Multicaster multicaster = new Multicaster()) {
+         repository.getAggregateStore(context.getYear())
+                   .get(Dimension.ORIGIN, Measure.FLIGHTS)
+                   .entrySet()
+                   .stream()
+                   .sorted(Entry.<String, Long>comparingByValue().reversed())
+                   .limit(context.getLimit())
+                   .map(entry -> repository.getAirport(entry.getKey()))
+                   .forEach(airport -> {
+                      AirportMetrics m = new AirportMetrics(airport);
+                      metrics.put(airport, m);
+                      branches.put(airport, multicaster.subscribe(
+                         flight -> flight.getOrigin().equals(airport) || 
+                                   flight.getDestination().equals(airport), 
+                         Multicaster.DEFAULT_CAPACITY, Overflow.DROP, m::addFlight));
+                   });
+         multicaster.connect(ReplayEngine.of(context));
+         while(!multicaster.awaitCompletion(DASHBOARD_REFRESH_MILLIS)) {
+            printDashboard(terminal, multicaster.getPublished(), metrics, branches);
+         }
+         printDashboard(terminal, multicaster.getPublished(), metrics, branches);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private void printDashboard(TextTerminal<?> terminal, long published, 
+                               Map<Airport, AirportMetrics> metrics, 
+                               Map<Airport, Branch> branches) {
+      terminal.printf("\n%,d flights replayed\n", published);
+      terminal.println("Airport\t     Total\t Cancelled\t  Diverted\t  Buffered\t   Dropped");
+      terminal.println(repeat("-", 72));
+      metrics.forEach((airport, m) -> {
+         Branch branch = branches.get(airport);
+         terminal.printf("%-7s\t%,10d\t%,10d\t%,10d\t%,10d\t%,10d\n", 
+                         airport.getIATA(), 
+                         m.getTotalFlights(), 
+                         m.getTotalCancelled(), 
+                         m.getTotalDiverted(), 
+                         branch.getBuffered(), 
+                         branch.getDropped());
+      });
+   }
 }
\ No newline at end of file
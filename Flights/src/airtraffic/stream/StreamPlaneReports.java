@@ -9,6 +9,7 @@ import static org.apache.commons.lang3.StringUtils.left;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import airtraffic.Flight;
 import airtraffic.Plane;
@@ -94,18 +95,18 @@ public class StreamPlaneReports implements PlaneReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.cancelled() && f.validTailNumber())
-             .collect(groupingBy(Flight::getTailNumber, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-8s\t%,6d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.cancelled() && f.validTailNumber())
+                .collect(groupingBy(Flight::getTailNumber, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-8s\t%,6d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
@@ -113,24 +114,24 @@ public class StreamPlaneReports implements PlaneReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .parallel()
-             .filter(f -> f.notCancelled() && f.validTailNumber())
-             .collect(groupingBy(Flight::getPlane, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEach(e -> {
-                Plane plane = e.getKey();
-                context.getTerminal()
-                       .printf("%-8s  %-20s  %-10s  %,10d\n", 
-                               plane.getTailNumber(), 
-                               left(plane.getManufacturer(), 20),
-                               left(plane.getModel().getModelNumber(), 10),
-                               e.getValue());
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.parallel()
+                .filter(f -> f.notCancelled() && f.validTailNumber())
+                .collect(groupingBy(Flight::getPlane, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEach(e -> {
+                   Plane plane = e.getKey();
+                   context.getTerminal()
+                          .printf("%-8s  %-20s  %-10s  %,10d\n", 
+                                  plane.getTailNumber(), 
+                                  left(plane.getManufacturer(), 20),
+                                  left(plane.getModel().getModelNumber(), 10),
+                                  e.getValue());
+                });
+      }
    }
 
    @Override
@@ -138,100 +139,100 @@ public class StreamPlaneReports implements PlaneReports {
       final int year = context.getYear();
       final int limit = context.getLimit();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .parallel()
-             .filter(f -> f.notCancelled() && 
-                          ! "UNKNOWN".equals(f.getPlane().getManufacturer()))
-             .map(f -> f.getPlane())
-             .collect(groupingBy(Plane::getModel, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .limit(limit)
-             .forEach(e -> {
-                PlaneModel model = e.getKey();
-                Long count = e.getValue();
-                context.getTerminal()
-                       .printf("%-25s\t%-20s\t%,10d\t%8.1f",
-                               model.getManufacturer(),
-                               model.getModelNumber(),
-                               count,
-                               count.floatValue() / 365);
-             });
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.parallel()
+                .filter(f -> f.notCancelled() && 
+                             ! "UNKNOWN".equals(f.getPlane().getManufacturer()))
+                .map(f -> f.getPlane())
+                .collect(groupingBy(Plane::getModel, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .limit(limit)
+                .forEach(e -> {
+                   PlaneModel model = e.getKey();
+                   Long count = e.getValue();
+                   context.getTerminal()
+                          .printf("%-25s\t%-20s\t%,10d\t%8.1f",
+                                  model.getManufacturer(),
+                                  model.getModelNumber(),
+                                  count,
+                                  count.floatValue() / 365);
+                });
+      }
    }
 
    @Override
    public void reportTotalFlightsByPlaneManufacturer(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .map(f -> f.getPlane())
-             .collect(groupingBy(Plane::getManufacturer, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-25s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .map(f -> f.getPlane())
+                .collect(groupingBy(Plane::getManufacturer, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-25s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportTotalFlightsByPlaneAgeRange(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .parallel()
-             .filter(f -> f.notCancelled() && 
-                          f.getPlane().getYear() > 0)
-             .collect(groupingBy(PlaneAgeRange.classifier(AGE_RANGES), 
-                                 counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByKey())
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-10s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.parallel()
+                .filter(f -> f.notCancelled() && 
+                             f.getPlane().getYear() > 0)
+                .collect(groupingBy(PlaneAgeRange.classifier(AGE_RANGES), 
+                                    counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByKey())
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-10s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportTotalFlightsByAircraftType(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .map(f -> f.getPlane())
-             .collect(groupingBy(Plane::getAircraftType, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-25s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .map(f -> f.getPlane())
+                .collect(groupingBy(Plane::getAircraftType, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-25s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 
    @Override
    public void reportTotalFlightsByEngineType(ReportContext context) {
       final int year = context.getYear();
 
-      context.getRepository()
-             .getFlightStream(year)
-             .filter(f -> f.notCancelled())
-             .map(f -> f.getPlane())
-             .collect(groupingBy(Plane::getEngineType, counting()))
-             .entrySet()
-             .stream()
-             .sorted(comparingByValue(reverseOrder()))
-             .forEach(e -> context.getTerminal()
-                                  .printf("%-25s\t%,10d\n", 
-                                          e.getKey(), 
-                                          e.getValue()));
+      try(Stream<Flight> flights = context.getRepository().getFlightStream(year)) {
+         flights.filter(f -> f.notCancelled())
+                .map(f -> f.getPlane())
+                .collect(groupingBy(Plane::getEngineType, counting()))
+                .entrySet()
+                .stream()
+                .sorted(comparingByValue(reverseOrder()))
+                .forEach(e -> context.getTerminal()
+                                     .printf("%-25s\t%,10d\n", 
+                                             e.getKey(), 
+                                             e.getValue()));
+      }
    }
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package airtraffic.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests that a ring buffer shared by several producers and consumers hands
+ * over every item exactly once, and that closing it lets both sides
+ * finish.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class RingBufferTest {
+   private static final int PRODUCERS = 4;
+   private static final int CONSUMERS = 3;
+   private static final int ITEMS_PER_PRODUCER = 50_000;
+
+   @Test(timeout = 30_000)
+   public void testDrainsEveryItemFromSeveralProducers() throws InterruptedException {
+      RingBuffer<Integer> buffer = new RingBuffer<>(64);
+      AtomicIntegerArray seen = new AtomicIntegerArray(PRODUCERS * ITEMS_PER_PRODUCER);
+      AtomicLong taken = new AtomicLong();
+
+      List<Thread> producers = new ArrayList<>();
+      for(int p = 0; p < PRODUCERS; p++) {
+         final int first = p * ITEMS_PER_PRODUCER;
+         producers.add(start(() -> {
+            for(int i = 0; i < ITEMS_PER_PRODUCER; i++) {
+               assertTrue(buffer.put(first + i));
+            }
+         }));
+      }
+      List<Thread> consumers = new ArrayList<>();
+      for(int c = 0; c < CONSUMERS; c++) {
+         consumers.add(start(() -> {
+            Integer item;
+            while((item = buffer.take()) != null) {
+               seen.incrementAndGet(item);
+               taken.incrementAndGet();
+            }
+         }));
+      }
+
+      join(producers);
+      buffer.close();
+      join(consumers);
+
+      assertEquals(PRODUCERS * ITEMS_PER_PRODUCER, taken.get());
+      for(int i = 0; i < seen.length(); i++) {
+         assertEquals("Times item " + i + " was taken", 1, seen.get(i));
+      }
+      assertEquals(0, buffer.size());
+   }
+
+   @Test(timeout = 10_000)
+   public void testTakeDrainsItemsPutBeforeClose() {
+      RingBuffer<String> buffer = new RingBuffer<>(4);
+      assertTrue(buffer.put("a"));
+      assertTrue(buffer.put("b"));
+      assertTrue(buffer.put("c"));
+      buffer.close();
+
+      assertTrue(buffer.isClosed());
+      assertEquals("a", buffer.take());
+      assertEquals("b", buffer.take());
+      assertEquals("c", buffer.take());
+      assertNull(buffer.take());
+   }
+
+   @Test(timeout = 10_000)
+   public void testCloseReleasesBlockedProducers() throws InterruptedException {
+      RingBuffer<Integer> buffer = new RingBuffer<>(2);
+      assertTrue(buffer.offer(-1));
+      assertTrue(buffer.offer(-2));
+      assertFalse(buffer.offer(-3));
+
+      AtomicIntegerArray results = new AtomicIntegerArray(PRODUCERS);
+      List<Thread> producers = new ArrayList<>();
+      for(int p = 0; p < PRODUCERS; p++) {
+         final int producer = p;
+         producers.add(start(() -> results.set(producer, buffer.put(producer) ? 1 : 0)));
+      }
+      // give the producers time to start waiting for room
+      Thread.sleep(100);
+      buffer.close();
+      join(producers);
+
+      for(int p = 0; p < PRODUCERS; p++) {
+         assertEquals("Producer " + p + " added after close", 0, results.get(p));
+      }
+      assertEquals(Integer.valueOf(-1), buffer.take());
+      assertEquals(Integer.valueOf(-2), buffer.take());
+      assertNull(buffer.take());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidCapacity() {
+      new RingBuffer<Object>(0);
+   }
+
+   @Test
+   public void testRoundsCapacityUpToPowerOfTwo() {
+      assertEquals(2, new RingBuffer<Object>(1).getCapacity());
+      assertEquals(8, new RingBuffer<Object>(5).getCapacity());
+      assertEquals(64, new RingBuffer<Object>(64).getCapacity());
+   }
+
+   private static Thread start(Runnable task) {
+      Thread thread = new Thread(task);
+      thread.start();
+      return thread;
+   }
+
+   private static void join(List<Thread> threads) throws InterruptedException {
+      for(Thread thread : threads) {
+         thread.join();
+      }
+   }
+}
\ No newline at end of file
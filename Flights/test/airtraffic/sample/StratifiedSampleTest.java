@@ -0,0 +1,189 @@
+package airtraffic.sample;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import airtraffic.Flight;
+import airtraffic.Repository;
+
+/**
+ * Tests the estimates of a sample drawn from a population of flights whose
+ * exact counts and rates are known.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class StratifiedSampleTest {
+   private static final int YEAR = 2008;
+   private static final int MONTHS = 3;
+   private static final int STRATUM_SIZE = 100;
+   private static final String HEADER =
+      "Year,Month,DayofMonth,DayOfWeek,DepTime,CRSDepTime,ArrTime,CRSArrTime," +
+      "UniqueCarrier,FlightNum,TailNum,ActualElapsedTime,CRSElapsedTime,AirTime," +
+      "ArrDelay,DepDelay,Origin,Dest,Distance,TaxiIn,TaxiOut,Cancelled," +
+      "CancellationCode,Diverted,CarrierDelay,WeatherDelay,NASDelay,SecurityDelay," +
+      "LateAircraftDelay";
+
+   /** Carriers, flights per month and cancelled flights per ten. */
+   private static final Object[][] POPULATION = {
+      { "AA", 2000, 1 },
+      { "WN",  600, 3 }
+   };
+
+   private Path dir;
+   private Repository repository;
+
+   @Before
+   public void setUp() throws IOException {
+      dir = Files.createTempDirectory("sample");
+      Files.write(dir.resolve("airports.csv"), Arrays.asList(
+         "\"iata\",\"airport\",\"city\",\"state\",\"country\",\"lat\",\"long\"",
+         "\"LAX\",\"Los Angeles International\",\"Los Angeles\",\"CA\",\"USA\",33.94,-118.41",
+         "\"ORD\",\"Chicago O'Hare International\",\"Chicago\",\"IL\",\"USA\",41.98,-87.90"), UTF_8);
+      Files.write(dir.resolve("carriers.csv"), Arrays.asList(
+         "Code,Description",
+         "\"AA\",\"American Airlines Inc.\"",
+         "\"WN\",\"Southwest Airlines Co.\""), UTF_8);
+      Files.write(dir.resolve("planes.csv"), Arrays.asList(
+         "tailnum,type,manufacturer,issue_date,model,status,aircraft_type,engine_type,year"), UTF_8);
+      Files.write(dir.resolve("flights-" + YEAR + ".csv"), getFlights(), UTF_8);
+      Files.write(dir.resolve("config.yaml"), Arrays.asList(
+         "airportPath: " + dir.resolve("airports.csv"),
+         "carrierPath: " + dir.resolve("carriers.csv"),
+         "planePath: " + dir.resolve("planes.csv"),
+         "flightPaths: {",
+         "   " + YEAR + ": " + dir.resolve("flights-" + YEAR + ".csv"),
+         "}",
+         "residentFlights: false",
+         "residentMemoryBudget: 64",
+         "residentStorage: heap",
+         "residentCachePath: " + dir.resolve("cache"),
+         "sampleSize: " + STRATUM_SIZE), UTF_8);
+      repository = new Repository(dir.resolve("config.yaml"));
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      repository.close();
+      FileUtils.deleteDirectory(dir.toFile());
+   }
+
+   /**
+    * Returns the header and a line for every flight in the population. The
+    * cancelled flights are spread evenly through each month.
+    */
+   private static List<String> getFlights() {
+      List<String> lines = new ArrayList<>();
+      lines.add(HEADER);
+      for(Object[] carrier : POPULATION) {
+         int flights = (Integer) carrier[1];
+         int cancelled = (Integer) carrier[2];
+         for(int month = 1; month <= MONTHS; month++) {
+            for(int i = 0; i < flights; i++) {
+               boolean cancel = i % 10 < cancelled;
+               String route = i % 2 == 0 ? "ORD,LAX" : "LAX,ORD";
+               lines.add(YEAR + "," + month + "," + (i % 28 + 1) + "," + (i % 7 + 1) +
+                         ",1000,1000,1300,1300," + carrier[0] + "," + i + ",N" + i +
+                         ",240,240,220,0,0," + route + ",1745,5,15," +
+                         (cancel ? "1,B" : "0,") + ",0,0,0,0,0,0");
+            }
+         }
+      }
+      return lines;
+   }
+
+   private static long getPopulation(String carrier) {
+      for(Object[] c : POPULATION) {
+         if(c[0].equals(carrier)) {
+            return (long) MONTHS * (Integer) c[1];
+         }
+      }
+      throw new IllegalArgumentException(carrier);
+   }
+
+   private static double getCancellationRate(String carrier) {
+      for(Object[] c : POPULATION) {
+         if(c[0].equals(carrier)) {
+            return (Integer) c[2] / 10.0;
+         }
+      }
+      throw new IllegalArgumentException(carrier);
+   }
+
+   private StratifiedSample load() throws IOException {
+      return StratifiedSample.load(YEAR, dir.resolve("cache"), STRATUM_SIZE, repository);
+   }
+
+   @Test
+   public void testSamplesEveryStratum() throws IOException {
+      StratifiedSample sample = load();
+      assertEquals(YEAR, sample.getYear());
+      assertEquals(POPULATION.length * MONTHS * STRATUM_SIZE, sample.size());
+      assertEquals(getPopulation("AA") + getPopulation("WN"), sample.getPopulation());
+   }
+
+   @Test
+   public void testCountsOfWholeStrataAreExact() throws IOException {
+      Map<String, Estimate> counts = load().estimateCounts(f -> true, f -> f.getCarrier().getCode());
+      for(Object[] carrier : POPULATION) {
+         Estimate estimate = counts.get(carrier[0]);
+         assertEquals(getPopulation((String) carrier[0]), estimate.getValue(), 1e-6);
+         assertEquals(0, estimate.getMargin(), 1e-6);
+      }
+   }
+
+   @Test
+   public void testCountMarginsCoverExactCounts() throws IOException {
+      Map<String, Estimate> counts = load().estimateCounts(Flight::cancelled,
+                                                           f -> f.getCarrier().getCode());
+      for(Object[] carrier : POPULATION) {
+         String code = (String) carrier[0];
+         double exact = getPopulation(code) * getCancellationRate(code);
+         Estimate estimate = counts.get(code);
+         assertTrue("Margin of " + estimate + " for " + code, estimate.getMargin() > 0);
+         assertTrue(estimate + " does not cover " + exact + " for " + code,
+                    estimate.getLower() <= exact && exact <= estimate.getUpper());
+      }
+   }
+
+   @Test
+   public void testRateMarginsCoverExactRates() throws IOException {
+      Map<String, Estimate> rates = load().estimateRates(f -> true, f -> f.getCarrier().getCode(),
+                                                         Flight::cancelled);
+      for(Object[] carrier : POPULATION) {
+         String code = (String) carrier[0];
+         double exact = getCancellationRate(code);
+         Estimate estimate = rates.get(code);
+         assertTrue("Margin of " + estimate + " for " + code,
+                    estimate.getMargin() > 0 && estimate.getMargin() < 0.1);
+         assertTrue(estimate + " does not cover " + exact + " for " + code,
+                    estimate.getLower() <= exact && exact <= estimate.getUpper());
+      }
+   }
+
+   @Test
+   public void testCachedSampleGivesSameEstimates() throws IOException {
+      Map<String, Estimate> built = load().estimateRates(f -> true, f -> f.getCarrier().getCode(),
+                                                         Flight::cancelled);
+      Map<String, Estimate> cached = load().estimateRates(f -> true, f -> f.getCarrier().getCode(),
+                                                          Flight::cancelled);
+      assertEquals(built.keySet(), cached.keySet());
+      built.forEach((code, estimate) -> {
+         assertEquals(estimate.getValue(), cached.get(code).getValue(), 1e-9);
+         assertEquals(estimate.getMargin(), cached.get(code).getMargin(), 1e-9);
+      });
+   }
+}
\ No newline at end of file
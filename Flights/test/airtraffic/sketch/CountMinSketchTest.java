@@ -0,0 +1,86 @@
+package airtraffic.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the counts estimated by the sketch against exact counts of the
+ * same keys.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class CountMinSketchTest {
+   private static final int KEYS = 20_000;
+   private static final int COUNT = 300_000;
+
+   @Test
+   public void testEstimatesAreWithinErrorBound() {
+      CountMinSketch sketch = new CountMinSketch();
+      Map<String, Integer> exact = fill(new Random(1), sketch);
+
+      assertEquals(COUNT, sketch.getTotal());
+      int over = 0;
+      for(Map.Entry<String, Integer> e : exact.entrySet()) {
+         long estimate = sketch.estimate(KeyFunnel.hash(e.getKey()));
+         assertTrue("Estimate for " + e.getKey() + " is too low", estimate >= e.getValue());
+         if(estimate - e.getValue() > sketch.getErrorBound()) {
+            over++;
+         }
+      }
+      // each estimate is within the bound with the sketch's confidence
+      double allowed = (1 - sketch.getConfidence()) * exact.size();
+      assertTrue(over + " estimates exceed the error bound", over <= allowed);
+   }
+
+   @Test
+   public void testMergeMatchesSingleSketch() {
+      CountMinSketch all = new CountMinSketch(1024, 4);
+      CountMinSketch first = new CountMinSketch(1024, 4);
+      CountMinSketch second = new CountMinSketch(1024, 4);
+      Random random = new Random(2);
+      for(int i = 0; i < COUNT; i++) {
+         long hash = KeyFunnel.hash("key" + random.nextInt(KEYS));
+         all.add(hash, 1);
+         (i % 2 == 0 ? first : second).add(hash, 1);
+      }
+      first.merge(second);
+
+      assertEquals(all.getTotal(), first.getTotal());
+      for(int key = 0; key < KEYS; key++) {
+         long hash = KeyFunnel.hash("key" + key);
+         assertEquals(all.estimate(hash), first.estimate(hash));
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsMergeOfDifferentDimensions() {
+      new CountMinSketch(1024, 4).merge(new CountMinSketch(2048, 4));
+   }
+
+   @Test
+   public void testHashesKeysByContents() {
+      assertEquals(KeyFunnel.hash("ORD"), KeyFunnel.hash(new StringBuilder("ORD")));
+      assertEquals(KeyFunnel.hash(42), KeyFunnel.hash(42L));
+      assertTrue(KeyFunnel.hash("ORD") != KeyFunnel.hash("LAX"));
+   }
+
+   /**
+    * Add COUNT keys with a skewed distribution to the sketch, returning
+    * their exact counts.
+    */
+   private static Map<String, Integer> fill(Random random, CountMinSketch sketch) {
+      Map<String, Integer> exact = new HashMap<>();
+      for(int i = 0; i < COUNT; i++) {
+         String key = "key" + (int) (KEYS * Math.pow(random.nextDouble(), 3));
+         sketch.add(KeyFunnel.hash(key), 1);
+         exact.merge(key, 1, Integer::sum);
+      }
+      return exact;
+   }
+}
\ No newline at end of file
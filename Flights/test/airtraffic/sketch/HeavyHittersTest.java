@@ -0,0 +1,91 @@
+package airtraffic.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * Tests that the most frequent keys are found, with estimated counts
+ * within the error bound of their exact counts.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class HeavyHittersTest {
+   private static final int KEYS = 50_000;
+   private static final int COUNT = 500_000;
+   private static final int LIMIT = 10;
+
+   @Test
+   public void testFindsMostFrequentKeys() {
+      List<Integer> keys = keys(new Random(1));
+      HeavyHitters<Integer> hitters = new HeavyHitters<>(LIMIT);
+      for(Integer key : keys) {
+         hitters.add(key);
+      }
+      assertTop(keys, hitters);
+   }
+
+   @Test
+   public void testFindsMostFrequentKeysInParallel() {
+      List<Integer> keys = keys(new Random(2));
+      HeavyHitters<Integer> hitters =
+         keys.parallelStream().collect(HeavyHitters.collector(key -> key, LIMIT));
+      assertTop(keys, hitters);
+   }
+
+   /**
+    * Returns COUNT keys in random order, the first few of which are far
+    * more frequent than the rest.
+    */
+   private static List<Integer> keys(Random random) {
+      List<Integer> keys = new ArrayList<>(COUNT);
+      for(int i = 0; i < COUNT; i++) {
+         keys.add(random.nextInt(4) == 0 ? random.nextInt(LIMIT * 2) : random.nextInt(KEYS));
+      }
+      return keys;
+   }
+
+   private static void assertTop(List<Integer> keys, HeavyHitters<Integer> hitters) {
+      Map<Integer, Long> exact = new HashMap<>();
+      for(Integer key : keys) {
+         exact.merge(key, 1L, Long::sum);
+      }
+      List<Entry<Integer, Long>> top = hitters.getTop(LIMIT);
+      assertEquals(LIMIT, top.size());
+
+      // only keys whose counts are within the error bound of the lowest
+      // estimate found may be missed
+      long bound = hitters.getErrorBound();
+      long lowest = top.get(top.size() - 1).getValue();
+      Set<Integer> found = top.stream().map(Entry::getKey).collect(Collectors.toSet());
+      Set<Integer> missed = new HashSet<>();
+      exact.forEach((key, count) -> {
+         if(count > lowest + bound && !found.contains(key)) {
+            missed.add(key);
+         }
+      });
+      assertTrue("Missed frequent keys " + missed, missed.isEmpty());
+
+      for(int i = 0; i < top.size(); i++) {
+         Entry<Integer, Long> e = top.get(i);
+         long count = exact.get(e.getKey());
+         assertTrue("Estimate for " + e.getKey() + " is too low", e.getValue() >= count);
+         assertTrue("Estimate for " + e.getKey() + " exceeds the error bound",
+                    e.getValue() - count <= bound);
+         if(i > 0) {
+            assertTrue(e.getValue() <= top.get(i - 1).getValue());
+         }
+      }
+   }
+}
\ No newline at end of file
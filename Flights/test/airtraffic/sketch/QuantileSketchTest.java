@@ -0,0 +1,113 @@
+package airtraffic.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the quantiles estimated by the sketch against the exact quantiles
+ * of the same values.
+ *
+ * @author tony@piazzaconsulting.com
+ */
+public class QuantileSketchTest {
+   private static final int COUNT = 200_000;
+   private static final double MAX_RANK_ERROR = 0.02;
+   private static final double[] RANKS = { 0.01, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99 };
+
+   @Test
+   public void testQuantilesAreWithinRankError() {
+      double[] values = delays(new Random(1));
+      QuantileSketch sketch = new QuantileSketch();
+      for(double value : values) {
+         sketch.add(value);
+      }
+      assertQuantiles(values, sketch);
+   }
+
+   @Test
+   public void testMergedQuantilesAreWithinRankError() {
+      double[] values = delays(new Random(2));
+      QuantileSketch[] parts = new QuantileSketch[4];
+      for(int i = 0; i < parts.length; i++) {
+         parts[i] = new QuantileSketch();
+      }
+      for(int i = 0; i < values.length; i++) {
+         parts[i % parts.length].add(values[i]);
+      }
+      QuantileSketch sketch = new QuantileSketch();
+      for(QuantileSketch part : parts) {
+         sketch.merge(part);
+      }
+      assertQuantiles(values, sketch);
+   }
+
+   @Test
+   public void testEmptySketch() {
+      QuantileSketch sketch = new QuantileSketch();
+      assertEquals(0, sketch.getCount());
+      assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidRank() {
+      new QuantileSketch().add(1).getQuantile(1.5);
+   }
+
+   /**
+    * Returns values shaped like arrival delays: mostly small, with a long
+    * tail of late flights.
+    */
+   private static double[] delays(Random random) {
+      double[] values = new double[COUNT];
+      for(int i = 0; i < COUNT; i++) {
+         values[i] = random.nextInt(10) < 8 ? Math.round(random.nextGaussian() * 15) :
+                                              Math.round(-Math.log(random.nextDouble()) * 90);
+      }
+      return values;
+   }
+
+   private static void assertQuantiles(double[] values, QuantileSketch sketch) {
+      double[] sorted = values.clone();
+      Arrays.sort(sorted);
+      assertEquals(values.length, sketch.getCount());
+      assertEquals(sorted[0], sketch.getMin(), 0);
+      assertEquals(sorted[sorted.length - 1], sketch.getMax(), 0);
+      assertTrue(sketch.getRetained() < values.length / 10);
+      for(double rank : RANKS) {
+         double estimate = sketch.getQuantile(rank);
+         // the estimate is good if its true rank range is near the one asked for
+         double lowest = (double) lowerBound(sorted, estimate) / sorted.length;
+         double highest = (double) upperBound(sorted, estimate) / sorted.length;
+         assertTrue("Quantile " + rank + " estimated as " + estimate +
+                    ", which has ranks " + lowest + " to " + highest,
+                    rank >= lowest - MAX_RANK_ERROR && rank <= highest + MAX_RANK_ERROR);
+      }
+   }
+
+   private static int lowerBound(double[] sorted, double value) {
+      int i = Arrays.binarySearch(sorted, value);
+      if(i < 0) {
+         return -i - 1;
+      }
+      while(i > 0 && sorted[i - 1] == value) {
+         i--;
+      }
+      return i;
+   }
+
+   private static int upperBound(double[] sorted, double value) {
+      int i = Arrays.binarySearch(sorted, value);
+      if(i < 0) {
+         return -i - 1;
+      }
+      while(i < sorted.length && sorted[i] == value) {
+         i++;
+      }
+      return i;
+   }
+}
\ No newline at end of file